@@ -90,5 +90,15 @@ interface Backend {
     @Throws(MessagingException::class)
     fun sendMessage(message: Message)
 
+    /**
+     * Allow [sendMessage] to reuse the connection to the outgoing server until [endSendSession] is called.
+     */
+    fun beginSendSession() = Unit
+
+    /**
+     * Close the connection kept open since [beginSendSession] was called.
+     */
+    fun endSendSession() = Unit
+
     fun createPusher(callback: BackendPusherCallback): BackendPusher
 }
@@ -21,7 +21,34 @@ interface BackendFolder {
     fun isMessagePresent(messageServerId: String): Boolean
     fun getMessageFlags(messageServerId: String): Set<Flag>
     fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean)
+
+    /**
+     * Set or remove flags on multiple messages at once.
+     *
+     * Only flags whose stored value differs from the desired value are changed. Messages that are not present or are
+     * marked as deleted are skipped.
+     *
+     * @param flagUpdates A map of message server IDs to the desired state of flags.
+     * @return The server IDs of the messages whose flags were changed.
+     */
+    fun updateMessageFlags(flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String> {
+        return flagUpdates.filter { (messageServerId, flagValues) ->
+            if (!isMessagePresent(messageServerId)) return@filter false
+
+            val localFlags = getMessageFlags(messageServerId)
+            if (Flag.DELETED in localFlags) return@filter false
+
+            val changedFlags = flagValues.filter { (flag, value) -> (flag in localFlags) != value }
+            for ((flag, value) in changedFlags) {
+                setMessageFlag(messageServerId, flag, value)
+            }
+
+            changedFlags.isNotEmpty()
+        }.keys
+    }
+
     fun saveMessage(message: Message, downloadState: MessageDownloadState)
+    fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState)
     fun getOldestMessageDate(): Date?
     fun getFolderExtraString(name: String): String?
     fun setFolderExtraString(name: String, value: String?)
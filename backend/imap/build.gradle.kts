@@ -1,6 +1,7 @@
 plugins {
     id(ThunderbirdPlugins.Library.jvm)
     alias(libs.plugins.android.lint)
+    alias(libs.plugins.jmh)
 }
 
 dependencies {
@@ -23,6 +24,25 @@ dependencies {
 
     testImplementation(libs.mime4j.dom)
     testImplementation(libs.mockito.kotlin)
+
+    jmh(projects.backend.testing)
+}
+
+kotlin {
+    // The benchmarks measure internal classes.
+    target.compilations.named("jmh") {
+        associateWith(target.compilations.getByName("main"))
+    }
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
 }
 
 codeCoverage {
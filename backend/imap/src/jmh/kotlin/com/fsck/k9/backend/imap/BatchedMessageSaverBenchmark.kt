@@ -0,0 +1,86 @@
+package com.fsck.k9.backend.imap
+
+import app.k9mail.backend.testing.InMemoryBackendFolder
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.mail.FolderType
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+
+private const val MESSAGE_COUNT = 2000
+
+/**
+ * Measures how many downloaded messages per second [BatchedMessageSaver] hands to the [BackendFolder].
+ *
+ * The database used by the app requires Android, so [TransactionCostBackendFolder] simulates the fixed cost of
+ * committing a transaction for every call to [BackendFolder.saveMessage] or [BackendFolder.saveMessages]. A batch size
+ * of 1 corresponds to saving every message in its own transaction.
+ *
+ * Run with `./gradlew :backend:imap:jmh`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class BatchedMessageSaverBenchmark {
+    @Param("1", "10", "50")
+    var batchSize: Int = 0
+
+    @Param("10000")
+    var transactionCostTokens: Long = 0
+
+    private lateinit var messages: List<ImapMessage>
+    private lateinit var backendFolder: BackendFolder
+
+    @Setup
+    fun setUp() {
+        messages = (1..MESSAGE_COUNT).map { uid -> ImapMessage(uid.toString()) }
+        backendFolder = TransactionCostBackendFolder(
+            delegate = InMemoryBackendFolder(name = "benchmark", type = FolderType.REGULAR),
+            transactionCostTokens = transactionCostTokens,
+        )
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    fun saveMessages(blackhole: Blackhole) {
+        val messageSaver = BatchedMessageSaver(
+            backendFolder = backendFolder,
+            downloadState = MessageDownloadState.FULL,
+            maxBatchSize = batchSize,
+            onMessagesSaved = blackhole::consume,
+        )
+
+        for (message in messages) {
+            messageSaver.add(message)
+        }
+        messageSaver.flush()
+    }
+}
+
+private class TransactionCostBackendFolder(
+    private val delegate: BackendFolder,
+    private val transactionCostTokens: Long,
+) : BackendFolder by delegate {
+    override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
+        Blackhole.consumeCPU(transactionCostTokens)
+        delegate.saveMessage(message, downloadState)
+    }
+
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        Blackhole.consumeCPU(transactionCostTokens)
+        for (message in messages) {
+            delegate.saveMessage(message, downloadState)
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+import net.thunderbird.legacy.logging.Log
+
+private const val DEFAULT_MAX_BATCH_SIZE = 50
+private const val DEFAULT_MAX_BATCH_DELAY_MILLIS = 500L
+
+/**
+ * Buffers downloaded messages and saves them using [BackendFolder.saveMessages], so that storing a large number of
+ * messages doesn't require one database transaction per message.
+ *
+ * A batch is saved once it contains [maxBatchSize] messages or when a message is added and the oldest buffered
+ * message has been waiting for at least [maxBatchDelayMillis]. The delay is only checked in [add]. There's no timer,
+ * because [BackendFolder] is only accessed from the thread running the sync. So while the server isn't sending any
+ * responses, buffered messages stay in memory until the next message arrives or the caller invokes [flush]. Callers
+ * have to call [flush] when the download has finished or failed to save the remaining messages.
+ *
+ * [onMessagesSaved] is invoked with the messages that have been saved successfully.
+ */
+internal class BatchedMessageSaver(
+    private val backendFolder: BackendFolder,
+    private val downloadState: MessageDownloadState,
+    private val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+    private val maxBatchDelayMillis: Long = DEFAULT_MAX_BATCH_DELAY_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val onMessagesSaved: (List<ImapMessage>) -> Unit,
+) {
+    private val bufferedMessages = LinkedHashMap<String, ImapMessage>()
+    private var batchStartTime = 0L
+
+    init {
+        require(maxBatchSize > 0) { "maxBatchSize must be positive" }
+    }
+
+    fun add(message: ImapMessage) {
+        if (bufferedMessages.isEmpty()) {
+            batchStartTime = clock()
+        }
+
+        bufferedMessages[message.uid] = message
+
+        if (bufferedMessages.size >= maxBatchSize || clock() - batchStartTime >= maxBatchDelayMillis) {
+            flush()
+        }
+    }
+
+    fun flush() {
+        if (bufferedMessages.isEmpty()) return
+
+        val messages = bufferedMessages.values.toList()
+        bufferedMessages.clear()
+
+        val savedMessages = try {
+            backendFolder.saveMessages(messages, downloadState)
+            messages
+        } catch (e: Exception) {
+            Log.e(e, "Error saving batch of %d messages. Saving messages individually.", messages.size)
+            saveMessagesIndividually(messages)
+        }
+
+        if (savedMessages.isNotEmpty()) {
+            onMessagesSaved(savedMessages)
+        }
+    }
+
+    private fun saveMessagesIndividually(messages: List<ImapMessage>): List<ImapMessage> {
+        return messages.filter { message ->
+            try {
+                backendFolder.saveMessage(message, downloadState)
+                true
+            } catch (e: Exception) {
+                Log.e(e, "Error saving message %s", message.uid)
+                false
+            }
+        }
+    }
+}
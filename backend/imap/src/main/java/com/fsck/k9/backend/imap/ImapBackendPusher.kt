@@ -21,22 +21,32 @@ private const val IO_ERROR_TIMEOUT = 5 * 60 * 1000L
 private const val UNEXPECTED_ERROR_TIMEOUT = 60 * 60 * 1000L
 
 /**
- * Manages [ImapFolderPusher] instances that listen for changes to individual folders.
+ * Listens for changes to the push folders of an account.
+ *
+ * If the server supports the NOTIFY extension, a single [ImapNotifyPusher] watches all push folders using one
+ * connection. Otherwise this class manages [ImapFolderPusher] instances that listen for changes to individual folders.
  */
 internal class ImapBackendPusher(
     private val imapStore: ImapStore,
-    private val powerManager: PowerManager,
+    powerManager: PowerManager,
     private val idleRefreshManager: IdleRefreshManager,
     private val pushConfigProvider: ImapPushConfigProvider,
     private val callback: BackendPusherCallback,
-    private val accountName: String,
+    accountName: String,
     backgroundDispatcher: CoroutineDispatcher = Dispatchers.IO,
-) : BackendPusher, ImapPusherCallback {
+    private val pusherFactory: ImapPusherFactory =
+        DefaultImapPusherFactory(imapStore, powerManager, idleRefreshManager, accountName),
+) : BackendPusher, ImapPusherCallback, ImapNotifyPusherCallback {
     private val coroutineScope = CoroutineScope(backgroundDispatcher)
     private val lock = Any()
     private val pushFolders = mutableMapOf<String, ImapFolderPusher>()
     private var currentFolderServerIds: Collection<String> = emptySet()
     private val pushFolderSleeping = mutableMapOf<String, IdleRefreshTimer>()
+    private var notifyPusher: ImapNotifyPusher? = null
+    private var notifyPusherSleeping: IdleRefreshTimer? = null
+
+    @Volatile
+    private var isNotifySupported = true
 
     private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
         override val idleRefreshTimeoutMs
@@ -70,6 +80,7 @@ internal class ImapBackendPusher(
             for (pushFolder in pushFolders.values) {
                 pushFolder.refresh()
             }
+            notifyPusher?.refresh()
         }
     }
 
@@ -93,6 +104,44 @@ internal class ImapBackendPusher(
             folderServerIds
         }
 
+        if (isNotifySupported) {
+            updateNotifyPusher(folderServerIds, pushFolderServerIds.toSet())
+        } else {
+            updateFolderPushers(folderServerIds, pushFolderServerIds)
+        }
+    }
+
+    private fun updateNotifyPusher(folderServerIds: Collection<String>, pushFolderServerIds: Set<String>) {
+        val stopNotifyPusher: ImapNotifyPusher?
+        val startNotifyPusher: ImapNotifyPusher?
+        synchronized(lock) {
+            currentFolderServerIds = folderServerIds
+
+            val oldNotifyPusher = notifyPusher
+            if (pushFolderServerIds.isEmpty()) {
+                notifyPusherSleeping?.cancel()
+                notifyPusherSleeping = null
+            }
+
+            if (oldNotifyPusher?.folderServerIds == pushFolderServerIds || notifyPusherSleeping?.isWaiting == true) {
+                return
+            }
+
+            notifyPusherSleeping = null
+            stopNotifyPusher = oldNotifyPusher
+            startNotifyPusher = if (pushFolderServerIds.isNotEmpty()) {
+                createImapNotifyPusher(pushFolderServerIds)
+            } else {
+                null
+            }
+            notifyPusher = startNotifyPusher
+        }
+
+        stopNotifyPusher?.stop()
+        startNotifyPusher?.start()
+    }
+
+    private fun updateFolderPushers(folderServerIds: Collection<String>, pushFolderServerIds: Collection<String>) {
         val stopFolderPushers: List<ImapFolderPusher>
         val startFolderPushers: List<ImapFolderPusher>
         synchronized(lock) {
@@ -146,6 +195,11 @@ internal class ImapBackendPusher(
             }
             pushFolderSleeping.clear()
 
+            notifyPusher?.stop()
+            notifyPusher = null
+            notifyPusherSleeping?.cancel()
+            notifyPusherSleeping = null
+
             currentFolderServerIds = emptySet()
         }
     }
@@ -163,6 +217,14 @@ internal class ImapBackendPusher(
                 retryTimer.cancel()
             }
             pushFolderSleeping.clear()
+
+            notifyPusher?.stop()
+            notifyPusher = null
+            notifyPusherSleeping?.cancel()
+            notifyPusherSleeping = null
+
+            // The server we connect to next might support NOTIFY even if the previous one didn't.
+            isNotifySupported = true
         }
 
         imapStore.closeAllConnections()
@@ -171,15 +233,11 @@ internal class ImapBackendPusher(
     }
 
     private fun createImapFolderPusher(folderServerId: String): ImapFolderPusher {
-        return ImapFolderPusher(
-            imapStore = imapStore,
-            powerManager = powerManager,
-            idleRefreshManager = idleRefreshManager,
-            callback = this,
-            accountName = accountName,
-            folderServerId = folderServerId,
-            idleRefreshTimeoutProvider = idleRefreshTimeoutProvider,
-        )
+        return pusherFactory.createFolderPusher(folderServerId, this, idleRefreshTimeoutProvider)
+    }
+
+    private fun createImapNotifyPusher(folderServerIds: Set<String>): ImapNotifyPusher {
+        return pusherFactory.createNotifyPusher(folderServerIds, this, idleRefreshTimeoutProvider)
     }
 
     override fun onPushEvent(folderServerId: String) {
@@ -191,36 +249,63 @@ internal class ImapBackendPusher(
         synchronized(lock) {
             pushFolders.remove(folderServerId)
 
-            when (exception) {
-                is AuthenticationFailedException -> {
-                    Log.v(exception, "Authentication failure when attempting to use IDLE")
-                    // TODO: This could be happening because of too many connections to the host. Ideally we'd want to
-                    //  detect this case and use a lower timeout.
+            startRetryTimer(folderServerId, getRetryTimeout(exception))
 
-                    startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                }
-                is IOException -> {
-                    Log.v(exception, "I/O error while trying to use IDLE")
+            if (pushFolders.isEmpty()) {
+                callback.onPushError(exception)
+            }
+        }
+    }
 
-                    startRetryTimer(folderServerId, IO_ERROR_TIMEOUT)
-                }
-                is MessagingException -> {
-                    Log.v(exception, "MessagingException")
+    override fun onNotifyPushError(exception: Exception) {
+        synchronized(lock) {
+            notifyPusher = null
 
-                    if (exception.isPermanentFailure) {
-                        startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                    } else {
-                        startRetryTimer(folderServerId, IO_ERROR_TIMEOUT)
-                    }
-                }
-                else -> {
-                    Log.v(exception, "Unexpected error")
-                    startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                }
+            val timeout = getRetryTimeout(exception)
+            Log.v("ImapNotifyPusher sleeping for %d ms", timeout)
+            notifyPusherSleeping = idleRefreshManager.startTimer(timeout, ::restartFolderPushers)
+
+            callback.onPushError(exception)
+        }
+    }
+
+    override fun onNotifyNotSupported() {
+        Log.v("Server doesn't support NOTIFY. Using one IDLE connection per folder.")
+
+        synchronized(lock) {
+            notifyPusher = null
+            isNotifySupported = false
+        }
+
+        updateFolders()
+    }
+
+    private fun getRetryTimeout(exception: Exception): Long {
+        return when (exception) {
+            is AuthenticationFailedException -> {
+                Log.v(exception, "Authentication failure when attempting to use IDLE")
+                // TODO: This could be happening because of too many connections to the host. Ideally we'd want to
+                //  detect this case and use a lower timeout.
+
+                UNEXPECTED_ERROR_TIMEOUT
             }
+            is IOException -> {
+                Log.v(exception, "I/O error while trying to use IDLE")
 
-            if (pushFolders.isEmpty()) {
-                callback.onPushError(exception)
+                IO_ERROR_TIMEOUT
+            }
+            is MessagingException -> {
+                Log.v(exception, "MessagingException")
+
+                if (exception.isPermanentFailure) {
+                    UNEXPECTED_ERROR_TIMEOUT
+                } else {
+                    IO_ERROR_TIMEOUT
+                }
+            }
+            else -> {
+                Log.v(exception, "Unexpected error")
+                UNEXPECTED_ERROR_TIMEOUT
             }
         }
     }
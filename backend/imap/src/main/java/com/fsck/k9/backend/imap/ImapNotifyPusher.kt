@@ -0,0 +1,115 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.power.WakeLock
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.IdleResult
+import com.fsck.k9.mail.store.imap.ImapNotifyIdler
+import com.fsck.k9.mail.store.imap.ImapStore
+import kotlin.concurrent.thread
+import net.thunderbird.legacy.logging.Log
+
+/**
+ * Listens for changes to multiple IMAP folders using a single connection in a dedicated thread.
+ *
+ * Uses the NOTIFY extension. If the server doesn't support it, [ImapNotifyPusherCallback.onNotifyNotSupported] is
+ * called before any other callback method.
+ */
+internal class ImapNotifyPusher(
+    private val imapStore: ImapStore,
+    private val powerManager: PowerManager,
+    private val idleRefreshManager: IdleRefreshManager,
+    private val callback: ImapNotifyPusherCallback,
+    private val accountName: String,
+    val folderServerIds: Set<String>,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    private val notifyIdlerFactory: (WakeLock) -> ImapNotifyIdler = { wakeLock ->
+        ImapNotifyIdler.create(idleRefreshManager, wakeLock, imapStore, folderServerIds, idleRefreshTimeoutProvider)
+    },
+) {
+    @Volatile
+    private var notifyIdler: ImapNotifyIdler? = null
+
+    @Volatile
+    private var stopPushing = false
+
+    fun start() {
+        Log.v("Starting ImapNotifyPusher for %s / %s", accountName, folderServerIds)
+
+        thread(name = "ImapNotifyPusher-$accountName") {
+            Log.v("Starting ImapNotifyPusher thread for %s", accountName)
+
+            runPushLoop()
+
+            Log.v("Exiting ImapNotifyPusher thread for %s", accountName)
+        }
+    }
+
+    fun refresh() {
+        Log.v("Refreshing ImapNotifyPusher for %s", accountName)
+
+        notifyIdler?.refresh()
+    }
+
+    fun stop() {
+        Log.v("Stopping ImapNotifyPusher for %s", accountName)
+
+        stopPushing = true
+        notifyIdler?.stop()
+    }
+
+    private fun runPushLoop() {
+        val wakeLock = powerManager.newWakeLock("ImapNotifyPusher-$accountName")
+        wakeLock.acquire()
+
+        val notifyIdler = notifyIdlerFactory(wakeLock).also {
+            notifyIdler = it
+        }
+
+        try {
+            if (notifyIdler.connect()) {
+                // Notifications are enabled before the initial sync so we don't miss changes made in the meantime.
+                performInitialSync()
+            } else {
+                stopPushing = true
+                callback.onNotifyNotSupported()
+            }
+
+            while (!stopPushing) {
+                val idleResult = notifyIdler.idle()
+                when (idleResult.idleResult) {
+                    IdleResult.SYNC -> {
+                        for (folderServerId in idleResult.folderServerIds) {
+                            callback.onPushEvent(folderServerId)
+                        }
+                    }
+                    IdleResult.STOPPED -> {
+                        stopPushing = true
+                    }
+                    IdleResult.NOT_SUPPORTED -> {
+                        stopPushing = true
+                        callback.onNotifyNotSupported()
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Log.v(e, "Exception in ImapNotifyPusher")
+
+            this.notifyIdler = null
+            if (!stopPushing) {
+                callback.onNotifyPushError(e)
+            }
+        } finally {
+            notifyIdler.stop()
+        }
+
+        wakeLock.release()
+    }
+
+    private fun performInitialSync() {
+        for (folderServerId in folderServerIds) {
+            callback.onPushEvent(folderServerId)
+        }
+    }
+}
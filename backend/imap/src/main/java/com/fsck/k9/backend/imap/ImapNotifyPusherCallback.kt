@@ -0,0 +1,7 @@
+package com.fsck.k9.backend.imap
+
+internal interface ImapNotifyPusherCallback {
+    fun onPushEvent(folderServerId: String)
+    fun onNotifyPushError(exception: Exception)
+    fun onNotifyNotSupported()
+}
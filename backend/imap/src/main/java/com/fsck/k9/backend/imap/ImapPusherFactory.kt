@@ -0,0 +1,62 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.ImapStore
+
+/**
+ * Creates the pushers managed by [ImapBackendPusher].
+ */
+internal interface ImapPusherFactory {
+    fun createFolderPusher(
+        folderServerId: String,
+        callback: ImapPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapFolderPusher
+
+    fun createNotifyPusher(
+        folderServerIds: Set<String>,
+        callback: ImapNotifyPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapNotifyPusher
+}
+
+internal class DefaultImapPusherFactory(
+    private val imapStore: ImapStore,
+    private val powerManager: PowerManager,
+    private val idleRefreshManager: IdleRefreshManager,
+    private val accountName: String,
+) : ImapPusherFactory {
+    override fun createFolderPusher(
+        folderServerId: String,
+        callback: ImapPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapFolderPusher {
+        return ImapFolderPusher(
+            imapStore = imapStore,
+            powerManager = powerManager,
+            idleRefreshManager = idleRefreshManager,
+            callback = callback,
+            accountName = accountName,
+            folderServerId = folderServerId,
+            idleRefreshTimeoutProvider = idleRefreshTimeoutProvider,
+        )
+    }
+
+    override fun createNotifyPusher(
+        folderServerIds: Set<String>,
+        callback: ImapNotifyPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapNotifyPusher {
+        return ImapNotifyPusher(
+            imapStore = imapStore,
+            powerManager = powerManager,
+            idleRefreshManager = idleRefreshManager,
+            callback = callback,
+            accountName = accountName,
+            folderServerIds = folderServerIds,
+            idleRefreshTimeoutProvider = idleRefreshTimeoutProvider,
+        )
+    }
+}
@@ -17,6 +17,8 @@ import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.ImapStore
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncParameter
+import com.fsck.k9.mail.store.imap.QresyncResponse
 import java.util.Collections
 import java.util.Date
 import java.util.concurrent.atomic.AtomicInteger
@@ -81,12 +83,13 @@ internal class ImapSync(
                 remoteFolder.expunge()
             }
 
-            remoteFolder.open(OpenMode.READ_ONLY)
+            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+            val qresyncResponse = openRemoteFolder(remoteFolder, backendFolder, oldUidValidity)
 
             listener.syncAuthenticationSuccess()
 
             val uidValidity = remoteFolder.getUidValidity()
-            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+            val highestModSeq = remoteFolder.getHighestModSeq()
             if (oldUidValidity == null && uidValidity != null) {
                 Log.d("SYNC: Saving UIDVALIDITY for %s", folder)
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity)
@@ -95,8 +98,19 @@ internal class ImapSync(
                 backendFolder.clearAllMessages()
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity!!)
                 backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, 0)
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, 0)
+            }
+
+            if (qresyncResponse != null && oldUidValidity == uidValidity &&
+                applyQresyncChanges(folder, syncConfig, remoteFolder, backendFolder, qresyncResponse, listener)
+            ) {
+                finishSync(folder, backendFolder, highestModSeq, listener)
+                return
             }
 
+            // Only set again once the full sync completed. So an interrupted sync is always followed by a full sync.
+            backendFolder.setFolderExtraNumber(EXTRA_SYNCED_VISIBLE_LIMIT, NO_SYNCED_VISIBLE_LIMIT)
+
             /*
              * Get the message list from the local store and create an index of
              * the uids within the list.
@@ -123,14 +137,8 @@ internal class ImapSync(
             val earliestDate = syncConfig.earliestPollDate
             val earliestTimestamp = earliestDate?.time ?: 0L
 
-            var remoteStart = 1
+            val remoteStart = getRemoteStart(remoteMessageCount, visibleLimit)
             if (remoteMessageCount > 0) {
-                /* Message numbers start at 1.  */
-                remoteStart = if (visibleLimit > 0) {
-                    max(0, remoteMessageCount - visibleLimit) + 1
-                } else {
-                    1
-                }
 
                 Log.v(
                     "SYNC: About to get messages %d through %d for folder %s",
@@ -222,18 +230,8 @@ internal class ImapSync(
                 listener = listener,
             )
 
-            listener.folderStatusChanged(folder)
-
-            /* Notify listeners that we're finally done. */
-
-            backendFolder.setLastChecked(System.currentTimeMillis())
-            backendFolder.setStatus(null)
-
-            Log.d("Done synchronizing folder %s:%s @ %tc", accountName, folder, System.currentTimeMillis())
-
-            listener.syncFinished(folder)
-
-            Log.i("Done synchronizing folder %s:%s", accountName, folder)
+            backendFolder.setFolderExtraNumber(EXTRA_SYNCED_VISIBLE_LIMIT, visibleLimit.toLong())
+            finishSync(folder, backendFolder, highestModSeq, listener)
         } catch (e: AuthenticationFailedException) {
             listener.syncFailed(folderServerId = folder, message = "Authentication failure", exception = e)
         } catch (e: Exception) {
@@ -267,6 +265,213 @@ internal class ImapSync(
         }
     }
 
+    /**
+     * Opens the remote folder in read-only mode.
+     *
+     * If the folder state from the last successful sync is known and the server supports QRESYNC (RFC 7162), the
+     * server is asked to report all changes since then as part of opening the folder.
+     */
+    private fun openRemoteFolder(
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        oldUidValidity: Long?,
+    ): QresyncResponse? {
+        val oldHighestModSeq = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ)
+        if (oldUidValidity == null || oldHighestModSeq == null || oldHighestModSeq <= 0) {
+            remoteFolder.open(OpenMode.READ_ONLY)
+            return null
+        }
+
+        val qresyncParameter = QresyncParameter(uidValidity = oldUidValidity, modSeq = oldHighestModSeq)
+        return remoteFolder.openUsingQresync(OpenMode.READ_ONLY, qresyncParameter)
+    }
+
+    /**
+     * Applies the changes the server reported when opening the folder using QRESYNC.
+     *
+     * Like a full sync, this also removes local messages older than [SyncConfig.earliestPollDate] and updates the
+     * "more messages" state of the folder.
+     *
+     * Returns `false` if the changes can't be applied without looking at the whole sync window, e.g. because new
+     * messages arrived, messages inside a limited window were removed, or the window was enlarged or never completely
+     * filled since the last full sync. The caller then needs to perform a full sync.
+     */
+    @Suppress("LongParameterList")
+    private fun applyQresyncChanges(
+        folder: String,
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        qresyncResponse: QresyncResponse,
+        listener: SyncListener,
+    ): Boolean {
+        var visibleLimit = backendFolder.visibleLimit
+        if (visibleLimit < 0) {
+            visibleLimit = syncConfig.defaultVisibleLimit
+        }
+
+        val syncedVisibleLimit = backendFolder.getFolderExtraNumber(EXTRA_SYNCED_VISIBLE_LIMIT)
+        if (syncedVisibleLimit != visibleLimit.toLong()) {
+            Log.d("SYNC: Sync window of %s changed or wasn't completely synced; performing full sync", folder)
+            return false
+        }
+
+        val highestKnownUid = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID) ?: 0
+        val changedMessages = qresyncResponse.changedMessages
+        if (changedMessages.any { it.uid.toLong() > highestKnownUid }) {
+            Log.d("SYNC: QRESYNC reported new messages for %s; performing full sync", folder)
+            return false
+        }
+
+        val vanishedMessageUids = if (syncConfig.syncRemoteDeletions && qresyncResponse.vanishedUids.isNotEmpty()) {
+            findVanishedMessageServerIds(backendFolder.getMessageServerIds(), qresyncResponse.vanishedUids)
+        } else {
+            emptyList()
+        }
+
+        if (vanishedMessageUids.isNotEmpty() && visibleLimit > 0) {
+            Log.d("SYNC: QRESYNC reported removed messages for %s; performing full sync to fill window", folder)
+            return false
+        }
+
+        val earliestDate = syncConfig.earliestPollDate
+        val tooOldMessageUids = if (syncConfig.syncRemoteDeletions && earliestDate != null) {
+            findMessageServerIdsOlderThan(backendFolder, earliestDate.time)
+        } else {
+            emptyList()
+        }
+
+        val destroyMessageUids = (vanishedMessageUids + tooOldMessageUids).distinct()
+
+        Log.v(
+            "SYNC: Applying QRESYNC changes for %s: %d removed, %d changed",
+            folder,
+            destroyMessageUids.size,
+            changedMessages.size,
+        )
+
+        if (destroyMessageUids.isNotEmpty()) {
+            backendFolder.destroyMessages(destroyMessageUids)
+            for (uid in destroyMessageUids) {
+                listener.syncRemovedMessage(folderServerId = folder, messageServerId = uid)
+            }
+        }
+
+        val changedMessageServerIds = syncFlags(syncConfig, backendFolder, changedMessages)
+        for (messageServerId in changedMessageServerIds) {
+            listener.syncFlagChanged(folderServerId = folder, messageServerId = messageServerId)
+        }
+
+        // Removed messages change the message numbers of the sync window, so check again for more messages.
+        if (destroyMessageUids.isNotEmpty() || qresyncResponse.vanishedUids.isNotEmpty() ||
+            backendFolder.getMoreMessages() === MoreMessages.UNKNOWN
+        ) {
+            val remoteStart = getRemoteStart(remoteFolder.messageCount, visibleLimit)
+            updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
+        }
+
+        return true
+    }
+
+    /**
+     * Returns the server IDs of local messages whose effective date is before [earliestTimestamp].
+     */
+    private fun findMessageServerIdsOlderThan(backendFolder: BackendFolder, earliestTimestamp: Long): List<String> {
+        return backendFolder.getAllMessagesAndEffectiveDates()
+            .filter { (_, timestamp) -> timestamp != null && timestamp < earliestTimestamp }
+            .map { (messageServerId, _) -> messageServerId }
+    }
+
+    /**
+     * Returns the message number of the oldest message in the sync window. Message numbers start at 1.
+     */
+    private fun getRemoteStart(remoteMessageCount: Int, visibleLimit: Int): Int {
+        return if (remoteMessageCount > 0 && visibleLimit > 0) {
+            max(0, remoteMessageCount - visibleLimit) + 1
+        } else {
+            1
+        }
+    }
+
+    /**
+     * Returns the server IDs of local messages contained in [vanishedUids].
+     *
+     * Depending on which is smaller, either the UIDs in the ranges are looked up in [messageServerIds], or each local
+     * UID is looked up in the merged and sorted ranges using binary search.
+     */
+    private fun findVanishedMessageServerIds(
+        messageServerIds: Set<String>,
+        vanishedUids: List<LongRange>,
+    ): List<String> {
+        val vanishedUidCount = vanishedUids.sumOf { uidRange -> (uidRange.last - uidRange.first + 1).coerceAtLeast(0) }
+        if (vanishedUidCount <= messageServerIds.size) {
+            return vanishedUids.asSequence()
+                .flatMap { uidRange -> uidRange.asSequence() }
+                .map { uid -> uid.toString() }
+                .filter { messageServerId -> messageServerId in messageServerIds }
+                .toList()
+        }
+
+        val uidRanges = mergeUidRanges(vanishedUids)
+        return messageServerIds.filter { messageServerId ->
+            val uid = messageServerId.toLongOrNull()
+            uid != null && uidRanges.containsUid(uid)
+        }
+    }
+
+    /**
+     * Returns the given UID ranges sorted and with overlapping or adjacent ranges merged.
+     */
+    private fun mergeUidRanges(uidRanges: List<LongRange>): List<LongRange> {
+        val mergedUidRanges = mutableListOf<LongRange>()
+        for (uidRange in uidRanges.sortedBy { it.first }) {
+            val previousUidRange = mergedUidRanges.lastOrNull()
+            if (previousUidRange != null && uidRange.first <= previousUidRange.last + 1) {
+                mergedUidRanges[mergedUidRanges.lastIndex] =
+                    previousUidRange.first..max(previousUidRange.last, uidRange.last)
+            } else {
+                mergedUidRanges.add(uidRange)
+            }
+        }
+
+        return mergedUidRanges
+    }
+
+    private fun List<LongRange>.containsUid(uid: Long): Boolean {
+        return binarySearch { uidRange ->
+            when {
+                uid < uidRange.first -> 1
+                uid > uidRange.last -> -1
+                else -> 0
+            }
+        } >= 0
+    }
+
+    private fun finishSync(
+        folder: String,
+        backendFolder: BackendFolder,
+        highestModSeq: Long?,
+        listener: SyncListener,
+    ) {
+        listener.folderStatusChanged(folder)
+
+        /* Notify listeners that we're finally done. */
+
+        val newHighestModSeq = highestModSeq ?: 0
+        if (backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ) != newHighestModSeq) {
+            backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, newHighestModSeq)
+        }
+
+        backendFolder.setLastChecked(System.currentTimeMillis())
+        backendFolder.setStatus(null)
+
+        Log.d("Done synchronizing folder %s:%s @ %tc", accountName, folder, System.currentTimeMillis())
+
+        listener.syncFinished(folder)
+
+        Log.i("Done synchronizing folder %s:%s", accountName, folder)
+    }
+
     fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         val backendFolder = backendStorage.getFolder(folderServerId)
         val remoteFolder = imapStore.getFolder(folderServerId)
@@ -536,44 +741,60 @@ internal class ImapSync(
 
         Log.d("SYNC: Fetching %d small messages for folder %s", smallMessages.size, folder)
 
-        remoteFolder.fetch(
-            messages = smallMessages,
-            fetchProfile = fetchProfile,
-            listener = object : FetchListener {
-                override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
-                    try {
-                        // Store the updated message locally
-                        backendFolder.saveMessage(message, MessageDownloadState.FULL)
+        val messageSaver = BatchedMessageSaver(backendFolder, MessageDownloadState.FULL) { savedMessages ->
+            for (message in savedMessages) {
+                val messageServerId = message.uid
+                Log.v(
+                    "About to notify listeners that we got a new small message %s:%s:%s",
+                    accountName,
+                    folder,
+                    messageServerId,
+                )
 
-                        if (isFirstResponse) {
-                            progress.incrementAndGet()
-                            downloadedMessageCount.incrementAndGet()
-                        }
+                // Update the listener with what we've found
+                listener.syncProgress(folderServerId = folder, completed = progress.get(), total = todo)
 
-                        val messageServerId = message.uid
-                        Log.v(
-                            "About to notify listeners that we got a new small message %s:%s:%s",
-                            accountName,
-                            folder,
-                            messageServerId,
-                        )
-
-                        // Update the listener with what we've found
-                        listener.syncProgress(folderServerId = folder, completed = progress.get(), total = todo)
-
-                        val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
-                        listener.syncNewMessage(
-                            folderServerId = folder,
-                            messageServerId = messageServerId,
-                            isOldMessage = isOldMessage,
-                        )
-                    } catch (e: Exception) {
-                        Log.e(e, "SYNC: fetch small messages")
+                val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                listener.syncNewMessage(
+                    folderServerId = folder,
+                    messageServerId = messageServerId,
+                    isOldMessage = isOldMessage,
+                )
+            }
+        }
+
+        try {
+            remoteFolder.fetch(
+                messages = smallMessages,
+                fetchProfile = fetchProfile,
+                listener = object : FetchListener {
+                    override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                        try {
+                            // Messages are stored locally in batches to avoid one database transaction per message
+                            messageSaver.add(message)
+
+                            if (isFirstResponse) {
+                                progress.incrementAndGet()
+                                downloadedMessageCount.incrementAndGet()
+                            }
+                        } catch (e: Exception) {
+                            Log.e(e, "SYNC: fetch small messages")
+                        }
                     }
-                }
-            },
-            maxDownloadSize = -1,
-        )
+                },
+                maxDownloadSize = -1,
+            )
+        } catch (e: Exception) {
+            // Save the messages downloaded before the error, but don't let a failure doing so hide the original error
+            try {
+                messageSaver.flush()
+            } catch (flushException: Exception) {
+                e.addSuppressed(flushException)
+            }
+            throw e
+        }
+
+        messageSaver.flush()
 
         Log.d("SYNC: Done fetching small messages for folder %s", folder)
     }
@@ -663,9 +884,9 @@ internal class ImapSync(
             listener = null,
             maxDownloadSize = maxDownloadSize,
         )
+        val changedMessageServerIds = syncFlags(syncConfig, backendFolder, syncFlagMessages)
         for (remoteMessage in syncFlagMessages) {
-            val messageChanged = syncFlags(syncConfig, backendFolder, remoteMessage)
-            if (messageChanged) {
+            if (remoteMessage.uid in changedMessageServerIds) {
                 listener.syncFlagChanged(folderServerId = folder, messageServerId = remoteMessage.uid)
             }
             progress.incrementAndGet()
@@ -720,7 +941,7 @@ internal class ImapSync(
         /*
          * Now download the parts we're interested in storing.
          */
-        val bodyFactory: BodyFactory = DefaultBodyFactory()
+        val bodyFactory: BodyFactory = DefaultBodyFactory(DefaultBodyFactory.DEFAULT_IN_MEMORY_THRESHOLD)
         for (part in viewables) {
             remoteFolder.fetchPart(message, part, bodyFactory, maxDownloadSize)
         }
@@ -729,29 +950,27 @@ internal class ImapSync(
         backendFolder.saveMessage(message, MessageDownloadState.PARTIAL)
     }
 
-    private fun syncFlags(syncConfig: SyncConfig, backendFolder: BackendFolder, remoteMessage: ImapMessage): Boolean {
-        val messageServerId = remoteMessage.uid
-        if (!backendFolder.isMessagePresent(messageServerId)) return false
-
-        val localMessageFlags = backendFolder.getMessageFlags(messageServerId)
-        if (localMessageFlags.contains(Flag.DELETED)) return false
-
-        var messageChanged = false
-        if (remoteMessage.isSet(Flag.DELETED)) {
-            if (syncConfig.syncRemoteDeletions) {
-                backendFolder.setMessageFlag(messageServerId, Flag.DELETED, true)
-                messageChanged = true
-            }
-        } else {
-            for (flag in syncConfig.syncFlags) {
-                if (remoteMessage.isSet(flag) != localMessageFlags.contains(flag)) {
-                    backendFolder.setMessageFlag(messageServerId, flag, remoteMessage.isSet(flag))
-                    messageChanged = true
-                }
+    /**
+     * Updates the local flags of [remoteMessages] in one batch.
+     *
+     * @return The server IDs of the messages whose flags were changed.
+     */
+    private fun syncFlags(
+        syncConfig: SyncConfig,
+        backendFolder: BackendFolder,
+        remoteMessages: List<ImapMessage>,
+    ): Set<String> {
+        val flagUpdates = remoteMessages.mapNotNull { remoteMessage ->
+            val flagValues = if (remoteMessage.isSet(Flag.DELETED)) {
+                if (syncConfig.syncRemoteDeletions) mapOf(Flag.DELETED to true) else null
+            } else {
+                syncConfig.syncFlags.associateWith { flag -> remoteMessage.isSet(flag) }
             }
-        }
 
-        return messageChanged
+            flagValues?.let { remoteMessage.uid to it }
+        }.toMap()
+
+        return backendFolder.updateMessageFlags(flagUpdates)
     }
 
     private fun updateMoreMessages(
@@ -772,5 +991,8 @@ internal class ImapSync(
     companion object {
         private const val EXTRA_UID_VALIDITY = "imapUidValidity"
         private const val EXTRA_HIGHEST_KNOWN_UID = "imapHighestKnownUid"
+        private const val EXTRA_HIGHEST_MOD_SEQ = "imapHighestModSeq"
+        private const val EXTRA_SYNCED_VISIBLE_LIMIT = "imapSyncedVisibleLimit"
+        private const val NO_SYNCED_VISIBLE_LIMIT = -1L
     }
 }
@@ -0,0 +1,116 @@
+package com.fsck.k9.backend.imap
+
+import app.k9mail.backend.testing.InMemoryBackendFolder
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEmpty
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.mail.FolderType
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doThrow
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+
+class BatchedMessageSaverTest {
+    private val backendFolder = InMemoryBackendFolder("Inbox", FolderType.INBOX)
+    private val savedBatches = mutableListOf<List<String>>()
+    private var now = 0L
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `messages should be saved once batch size is reached`() {
+        val messageSaver = createBatchedMessageSaver(maxBatchSize = 2)
+
+        messageSaver.add(ImapMessage("1"))
+        assertThat(savedBatches).isEmpty()
+
+        messageSaver.add(ImapMessage("2"))
+        messageSaver.add(ImapMessage("3"))
+
+        assertThat(savedBatches).containsExactly(listOf("1", "2"))
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1", "2")
+    }
+
+    @Test
+    fun `messages should be saved once batch delay has elapsed`() {
+        val messageSaver = createBatchedMessageSaver(maxBatchDelayMillis = 100)
+
+        messageSaver.add(ImapMessage("1"))
+        now += 99
+        messageSaver.add(ImapMessage("2"))
+        assertThat(savedBatches).isEmpty()
+
+        now += 1
+        messageSaver.add(ImapMessage("3"))
+
+        assertThat(savedBatches).containsExactly(listOf("1", "2", "3"))
+    }
+
+    @Test
+    fun `flush should save remaining messages`() {
+        val messageSaver = createBatchedMessageSaver()
+        messageSaver.add(ImapMessage("1"))
+
+        messageSaver.flush()
+        messageSaver.flush()
+
+        assertThat(savedBatches).containsExactly(listOf("1"))
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1")
+    }
+
+    @Test
+    fun `message added multiple times should only be saved once`() {
+        val messageSaver = createBatchedMessageSaver()
+        val message = ImapMessage("1")
+
+        messageSaver.add(message)
+        messageSaver.add(message)
+        messageSaver.flush()
+
+        assertThat(savedBatches).containsExactly(listOf("1"))
+    }
+
+    @Test
+    fun `failing batch should fall back to saving messages individually`() {
+        val failingMessage = ImapMessage("2")
+        val failingBackendFolder = mock<BackendFolder> {
+            on { saveMessages(any(), any()) } doThrow RuntimeException("Batch failed")
+        }
+        whenever(failingBackendFolder.saveMessage(eq(failingMessage), any())).doThrow(RuntimeException("Failed"))
+        val messageSaver = createBatchedMessageSaver(backendFolder = failingBackendFolder)
+
+        messageSaver.add(ImapMessage("1"))
+        messageSaver.add(failingMessage)
+        messageSaver.add(ImapMessage("3"))
+        messageSaver.flush()
+
+        assertThat(savedBatches).containsExactly(listOf("1", "3"))
+    }
+
+    private fun createBatchedMessageSaver(
+        backendFolder: BackendFolder = this.backendFolder,
+        maxBatchSize: Int = 10,
+        maxBatchDelayMillis: Long = 1000L,
+    ): BatchedMessageSaver {
+        return BatchedMessageSaver(
+            backendFolder = backendFolder,
+            downloadState = MessageDownloadState.FULL,
+            maxBatchSize = maxBatchSize,
+            maxBatchDelayMillis = maxBatchDelayMillis,
+            clock = { now },
+            onMessagesSaved = { messages -> savedBatches.add(messages.map { it.uid }) },
+        )
+    }
+}
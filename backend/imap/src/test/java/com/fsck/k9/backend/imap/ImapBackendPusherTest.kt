@@ -0,0 +1,227 @@
+package com.fsck.k9.backend.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import com.fsck.k9.backend.api.BackendPusherCallback
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.IdleRefreshTimer
+import java.io.IOException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.flowOf
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+
+private const val MAX_PUSH_FOLDERS = 2
+
+class ImapBackendPusherTest {
+    private val pusherFactory = FakeImapPusherFactory()
+    private val idleRefreshManager = FakeIdleRefreshManager()
+    private val backendPusherCallback = mock<BackendPusherCallback>()
+    private val backendPusher = ImapBackendPusher(
+        imapStore = mock(),
+        powerManager = mock(),
+        idleRefreshManager = idleRefreshManager,
+        pushConfigProvider = object : ImapPushConfigProvider {
+            override val maxPushFoldersFlow = flowOf(MAX_PUSH_FOLDERS)
+            override val idleRefreshMinutesFlow = flowOf(15)
+        },
+        callback = backendPusherCallback,
+        accountName = "Account",
+        backgroundDispatcher = Dispatchers.Unconfined,
+        pusherFactory = pusherFactory,
+    )
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+        backendPusher.start()
+    }
+
+    @After
+    fun tearDown() {
+        backendPusher.stop()
+    }
+
+    @Test
+    fun `updateFolders() should start one notify pusher for all push folders`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+        val notifyPusher = pusherFactory.notifyPushers.single()
+        assertThat(notifyPusher.folderServerIds).isEqualTo(setOf("INBOX", "Folder"))
+        verify(notifyPusher).start()
+        assertThat(pusherFactory.folderPushers).isEmpty()
+    }
+
+    @Test
+    fun `updateFolders() should limit the number of push folders`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder", "Other"))
+
+        assertThat(pusherFactory.notifyPushers.single().folderServerIds).isEqualTo(setOf("INBOX", "Folder"))
+    }
+
+    @Test
+    fun `updateFolders() with same folders should keep notify pusher`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+        verify(pusherFactory.notifyPushers.single(), never()).stop()
+    }
+
+    @Test
+    fun `updateFolders() with different folders should replace notify pusher`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+
+        backendPusher.updateFolders(listOf("INBOX"))
+
+        assertThat(pusherFactory.notifyPushers).hasSize(2)
+        val (oldNotifyPusher, newNotifyPusher) = pusherFactory.notifyPushers
+        verify(oldNotifyPusher).stop()
+        assertThat(newNotifyPusher.folderServerIds).isEqualTo(setOf("INBOX"))
+        verify(newNotifyPusher).start()
+    }
+
+    @Test
+    fun `updateFolders() without folders should stop notify pusher`() {
+        backendPusher.updateFolders(listOf("INBOX"))
+
+        backendPusher.updateFolders(emptyList())
+
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+        verify(pusherFactory.notifyPushers.single()).stop()
+    }
+
+    @Test
+    fun `onNotifyNotSupported() should start one folder pusher per push folder`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+
+        backendPusher.onNotifyNotSupported()
+
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+        assertThat(pusherFactory.folderPushers.map { it.first }).containsExactly("INBOX", "Folder")
+        for ((_, folderPusher) in pusherFactory.folderPushers) {
+            verify(folderPusher).start()
+        }
+    }
+
+    @Test
+    fun `updateFolders() after falling back to folder pushers should only start and stop changed folders`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+        backendPusher.onNotifyNotSupported()
+        val folderPusher = pusherFactory.folderPushers.toMap().getValue("Folder")
+
+        backendPusher.updateFolders(listOf("INBOX", "Other"))
+
+        assertThat(pusherFactory.folderPushers.map { it.first }).containsExactly("INBOX", "Folder", "Other")
+        verify(folderPusher).stop()
+        verify(pusherFactory.folderPushers.toMap().getValue("Other")).start()
+        verify(pusherFactory.folderPushers.toMap().getValue("INBOX"), never()).stop()
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+    }
+
+    @Test
+    fun `reconnect() after falling back to folder pushers should try NOTIFY again`() {
+        backendPusher.updateFolders(listOf("INBOX", "Folder"))
+        backendPusher.onNotifyNotSupported()
+
+        backendPusher.reconnect()
+
+        for ((_, folderPusher) in pusherFactory.folderPushers) {
+            verify(folderPusher).stop()
+        }
+        assertThat(pusherFactory.notifyPushers).hasSize(2)
+        val notifyPusher = pusherFactory.notifyPushers.last()
+        assertThat(notifyPusher.folderServerIds).isEqualTo(setOf("INBOX", "Folder"))
+        verify(notifyPusher).start()
+    }
+
+    @Test
+    fun `onNotifyPushError() should restart notify pusher when retry timer expires`() {
+        backendPusher.updateFolders(listOf("INBOX"))
+        val exception = IOException()
+
+        backendPusher.onNotifyPushError(exception)
+        backendPusher.updateFolders(listOf("INBOX"))
+
+        verify(backendPusherCallback).onPushError(exception)
+        assertThat(pusherFactory.notifyPushers).hasSize(1)
+
+        idleRefreshManager.fireTimers()
+
+        assertThat(pusherFactory.notifyPushers).hasSize(2)
+        verify(pusherFactory.notifyPushers.last()).start()
+    }
+}
+
+private class FakeImapPusherFactory : ImapPusherFactory {
+    val folderPushers = mutableListOf<Pair<String, ImapFolderPusher>>()
+    val notifyPushers = mutableListOf<ImapNotifyPusher>()
+
+    override fun createFolderPusher(
+        folderServerId: String,
+        callback: ImapPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapFolderPusher {
+        return mock<ImapFolderPusher>().also { folderPusher ->
+            folderPushers.add(folderServerId to folderPusher)
+        }
+    }
+
+    override fun createNotifyPusher(
+        folderServerIds: Set<String>,
+        callback: ImapNotifyPusherCallback,
+        idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    ): ImapNotifyPusher {
+        return mock<ImapNotifyPusher> {
+            on { this.folderServerIds } doReturn folderServerIds
+        }.also { notifyPusher ->
+            notifyPushers.add(notifyPusher)
+        }
+    }
+}
+
+private class FakeIdleRefreshManager : IdleRefreshManager {
+    private val timers = mutableListOf<FakeIdleRefreshTimer>()
+
+    override fun startTimer(timeout: Long, callback: () -> Unit): IdleRefreshTimer {
+        return FakeIdleRefreshTimer(callback).also { timers.add(it) }
+    }
+
+    override fun resetTimers() = Unit
+
+    fun fireTimers() {
+        val waitingTimers = timers.filter { it.isWaiting }
+        timers.clear()
+
+        for (timer in waitingTimers) {
+            timer.fire()
+        }
+    }
+}
+
+private class FakeIdleRefreshTimer(private val callback: () -> Unit) : IdleRefreshTimer {
+    override var isWaiting: Boolean = true
+        private set
+
+    override fun cancel() {
+        isWaiting = false
+    }
+
+    fun fire() {
+        isWaiting = false
+        callback()
+    }
+}
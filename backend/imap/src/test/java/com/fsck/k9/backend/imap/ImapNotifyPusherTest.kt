@@ -0,0 +1,124 @@
+package com.fsck.k9.backend.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.power.WakeLock
+import com.fsck.k9.mail.store.imap.IdleResult
+import com.fsck.k9.mail.store.imap.ImapNotifyIdler
+import com.fsck.k9.mail.store.imap.NotifyIdleResult
+import java.io.IOException
+import java.util.Collections
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.timeout
+import org.mockito.kotlin.verify
+
+private const val TIMEOUT_MILLIS = 5000L
+
+class ImapNotifyPusherTest {
+    private val wakeLock = mock<WakeLock>()
+    private val powerManager = mock<PowerManager> {
+        on { newWakeLock(any()) } doReturn wakeLock
+    }
+    private val callback = RecordingNotifyPusherCallback()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `server without NOTIFY support should only report that`() {
+        val notifyIdler = mock<ImapNotifyIdler> {
+            on { connect() } doReturn false
+        }
+        val notifyPusher = createImapNotifyPusher(notifyIdler)
+
+        notifyPusher.start()
+
+        verify(wakeLock, timeout(TIMEOUT_MILLIS)).release()
+        verify(notifyIdler).stop()
+        assertThat(callback.events).containsExactly("notSupported")
+    }
+
+    @Test
+    fun `should sync all folders after connecting and then the changed folders`() {
+        val notifyIdler = mock<ImapNotifyIdler> {
+            on { connect() } doReturn true
+            on { idle() }.doReturn(
+                NotifyIdleResult(IdleResult.SYNC, setOf("Folder")),
+                NotifyIdleResult(IdleResult.STOPPED),
+            )
+        }
+        val notifyPusher = createImapNotifyPusher(notifyIdler)
+
+        notifyPusher.start()
+
+        verify(wakeLock, timeout(TIMEOUT_MILLIS)).release()
+        assertThat(callback.events).containsExactly("push:INBOX", "push:Folder", "push:Folder")
+    }
+
+    @Test
+    fun `NOT_SUPPORTED idle result should be reported`() {
+        val notifyIdler = mock<ImapNotifyIdler> {
+            on { connect() } doReturn true
+            on { idle() } doReturn NotifyIdleResult(IdleResult.NOT_SUPPORTED)
+        }
+        val notifyPusher = createImapNotifyPusher(notifyIdler)
+
+        notifyPusher.start()
+
+        verify(wakeLock, timeout(TIMEOUT_MILLIS)).release()
+        assertThat(callback.events).containsExactly("push:INBOX", "push:Folder", "notSupported")
+    }
+
+    @Test
+    fun `exception while idling should be reported as push error`() {
+        val notifyIdler = mock<ImapNotifyIdler> {
+            on { connect() } doReturn true
+            on { idle() } doAnswer { throw IOException("Connection lost") }
+        }
+        val notifyPusher = createImapNotifyPusher(notifyIdler)
+
+        notifyPusher.start()
+
+        verify(wakeLock, timeout(TIMEOUT_MILLIS)).release()
+        assertThat(callback.events).containsExactly("push:INBOX", "push:Folder", "error:Connection lost")
+    }
+
+    private fun createImapNotifyPusher(notifyIdler: ImapNotifyIdler): ImapNotifyPusher {
+        return ImapNotifyPusher(
+            imapStore = mock(),
+            powerManager = powerManager,
+            idleRefreshManager = mock(),
+            callback = callback,
+            accountName = "Account",
+            folderServerIds = linkedSetOf("INBOX", "Folder"),
+            idleRefreshTimeoutProvider = mock(),
+            notifyIdlerFactory = { notifyIdler },
+        )
+    }
+}
+
+private class RecordingNotifyPusherCallback : ImapNotifyPusherCallback {
+    val events: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+    override fun onPushEvent(folderServerId: String) {
+        events.add("push:$folderServerId")
+    }
+
+    override fun onNotifyPushError(exception: Exception) {
+        events.add("error:${exception.message}")
+    }
+
+    override fun onNotifyNotSupported() {
+        events.add("notSupported")
+    }
+}
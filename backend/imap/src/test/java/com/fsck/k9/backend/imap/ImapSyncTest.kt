@@ -5,8 +5,10 @@ import assertk.assertThat
 import assertk.assertions.containsAtLeast
 import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isTrue
+import com.fsck.k9.backend.api.BackendFolder.MoreMessages
 import com.fsck.k9.backend.api.FolderInfo
 import com.fsck.k9.backend.api.SyncConfig
 import com.fsck.k9.backend.api.SyncConfig.ExpungePolicy
@@ -15,8 +17,11 @@ import com.fsck.k9.mail.FetchProfile
 import com.fsck.k9.mail.FolderType
 import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.MessagingException
 import com.fsck.k9.mail.store.imap.FetchListener
 import com.fsck.k9.mail.store.imap.ImapMessage
+import com.fsck.k9.mail.store.imap.QresyncResponse
+import com.fsck.k9.mail.store.imap.createImapMessage
 import com.fsck.k9.mail.testing.message.buildMessage
 import java.util.Date
 import net.thunderbird.core.common.mail.Flag
@@ -29,9 +34,11 @@ import org.junit.Test
 import org.mockito.Mockito.verify
 import org.mockito.kotlin.any
 import org.mockito.kotlin.atLeast
+import org.mockito.kotlin.doThrow
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
+import org.mockito.kotlin.whenever
 
 private const val ACCOUNT_NAME = "Account-1"
 private const val FOLDER_SERVER_ID = "FOLDER_ONE"
@@ -225,6 +232,138 @@ class ImapSyncTest {
         verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "1", isOldMessage = false)
     }
 
+    @Test
+    fun `sync should save HIGHESTMODSEQ`() {
+        imapFolder.setUidValidity(1)
+        imapFolder.setHighestModSeq(100)
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getFolderExtraNumber("imapHighestModSeq")).isEqualTo(100L)
+    }
+
+    @Test
+    fun `sync with QRESYNC changes should only update flags of changed messages`() {
+        addMessageToImapAndBackendFolder(uid = 2, date = DEFAULT_MESSAGE_DATE)
+        addMessageToImapAndBackendFolder(uid = 3, date = DEFAULT_MESSAGE_DATE)
+        prepareQresyncSync(
+            vanishedUids = emptyList(),
+            changedMessages = listOf(createImapMessage(uid = "3").apply { setFlag(Flag.SEEN, true) }),
+        )
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.wasFetched).isFalse()
+        assertThat(backendFolder.getMessageFlags(messageServerId = "3")).containsAtLeast(Flag.SEEN)
+        assertThat(backendFolder.getFolderExtraNumber("imapHighestModSeq")).isEqualTo(120L)
+        verify(syncListener).syncFlagChanged(FOLDER_SERVER_ID, messageServerId = "3")
+        verify(syncListener).syncFinished(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `sync with QRESYNC and unlimited window should remove vanished messages`() {
+        backendFolder.visibleLimit = 0
+        addMessageToBackendFolder(uid = 2)
+        addMessageToImapAndBackendFolder(uid = 3, date = DEFAULT_MESSAGE_DATE)
+        prepareQresyncSync(vanishedUids = listOf(1L..2L), changedMessages = emptyList(), syncedVisibleLimit = 0)
+        val syncConfig = defaultSyncConfig.copy(defaultVisibleLimit = 0)
+
+        imapSync.sync(FOLDER_SERVER_ID, syncConfig, syncListener)
+
+        assertThat(imapFolder.wasFetched).isFalse()
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("3")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "2")
+    }
+
+    @Test
+    fun `sync with QRESYNC and large vanished ranges should remove vanished messages`() {
+        backendFolder.visibleLimit = 0
+        addMessageToBackendFolder(uid = 2)
+        addMessageToBackendFolder(uid = 1500)
+        addMessageToImapAndBackendFolder(uid = 3000, date = DEFAULT_MESSAGE_DATE)
+        prepareQresyncSync(
+            vanishedUids = listOf(1000L..2000L, 1L..2L, 1500L..1600L),
+            changedMessages = emptyList(),
+            syncedVisibleLimit = 0,
+        )
+        val syncConfig = defaultSyncConfig.copy(defaultVisibleLimit = 0)
+
+        imapSync.sync(FOLDER_SERVER_ID, syncConfig, syncListener)
+
+        assertThat(imapFolder.wasFetched).isFalse()
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("3000")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "2")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "1500")
+    }
+
+    @Test
+    fun `sync with QRESYNC should remove messages older than earliestPollDate`() {
+        addMessageToImapAndBackendFolder(uid = 23, date = "Mon, 03 Jan 2022 10:00:00 +0100")
+        addMessageToImapAndBackendFolder(uid = 42, date = "Wed, 05 Jan 2022 20:00:00 +0100")
+        prepareQresyncSync(vanishedUids = emptyList(), changedMessages = emptyList())
+        val syncConfig = defaultSyncConfig.copy(
+            syncRemoteDeletions = true,
+            earliestPollDate = "Tue, 04 Jan 2022 12:00:00 +0100".toDate(),
+        )
+
+        imapSync.sync(FOLDER_SERVER_ID, syncConfig, syncListener)
+
+        assertThat(imapFolder.wasFetched).isFalse()
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("42")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "23")
+    }
+
+    @Test
+    fun `sync with QRESYNC reporting vanished messages should update moreMessages`() {
+        addMessageToImapAndBackendFolder(uid = 2, date = DEFAULT_MESSAGE_DATE)
+        addMessageToImapAndBackendFolder(uid = 3, date = DEFAULT_MESSAGE_DATE)
+        backendFolder.setMoreMessages(MoreMessages.TRUE)
+        prepareQresyncSync(vanishedUids = listOf(1L..1L), changedMessages = emptyList())
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.wasFetched).isFalse()
+        assertThat(backendFolder.getMoreMessages()).isEqualTo(MoreMessages.FALSE)
+    }
+
+    @Test
+    fun `sync with QRESYNC after visible limit was increased should perform full sync`() {
+        addMessageToImapFolder(uid = 2)
+        addMessageToImapAndBackendFolder(uid = 3, date = DEFAULT_MESSAGE_DATE)
+        prepareQresyncSync(vanishedUids = emptyList(), changedMessages = emptyList(), syncedVisibleLimit = 1)
+        backendFolder.visibleLimit = 2
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("2", "3")
+        assertThat(backendFolder.getFolderExtraNumber("imapSyncedVisibleLimit")).isEqualTo(2L)
+    }
+
+    @Test
+    fun `sync with QRESYNC after interrupted full sync should perform full sync`() {
+        addMessageToImapFolder(uid = 2)
+        addMessageToImapAndBackendFolder(uid = 3, date = DEFAULT_MESSAGE_DATE)
+        prepareQresyncSync(vanishedUids = emptyList(), changedMessages = emptyList(), syncedVisibleLimit = -1)
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("2", "3")
+        assertThat(backendFolder.getFolderExtraNumber("imapSyncedVisibleLimit"))
+            .isEqualTo(DEFAULT_VISIBLE_LIMIT.toLong())
+    }
+
+    @Test
+    fun `sync with QRESYNC reporting new messages should perform full sync`() {
+        addMessageToImapAndBackendFolder(uid = 2, date = DEFAULT_MESSAGE_DATE)
+        addMessageToImapFolder(uid = 3)
+        prepareQresyncSync(vanishedUids = emptyList(), changedMessages = listOf(createImapMessage(uid = "3")))
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("2", "3")
+        verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "3", isOldMessage = false)
+    }
+
     @Test
     fun `sync with multiple FETCH responses when downloading small message should report correct progress`() {
         val folderServerId = "FOLDER_TWO"
@@ -254,6 +393,35 @@ class ImapSyncTest {
         verify(syncListener, never()).syncProgress(folderServerId, completed = 2, total = 1)
     }
 
+    @Test
+    fun `error saving messages after failed FETCH should not hide the FETCH error`() {
+        val folderServerId = "FOLDER_TWO"
+        backendStorage.createBackendFolder(folderServerId)
+        val specialImapFolder = object : TestImapFolder(folderServerId) {
+            override fun fetch(
+                messages: List<ImapMessage>,
+                fetchProfile: FetchProfile,
+                listener: FetchListener?,
+                maxDownloadSize: Int,
+            ) {
+                if (FetchProfile.Item.BODY in fetchProfile) {
+                    super.fetch(messages, fetchProfile, listener, maxDownloadSize)
+                    throw MessagingException("FETCH failed")
+                }
+
+                super.fetch(messages, fetchProfile, listener, maxDownloadSize)
+            }
+        }
+        specialImapFolder.addMessage(42)
+        imapStore.addFolder(specialImapFolder)
+        doThrow(IllegalStateException("listener failed")).whenever(syncListener)
+            .syncNewMessage(eq(folderServerId), eq("42"), any())
+
+        imapSync.sync(folderServerId, defaultSyncConfig, syncListener)
+
+        verify(syncListener).syncFailed(eq(folderServerId), eq("FETCH failed"), any())
+    }
+
     private fun addMessageToBackendFolder(uid: Long, date: String = DEFAULT_MESSAGE_DATE) {
         val messageServerId = uid.toString()
         val message = createSimpleMessage(messageServerId, date).apply {
@@ -286,6 +454,19 @@ class ImapSyncTest {
         }
     }
 
+    private fun prepareQresyncSync(
+        vanishedUids: List<LongRange>,
+        changedMessages: List<ImapMessage>,
+        syncedVisibleLimit: Long = DEFAULT_VISIBLE_LIMIT.toLong(),
+    ) {
+        imapFolder.setUidValidity(1)
+        imapFolder.setHighestModSeq(120)
+        imapFolder.qresyncResponse = QresyncResponse(vanishedUids, changedMessages)
+        backendFolder.setFolderExtraNumber("imapUidValidity", 1)
+        backendFolder.setFolderExtraNumber("imapHighestModSeq", 100)
+        backendFolder.setFolderExtraNumber("imapSyncedVisibleLimit", syncedVisibleLimit)
+    }
+
     private fun addMessageToImapAndBackendFolder(uid: Long, date: String) {
         addMessageToBackendFolder(uid, date)
         addMessageToImapFolder(uid, date = date)
@@ -10,6 +10,8 @@ import com.fsck.k9.mail.store.imap.FetchListener
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncParameter
+import com.fsck.k9.mail.store.imap.QresyncResponse
 import com.fsck.k9.mail.store.imap.createImapMessage
 import java.util.Date
 import net.thunderbird.core.common.mail.Flag
@@ -26,12 +28,18 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     var wasExpunged: Boolean = false
         private set
 
+    var wasFetched: Boolean = false
+        private set
+
+    var qresyncResponse: QresyncResponse? = null
+
     val isClosed: Boolean
         get() = mode == null
 
     private val messages = mutableMapOf<Long, Message>()
     private val messageFlags = mutableMapOf<Long, MutableSet<Flag>>()
     private var uidValidity: Long? = null
+    private var highestModSeq: Long? = null
 
     fun addMessage(uid: Long, message: Message) {
         require(!messages.containsKey(uid)) {
@@ -53,10 +61,19 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         uidValidity = value
     }
 
+    fun setHighestModSeq(value: Long) {
+        highestModSeq = value
+    }
+
     override fun open(mode: OpenMode) {
         this.mode = mode
     }
 
+    override fun openUsingQresync(mode: OpenMode, qresyncParameter: QresyncParameter): QresyncResponse? {
+        this.mode = mode
+        return qresyncResponse?.takeIf { qresyncParameter.uidValidity == uidValidity }
+    }
+
     override fun close() {
         mode = null
     }
@@ -67,6 +84,8 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
     override fun getUidValidity() = uidValidity
 
+    override fun getHighestModSeq() = highestModSeq
+
     override fun getMessage(uid: String): ImapMessage {
         return createImapMessage(uid)
     }
@@ -102,6 +121,8 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     ) {
         if (messages.isEmpty()) return
 
+        wasFetched = true
+
         for (imapMessage in messages) {
             val uid = imapMessage.uid.toLong()
 
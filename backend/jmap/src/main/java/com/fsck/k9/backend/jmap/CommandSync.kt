@@ -276,23 +276,18 @@ class CommandSync(
             .chunked(maxObjectsInGet) { emailIdsChunk ->
                 getEmailPropertiesFromServer(emailIdsChunk, FLAG_PROPERTIES)
             }
-            .flatten()
-            .forEach { email ->
-                syncFlagsForMessage(backendFolder, syncConfig, email)
+            .forEach { emails ->
+                syncFlagsForMessages(backendFolder, syncConfig, emails)
             }
     }
 
-    private fun syncFlagsForMessage(backendFolder: BackendFolder, syncConfig: SyncConfig, email: Email) {
-        val messageServerId = email.id
-        val localFlags = backendFolder.getMessageFlags(messageServerId)
-        val remoteFlags = email.keywords.toFlags()
-        for (flag in syncConfig.syncFlags) {
-            val flagSetOnServer = flag in remoteFlags
-            val flagSetLocally = flag in localFlags
-            if (flagSetOnServer != flagSetLocally) {
-                backendFolder.setMessageFlag(messageServerId, flag, flagSetOnServer)
-            }
+    private fun syncFlagsForMessages(backendFolder: BackendFolder, syncConfig: SyncConfig, emails: List<Email>) {
+        val flagUpdates = emails.associate { email ->
+            val remoteFlags = email.keywords.toFlags()
+            email.id to syncConfig.syncFlags.associateWith { flag -> flag in remoteFlags }
         }
+
+        backendFolder.updateMessageFlags(flagUpdates)
     }
 
     private fun Map<String, Boolean>?.toFlags(): Set<Flag> {
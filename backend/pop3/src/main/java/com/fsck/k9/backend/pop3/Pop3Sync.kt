@@ -597,65 +597,64 @@ internal class Pop3Sync(
 
         val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
         remoteFolder.fetch(largeMessages, fp, null, maxDownloadSize)
-        for (message in largeMessages) {
-            downloadSaneBody(syncConfig, remoteFolder, backendFolder, message)
 
-            val messageServerId = message.uid
-            Log.v(
-                "About to notify listeners that we got a new large message %s:%s:%s",
-                accountName,
-                folder,
-                messageServerId,
-            )
-
-            // Update the listener with what we've found
-            progress.incrementAndGet()
-
-            // TODO do we need to re-fetch this here?
-            val flags: Set<Flag> = backendFolder.getMessageFlags(messageServerId)
-            // Increment the number of "new messages" if the newly downloaded message is
-            // not marked as read.
-            if (!flags.contains(Flag.SEEN)) {
-                newMessages.incrementAndGet()
-            }
-
-            listener.syncProgress(folderServerId = folder, completed = progress.get(), total = todo)
-
-            val isOldMessage = isOldMessage(backendFolder, message)
-            listener.syncNewMessage(
-                folderServerId = folder,
-                messageServerId = messageServerId,
-                isOldMessage = isOldMessage,
-            )
-        }
-
-        Log.d("SYNC: Done fetching large messages for folder %s", folder)
-    }
-
-    @Throws(MessagingException::class)
-    private fun downloadSaneBody(
-        syncConfig: SyncConfig,
-        remoteFolder: Pop3Folder,
-        backendFolder: BackendFolder,
-        message: Pop3Message,
-    ) {
         /*
          * The provider was unable to get the structure of the message, so
          * we'll download a reasonable portion of the message and mark it as
          * incomplete so the entire thing can be downloaded later if the user
          * wishes to download it.
+         *
+         * All messages are fetched with one call so the server commands can be pipelined.
          */
-        val fp = FetchProfile()
-        fp.add(FetchProfile.Item.BODY_SANE)
+        val saneBodyFetchProfile = FetchProfile()
+        saneBodyFetchProfile.add(FetchProfile.Item.BODY_SANE)
 
         /*
          *  TODO a good optimization here would be to make sure that all Stores set
          *  the proper size after this fetch and compare the before and after size. If
          *  they equal we can mark this SYNCHRONIZED instead of PARTIALLY_SYNCHRONIZED
          */
-        val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
-        remoteFolder.fetch(mutableListOf<Pop3Message?>(message), fp, null, maxDownloadSize)
+        remoteFolder.fetch(
+            largeMessages,
+            saneBodyFetchProfile,
+            MessageRetrievalListener { message ->
+                saveSaneBody(syncConfig, backendFolder, message)
+
+                val messageServerId = message.uid
+                Log.v(
+                    "About to notify listeners that we got a new large message %s:%s:%s",
+                    accountName,
+                    folder,
+                    messageServerId,
+                )
+
+                // Update the listener with what we've found
+                progress.incrementAndGet()
+
+                // TODO do we need to re-fetch this here?
+                val flags: Set<Flag> = backendFolder.getMessageFlags(messageServerId)
+                // Increment the number of "new messages" if the newly downloaded message is
+                // not marked as read.
+                if (!flags.contains(Flag.SEEN)) {
+                    newMessages.incrementAndGet()
+                }
+
+                listener.syncProgress(folderServerId = folder, completed = progress.get(), total = todo)
+
+                val isOldMessage = isOldMessage(backendFolder, message)
+                listener.syncNewMessage(
+                    folderServerId = folder,
+                    messageServerId = messageServerId,
+                    isOldMessage = isOldMessage,
+                )
+            },
+            maxDownloadSize,
+        )
+
+        Log.d("SYNC: Done fetching large messages for folder %s", folder)
+    }
 
+    private fun saveSaneBody(syncConfig: SyncConfig, backendFolder: BackendFolder, message: Pop3Message) {
         var completeMessage = false
         // Certain (POP3) servers give you the whole message even when you ask for only the first x Kb
         if (!message.isSet(Flag.X_DOWNLOADED_FULL)) {
@@ -1,10 +1,10 @@
 package app.k9mail.core.android.common.contact
 
 import android.content.Context
+import kotlin.time.Duration.Companion.seconds
 import kotlin.time.ExperimentalTime
+import net.thunderbird.core.common.cache.BoundedCache
 import net.thunderbird.core.common.cache.Cache
-import net.thunderbird.core.common.cache.ExpiringCache
-import net.thunderbird.core.common.cache.SynchronizedCache
 import net.thunderbird.core.common.mail.EmailAddress
 import org.koin.core.qualifier.named
 import org.koin.dsl.module
@@ -12,8 +12,10 @@ import org.koin.dsl.module
 internal val contactModule = module {
     single<Cache<EmailAddress, Contact?>>(named(CACHE_NAME)) {
         @OptIn(ExperimentalTime::class)
-        SynchronizedCache(
-            delegateCache = ExpiringCache(clock = get()),
+        BoundedCache(
+            maxWeight = CACHE_MAX_SIZE,
+            expireAfterWrite = CACHE_EXPIRATION_TIME,
+            clock = get(),
         )
     }
     factory<ContactDataSource> {
@@ -34,3 +36,5 @@ internal val contactModule = module {
 }
 
 internal const val CACHE_NAME = "ContactCache"
+private const val CACHE_MAX_SIZE = 1000L
+private val CACHE_EXPIRATION_TIME = 30.seconds
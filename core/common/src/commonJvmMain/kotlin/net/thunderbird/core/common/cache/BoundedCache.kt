@@ -0,0 +1,183 @@
+package net.thunderbird.core.common.cache
+
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.time.Clock
+import kotlin.time.Duration
+import kotlin.time.ExperimentalTime
+import kotlin.time.Instant
+
+/**
+ * A thread-safe [Cache] with a size limit.
+ *
+ * Every entry has a weight, computed by [weigher]. By default every entry has a weight of 1, so [maxWeight] is the
+ * maximum number of entries. When adding an entry pushes the total weight above [maxWeight], the least recently used
+ * entries are evicted.
+ *
+ * If [expireAfterWrite] is set, entries are removed that long after they were added. Expired entries are never
+ * returned. They are also swept out regularly while the cache is being written to, so they don't use memory until
+ * the next access to their key.
+ */
+@OptIn(ExperimentalTime::class)
+class BoundedCache<KEY : Any, VALUE : Any?>(
+    private val maxWeight: Long,
+    private val weigher: (KEY, VALUE) -> Int = { _, _ -> 1 },
+    private val expireAfterWrite: Duration? = null,
+    private val clock: Clock = Clock.System,
+) : Cache<KEY, VALUE> {
+    private val lock = ReentrantLock()
+
+    // Access order: least recently used entry first
+    private val entries = LinkedHashMap<KEY, Entry<VALUE>>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+    private var totalWeight = 0L
+    private var nextExpirationSweep: Instant? = null
+
+    private var hitCount = 0L
+    private var missCount = 0L
+    private var evictionCount = 0L
+    private var expirationCount = 0L
+
+    init {
+        require(maxWeight > 0) { "maxWeight must be positive" }
+        require(expireAfterWrite == null || expireAfterWrite.isPositive()) { "expireAfterWrite must be positive" }
+    }
+
+    val stats: CacheStats
+        get() = lock.withLock {
+            CacheStats(
+                hitCount = hitCount,
+                missCount = missCount,
+                evictionCount = evictionCount,
+                expirationCount = expirationCount,
+                size = entries.size,
+                weight = totalWeight,
+            )
+        }
+
+    override fun get(key: KEY): VALUE? {
+        lock.withLock {
+            val entry = getUnexpiredEntry(key)
+            if (entry == null) {
+                missCount++
+                return null
+            }
+
+            hitCount++
+            return entry.value
+        }
+    }
+
+    override fun set(key: KEY, value: VALUE) {
+        val weight = weigher(key, value)
+        require(weight >= 0) { "Weight must not be negative" }
+
+        lock.withLock {
+            val now = clock.now()
+            val expiresAt = expireAfterWrite?.let { now + it }
+
+            entries.put(key, Entry(value, weight, expiresAt))?.let { oldEntry ->
+                totalWeight -= oldEntry.weight
+            }
+            totalWeight += weight
+
+            sweepExpiredEntriesIfNecessary(now)
+            evictIfNecessary()
+        }
+    }
+
+    override fun hasKey(key: KEY): Boolean {
+        lock.withLock {
+            return getUnexpiredEntry(key) != null
+        }
+    }
+
+    override fun clear() {
+        lock.withLock {
+            entries.clear()
+            totalWeight = 0L
+        }
+    }
+
+    fun remove(key: KEY) {
+        lock.withLock {
+            entries.remove(key)?.let { entry ->
+                totalWeight -= entry.weight
+            }
+        }
+    }
+
+    /**
+     * Removes all entries that have expired.
+     */
+    fun removeExpired() {
+        lock.withLock {
+            removeExpiredEntries(clock.now())
+        }
+    }
+
+    private fun getUnexpiredEntry(key: KEY): Entry<VALUE>? {
+        val entry = entries[key] ?: return null
+        if (entry.isExpired(clock.now())) {
+            entries.remove(key)
+            totalWeight -= entry.weight
+            expirationCount++
+            return null
+        }
+
+        return entry
+    }
+
+    private fun sweepExpiredEntriesIfNecessary(now: Instant) {
+        val expireAfterWrite = expireAfterWrite ?: return
+
+        val nextExpirationSweep = nextExpirationSweep
+        if (nextExpirationSweep == null || now >= nextExpirationSweep) {
+            removeExpiredEntries(now)
+            this.nextExpirationSweep = now + expireAfterWrite
+        }
+    }
+
+    private fun removeExpiredEntries(now: Instant) {
+        val iterator = entries.values.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.isExpired(now)) {
+                iterator.remove()
+                totalWeight -= entry.weight
+                expirationCount++
+            }
+        }
+    }
+
+    private fun evictIfNecessary() {
+        val iterator = entries.values.iterator()
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            val entry = iterator.next()
+            iterator.remove()
+            totalWeight -= entry.weight
+            evictionCount++
+        }
+    }
+
+    private class Entry<VALUE>(
+        val value: VALUE,
+        val weight: Int,
+        val expiresAt: Instant?,
+    ) {
+        fun isExpired(now: Instant): Boolean = expiresAt != null && now >= expiresAt
+    }
+
+    private companion object {
+        const val INITIAL_CAPACITY = 16
+        const val LOAD_FACTOR = 0.75f
+    }
+}
+
+data class CacheStats(
+    val hitCount: Long,
+    val missCount: Long,
+    val evictionCount: Long,
+    val expirationCount: Long,
+    val size: Int,
+    val weight: Long,
+)
@@ -0,0 +1,125 @@
+package net.thunderbird.core.common.cache
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import kotlin.test.Test
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.ExperimentalTime
+import net.thunderbird.core.testing.TestClock
+
+@OptIn(ExperimentalTime::class)
+class BoundedCacheTest {
+    private val clock = TestClock()
+
+    @Test
+    fun `should evict least recently used entry when max size is exceeded`() {
+        val cache = BoundedCache<String, String>(maxWeight = 2)
+        cache["one"] = "1"
+        cache["two"] = "2"
+        cache["one"]
+
+        cache["three"] = "3"
+
+        assertThat(cache["one"]).isEqualTo("1")
+        assertThat(cache.hasKey("two")).isFalse()
+        assertThat(cache["three"]).isEqualTo("3")
+        assertThat(cache.stats.evictionCount).isEqualTo(1L)
+    }
+
+    @Test
+    fun `should evict entries until weight is within limit`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10, weigher = { _, value -> value.length })
+        cache["one"] = "1234"
+        cache["two"] = "1234"
+
+        cache["three"] = "12345678"
+
+        assertThat(cache.hasKey("one")).isFalse()
+        assertThat(cache.hasKey("two")).isFalse()
+        assertThat(cache["three"]).isEqualTo("12345678")
+        assertThat(cache.stats.weight).isEqualTo(8L)
+    }
+
+    @Test
+    fun `replacing an entry should update weight`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10, weigher = { _, value -> value.length })
+        cache["key"] = "1234"
+
+        cache["key"] = "12"
+
+        assertThat(cache.stats.weight).isEqualTo(2L)
+        assertThat(cache.stats.size).isEqualTo(1)
+    }
+
+    @Test
+    fun `entry heavier than max weight should not be cached`() {
+        val cache = BoundedCache<String, String>(maxWeight = 3, weigher = { _, value -> value.length })
+
+        cache["key"] = "1234"
+
+        assertThat(cache["key"]).isNull()
+    }
+
+    @Test
+    fun `should not return expired entry`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10, expireAfterWrite = 30.seconds, clock = clock)
+        cache["key"] = "value"
+
+        clock.advanceTimeBy(30.seconds)
+
+        assertThat(cache["key"]).isNull()
+        assertThat(cache.stats.expirationCount).isEqualTo(1L)
+    }
+
+    @Test
+    fun `writes should sweep out expired entries`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10, expireAfterWrite = 30.seconds, clock = clock)
+        cache["one"] = "1"
+        cache["two"] = "2"
+        clock.advanceTimeBy(30.seconds)
+
+        cache["three"] = "3"
+
+        assertThat(cache.stats.size).isEqualTo(1)
+        assertThat(cache.stats.expirationCount).isEqualTo(2L)
+    }
+
+    @Test
+    fun `should support null values`() {
+        val cache = BoundedCache<String, String?>(maxWeight = 10)
+
+        cache["key"] = null
+
+        assertThat(cache.hasKey("key")).isTrue()
+        assertThat(cache["key"]).isNull()
+    }
+
+    @Test
+    fun `should count hits and misses`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10)
+        cache["key"] = "value"
+
+        cache["key"]
+        cache["key"]
+        cache["other"]
+
+        assertThat(cache.stats.hitCount).isEqualTo(2L)
+        assertThat(cache.stats.missCount).isEqualTo(1L)
+    }
+
+    @Test
+    fun `clear should remove all entries`() {
+        val cache = BoundedCache<String, String>(maxWeight = 10)
+        cache["one"] = "1"
+        cache["two"] = "2"
+
+        cache.clear()
+
+        assertThat(cache.hasKey("one")).isFalse()
+        assertThat(cache.stats.size).isEqualTo(0)
+        assertThat(cache.stats.weight).isEqualTo(0L)
+    }
+}
@@ -0,0 +1,43 @@
+package net.thunderbird.core.common.collections
+
+/**
+ * Lazily merges multiple sorted sources into a single sorted [Sequence] (k-way merge).
+ *
+ * Each source must already be sorted according to [comparator]. Only the current head of every source is held in a
+ * [PriorityQueue], so taking the first `n` elements costs `O(n log k)` comparisons for `k` sources, and sources are
+ * only advanced as far as necessary. Elements that compare as equal are returned in the order of their sources.
+ *
+ * @param T The type of elements.
+ * @param comparator The comparator the sources are sorted by.
+ * @return A [Sequence] containing all elements of all sources in sorted order. The sequence can only be iterated once.
+ */
+fun <T> List<Iterable<T>>.mergeSorted(comparator: Comparator<in T>): Sequence<T> {
+    val sources = this
+    return sequence {
+        val heads = PriorityQueue<SourceHead<T>>(
+            comparator = compareBy<SourceHead<T>, T>(comparator) { it.value }.thenBy { it.sourceIndex },
+        )
+
+        sources.forEachIndexed { sourceIndex, source ->
+            val iterator = source.iterator()
+            if (iterator.hasNext()) {
+                heads.add(SourceHead(iterator.next(), sourceIndex, iterator))
+            }
+        }
+
+        while (heads.isNotEmpty()) {
+            val head = heads.remove()
+            yield(head.value)
+
+            if (head.iterator.hasNext()) {
+                heads.add(SourceHead(head.iterator.next(), head.sourceIndex, head.iterator))
+            }
+        }
+    }.constrainOnce()
+}
+
+private class SourceHead<T>(
+    val value: T,
+    val sourceIndex: Int,
+    val iterator: Iterator<T>,
+)
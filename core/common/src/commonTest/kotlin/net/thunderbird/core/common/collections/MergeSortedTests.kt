@@ -0,0 +1,69 @@
+package net.thunderbird.core.common.collections
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import kotlin.test.Test
+
+class MergeSortedTests {
+    @Test
+    fun `mergeSorted - returns empty sequence for no sources`() {
+        // Arrange
+        val sources = emptyList<List<Int>>()
+
+        // Act
+        val result = sources.mergeSorted(naturalOrder()).toList()
+
+        // Assert
+        assertThat(result).isEmpty()
+    }
+
+    @Test
+    fun `mergeSorted - merges sorted sources`() {
+        // Arrange
+        val sources = listOf(
+            listOf(1, 4, 7),
+            emptyList(),
+            listOf(2, 5, 8, 9),
+            listOf(3, 6),
+        )
+
+        // Act
+        val result = sources.mergeSorted(naturalOrder()).toList()
+
+        // Assert
+        assertThat(result).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9)
+    }
+
+    @Test
+    fun `mergeSorted - returns equal elements in the order of their sources`() {
+        // Arrange
+        val sources = listOf(
+            listOf("b1", "c1"),
+            listOf("a2", "b2"),
+        )
+
+        // Act
+        val result = sources.mergeSorted(compareBy { it.first() }).toList()
+
+        // Assert
+        assertThat(result).containsExactly("a2", "b1", "b2", "c1")
+    }
+
+    @Test
+    fun `mergeSorted - only advances sources as far as necessary`() {
+        // Arrange
+        val consumed = mutableListOf<Int>()
+        val sources = listOf(
+            generateSequence(0) { it + 2 }.onEach { consumed.add(it) }.asIterable(),
+            generateSequence(1) { it + 2 }.onEach { consumed.add(it) }.asIterable(),
+        )
+
+        // Act
+        val result = sources.mergeSorted(naturalOrder()).take(3).toList()
+
+        // Assert
+        assertThat(result).containsExactly(0, 1, 2)
+        assertThat(consumed).containsExactly(0, 1, 2, 3)
+    }
+}
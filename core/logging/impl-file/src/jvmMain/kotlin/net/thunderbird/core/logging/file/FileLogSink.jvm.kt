@@ -9,5 +9,10 @@ actual fun FileLogSink(
     fileLocation: String,
     fileManager: FileManager,
 ): FileLogSink {
-    return JvmFileLogSink(level, fileName, fileLocation)
+    return JvmFileLogSink(
+        level = level,
+        fileName = fileName,
+        fileLocation = fileLocation,
+        fileManager = fileManager,
+    )
 }
@@ -1,33 +1,174 @@
 package net.thunderbird.core.logging.file
 
 import com.eygraber.uri.Uri
+import java.io.File
+import java.io.FileOutputStream
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.CoroutineContext
+import kotlin.time.ExperimentalTime
+import kotlin.time.Instant
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import kotlinx.datetime.LocalDateTime
+import kotlinx.datetime.TimeZone
+import kotlinx.datetime.toLocalDateTime
+import net.thunderbird.core.file.FileManager
 import net.thunderbird.core.logging.LogEvent
 import net.thunderbird.core.logging.LogLevel
+import net.thunderbird.core.outcome.Outcome
 
+private const val DEFAULT_BUFFER_CAPACITY = 4096
+private const val DEFAULT_MAX_FILE_SIZE = 2L * 1024 * 1024
+
+/**
+ * Additional buffer space for events with level [LogLevel.WARN] and above, so they are kept when lower priority events
+ * are already being dropped.
+ */
+private const val HIGH_PRIORITY_RESERVE = 256
+
+/**
+ * A [FileLogSink] that doesn't block the caller.
+ *
+ * [log] only adds the event to a bounded lock-free queue. A background coroutine appends all queued events to the log
+ * file in one go. When the queue is full, events below [LogLevel.WARN] are dropped, and the number of dropped events
+ * is written to the log file instead.
+ *
+ * When the log file grows larger than [maxFileSize] it is moved to `<fileName>.1.txt`, replacing the previous one, and
+ * a new log file is started.
+ */
 internal class JvmFileLogSink(
     override val level: LogLevel,
     fileName: String,
     fileLocation: String,
+    private val fileManager: FileManager,
+    private val coroutineContext: CoroutineContext = Dispatchers.IO,
+    private val bufferCapacity: Int = DEFAULT_BUFFER_CAPACITY,
+    private val maxFileSize: Long = DEFAULT_MAX_FILE_SIZE,
 ) : FileLogSink {
+    private val coroutineScope = CoroutineScope(coroutineContext + SupervisorJob())
+    private val logFile = File(fileLocation, "$fileName.txt")
+    private val rotatedLogFile = File(fileLocation, "$fileName.1.txt")
+
+    private val pendingEvents = ConcurrentLinkedQueue<LogEvent>()
+    private val pendingEventCount = AtomicInteger()
+    private val droppedEventCount = AtomicInteger()
+
+    private val writeRequests = Channel<Unit>(Channel.CONFLATED)
+    private val writeMutex = Mutex()
+
+    init {
+        File(fileLocation).mkdirs()
+
+        coroutineScope.launch {
+            for (request in writeRequests) {
+                writePendingEvents()
+            }
+        }
+    }
 
     override fun log(event: LogEvent) {
-        println("[$level] ${composeMessage(event)}")
-        event.throwable?.printStackTrace()
+        val capacity = if (event.level.priority >= LogLevel.WARN.priority) {
+            bufferCapacity + HIGH_PRIORITY_RESERVE
+        } else {
+            bufferCapacity
+        }
+
+        if (pendingEventCount.incrementAndGet() > capacity) {
+            pendingEventCount.decrementAndGet()
+            droppedEventCount.incrementAndGet()
+            return
+        }
+
+        pendingEvents.add(event)
+        writeRequests.trySend(Unit)
+    }
+
+    override suspend fun flushAndCloseBuffer() {
+        withContext(coroutineContext) {
+            writePendingEvents()
+        }
     }
 
     override suspend fun export(uri: Uri) {
-        // TODO: Implementation https://github.com/thunderbird/thunderbird-android/issues/9435
+        withContext(coroutineContext) {
+            writeMutex.withLock {
+                writeEvents()
+
+                val exportFile = File.createTempFile("log-export", ".txt", logFile.parentFile)
+                try {
+                    exportFile.outputStream().use { outputStream ->
+                        listOf(rotatedLogFile, logFile)
+                            .filter { it.exists() }
+                            .forEach { file -> file.inputStream().use { it.copyTo(outputStream) } }
+                    }
+
+                    val sourceUri = Uri.parse(exportFile.toURI().toString())
+                    val result = fileManager.copy(sourceUri = sourceUri, destinationUri = uri)
+                    if (result is Outcome.Failure) {
+                        error("Error copying log to destination: ${result.error}")
+                    }
+                } finally {
+                    exportFile.delete()
+                }
+
+                // Clear the log files after export
+                rotatedLogFile.delete()
+                logFile.writeText("")
+            }
+        }
     }
 
-    override suspend fun flushAndCloseBuffer() {
-        TODO("Not yet implemented")
+    private suspend fun writePendingEvents() {
+        writeMutex.withLock {
+            writeEvents()
+        }
     }
 
-    private fun composeMessage(event: LogEvent): String {
-        return if (event.tag != null) {
-            "[${event.tag}] ${event.message}"
-        } else {
-            event.message
+    private fun writeEvents() {
+        if (pendingEventCount.get() == 0 && droppedEventCount.get() == 0) return
+
+        PrintWriter(FileOutputStream(logFile, true).bufferedWriter()).use { writer ->
+            while (true) {
+                val event = pendingEvents.poll() ?: break
+                pendingEventCount.decrementAndGet()
+
+                writer.println(formatEvent(event))
+                event.throwable?.printStackTrace(writer)
+            }
+
+            val droppedEvents = droppedEventCount.getAndSet(0)
+            if (droppedEvents > 0) {
+                writer.println("$droppedEvents log events were dropped because the log buffer was full")
+            }
         }
+
+        rotateIfNecessary()
+    }
+
+    private fun rotateIfNecessary() {
+        if (logFile.length() > maxFileSize) {
+            rotatedLogFile.delete()
+            logFile.renameTo(rotatedLogFile)
+        }
+    }
+
+    private fun formatEvent(event: LogEvent): String {
+        val message = if (event.tag != null) "[${event.tag}] ${event.message}" else event.message
+        return "${convertLongToTime(event.timestamp)} priority = ${event.level}, $message"
+    }
+
+    @OptIn(ExperimentalTime::class)
+    private fun convertLongToTime(long: Long): String {
+        val instant = Instant.fromEpochMilliseconds(long)
+        val dateTime = instant.toLocalDateTime(TimeZone.currentSystemDefault())
+        return LocalDateTime.Formats.ISO.format(dateTime)
     }
 }
@@ -0,0 +1,31 @@
+package net.thunderbird.core.logging.file
+
+import com.eygraber.uri.Uri
+import java.io.File
+import net.thunderbird.core.file.FileManager
+import net.thunderbird.core.file.FileOperationError
+import net.thunderbird.core.outcome.Outcome
+
+/**
+ * Fake FileManager that captures content copied from a local file source URI.
+ */
+class FakeFileManager : FileManager {
+    var exportedContent: String? = null
+
+    override suspend fun copy(
+        sourceUri: Uri,
+        destinationUri: Uri,
+    ): Outcome<Unit, FileOperationError> {
+        val path = requireNotNull(sourceUri.path) { "File URI without path: $sourceUri" }
+        exportedContent = File(path).readText(Charsets.UTF_8)
+        return Outcome.Success(Unit)
+    }
+
+    override suspend fun delete(uri: Uri): Outcome<Unit, FileOperationError> {
+        return Outcome.Success(Unit)
+    }
+
+    override suspend fun createDirectories(uri: Uri): Outcome<Unit, FileOperationError> {
+        return Outcome.Success(Unit)
+    }
+}
@@ -0,0 +1,123 @@
+package net.thunderbird.core.logging.file
+
+import assertk.assertThat
+import assertk.assertions.contains
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotNull
+import assertk.assertions.isTrue
+import com.eygraber.uri.Uri
+import java.io.File
+import kotlin.test.Test
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.runTest
+import net.thunderbird.core.logging.LogEvent
+import net.thunderbird.core.logging.LogLevel
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class JvmFileLogSinkTest {
+
+    @JvmField
+    @Rule
+    val folder = TemporaryFolder()
+
+    private val testDispatcher = StandardTestDispatcher()
+    private val fileManager = FakeFileManager()
+
+    @Test
+    fun `should write events to log file`() = runTest(testDispatcher) {
+        val fileLocation = folder.newFolder().absolutePath
+        val testSubject = createFileLogSink(fileLocation)
+
+        testSubject.log(createEvent(LogLevel.INFO, "Test log message", tag = "TestTag"))
+        testSubject.flushAndCloseBuffer()
+
+        val lines = File(fileLocation, "test_log.txt").readLines()
+        assertThat(lines.size).isEqualTo(1)
+        assertThat(lines.first()).contains("priority = INFO, [TestTag] Test log message")
+    }
+
+    @Test
+    fun `should drop low priority events when buffer is full`() = runTest(testDispatcher) {
+        val fileLocation = folder.newFolder().absolutePath
+        val testSubject = createFileLogSink(fileLocation, bufferCapacity = 2)
+
+        testSubject.log(createEvent(LogLevel.DEBUG, "one"))
+        testSubject.log(createEvent(LogLevel.DEBUG, "two"))
+        testSubject.log(createEvent(LogLevel.DEBUG, "three"))
+        testSubject.log(createEvent(LogLevel.WARN, "four"))
+        testSubject.flushAndCloseBuffer()
+
+        val messages = File(fileLocation, "test_log.txt").readLines().map { it.substringAfter(", ") }
+        assertThat(messages).containsExactly(
+            "one",
+            "two",
+            "four",
+            "1 log events were dropped because the log buffer was full",
+        )
+    }
+
+    @Test
+    fun `should rotate log file when it exceeds max size`() = runTest(testDispatcher) {
+        val fileLocation = folder.newFolder().absolutePath
+        val testSubject = createFileLogSink(fileLocation, maxFileSize = 10)
+
+        testSubject.log(createEvent(LogLevel.INFO, "first"))
+        testSubject.flushAndCloseBuffer()
+        testSubject.log(createEvent(LogLevel.INFO, "second"))
+        testSubject.flushAndCloseBuffer()
+
+        val rotatedLogFile = File(fileLocation, "test_log.1.txt")
+        assertThat(rotatedLogFile.exists()).isTrue()
+        assertThat(rotatedLogFile.readText()).contains("second")
+        assertThat(File(fileLocation, "test_log.txt").exists()).isFalse()
+    }
+
+    @Test
+    fun `export should copy log files and clear them`() = runTest(testDispatcher) {
+        val fileLocation = folder.newFolder().absolutePath
+        val testSubject = createFileLogSink(fileLocation, maxFileSize = 100)
+        testSubject.log(createEvent(LogLevel.INFO, "x".repeat(120)))
+        testSubject.flushAndCloseBuffer()
+        testSubject.log(createEvent(LogLevel.INFO, "second"))
+
+        testSubject.export(Uri.parse("content://destination/log.txt"))
+
+        val exportedContent = fileManager.exportedContent
+        assertThat(exportedContent).isNotNull()
+        val exportedMessages = exportedContent!!.lines().filter { it.isNotEmpty() }.map { it.substringAfter(", ") }
+        assertThat(exportedMessages).containsExactly("x".repeat(120), "second")
+        assertThat(File(fileLocation, "test_log.1.txt").exists()).isFalse()
+        assertThat(File(fileLocation, "test_log.txt").readText()).isEqualTo("")
+    }
+
+    private fun createFileLogSink(
+        fileLocation: String,
+        bufferCapacity: Int = 100,
+        maxFileSize: Long = 1024 * 1024,
+    ): JvmFileLogSink {
+        return JvmFileLogSink(
+            level = LogLevel.DEBUG,
+            fileName = "test_log",
+            fileLocation = fileLocation,
+            fileManager = fileManager,
+            coroutineContext = testDispatcher,
+            bufferCapacity = bufferCapacity,
+            maxFileSize = maxFileSize,
+        )
+    }
+
+    private fun createEvent(level: LogLevel, message: String, tag: String? = null): LogEvent {
+        return LogEvent(
+            level = level,
+            tag = tag,
+            message = message,
+            throwable = null,
+            timestamp = 1234567890L,
+        )
+    }
+}
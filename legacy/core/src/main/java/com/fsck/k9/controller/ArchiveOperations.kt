@@ -53,7 +53,7 @@ internal class ArchiveOperations(
 
                 else -> {
                     messagingController.suppressMessages(account, messagesInFolder)
-                    messagingController.putBackground(description, null) {
+                    messagingController.putBackground(description, account, null) {
                         action(account, sourceFolderId, messagesInFolder, archiveFolderId)
                     }
                 }
@@ -0,0 +1,210 @@
+package com.fsck.k9.controller
+
+import java.util.PriorityQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.time.Clock
+import kotlin.time.ExperimentalTime
+import net.thunderbird.legacy.logging.Log
+
+/**
+ * Runs the background commands of [MessagingController] on a bounded number of threads.
+ *
+ * Commands are added to a lane, usually one per account. Commands of the same lane never run concurrently. Within a
+ * lane foreground commands run before background commands, and commands of the same priority run in the order they
+ * were added. Commands of different lanes run in parallel, limited by [threadCount]. When multiple lanes are waiting
+ * for a thread, the lane whose next command has the highest priority and was added first is picked.
+ *
+ * A lane is removed once it has no running or queued commands, and is created again when a command is added to it.
+ */
+@OptIn(ExperimentalTime::class)
+internal class CommandScheduler @JvmOverloads constructor(
+    threadCount: Int,
+    threadFactory: ThreadFactory,
+    private val clock: Clock = Clock.System,
+) {
+    private val lock = ReentrantLock()
+    private val commandAvailable = lock.newCondition()
+    private val lanes = LinkedHashMap<String, Lane>()
+    private var sequence = 0
+
+    @Volatile
+    private var stopped = false
+
+    private val threads: List<Thread>
+
+    init {
+        require(threadCount > 0) { "threadCount must be positive" }
+
+        threads = List(threadCount) { threadFactory.newThread(::runWorker) }
+        threads.forEach(Thread::start)
+    }
+
+    fun enqueue(laneKey: String, description: String, isForeground: Boolean, runnable: Runnable) {
+        lock.withLock {
+            val lane = lanes.getOrPut(laneKey) { Lane(laneKey) }
+            lane.queue.add(
+                Command(
+                    description = description,
+                    isForegroundPriority = isForeground,
+                    sequence = sequence++,
+                    enqueueTime = now(),
+                    runnable = runnable,
+                ),
+            )
+
+            if (!lane.isRunning) {
+                commandAvailable.signal()
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the queue depth and wait time metrics of all lanes that have running or queued commands.
+     */
+    fun getLaneStatistics(): Map<String, LaneStatistics> {
+        return lock.withLock {
+            lanes.mapValues { (_, lane) -> lane.toStatistics() }
+        }
+    }
+
+    fun stop(timeoutMillis: Long) {
+        stopped = true
+        threads.forEach(Thread::interrupt)
+
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        for (thread in threads) {
+            val remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())
+            if (remainingMillis > 0) {
+                thread.join(remainingMillis)
+            }
+        }
+    }
+
+    private fun runWorker() {
+        while (!stopped) {
+            val (lane, command) = takeNextCommand() ?: return
+
+            try {
+                Log.i(
+                    "Running command '%s', seq = %s (%s priority, lane: %s, waited %d ms)",
+                    command.description,
+                    command.sequence,
+                    if (command.isForegroundPriority) "foreground" else "background",
+                    lane.key,
+                    lane.lastWaitTimeMillis,
+                )
+
+                command.runnable.run()
+
+                Log.i(" Command '%s' completed", command.description)
+            } catch (e: Throwable) {
+                // Also catch errors so a failing command can't reduce the number of worker threads
+                Log.e(e, "Error running command '%s'", command.description)
+            } finally {
+                releaseLane(lane)
+            }
+        }
+    }
+
+    private fun takeNextCommand(): Pair<Lane, Command>? {
+        lock.withLock {
+            while (!stopped) {
+                val lane = lanes.values
+                    .filter { !it.isRunning && it.queue.isNotEmpty() }
+                    .minByOrNull { it.queue.peek() }
+
+                if (lane != null) {
+                    val command = lane.queue.poll()
+                    lane.isRunning = true
+                    lane.recordWaitTime(now() - command.enqueueTime)
+
+                    return lane to command
+                }
+
+                try {
+                    commandAvailable.await()
+                } catch (e: InterruptedException) {
+                    return null
+                }
+            }
+
+            return null
+        }
+    }
+
+    private fun releaseLane(lane: Lane) {
+        lock.withLock {
+            lane.isRunning = false
+
+            if (lane.queue.isNotEmpty()) {
+                commandAvailable.signal()
+            } else {
+                lanes.remove(lane.key)
+            }
+        }
+    }
+
+    private fun now(): Long = clock.now().toEpochMilliseconds()
+
+    private class Command(
+        val description: String,
+        val isForegroundPriority: Boolean,
+        val sequence: Int,
+        val enqueueTime: Long,
+        val runnable: Runnable,
+    ) : Comparable<Command> {
+        override fun compareTo(other: Command): Int {
+            return when {
+                other.isForegroundPriority && !isForegroundPriority -> 1
+                !other.isForegroundPriority && isForegroundPriority -> -1
+                else -> sequence.compareTo(other.sequence)
+            }
+        }
+    }
+
+    private class Lane(val key: String) {
+        val queue = PriorityQueue<Command>()
+        var isRunning = false
+        var startedCommands = 0L
+        var lastWaitTimeMillis = 0L
+        var totalWaitTimeMillis = 0L
+        var maxWaitTimeMillis = 0L
+
+        fun recordWaitTime(waitTimeMillis: Long) {
+            startedCommands++
+            lastWaitTimeMillis = waitTimeMillis
+            totalWaitTimeMillis += waitTimeMillis
+            maxWaitTimeMillis = maxOf(maxWaitTimeMillis, waitTimeMillis)
+        }
+
+        fun toStatistics(): LaneStatistics {
+            return LaneStatistics(
+                queueDepth = queue.size,
+                isRunning = isRunning,
+                startedCommands = startedCommands,
+                averageWaitTimeMillis = if (startedCommands > 0) totalWaitTimeMillis / startedCommands else 0L,
+                maxWaitTimeMillis = maxWaitTimeMillis,
+            )
+        }
+    }
+}
+
+/**
+ * Metrics of a lane of [CommandScheduler].
+ *
+ * @param queueDepth The number of commands waiting to be run.
+ * @param isRunning `true` if a command of this lane is currently running.
+ * @param startedCommands The number of commands that have been taken from the queue since the lane was created.
+ * @param averageWaitTimeMillis The average time commands waited in the queue before they were started.
+ * @param maxWaitTimeMillis The longest time a command waited in the queue before it was started.
+ */
+data class LaneStatistics(
+    val queueDepth: Int,
+    val isRunning: Boolean,
+    val startedCommands: Long,
+    val averageWaitTimeMillis: Long,
+    val maxWaitTimeMillis: Long,
+)
@@ -12,20 +12,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
 import android.os.Process;
-import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import app.k9mail.legacy.di.DI;
 import app.k9mail.legacy.mailstore.FolderDetailsAccessor;
@@ -62,6 +61,7 @@ import com.fsck.k9.helper.MutableBoolean;
 import com.fsck.k9.mail.AuthType;
 import com.fsck.k9.mail.AuthenticationFailedException;
 import com.fsck.k9.mail.CertificateValidationException;
+import com.fsck.k9.mail.DefaultBodyFactory;
 import com.fsck.k9.mail.FetchProfile;
 import net.thunderbird.core.common.mail.Flag;
 import com.fsck.k9.mail.Message;
@@ -125,6 +125,8 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public static final Set<Flag> SYNC_FLAGS = EnumSet.of(Flag.SEEN, Flag.FLAGGED, Flag.ANSWERED, Flag.FORWARDED);
 
     private static final long FOLDER_LIST_STALENESS_THRESHOLD = 30 * 60 * 1000L;
+    private static final int MAX_PARALLEL_COMMAND_LANES = 3;
+    private static final String GLOBAL_COMMAND_LANE = "global";
 
     private final Context context;
     private final NotificationController notificationController;
@@ -137,10 +139,9 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private final SpecialLocalFoldersCreator specialLocalFoldersCreator;
     private final LocalDeleteOperationDecider localDeleteOperationDecider;
 
-    private final Thread controllerThread;
+    private final CommandScheduler commandScheduler;
 
     private final LocalMessageUidPrefixProvider localMessageUidPrefixProvider;
-    private final BlockingQueue<Command> queuedCommands = new PriorityBlockingQueue<>();
     private final Set<MessagingListener> listeners = new CopyOnWriteArraySet<>();
     private final ExecutorService threadPool = Executors.newCachedThreadPool();
     private final MemorizingMessagingListener memorizingMessagingListener = new MemorizingMessagingListener();
@@ -153,8 +154,6 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private final NotificationSenderCompat notificationSender;
     private final NotificationDismisserCompat notificationDismisser;
 
-    private volatile boolean stopped = false;
-
 
     public static MessagingController getInstance(Context context) {
         return DI.get(MessagingController.class);
@@ -196,14 +195,19 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         this.notificationDismisser = new NotificationDismisserCompat(notificationManager);
         this.outboxFolderManager = outboxFolderManager;
 
-        controllerThread = new Thread(new Runnable() {
+        commandScheduler = new CommandScheduler(MAX_PARALLEL_COMMAND_LANES, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
             @Override
-            public void run() {
-                runInBackground();
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                });
+                thread.setName("MessagingController-" + threadNumber.getAndIncrement());
+                return thread;
             }
         });
-        controllerThread.setName("MessagingController");
-        controllerThread.start();
         addListener(memorizingMessagingListener);
 
         initializeControllerExtensions(controllerExtensions);
@@ -239,63 +243,36 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     @VisibleForTesting
     void stop() throws InterruptedException {
-        stopped = true;
-        controllerThread.interrupt();
-        controllerThread.join(1000L);
+        commandScheduler.stop(1000L);
     }
 
-    private void runInBackground() {
-        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        while (!stopped) {
-            String commandDescription = null;
-            try {
-                final Command command = queuedCommands.take();
-
-                if (command != null) {
-                    commandDescription = command.description;
-
-                    Log.i("Running command '%s', seq = %s (%s priority)",
-                            command.description,
-                            command.sequence,
-                            command.isForegroundPriority ? "foreground" : "background");
-
-                    command.runnable.run();
-
-                    Log.i(" Command '%s' completed", command.description);
-                }
-            } catch (Exception e) {
-                Log.e(e, "Error running command '%s'", commandDescription);
-            }
-        }
+    /**
+     * Returns queue depth and wait time metrics for each lane of background commands, keyed by account UUID.
+     */
+    public Map<String, LaneStatistics> getCommandLaneStatistics() {
+        return commandScheduler.getLaneStatistics();
     }
 
     private void put(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, true);
+        put(description, null, listener, runnable);
+    }
+
+    private void put(String description, LegacyAccountDto account, MessagingListener listener, Runnable runnable) {
+        putCommand(account, description, runnable, true);
     }
 
     void putBackground(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, false);
+        putBackground(description, null, listener, runnable);
     }
 
-    private void putCommand(BlockingQueue<Command> queue, String description, MessagingListener listener,
-            Runnable runnable, boolean isForeground) {
-        int retries = 10;
-        Exception e = null;
-        while (retries-- > 0) {
-            try {
-                Command command = new Command();
-                command.listener = listener;
-                command.runnable = runnable;
-                command.description = description;
-                command.isForegroundPriority = isForeground;
-                queue.put(command);
-                return;
-            } catch (InterruptedException ie) {
-                SystemClock.sleep(200);
-                e = ie;
-            }
-        }
-        throw new Error(e);
+    void putBackground(String description, LegacyAccountDto account, MessagingListener listener,
+            Runnable runnable) {
+        putCommand(account, description, runnable, false);
+    }
+
+    private void putCommand(LegacyAccountDto account, String description, Runnable runnable, boolean isForeground) {
+        String laneKey = account != null ? account.getUuid() : GLOBAL_COMMAND_LANE;
+        commandScheduler.enqueue(laneKey, description, isForeground, runnable);
     }
 
     Backend getBackend(LegacyAccountDto account) {
@@ -407,12 +384,12 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void refreshFolderList(final LegacyAccountDto account) {
-        put("refreshFolderList", null, () -> refreshFolderListSynchronous(account));
+        put("refreshFolderList", account, null, () -> refreshFolderListSynchronous(account));
     }
 
     public void refreshFolderListBlocking(LegacyAccountDto account) {
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("refreshFolderListBlocking", null, () -> {
+        putBackground("refreshFolderListBlocking", account, null, () -> {
             try {
                 refreshFolderListSynchronous(account);
             } finally {
@@ -569,7 +546,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMoreMessages(LegacyAccountDto account, long folderId) {
-        putBackground("loadMoreMessages", null, () -> loadMoreMessagesSynchronous(account, folderId));
+        putBackground("loadMoreMessages", account, null, () -> loadMoreMessagesSynchronous(account, folderId));
     }
 
     public void loadMoreMessagesSynchronous(LegacyAccountDto account, long folderId) {
@@ -592,7 +569,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      * Start background synchronization of the specified folder.
      */
     public void synchronizeMailbox(LegacyAccountDto account, long folderId, boolean notify, MessagingListener listener) {
-        putBackground("synchronizeMailbox", listener, () ->
+        putBackground("synchronizeMailbox", account, listener, () ->
                 synchronizeMailboxSynchronous(account, folderId, notify, listener, new NotificationState())
         );
     }
@@ -601,7 +578,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         long folderId = getFolderId(account, folderServerId);
 
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("synchronizeMailbox", null, () -> {
+        putBackground("synchronizeMailbox", account, null, () -> {
             try {
                 synchronizeMailboxSynchronous(account, folderId, true, null, new NotificationState());
             } finally {
@@ -770,7 +747,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     void processPendingCommands(final LegacyAccountDto account) {
-        putBackground("processPendingCommands", null, new Runnable() {
+        putBackground("processPendingCommands", account, null, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -791,38 +768,30 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         LocalStore localStore = localStoreProvider.getInstance(account);
         List<PendingCommand> commands = localStore.getPendingCommands();
 
+        // Combine commands so that changes made while offline are sent to the server using as few commands as possible
+        List<PendingCommandBatch> batches = PendingCommandCoalescer.coalesce(commands);
+        if (batches.size() < commands.size()) {
+            Log.d("Combined %d pending commands into %d batches", commands.size(), batches.size());
+        }
+
         PendingCommand processingCommand = null;
         try {
-            for (PendingCommand command : commands) {
-                processingCommand = command;
-                String commandName = command.getCommandName();
-                Log.d("Processing pending command '%s'", commandName);
-
-                /*
-                 * We specifically do not catch any exceptions here. If a command fails it is
-                 * most likely due to a server or IO error and it must be retried before any
-                 * other command processes. This maintains the order of the commands.
-                 */
-                try {
-                    command.execute(this, account);
-
-                    localStore.removePendingCommand(command);
-
-                    Log.d("Done processing pending command '%s'", commandName);
-                } catch (MessagingException me) {
-                    if (me.isPermanentFailure()) {
-                        Log.e(me, "Failure of command '%s' was permanent, removing command from queue", commandName);
-                        localStore.removePendingCommand(processingCommand);
-                    } else {
-                        throw me;
+            for (PendingCommandBatch batch : batches) {
+                Exception unexpectedException = null;
+                for (PendingCommand command : batch.getCommands()) {
+                    processingCommand = command;
+                    Exception exception = processPendingCommand(account, command);
+                    if (unexpectedException == null) {
+                        unexpectedException = exception;
                     }
-                } catch (Exception e) {
-                    Log.e(e, "Unexpected exception with command '%s', removing command from queue", commandName);
-                    localStore.removePendingCommand(processingCommand);
+                }
 
-                    if (BuildConfig.DEBUG) {
-                        throw new AssertionError("Unexpected exception while processing pending command", e);
-                    }
+                // Once all commands of a batch have been processed, the commands they replace are no longer needed.
+                localStore.removePendingCommands(batch.getSourceCommands());
+
+                if (unexpectedException != null && BuildConfig.DEBUG) {
+                    throw new AssertionError("Unexpected exception while processing pending command",
+                            unexpectedException);
                 }
 
                 // TODO: When removing a pending command due to an error the local changes should be reverted. Pending
@@ -836,6 +805,41 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
+    /**
+     * Executes a single pending command.
+     *
+     * <p>
+     * We specifically do not catch temporary failures here. If a command fails it is most likely due to a server or IO
+     * error and it must be retried before any other command processes. This maintains the order of the commands.
+     * Permanent failures and unexpected exceptions are logged and the command is skipped, so the remaining commands of
+     * its batch are still executed.
+     *
+     * @return The unexpected exception thrown by the command, or {@code null} if there was none.
+     */
+    @Nullable
+    private Exception processPendingCommand(LegacyAccountDto account, PendingCommand command)
+            throws MessagingException {
+        String commandName = command.getCommandName();
+        try {
+            Log.d("Processing pending command '%s'", commandName);
+
+            command.execute(this, account);
+
+            Log.d("Done processing pending command '%s'", commandName);
+        } catch (MessagingException me) {
+            if (me.isPermanentFailure()) {
+                Log.e(me, "Failure of command '%s' was permanent, removing command from queue", commandName);
+            } else {
+                throw me;
+            }
+        } catch (Exception e) {
+            Log.e(e, "Unexpected exception with command '%s', removing command from queue", commandName);
+            return e;
+        }
+
+        return null;
+    }
+
     /**
      * Process a pending append message command. This command uploads a local message to the
      * server, first checking to be sure that the server message is not newer than
@@ -1127,7 +1131,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagInCache(account, messageIds, flag, newState);
 
-        putBackground("setFlag", null, () ->
+        putBackground("setFlag", account, null, () ->
             setFlagSynchronous(account, messageIds, flag, newState, false)
         );
     }
@@ -1137,7 +1141,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagForThreadsInCache(account, threadRootIds, flag, newState);
 
-        putBackground("setFlagForThreads", null, () ->
+        putBackground("setFlagForThreads", account, null, () ->
             setFlagSynchronous(account, threadRootIds, flag, newState, true)
         );
     }
@@ -1266,14 +1270,14 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMessageRemotePartial(LegacyAccountDto account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemotePartial", listener, () ->
+        put("loadMessageRemotePartial", account, listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, true)
         );
     }
 
     //TODO: Fix the callback mess. See GH-782
     public void loadMessageRemote(LegacyAccountDto account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemote", listener, () ->
+        put("loadMessageRemote", account, listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, false)
         );
     }
@@ -1375,7 +1379,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
             setFlagInCache(account, messageIds, Flag.SEEN, true);
         }
 
-        putBackground("markMessageAsOpened", null, () -> {
+        putBackground("markMessageAsOpened", account, null, () -> {
             markMessageAsOpenedBlocking(account, message, markMessageAsRead);
         });
     }
@@ -1403,7 +1407,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearNewMessages(LegacyAccountDto account) {
-        put("clearNewMessages", null, () -> clearNewMessagesBlocking(account));
+        put("clearNewMessages", account, null, () -> clearNewMessagesBlocking(account));
     }
 
     private void clearNewMessagesBlocking(LegacyAccountDto account) {
@@ -1414,7 +1418,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void loadAttachment(final LegacyAccountDto account, final LocalMessage message, final Part part,
             final MessagingListener listener) {
 
-        put("loadAttachment", listener, new Runnable() {
+        put("loadAttachment", account, listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1430,7 +1434,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
                                 listener.updateProgress(progress);
                             }
                         }
-                    });
+                    }, DefaultBodyFactory.DEFAULT_IN_MEMORY_THRESHOLD);
 
                     Backend backend = getBackend(account);
                     backend.fetchPart(folderServerId, message.getUid(), part, bodyFactory);
@@ -1490,7 +1494,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      */
     public void sendPendingMessages(final LegacyAccountDto account,
             MessagingListener listener) {
-        putBackground("sendPendingMessages", listener, new Runnable() {
+        putBackground("sendPendingMessages", account, listener, new Runnable() {
             @Override
             public void run() {
                 if (OutboxFolderManagerKt.hasPendingMessagesSync(outboxFolderManager, account.getUuid())) {
@@ -1580,91 +1584,96 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
             Backend backend = getBackend(account);
 
-            for (LocalMessage message : localMessages) {
-                if (message.isSet(Flag.DELETED)) {
-                    //FIXME: When uploading a message to the remote Sent folder the move code creates a placeholder
-                    // message in the Outbox. This code gets rid of these messages. It'd be preferable if the
-                    // placeholder message was never created, though.
-                    message.destroy();
-                    continue;
-                }
-                try {
-                    long messageId = message.getDatabaseId();
-                    OutboxState outboxState = outboxStateRepository.getOutboxState(messageId);
-
-                    SendState sendState = outboxState.getSendState();
-                    if (sendState != SendState.READY) {
-                        Log.v("Skipping sending message %s (reason: %s - %s)", message.getUid(),
-                                sendState.getDatabaseName(), outboxState.getSendError());
-
-                        if (sendState == SendState.RETRIES_EXCEEDED) {
-                            lastFailure = new MessagingException("Retries exceeded", true);
-                        } else {
-                            lastFailure = new MessagingException(outboxState.getSendError(), true);
-                        }
+            backend.beginSendSession();
+            try {
+                for (LocalMessage message : localMessages) {
+                    if (message.isSet(Flag.DELETED)) {
+                        //FIXME: When uploading a message to the remote Sent folder the move code creates a placeholder
+                        // message in the Outbox. This code gets rid of these messages. It'd be preferable if the
+                        // placeholder message was never created, though.
+                        message.destroy();
                         continue;
                     }
-
-                    Log.i("Send count for message %s is %d", message.getUid(),
-                            outboxState.getNumberOfSendAttempts());
-
-                    localFolder.fetch(Collections.singletonList(message), fp, null);
                     try {
-                        if (message.getHeader(K9.IDENTITY_HEADER).length > 0 || message.isSet(Flag.DRAFT)) {
-                            Log.v("The user has set the Outbox and Drafts folder to the same thing. " +
-                                    "This message appears to be a draft, so K-9 will not send it");
+                        long messageId = message.getDatabaseId();
+                        OutboxState outboxState = outboxStateRepository.getOutboxState(messageId);
+
+                        SendState sendState = outboxState.getSendState();
+                        if (sendState != SendState.READY) {
+                            Log.v("Skipping sending message %s (reason: %s - %s)", message.getUid(),
+                                    sendState.getDatabaseName(), outboxState.getSendError());
+
+                            if (sendState == SendState.RETRIES_EXCEEDED) {
+                                lastFailure = new MessagingException("Retries exceeded", true);
+                            } else {
+                                lastFailure = new MessagingException(outboxState.getSendError(), true);
+                            }
                             continue;
                         }
 
-                        outboxStateRepository.incrementSendAttempts(messageId);
-                        message.setFlag(Flag.X_SEND_IN_PROGRESS, true);
+                        Log.i("Send count for message %s is %d", message.getUid(),
+                                outboxState.getNumberOfSendAttempts());
 
-                        Log.i("Sending message with UID %s", message.getUid());
-                        backend.sendMessage(message);
+                        localFolder.fetch(Collections.singletonList(message), fp, null);
+                        try {
+                            if (message.getHeader(K9.IDENTITY_HEADER).length > 0 || message.isSet(Flag.DRAFT)) {
+                                Log.v("The user has set the Outbox and Drafts folder to the same thing. " +
+                                        "This message appears to be a draft, so K-9 will not send it");
+                                continue;
+                            }
 
-                        message.setFlag(Flag.X_SEND_IN_PROGRESS, false);
-                        message.setFlag(Flag.SEEN, true);
-                        progress++;
-                        for (MessagingListener l : getListeners()) {
-                            l.synchronizeMailboxProgress(account, outboxFolderId, progress, todo);
-                        }
-                        moveOrDeleteSentMessage(account, localStore, message);
+                            outboxStateRepository.incrementSendAttempts(messageId);
+                            message.setFlag(Flag.X_SEND_IN_PROGRESS, true);
 
-                        outboxStateRepository.removeOutboxState(messageId);
-                    } catch (AuthenticationFailedException e) {
-                        outboxStateRepository.decrementSendAttempts(messageId);
-                        lastFailure = e;
+                            Log.i("Sending message with UID %s", message.getUid());
+                            backend.sendMessage(message);
 
-                        handleAuthenticationFailure(account, false);
-                        handleSendFailure(account, localFolder, message, e);
-                    } catch (CertificateValidationException e) {
-                        outboxStateRepository.decrementSendAttempts(messageId);
-                        lastFailure = e;
+                            message.setFlag(Flag.X_SEND_IN_PROGRESS, false);
+                            message.setFlag(Flag.SEEN, true);
+                            progress++;
+                            for (MessagingListener l : getListeners()) {
+                                l.synchronizeMailboxProgress(account, outboxFolderId, progress, todo);
+                            }
+                            moveOrDeleteSentMessage(account, localStore, message);
+
+                            outboxStateRepository.removeOutboxState(messageId);
+                        } catch (AuthenticationFailedException e) {
+                            outboxStateRepository.decrementSendAttempts(messageId);
+                            lastFailure = e;
+
+                            handleAuthenticationFailure(account, false);
+                            handleSendFailure(account, localFolder, message, e);
+                        } catch (CertificateValidationException e) {
+                            outboxStateRepository.decrementSendAttempts(messageId);
+                            lastFailure = e;
+
+                            notifyUserIfCertificateProblem(account, e, false);
+                            handleSendFailure(account, localFolder, message, e);
+                        } catch (MessagingException e) {
+                            lastFailure = e;
+
+                            if (e.isPermanentFailure()) {
+                                String errorMessage = e.getMessage();
+                                outboxStateRepository.setSendAttemptError(messageId, errorMessage);
+                            } else if (outboxState.getNumberOfSendAttempts() + 1 >= MAX_SEND_ATTEMPTS) {
+                                outboxStateRepository.setSendAttemptsExceeded(messageId);
+                            }
 
-                        notifyUserIfCertificateProblem(account, e, false);
-                        handleSendFailure(account, localFolder, message, e);
-                    } catch (MessagingException e) {
-                        lastFailure = e;
+                            handleSendFailure(account, localFolder, message, e);
+                        } catch (Exception e) {
+                            lastFailure = e;
 
-                        if (e.isPermanentFailure()) {
-                            String errorMessage = e.getMessage();
-                            outboxStateRepository.setSendAttemptError(messageId, errorMessage);
-                        } else if (outboxState.getNumberOfSendAttempts() + 1 >= MAX_SEND_ATTEMPTS) {
-                            outboxStateRepository.setSendAttemptsExceeded(messageId);
+                            handleSendFailure(account, localFolder, message, e);
                         }
-
-                        handleSendFailure(account, localFolder, message, e);
                     } catch (Exception e) {
                         lastFailure = e;
 
-                        handleSendFailure(account, localFolder, message, e);
+                        Log.e(e, "Failed to fetch message for sending");
+                        notifySynchronizeMailboxFailed(account, localFolder, e);
                     }
-                } catch (Exception e) {
-                    lastFailure = e;
-
-                    Log.e(e, "Failed to fetch message for sending");
-                    notifySynchronizeMailboxFailed(account, localFolder, e);
                 }
+            } finally {
+                backend.endSendSession();
             }
 
             if (lastFailure != null) {
@@ -1778,7 +1787,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessages", null, () ->
+            putBackground("moveMessages", account, null, () ->
                     moveOrCopyMessageSynchronous(account, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.MOVE)
             );
         });
@@ -1789,7 +1798,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessagesInThread", null, () -> {
+            putBackground("moveMessagesInThread", account, null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1808,7 +1817,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessages(LegacyAccountDto srcAccount, long srcFolderId,
             List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessages", null, () ->
+            putBackground("copyMessages", account, null, () ->
                     moveOrCopyMessageSynchronous(srcAccount, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.COPY)
             );
         });
@@ -1817,7 +1826,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessagesInThread(LegacyAccountDto srcAccount, long srcFolderId,
             final List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessagesInThread", null, () -> {
+            putBackground("copyMessagesInThread", account, null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1935,7 +1944,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void moveToDraftsFolder(LegacyAccountDto account, long folderId, List<MessageReference> messages){
-        putBackground("moveToDrafts", null, () -> moveToDraftsFolderInBackground(account, folderId, messages));
+        putBackground("moveToDrafts", account, null, () -> moveToDraftsFolderInBackground(account, folderId, messages));
     }
 
     private void moveToDraftsFolderInBackground(LegacyAccountDto account, long folderId, List<MessageReference> messages) {
@@ -1971,7 +1980,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void expunge(LegacyAccountDto account, long folderId) {
-        putBackground("expunge", null, () -> {
+        putBackground("expunge", account, null, () -> {
             queueExpunge(account, folderId);
             processPendingCommands(account);
         });
@@ -2003,7 +2012,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void deleteThreads(final List<MessageReference> messages) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteThreads", null, () ->
+            putBackground("deleteThreads", account, null, () ->
                 deleteThreadsSynchronous(account, messageFolder.getDatabaseId(), accountMessages, false)
             );
         });
@@ -2047,7 +2056,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private void deleteMessages(List<MessageReference> messages, boolean skipTrashFolder) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteMessages", null, () ->
+            putBackground("deleteMessages", account, null, () ->
                 deleteMessagesSynchronous(account, messageFolder.getDatabaseId(), accountMessages, skipTrashFolder)
             );
         });
@@ -2204,7 +2213,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void emptySpam(final LegacyAccountDto account, MessagingListener listener) {
-        putBackground("emptySpam", listener, new Runnable() {
+        putBackground("emptySpam", account, listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -2256,7 +2265,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void emptyTrash(final LegacyAccountDto account, MessagingListener listener) {
-        putBackground("emptyTrash", listener, new Runnable() {
+        putBackground("emptyTrash", account, listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -2295,7 +2304,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearFolder(LegacyAccountDto account, long folderId) {
-        putBackground("clearFolder", null, () ->
+        putBackground("clearFolder", account, null, () ->
                 clearFolderSynchronous(account, folderId)
         );
     }
@@ -2384,48 +2393,62 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         for (MessagingListener l : getListeners(listener)) {
             l.checkMailStarted(context, account);
         }
-        putBackground("checkMail", listener, new Runnable() {
+        putBackground("checkMail", account, listener, new Runnable() {
             @Override
             public void run() {
+                Log.i("Starting mail check");
 
+                Collection<LegacyAccountDto> accounts;
                 try {
-                    Log.i("Starting mail check");
-
-                    Collection<LegacyAccountDto> accounts;
                     if (account != null) {
                         accounts = new ArrayList<>(1);
                         accounts.add(account);
                     } else {
                         accounts = preferences.getAccounts();
                     }
-
-                    for (final LegacyAccountDto account : accounts) {
-                        checkMailForAccount(account, ignoreLastCheckedTime, notify, listener);
-                    }
-
                 } catch (Exception e) {
                     Log.e(e, "Unable to synchronize mail");
+                    accounts = Collections.emptyList();
                 }
-                putBackground("finalize sync", null, new Runnable() {
-                            @Override
-                            public void run() {
 
-                                Log.i("Finished mail sync");
+                if (accounts.isEmpty()) {
+                    finishCheckMail(account, wakeLock, listener);
+                    return;
+                }
 
-                                if (wakeLock != null) {
-                                    wakeLock.release();
-                                }
-                                for (MessagingListener l : getListeners(listener)) {
-                                    l.checkMailFinished(context, account);
+                // Accounts are checked in their own command lanes. The mail check is finished once the commands of
+                // all accounts have completed.
+                AtomicInteger remainingAccounts = new AtomicInteger(accounts.size());
+                for (final LegacyAccountDto accountToCheck : accounts) {
+                    putBackground("checkMail:" + accountToCheck, accountToCheck, listener, () -> {
+                        try {
+                            checkMailForAccount(accountToCheck, ignoreLastCheckedTime, notify, listener);
+                        } catch (Exception e) {
+                            Log.e(e, "Unable to synchronize account %s", accountToCheck);
+                        } finally {
+                            putBackground("finish mail check for " + accountToCheck, accountToCheck, null, () -> {
+                                if (remainingAccounts.decrementAndGet() == 0) {
+                                    finishCheckMail(account, wakeLock, listener);
                                 }
-
-                            }
+                            });
                         }
-                );
+                    });
+                }
             }
         });
     }
 
+    private void finishCheckMail(LegacyAccountDto account, WakeLock wakeLock, MessagingListener listener) {
+        Log.i("Finished mail sync");
+
+        if (wakeLock != null) {
+            wakeLock.release();
+        }
+        for (MessagingListener l : getListeners(listener)) {
+            l.checkMailFinished(context, account);
+        }
+    }
+
 
     private void checkMailForAccount(LegacyAccountDto account, boolean ignoreLastCheckedTime, boolean notify,
             MessagingListener listener) {
@@ -2456,7 +2479,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         } catch (MessagingException e) {
             Log.e(e, "Unable to synchronize account %s", account);
         } finally {
-            putBackground("clear notification flag for " + account, null, new Runnable() {
+            putBackground("clear notification flag for " + account, account, null, new Runnable() {
                         @Override
                         public void run() {
                             Log.v("Clearing notification flag for %s", account);
@@ -2472,7 +2495,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     private void synchronizeFolder(LegacyAccountDto account, LocalFolder folder, boolean ignoreLastCheckedTime,
             boolean notify, MessagingListener listener, NotificationState notificationState) {
-        putBackground("sync" + folder.getServerId(), null, () -> {
+        putBackground("sync" + folder.getServerId(), account, null, () -> {
             synchronizeFolderInBackground(account, folder, ignoreLastCheckedTime, notify, listener, notificationState);
         });
     }
@@ -2527,7 +2550,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void compact(LegacyAccountDto account) {
-        putBackground("compact:" + account, null, () -> {
+        putBackground("compact:" + account, account, null, () -> {
             try {
                 MessageStore messageStore = messageStoreManager.getMessageStore(account);
                 messageStore.compact();
@@ -2558,28 +2581,6 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
-    private static AtomicInteger sequencing = new AtomicInteger(0);
-
-    private static class Command implements Comparable<Command> {
-        public Runnable runnable;
-        public MessagingListener listener;
-        public String description;
-        boolean isForegroundPriority;
-
-        int sequence = sequencing.getAndIncrement();
-
-        @Override
-        public int compareTo(@NonNull Command other) {
-            if (other.isForegroundPriority && !isForegroundPriority) {
-                return 1;
-            } else if (!other.isForegroundPriority && isForegroundPriority) {
-                return -1;
-            } else {
-                return (sequence - other.sequence);
-            }
-        }
-    }
-
     public void clearNotifications(LocalMessageSearch search) {
         put("clearNotifications", null, () -> {
             notificationOperations.clearNotifications(search);
@@ -0,0 +1,132 @@
+package com.fsck.k9.controller
+
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete
+import com.fsck.k9.controller.MessagingControllerCommands.PendingExpunge
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag
+import net.thunderbird.core.common.mail.Flag
+
+/**
+ * Reduces the number of pending commands that need to be sent to the server.
+ *
+ * Consecutive [PendingSetFlag] and [PendingDelete] commands are combined per folder:
+ * - When the same flag of a message is changed multiple times, only the last change is kept.
+ * - All flag changes with the same flag and state are combined into one command.
+ * - All deletions are combined into one command that is executed after the flag changes.
+ *
+ * Consecutive [PendingExpunge] commands for the same folder are reduced to one. All other commands are executed as
+ * they are, and commands are never combined across them.
+ */
+internal object PendingCommandCoalescer {
+    @JvmStatic
+    fun coalesce(commands: List<PendingCommand>): List<PendingCommandBatch> {
+        val batches = mutableListOf<PendingCommandBatch>()
+        val folderCommands = LinkedHashMap<Long, MutableList<PendingCommand>>()
+
+        fun flushFolderCommands() {
+            folderCommands.values.mapTo(batches) { createFolderBatch(it) }
+            folderCommands.clear()
+        }
+
+        for (command in commands) {
+            when (command) {
+                is PendingSetFlag -> {
+                    folderCommands.getOrPut(command.folderId) { mutableListOf() }.add(command)
+                }
+
+                is PendingDelete -> {
+                    folderCommands.getOrPut(command.folderId) { mutableListOf() }.add(command)
+                }
+
+                is PendingExpunge -> {
+                    flushFolderCommands()
+
+                    val previousBatch = batches.lastOrNull()
+                    val previousCommand = previousBatch?.commands?.singleOrNull()
+                    if (previousBatch != null && previousCommand is PendingExpunge &&
+                        previousCommand.folderId == command.folderId
+                    ) {
+                        batches[batches.lastIndex] = previousBatch.copy(
+                            sourceCommands = previousBatch.sourceCommands + command,
+                        )
+                    } else {
+                        batches.add(PendingCommandBatch(command))
+                    }
+                }
+
+                else -> {
+                    flushFolderCommands()
+                    batches.add(PendingCommandBatch(command))
+                }
+            }
+        }
+
+        flushFolderCommands()
+
+        return batches
+    }
+
+    private fun createFolderBatch(sourceCommands: List<PendingCommand>): PendingCommandBatch {
+        if (sourceCommands.size == 1) {
+            return PendingCommandBatch(sourceCommands.first())
+        }
+
+        val folderId = sourceCommands.first().folderId
+        val flagChanges = LinkedHashMap<FlagChange, MutableSet<String>>()
+        val deletedUids = LinkedHashSet<String>()
+
+        for (command in sourceCommands) {
+            when (command) {
+                is PendingSetFlag -> {
+                    val flagChange = FlagChange(command.flag, command.newState)
+                    val supersededFlagChange = FlagChange(command.flag, !command.newState)
+                    val uids = flagChanges.getOrPut(flagChange) { LinkedHashSet() }
+
+                    for (uid in command.uids) {
+                        flagChanges[supersededFlagChange]?.remove(uid)
+                        uids.add(uid)
+                    }
+                }
+
+                is PendingDelete -> deletedUids.addAll(command.uids)
+            }
+        }
+
+        val commands = buildList {
+            for ((flagChange, uids) in flagChanges) {
+                if (uids.isNotEmpty()) {
+                    add(PendingSetFlag.create(folderId, flagChange.newState, flagChange.flag, uids.toList()))
+                }
+            }
+
+            if (deletedUids.isNotEmpty()) {
+                add(PendingDelete.create(folderId, deletedUids.toList()))
+            }
+        }
+
+        return PendingCommandBatch(commands, sourceCommands)
+    }
+
+    private val PendingCommand.folderId: Long
+        get() = when (this) {
+            is PendingSetFlag -> folderId
+            is PendingDelete -> folderId
+            else -> error("Unsupported command: $commandName")
+        }
+
+    private data class FlagChange(val flag: Flag, val newState: Boolean)
+}
+
+/**
+ * Commands to execute in place of [sourceCommands].
+ *
+ * All [sourceCommands] can be removed from the queue once all [commands] have been processed. A command that failed
+ * permanently is skipped, the remaining [commands] are still executed. Executing [commands] again after a temporary
+ * failure has the same result as executing [sourceCommands] again.
+ */
+internal data class PendingCommandBatch(
+    val commands: List<PendingCommand>,
+    val sourceCommands: List<PendingCommand>,
+) {
+    constructor(command: PendingCommand) : this(listOf(command), listOf(command))
+}
@@ -16,6 +16,11 @@ class ProgressBodyFactory extends DefaultBodyFactory {
 
 
     ProgressBodyFactory(ProgressListener progressListener) {
+        this(progressListener, 0);
+    }
+
+    ProgressBodyFactory(ProgressListener progressListener, int inMemoryThreshold) {
+        super(inMemoryThreshold);
         this.progressListener = progressListener;
     }
 
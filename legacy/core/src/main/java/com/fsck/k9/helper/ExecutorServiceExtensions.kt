@@ -0,0 +1,22 @@
+package com.fsck.k9.helper
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+
+/**
+ * Applies [transform] to every element of [items] using this executor and returns the results in the original order.
+ *
+ * If one of the tasks fails, the remaining tasks are cancelled and the exception thrown by [transform] is rethrown.
+ */
+fun <T, R> ExecutorService.mapInParallel(items: List<T>, transform: (T) -> R): List<R> {
+    val futures = items.map { item ->
+        submit<R> { transform(item) }
+    }
+
+    return try {
+        futures.map { it.get() }
+    } catch (e: ExecutionException) {
+        futures.forEach { it.cancel(false) }
+        throw e.cause ?: e
+    }
+}
@@ -1,5 +1,6 @@
 package com.fsck.k9.mailstore
 
+import app.k9mail.legacy.mailstore.MessageListChange
 import app.k9mail.legacy.mailstore.MessageListChangedListener
 import app.k9mail.legacy.mailstore.MessageListRepository
 import app.k9mail.legacy.mailstore.MessageMapper
@@ -29,14 +30,16 @@ class DefaultMessageListRepository(
         }
     }
 
-    override fun notifyMessageListChanged(accountUuid: String) {
+    override fun notifyMessageListChanged(accountUuid: String, createChange: () -> MessageListChange) {
+        val change by lazy(createChange)
+
         for (listener in globalListeners) {
-            listener.onMessageListChanged()
+            listener.onMessageListChanged(accountUuid, change)
         }
 
         for (listener in accountListeners) {
             if (listener.first == accountUuid) {
-                listener.second.onMessageListChanged()
+                listener.second.onMessageListChanged(accountUuid, change)
             }
         }
     }
@@ -49,13 +52,14 @@ class DefaultMessageListRepository(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<T>,
     ): List<T> {
         val messageStore = messageStoreManager.getMessageStore(accountUuid)
         val cache = MessageListCache.getCache(accountUuid)
 
         val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
-        return messageStore.getMessages(selection, selectionArgs, sortOrder, mapper)
+        return messageStore.getMessages(selection, selectionArgs, sortOrder, limit, mapper)
     }
 
     /**
@@ -66,13 +70,14 @@ class DefaultMessageListRepository(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<T>,
     ): List<T> {
         val messageStore = messageStoreManager.getMessageStore(accountUuid)
         val cache = MessageListCache.getCache(accountUuid)
 
         val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
-        return messageStore.getThreadedMessages(selection, selectionArgs, sortOrder, mapper)
+        return messageStore.getThreadedMessages(selection, selectionArgs, sortOrder, limit, mapper)
     }
 
     /**
@@ -83,6 +83,10 @@ class K9BackendFolder(
         messageStore.setMessageFlag(folderId, messageServerId, flag, value)
     }
 
+    override fun updateMessageFlags(flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String> {
+        return messageStore.updateMessageFlags(folderId, flagUpdates)
+    }
+
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         requireMessageServerId(message)
 
@@ -90,6 +94,16 @@ class K9BackendFolder(
         messageStore.saveRemoteMessage(folderId, message.uid, messageData)
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        if (messages.isEmpty()) return
+
+        messages.forEach { requireMessageServerId(it) }
+
+        val messagesData = messages.zip(saveMessageDataCreator.createSaveMessageData(messages, downloadState))
+            .associate { (message, messageData) -> message.uid to messageData }
+        messageStore.saveRemoteMessages(folderId, messagesData)
+    }
+
     override fun getOldestMessageDate(): Date? {
         return messageStore.getOldestMessageDate(folderId)
     }
@@ -4,10 +4,11 @@ import app.k9mail.legacy.mailstore.DefaultFolderRepository
 import app.k9mail.legacy.mailstore.FolderRepository
 import app.k9mail.legacy.mailstore.MessageListRepository
 import app.k9mail.legacy.mailstore.MessageStoreManager
+import com.fsck.k9.helper.NamedThreadFactory
 import com.fsck.k9.mailstore.folder.DefaultOutboxFolderManager
-import com.fsck.k9.message.extractors.AttachmentCounter
-import com.fsck.k9.message.extractors.MessageFulltextCreator
-import com.fsck.k9.message.extractors.MessagePreviewCreator
+import com.fsck.k9.message.extractors.MessageContentExtractor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import kotlin.time.ExperimentalTime
 import net.thunderbird.backend.api.BackendStorageFactory
 import net.thunderbird.core.common.cache.TimeLimitedCache
@@ -22,7 +23,7 @@ val mailStoreModule = module {
             outboxFolderManager = get(),
         )
     }
-    single { MessageViewInfoExtractorFactory(get(), get(), get()) }
+    single { MessageViewInfoExtractorFactory(get(), get(), get(), get()) }
     single<StorageFilesProviderFactory> { AndroidStorageFilesProviderFactory(context = get()) }
     single { SpecialFolderSelectionStrategy() }
     single<BackendStorageFactory> {
@@ -38,15 +39,12 @@ val mailStoreModule = module {
     factory { SpecialLocalFoldersCreator(preferences = get(), localStoreProvider = get(), outboxFolderManager = get()) }
     single { MessageStoreManager(accountManager = get(), messageStoreFactory = get()) }
     single { MessageRepository(messageStoreManager = get()) }
-    factory { MessagePreviewCreator.newInstance() }
-    factory { MessageFulltextCreator.newInstance() }
-    factory { AttachmentCounter.newInstance() }
-    factory {
+    factory { MessageContentExtractor.newInstance() }
+    single {
         SaveMessageDataCreator(
             encryptionExtractor = get(),
-            messagePreviewCreator = get(),
-            messageFulltextCreator = get(),
-            attachmentCounter = get(),
+            messageContentExtractor = get(),
+            extractionExecutor = createMessageContentExtractionExecutor(),
         )
     }
     single<MessageListRepository> { DefaultMessageListRepository(messageStoreManager = get()) }
@@ -59,3 +57,11 @@ val mailStoreModule = module {
         )
     }
 }
+
+private const val MAX_EXTRACTION_THREADS = 4
+
+private fun createMessageContentExtractionExecutor(): ExecutorService {
+    val threadCount = (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, MAX_EXTRACTION_THREADS)
+
+    return Executors.newFixedThreadPool(threadCount, NamedThreadFactory("MessageContentExtractor"))
+}
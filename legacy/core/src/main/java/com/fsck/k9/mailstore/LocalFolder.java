@@ -48,6 +48,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -967,6 +968,39 @@ public class LocalFolder {
         return (int) (value ^ (value >>> 32));
     }
 
+    /**
+     * Turns a message into an empty placeholder message that keeps its place in the thread structure.
+     *
+     * <p>
+     * This uses an UPDATE instead of REPLACE, because SQLite doesn't fire the DELETE triggers maintaining
+     * 'folder_message_counts' for rows removed by REPLACE.
+     * </p>
+     */
+    static void convertToEmptyMessage(SQLiteDatabase db, long messageId, String messageIdHeader) {
+        ContentValues cv = new ContentValues();
+        cv.put("deleted", 0);
+        cv.put("message_id", messageIdHeader);
+        cv.put("empty", 1);
+        cv.putNull("subject");
+        cv.putNull("date");
+        cv.putNull("flags");
+        cv.putNull("sender_list");
+        cv.putNull("to_list");
+        cv.putNull("cc_list");
+        cv.putNull("bcc_list");
+        cv.putNull("reply_to_list");
+        cv.putNull("attachment_count");
+        cv.putNull("internal_date");
+        cv.put("preview_type", "none");
+        cv.putNull("preview");
+        cv.putNull("mime_type");
+        cv.putNull("normalized_subject_hash");
+        cv.putNull("message_part_id");
+        cv.putNull("encryption_type");
+
+        db.update("messages", cv, "id = ?", new String[] { Long.toString(messageId) });
+    }
+
     void destroyMessage(LocalMessage localMessage) throws MessagingException {
         destroyMessage(localMessage.getDatabaseId(), localMessage.getMessagePartId(), localMessage.getMessageId());
     }
@@ -983,14 +1017,7 @@ public class LocalFolder {
                 if (hasThreadChildren(db, messageId)) {
                     // This message has children in the thread structure so we need to
                     // make it an empty message.
-                    ContentValues cv = new ContentValues();
-                    cv.put("id", messageId);
-                    cv.put("folder_id", getDatabaseId());
-                    cv.put("deleted", 0);
-                    cv.put("message_id", messageIdHeader);
-                    cv.put("empty", 1);
-
-                    db.replace("messages", null, cv);
+                    convertToEmptyMessage(db, messageId, messageIdHeader);
 
                     // Nothing else to do
                     return null;
@@ -1025,6 +1052,7 @@ public class LocalFolder {
             }
         });
 
+        localStore.removeCachedDisplayHtml(Collections.singletonList(messageId));
         localStore.notifyChange();
     }
 
@@ -4,6 +4,7 @@ package com.fsck.k9.mailstore;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Objects;
 import android.content.ContentValues;
@@ -331,6 +332,7 @@ public class LocalMessage extends MimeMessage {
             }
         });
 
+        localStore.removeCachedDisplayHtml(Collections.singletonList(databaseId));
         localStore.notifyChange();
     }
 
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -26,6 +27,7 @@ import androidx.annotation.Nullable;
 import android.text.TextUtils;
 import androidx.core.database.CursorKt;
 import app.k9mail.legacy.di.DI;
+import app.k9mail.legacy.mailstore.MessageListChange;
 import app.k9mail.legacy.mailstore.MessageListRepository;
 import app.k9mail.legacy.mailstore.MoreMessages;
 import com.fsck.k9.Preferences;
@@ -45,6 +47,7 @@ import com.fsck.k9.mailstore.LocalFolder.DataLocation;
 import com.fsck.k9.mailstore.LockableDatabase.DbCallback;
 import com.fsck.k9.mailstore.LockableDatabase.SchemaDefinition;
 import com.fsck.k9.message.extractors.AttachmentInfoExtractor;
+import com.fsck.k9.message.html.DisplayHtmlCache;
 import kotlin.time.Clock;
 import net.thunderbird.core.android.account.LegacyAccountDto;
 import net.thunderbird.core.preference.GeneralSettingsManager;
@@ -192,7 +195,7 @@ public class LocalStore {
         RealMigrationsHelper migrationsHelper = new RealMigrationsHelper();
         SchemaDefinition schemaDefinition = schemaDefinitionFactory.createSchemaDefinition(migrationsHelper);
 
-        database = new LockableDatabase(context, storageFilesProvider, schemaDefinition, generalSettingsManager);
+        database = new LockableDatabase(storageFilesProvider, schemaDefinition, generalSettingsManager);
         database.open();
 
         Clock clock = DI.get(Clock.class);
@@ -265,6 +268,14 @@ public class LocalStore {
 
     public void delete() {
         database.delete();
+        DI.get(DisplayHtmlCache.class).removeAccount(account.getUuid());
+    }
+
+    /**
+     * Removes the cached HTML of messages whose content was deleted from the database.
+     */
+    void removeCachedDisplayHtml(Collection<Long> messageIds) {
+        DI.get(DisplayHtmlCache.class).removeMessages(account.getUuid(), messageIds);
     }
 
     public void resetVisibleLimits(int visibleLimit) throws MessagingException {
@@ -333,6 +344,18 @@ public class LocalStore {
         });
     }
 
+    public void removePendingCommands(final List<PendingCommand> commands) throws MessagingException {
+        database.execute(true, new DbCallback<Void>() {
+            @Override
+            public Void doDbWork(final SQLiteDatabase db) {
+                for (PendingCommand command : commands) {
+                    db.delete("pending_commands", "id = ?", new String[] { Long.toString(command.databaseId) });
+                }
+                return null;
+            }
+        });
+    }
+
     public void removePendingCommands() throws MessagingException {
         database.execute(false, new DbCallback<Void>() {
             @Override
@@ -726,8 +749,12 @@ public class LocalStore {
     }
 
     public void notifyChange() {
+        notifyChange(MessageListChange.Unknown.INSTANCE);
+    }
+
+    public void notifyChange(MessageListChange change) {
         MessageListRepository messageListRepository = DI.get(MessageListRepository.class);
-        messageListRepository.notifyMessageListChanged(account.getUuid());
+        messageListRepository.notifyMessageListChanged(account.getUuid(), change);
     }
 
     /**
@@ -6,7 +6,6 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 
@@ -64,7 +63,6 @@ public class LockableDatabase {
         mWriteLock = lock.writeLock();
     }
 
-    private Context context;
     private final StorageFilesProvider storageFilesProvider;
 
     /**
@@ -78,9 +76,8 @@ public class LockableDatabase {
     private SchemaDefinition mSchemaDefinition;
     private GeneralSettingsManager generalSettingsManager;
 
-    public LockableDatabase(Context context, StorageFilesProvider storageFilesProvider,
-            SchemaDefinition schemaDefinition, GeneralSettingsManager generalSettingsManager) {
-        this.context = context;
+    public LockableDatabase(StorageFilesProvider storageFilesProvider, SchemaDefinition schemaDefinition,
+            GeneralSettingsManager generalSettingsManager) {
         this.storageFilesProvider = storageFilesProvider;
         this.mSchemaDefinition = schemaDefinition;
         this.generalSettingsManager = generalSettingsManager;
@@ -212,7 +209,10 @@ public class LockableDatabase {
     }
 
     private void doOpenOrCreateDb(final File databaseFile) {
-        mDb = context.openOrCreateDatabase(databaseFile.getName(), Context.MODE_PRIVATE, null);
+        // Without localized collators Android doesn't create the 'android_metadata' table. So a new database is still
+        // empty when the schema definition sets it up, e.g. when it changes the auto_vacuum mode.
+        mDb = SQLiteDatabase.openDatabase(databaseFile.getPath(), null,
+                SQLiteDatabase.CREATE_IF_NECESSARY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
     }
 
     protected File prepareStorage() {
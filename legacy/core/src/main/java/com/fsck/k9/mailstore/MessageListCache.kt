@@ -1,6 +1,7 @@
 package com.fsck.k9.mailstore
 
 import app.k9mail.legacy.di.DI
+import app.k9mail.legacy.mailstore.MessageListChange
 import app.k9mail.legacy.mailstore.MessageListRepository
 import kotlin.collections.set
 import net.thunderbird.core.common.mail.Flag
@@ -41,7 +42,7 @@ class MessageListCache private constructor(private val accountUuid: String) {
             }
         }
 
-        notifyChange()
+        notifyChange(MessageListChange.FlagsChanged(messageIds.toSet()))
     }
 
     fun setValueForThreads(threadRootIds: List<Long>, flag: Flag, value: Boolean) {
@@ -92,7 +93,7 @@ class MessageListCache private constructor(private val accountUuid: String) {
             }
         }
 
-        notifyChange()
+        notifyChange(MessageListChange.MessagesDeleted(messages.map { it.databaseId }.toSet()))
     }
 
     fun isMessageHidden(messageId: Long, folderId: Long): Boolean {
@@ -131,9 +132,9 @@ class MessageListCache private constructor(private val accountUuid: String) {
         return synchronized(hiddenMessageCache) { hiddenMessageCache.isEmpty() }
     }
 
-    private fun notifyChange() {
+    private fun notifyChange(change: MessageListChange = MessageListChange.Unknown) {
         val messageListRepository = DI.get<MessageListRepository>()
-        messageListRepository.notifyMessageListChanged(accountUuid)
+        messageListRepository.notifyMessageListChanged(accountUuid, change)
     }
 
     companion object {
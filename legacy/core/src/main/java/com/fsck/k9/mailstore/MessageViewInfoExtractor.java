@@ -26,6 +26,7 @@ import com.fsck.k9.mail.internet.MimeUtility;
 import com.fsck.k9.mail.internet.Viewable;
 import com.fsck.k9.mailstore.CryptoResultAnnotation.CryptoError;
 import com.fsck.k9.message.extractors.AttachmentInfoExtractor;
+import com.fsck.k9.message.html.DisplayHtmlCache;
 import com.fsck.k9.message.html.HtmlConverter;
 import app.k9mail.html.cleaner.HtmlProcessor;
 import org.openintents.openpgp.util.OpenPgpUtils;
@@ -50,13 +51,21 @@ public class MessageViewInfoExtractor {
 
     private final AttachmentInfoExtractor attachmentInfoExtractor;
     private final HtmlProcessor htmlProcessor;
+    @Nullable
+    private final DisplayHtmlCache displayHtmlCache;
     private final CoreResourceProvider resourceProvider;
 
 
     MessageViewInfoExtractor(AttachmentInfoExtractor attachmentInfoExtractor, HtmlProcessor htmlProcessor,
             CoreResourceProvider resourceProvider) {
+        this(attachmentInfoExtractor, htmlProcessor, null, resourceProvider);
+    }
+
+    MessageViewInfoExtractor(AttachmentInfoExtractor attachmentInfoExtractor, HtmlProcessor htmlProcessor,
+            @Nullable DisplayHtmlCache displayHtmlCache, CoreResourceProvider resourceProvider) {
         this.attachmentInfoExtractor = attachmentInfoExtractor;
         this.htmlProcessor = htmlProcessor;
+        this.displayHtmlCache = displayHtmlCache;
         this.resourceProvider = resourceProvider;
     }
 
@@ -70,7 +79,7 @@ public class MessageViewInfoExtractor {
             if (cryptoAnnotations != null && !cryptoAnnotations.isEmpty()) {
                 Log.e("Got crypto message cryptoContentAnnotations but no crypto root part!");
             }
-            MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, message);
+            MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, message, getCacheOwner(message));
             return messageViewInfo.withSubject(message.getSubject(), false);
         }
 
@@ -90,6 +99,23 @@ public class MessageViewInfoExtractor {
         return messageViewInfo;
     }
 
+    /**
+     * Returns the owner used for caching the message's processed HTML on disk.
+     *
+     * <p>
+     * Only call this for messages without encrypted or signed parts. The content of encrypted parts is only available
+     * in decrypted form and must never be written to disk.
+     */
+    @Nullable
+    private static DisplayHtmlCache.Owner getCacheOwner(Message message) {
+        if (message instanceof LocalMessage) {
+            LocalMessage localMessage = (LocalMessage) message;
+            return new DisplayHtmlCache.Owner(localMessage.getAccount().getUuid(), localMessage.getDatabaseId());
+        }
+
+        return null;
+    }
+
     private MessageViewInfo extractSubject(MessageViewInfo messageViewInfo) {
         if (messageViewInfo.cryptoResultAnnotation != null && messageViewInfo.cryptoResultAnnotation.isEncrypted()) {
             String protectedSubject = extractProtectedSubject(messageViewInfo);
@@ -123,7 +149,7 @@ public class MessageViewInfoExtractor {
             return extractCryptoMessageForView(message, extraParts, cryptoContentPart, cryptoContentPartAnnotation);
         }
 
-        return extractSimpleMessageForView(message, message);
+        return extractSimpleMessageForView(message, message, null);
     }
 
     private MessageViewInfo extractCryptoMessageForView(Message message,
@@ -134,16 +160,17 @@ public class MessageViewInfoExtractor {
         }
 
         List<AttachmentViewInfo> extraAttachmentInfos = new ArrayList<>();
-        ViewableExtractedText extraViewable = extractViewableAndAttachments(extraParts, extraAttachmentInfos);
+        ViewableExtractedText extraViewable = extractViewableAndAttachments(extraParts, extraAttachmentInfos, null);
 
-        MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, cryptoContentPart);
+        MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, cryptoContentPart, null);
         return messageViewInfo.withCryptoData(cryptoContentPartAnnotation, extraViewable.text, extraAttachmentInfos);
     }
 
-    private MessageViewInfo extractSimpleMessageForView(Message message, Part contentPart) throws MessagingException {
+    private MessageViewInfo extractSimpleMessageForView(Message message, Part contentPart,
+            @Nullable DisplayHtmlCache.Owner cacheOwner) throws MessagingException {
         List<AttachmentViewInfo> attachmentInfos = new ArrayList<>();
         ViewableExtractedText viewable = extractViewableAndAttachments(
-                Collections.singletonList(contentPart), attachmentInfos);
+                Collections.singletonList(contentPart), attachmentInfos, cacheOwner);
         AttachmentResolver attachmentResolver = AttachmentResolver.createFromPart(contentPart);
         boolean isMessageIncomplete =
                 !message.isSet(Flag.X_DOWNLOADED_FULL) || MessageExtractor.hasMissingParts(message);
@@ -156,7 +183,8 @@ public class MessageViewInfoExtractor {
     }
 
     private ViewableExtractedText extractViewableAndAttachments(List<Part> parts,
-            List<AttachmentViewInfo> attachmentInfos) throws MessagingException {
+            List<AttachmentViewInfo> attachmentInfos, @Nullable DisplayHtmlCache.Owner cacheOwner)
+            throws MessagingException {
         ArrayList<Viewable> viewableParts = new ArrayList<>();
         ArrayList<Part> attachments = new ArrayList<>();
 
@@ -165,7 +193,7 @@ public class MessageViewInfoExtractor {
         }
 
         attachmentInfos.addAll(attachmentInfoExtractor.extractAttachmentInfoForView(attachments));
-        return extractTextFromViewables(viewableParts);
+        return extractTextFromViewables(viewableParts, cacheOwner);
     }
 
     /**
@@ -180,6 +208,11 @@ public class MessageViewInfoExtractor {
     @VisibleForTesting
     ViewableExtractedText extractTextFromViewables(List<Viewable> viewables)
             throws MessagingException {
+        return extractTextFromViewables(viewables, null);
+    }
+
+    private ViewableExtractedText extractTextFromViewables(List<Viewable> viewables,
+            @Nullable DisplayHtmlCache.Owner cacheOwner) throws MessagingException {
         try {
             // Collect all viewable parts
 
@@ -243,7 +276,7 @@ public class MessageViewInfoExtractor {
                 }
             }
 
-            String sanitizedHtml = htmlProcessor.processForDisplay(html.toString());
+            String sanitizedHtml = processForDisplay(html.toString(), cacheOwner);
 
             return new ViewableExtractedText(text.toString(), sanitizedHtml);
         } catch (Exception e) {
@@ -251,6 +284,14 @@ public class MessageViewInfoExtractor {
         }
     }
 
+    private String processForDisplay(String html, @Nullable DisplayHtmlCache.Owner cacheOwner) {
+        if (displayHtmlCache != null) {
+            return displayHtmlCache.processForDisplay(htmlProcessor, html, cacheOwner);
+        }
+
+        return htmlProcessor.processForDisplay(html);
+    }
+
     /**
      * Use the contents of a {@link com.fsck.k9.mail.internet.Viewable} to create the HTML to be displayed.
      *
@@ -1,5 +1,8 @@
 package com.fsck.k9.mailstore
 
+import app.k9mail.legacy.di.DI
+import app.k9mail.legacy.mailstore.MessageListChange
+import app.k9mail.legacy.mailstore.MessageListRepository
 import app.k9mail.legacy.mailstore.MessageStore
 import app.k9mail.legacy.mailstore.MoreMessages
 import app.k9mail.legacy.mailstore.SaveMessageData
@@ -7,6 +10,9 @@ import net.thunderbird.core.common.mail.Flag
 
 /**
  * [MessageStore] wrapper that triggers notifications on certain changes to the message store.
+ *
+ * Where possible, the notifications include the database IDs of the affected messages so message lists can be updated
+ * without reloading them completely.
  */
 class NotifierMessageStore(
     private val messageStore: MessageStore,
@@ -15,58 +21,96 @@ class NotifierMessageStore(
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         messageStore.saveRemoteMessage(folderId, messageServerId, messageData)
-        notifyChange()
+        notifyChange { MessageListChange.MessagesInserted(getMessageIds(folderId, listOf(messageServerId))) }
+    }
+
+    override fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        messageStore.saveRemoteMessages(folderId, messages)
+        notifyChange { MessageListChange.MessagesInserted(getMessageIds(folderId, messages.keys)) }
     }
 
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
-        return messageStore.saveLocalMessage(folderId, messageData, existingMessageId).also {
-            notifyChange()
+        return messageStore.saveLocalMessage(folderId, messageData, existingMessageId).also { messageId ->
+            notifyChange(MessageListChange.MessagesInserted(setOfNotNull(existingMessageId, messageId)))
         }
     }
 
     override fun copyMessage(messageId: Long, destinationFolderId: Long): Long {
-        return messageStore.copyMessage(messageId, destinationFolderId).also {
-            notifyChange()
+        return messageStore.copyMessage(messageId, destinationFolderId).also { destinationMessageId ->
+            notifyChange(MessageListChange.MessagesInserted(setOf(destinationMessageId)))
         }
     }
 
     override fun moveMessage(messageId: Long, destinationFolderId: Long): Long {
-        return messageStore.moveMessage(messageId, destinationFolderId).also {
-            notifyChange()
+        return messageStore.moveMessage(messageId, destinationFolderId).also { destinationMessageId ->
+            localStore.removeCachedDisplayHtml(listOf(messageId))
+            notifyChange(MessageListChange.MessagesMoved(setOf(messageId), setOf(destinationMessageId)))
         }
     }
 
     override fun setFlag(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
         messageStore.setFlag(messageIds, flag, set)
-        notifyChange()
+        notifyChange(MessageListChange.FlagsChanged(messageIds.toSet()))
     }
 
     override fun setMessageFlag(folderId: Long, messageServerId: String, flag: Flag, set: Boolean) {
         messageStore.setMessageFlag(folderId, messageServerId, flag, set)
-        notifyChange()
+        notifyChange { MessageListChange.FlagsChanged(getMessageIds(folderId, listOf(messageServerId))) }
+    }
+
+    override fun updateMessageFlags(folderId: Long, flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String> {
+        return messageStore.updateMessageFlags(folderId, flagUpdates).also { changedMessageServerIds ->
+            if (changedMessageServerIds.isNotEmpty()) {
+                notifyChange { MessageListChange.FlagsChanged(getMessageIds(folderId, changedMessageServerIds)) }
+            }
+        }
     }
 
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         messageStore.setNewMessageState(folderId, messageServerId, newMessage)
-        notifyChange()
+        notifyChange { MessageListChange.FlagsChanged(getMessageIds(folderId, listOf(messageServerId))) }
     }
 
     override fun clearNewMessageState() {
         messageStore.clearNewMessageState()
-        notifyChange()
+        notifyChange(MessageListChange.Unknown)
     }
 
     override fun destroyMessages(folderId: Long, messageServerIds: Collection<String>) {
+        // Look up the database IDs first. They can't be retrieved after the messages have been destroyed.
+        val messageIds = getMessageIds(folderId, messageServerIds)
         messageStore.destroyMessages(folderId, messageServerIds)
-        notifyChange()
+        localStore.removeCachedDisplayHtml(messageIds)
+        notifyChange(MessageListChange.MessagesDeleted(messageIds))
+    }
+
+    override fun deleteFolders(folderServerIds: List<String>) {
+        val messageIds = folderServerIds.mapNotNull { messageStore.getFolderId(it) }.flatMap { folderId ->
+            getMessageIds(folderId, messageStore.getMessageServerIds(folderId))
+        }
+        messageStore.deleteFolders(folderServerIds)
+        localStore.removeCachedDisplayHtml(messageIds)
     }
 
     override fun setMoreMessages(folderId: Long, moreMessages: MoreMessages) {
         messageStore.setMoreMessages(folderId, moreMessages)
-        notifyChange()
+        notifyChange(MessageListChange.Unknown)
+    }
+
+    private fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Set<Long> {
+        return messageStore.getMessageIds(folderId, messageServerIds).values.toSet()
+    }
+
+    private fun notifyChange(change: MessageListChange) {
+        localStore.notifyChange(change)
     }
 
-    private fun notifyChange() {
-        localStore.notifyChange()
+    /**
+     * Notifies listeners about a change that needs a database query to determine the affected messages. The query is
+     * skipped if nobody is listening.
+     */
+    private fun notifyChange(createChange: () -> MessageListChange) {
+        val messageListRepository = DI.get<MessageListRepository>()
+        messageListRepository.notifyMessageListChanged(localStore.account.uuid, createChange)
     }
 }
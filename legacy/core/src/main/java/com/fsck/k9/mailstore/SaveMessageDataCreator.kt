@@ -2,17 +2,16 @@ package com.fsck.k9.mailstore
 
 import app.k9mail.legacy.mailstore.SaveMessageData
 import com.fsck.k9.crypto.EncryptionExtractor
+import com.fsck.k9.helper.mapInParallel
 import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageDownloadState
-import com.fsck.k9.message.extractors.AttachmentCounter
-import com.fsck.k9.message.extractors.MessageFulltextCreator
-import com.fsck.k9.message.extractors.MessagePreviewCreator
+import com.fsck.k9.message.extractors.MessageContentExtractor
+import java.util.concurrent.ExecutorService
 
 class SaveMessageDataCreator(
     private val encryptionExtractor: EncryptionExtractor,
-    private val messagePreviewCreator: MessagePreviewCreator,
-    private val messageFulltextCreator: MessageFulltextCreator,
-    private val attachmentCounter: AttachmentCounter,
+    private val messageContentExtractor: MessageContentExtractor,
+    private val extractionExecutor: ExecutorService,
 ) {
     fun createSaveMessageData(
         message: Message,
@@ -38,17 +37,36 @@ class SaveMessageDataCreator(
                 encryptionType = encryptionResult.encryptionType,
             )
         } else {
+            val messageContent = messageContentExtractor.extractContent(message)
             SaveMessageData(
                 message = message,
                 subject = displaySubject,
                 date = date,
                 internalDate = internalDate,
                 downloadState = downloadState,
-                attachmentCount = attachmentCounter.getAttachmentCount(message),
-                previewResult = messagePreviewCreator.createPreview(message),
-                textForSearchIndex = messageFulltextCreator.createFulltext(message),
+                attachmentCount = messageContent.attachmentCount,
+                previewResult = messageContent.previewResult,
+                textForSearchIndex = messageContent.textForSearchIndex,
                 encryptionType = null,
             )
         }
     }
+
+    /**
+     * Creates [SaveMessageData] for multiple messages.
+     *
+     * Extracting the preview and search text is CPU-bound, so the messages are processed in parallel.
+     */
+    fun createSaveMessageData(
+        messages: List<Message>,
+        downloadState: MessageDownloadState,
+    ): List<SaveMessageData> {
+        if (messages.size < 2) {
+            return messages.map { createSaveMessageData(it, downloadState) }
+        }
+
+        return extractionExecutor.mapInParallel(messages) { message ->
+            createSaveMessageData(message, downloadState)
+        }
+    }
 }
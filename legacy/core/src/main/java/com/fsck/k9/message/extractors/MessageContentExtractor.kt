@@ -0,0 +1,76 @@
+package com.fsck.k9.message.extractors
+
+import app.k9mail.legacy.message.extractors.PreviewResult
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.internet.MessageExtractor
+import com.fsck.k9.mail.internet.MimeUtility
+import com.fsck.k9.message.html.HtmlConverter
+import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.legacy.logging.Log
+
+/**
+ * Extracts the preview, the text for the search index, and the number of attachments of a message.
+ *
+ * The text part is only decoded once. Its content is then used for both the preview and the search index.
+ */
+class MessageContentExtractor internal constructor(
+    private val textPartFinder: TextPartFinder,
+    private val previewTextExtractor: PreviewTextExtractor,
+    private val attachmentCounter: AttachmentCounter,
+) {
+    @Throws(MessagingException::class)
+    fun extractContent(message: Message): MessageContent {
+        val attachmentCount = attachmentCounter.getAttachmentCount(message)
+
+        val textPart = textPartFinder.findFirstTextPart(message)
+        if (textPart == null || textPart.body == null) {
+            return MessageContent(
+                previewResult = PreviewResult.none(),
+                textForSearchIndex = null,
+                attachmentCount = attachmentCount,
+            )
+        }
+
+        val text = MessageExtractor.getTextFromPart(textPart, MAX_CHARACTERS_CHECKED_FOR_FTS)
+        if (text == null) {
+            Log.w("Failed to extract text from message")
+            return MessageContent(
+                previewResult = PreviewResult.error(),
+                textForSearchIndex = null,
+                attachmentCount = attachmentCount,
+            )
+        }
+
+        val isHtml = MimeUtility.isSameMimeType(textPart.mimeType, "text/html")
+        val plainText = if (isHtml) HtmlConverter.htmlToText(text) else text
+
+        return MessageContent(
+            previewResult = createPreview(plainText, isHtml),
+            textForSearchIndex = plainText,
+            attachmentCount = attachmentCount,
+        )
+    }
+
+    @Suppress("TooGenericExceptionCaught")
+    private fun createPreview(plainText: String, isHtmlConvertedText: Boolean): PreviewResult {
+        return try {
+            val previewText = previewTextExtractor.extractPreviewFromText(plainText, isHtmlConvertedText)
+            PreviewResult.text(previewText)
+        } catch (e: Exception) {
+            Log.e(e, "Unexpected error while trying to extract preview text")
+            PreviewResult.error()
+        }
+    }
+
+    companion object {
+        private const val MAX_CHARACTERS_CHECKED_FOR_FTS = 200 * 1024L
+
+        fun newInstance() = MessageContentExtractor(TextPartFinder(), PreviewTextExtractor(), AttachmentCounter())
+    }
+}
+
+data class MessageContent(
+    val previewResult: PreviewResult,
+    val textForSearchIndex: String?,
+    val attachmentCount: Int,
+)
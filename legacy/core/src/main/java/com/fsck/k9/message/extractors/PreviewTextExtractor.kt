@@ -1,29 +1,21 @@
 package com.fsck.k9.message.extractors
 
-import com.fsck.k9.mail.Part
-import com.fsck.k9.mail.internet.MessageExtractor
-import com.fsck.k9.mail.internet.MimeUtility.isSameMimeType
 import com.fsck.k9.message.html.EmailSection
 import com.fsck.k9.message.html.EmailSectionExtractor
 import com.fsck.k9.message.html.HtmlConverter
 
 @Suppress("TooManyFunctions")
 internal class PreviewTextExtractor {
-    @Throws(PreviewExtractionException::class)
-    fun extractPreview(textPart: Part): String {
-        val text = MessageExtractor.getTextFromPart(textPart, MAX_CHARACTERS_CHECKED_FOR_PREVIEW)
-            ?: throw PreviewExtractionException("Couldn't get text from part")
-
-        val (plainText, parsePlainTextAsHtml) = convertFromHtmlIfNecessary(textPart, text)
-        return stripTextForPreview(plainText, parsePlainTextAsHtml)
-    }
-
-    private fun convertFromHtmlIfNecessary(textPart: Part, text: String): Pair<String, Boolean> {
-        return if (isSameMimeType(textPart.mimeType, "text/html")) {
-            HtmlConverter.htmlToText(text) to false
-        } else {
-            text to true
-        }
+    private val previewTextNormalizer = PreviewTextNormalizer(MAX_PREVIEW_LENGTH)
+
+    /**
+     * Creates the preview from text that has already been extracted from the text part.
+     *
+     * @param isHtmlConvertedText `true` if [text] is the result of converting a `text/html` part to plain text.
+     */
+    fun extractPreviewFromText(text: String, isHtmlConvertedText: Boolean): String {
+        val previewText = text.take(MAX_CHARACTERS_CHECKED_FOR_PREVIEW.toInt())
+        return stripTextForPreview(previewText, parsePlainTextAsHtml = !isHtmlConvertedText)
     }
 
     private fun stripTextForPreview(text: String, parsePlainTextAsHtml: Boolean): String {
@@ -35,29 +27,19 @@ internal class PreviewTextExtractor {
 
         // Run line-based cleanup before HTML normalization, so that we don't remove line breaks in HTML
         intermediateText = stripLineBasedArtifacts(intermediateText)
-        // Always parse the text as HTML if it's plaintext, independently of the mimetype
-        if (parsePlainTextAsHtml) {
+        // Always parse the text as HTML if it's plaintext, independently of the mimetype. Parsing is skipped when
+        // the text can't contain tags or character references, since it wouldn't change anything that the
+        // normalization below doesn't take care of.
+        if (parsePlainTextAsHtml && intermediateText.mayContainHtml()) {
             intermediateText = HtmlConverter.htmlToText(intermediateText)
             intermediateText = stripLineBasedArtifacts(intermediateText)
         }
-        intermediateText = removeParsedHtmlUrls(intermediateText)
-        intermediateText = removeInvisibleFormattingCharacters(intermediateText)
-
-        // URLs in the preview should just be shown as "..." - They're not
-        // clickable and they usually overwhelm the preview
-        intermediateText = intermediateText.replace("https?://\\S+".toRegex(), "...")
-        // Don't show newlines in the preview
-        intermediateText = intermediateText.replace('\n', ' ')
-        // Collapse whitespace in the preview
-        intermediateText = intermediateText.replace("\\s+".toRegex(), " ")
-        // Remove any whitespace at the beginning and end of the string.
-        intermediateText = intermediateText.trim()
-
-        return if (intermediateText.length > MAX_PREVIEW_LENGTH) {
-            intermediateText.substring(0, MAX_PREVIEW_LENGTH - 1) + "…"
-        } else {
-            intermediateText
-        }
+
+        return previewTextNormalizer.normalize(intermediateText)
+    }
+
+    private fun String.mayContainHtml(): Boolean {
+        return indexOf('<') != -1 || indexOf('&') != -1
     }
 
     private fun stripLineBasedArtifacts(text: String): String {
@@ -91,14 +73,6 @@ internal class PreviewTextExtractor {
         return text.replace(REGEX_HORIZONTAL_RULE, " ")
     }
 
-    private fun removeParsedHtmlUrls(text: String): String {
-        return text.replace(REGEX_PARSED_HTML_URL, " ")
-    }
-
-    private fun removeInvisibleFormattingCharacters(text: String): String {
-        return text.replace(REGEX_INVISIBLE_FORMATTING_CHARACTERS, "")
-    }
-
     private fun normalizeLineBreaks(text: String) = text.replace(REGEX_CRLF, "\n")
 
     private fun stripSignature(text: String): String {
@@ -171,8 +145,6 @@ internal class PreviewTextExtractor {
         private val REGEX_CRLF = "(\\r\\n|\\r)".toRegex()
         private val REGEX_DASH_LINE = "(?m)^-{4,}\\s*$".toRegex()
         private val REGEX_HORIZONTAL_RULE = "\\s*([-=_]{30,}+)\\s*".toRegex()
-        private val REGEX_PARSED_HTML_URL = "[(<]\\s?https?://\\S+[^)>]\\s?[>)]".toRegex()
-        private val REGEX_INVISIBLE_FORMATTING_CHARACTERS = "[\\u034F\\u200B-\\u200D\\uFEFF]".toRegex()
         private val REGEX_FORWARDED_MESSAGE_HEADER_BLOCK = (
             "(?im)^[\\t -]*Original Message[\\t -]*\\n" +
                 "(?:[\\t ]*[A-Za-z][A-Za-z-]*:.*\\n)+" +
@@ -0,0 +1,167 @@
+package com.fsck.k9.message.extractors
+
+private const val ELLIPSIS = "…"
+private const val URL_REPLACEMENT = "..."
+
+/**
+ * Turns the text that is left after removing quotes and signatures into the text displayed as preview.
+ *
+ * All rules are applied in a single pass over the input:
+ * - URLs in parentheses or angle brackets (added by [com.fsck.k9.message.html.HtmlConverter] for links) are removed.
+ * - Invisible formatting characters are removed.
+ * - Other URLs are replaced with "...". They're not clickable and they usually overwhelm the preview.
+ * - Line breaks and runs of whitespace are collapsed into a single space. Leading and trailing whitespace is removed.
+ *
+ * Processing stops as soon as more than [maxLength] characters have been produced. In that case the preview is cut
+ * off and ends with an ellipsis.
+ */
+internal class PreviewTextNormalizer(private val maxLength: Int) {
+    fun normalize(text: CharSequence): String {
+        val output = StringBuilder(minOf(text.length, maxLength + 1))
+        var whitespacePending = false
+
+        fun appendVisible(char: Char) {
+            if (whitespacePending && output.isNotEmpty()) {
+                output.append(' ')
+            }
+            whitespacePending = false
+            output.append(char)
+        }
+
+        var index = 0
+        while (index < text.length && output.length <= maxLength) {
+            val char = text[index]
+
+            val parsedHtmlUrlEnd = findParsedHtmlUrlEnd(text, index)
+            if (parsedHtmlUrlEnd != -1) {
+                whitespacePending = true
+                index = parsedHtmlUrlEnd
+                continue
+            }
+
+            val urlEnd = findUrlEnd(text, index)
+            if (urlEnd != -1) {
+                URL_REPLACEMENT.forEach { appendVisible(it) }
+                index = urlEnd
+                continue
+            }
+
+            when {
+                char.isPreviewWhitespace() -> whitespacePending = true
+                char.isInvisibleFormattingCharacter() -> Unit
+                output.isEmpty() && char.isWhitespace() -> Unit
+                else -> appendVisible(char)
+            }
+            index++
+        }
+
+        return if (output.length > maxLength) {
+            output.substring(0, maxLength - 1) + ELLIPSIS
+        } else {
+            output.trimEnd().toString()
+        }
+    }
+
+    /**
+     * Matches `[(<]\s?https?://\S+[^)>]\s?[>)]` at [start]. Returns the end index of the match or `-1`.
+     */
+    private fun findParsedHtmlUrlEnd(text: CharSequence, start: Int): Int {
+        val char = text[start]
+        if (char != '(' && char != '<') return -1
+
+        var index = start + 1
+        if (index < text.length && text[index].isPreviewWhitespace()) {
+            index++
+        }
+
+        val urlStart = matchScheme(text, index, skipInvisibleCharacters = false)
+        if (urlStart == -1) return -1
+
+        var runEnd = urlStart
+        while (runEnd < text.length && !text[runEnd].isPreviewWhitespace()) {
+            runEnd++
+        }
+
+        // Like the regular expression, prefer the longest match
+        for (lastUrlCharacterIndex in minOf(runEnd, text.lastIndex) downTo urlStart + 1) {
+            if (text[lastUrlCharacterIndex].isClosingBracket()) continue
+
+            val next = lastUrlCharacterIndex + 1
+            if (next + 1 < text.length && text[next].isPreviewWhitespace() && text[next + 1].isClosingBracket()) {
+                return next + 2
+            } else if (next < text.length && text[next].isClosingBracket()) {
+                return next + 1
+            }
+        }
+
+        return -1
+    }
+
+    /**
+     * Matches `https?://\S+` at [start], ignoring invisible formatting characters. Returns the end index of the match
+     * or `-1`.
+     *
+     * The URL ends before any URL in parentheses or angle brackets, since that is removed separately.
+     */
+    private fun findUrlEnd(text: CharSequence, start: Int): Int {
+        if (text[start] != 'h') return -1
+
+        val urlStart = matchScheme(text, start, skipInvisibleCharacters = true)
+        if (urlStart == -1) return -1
+
+        val firstUrlCharacterIndex = skipInvisibleCharacters(text, urlStart)
+        if (firstUrlCharacterIndex == text.length || text[firstUrlCharacterIndex].isPreviewWhitespace()) return -1
+
+        var index = firstUrlCharacterIndex
+        while (index < text.length && !text[index].isPreviewWhitespace() && findParsedHtmlUrlEnd(text, index) == -1) {
+            index++
+        }
+
+        return index
+    }
+
+    private fun matchScheme(text: CharSequence, start: Int, skipInvisibleCharacters: Boolean): Int {
+        var index = start
+
+        fun matchChar(expected: Char): Boolean {
+            if (skipInvisibleCharacters) {
+                index = skipInvisibleCharacters(text, index)
+            }
+
+            return if (index < text.length && text[index] == expected) {
+                index++
+                true
+            } else {
+                false
+            }
+        }
+
+        if (!"http".all { matchChar(it) }) return -1
+        matchChar('s')
+        if (!"://".all { matchChar(it) }) return -1
+
+        return index
+    }
+
+    private fun skipInvisibleCharacters(text: CharSequence, start: Int): Int {
+        var index = start
+        while (index < text.length && text[index].isInvisibleFormattingCharacter()) {
+            index++
+        }
+
+        return index
+    }
+
+    private fun Char.isClosingBracket() = this == ')' || this == '>'
+
+    // Matches `\s`. Non-breaking spaces and object replacement characters are treated like HtmlConverter.htmlToText()
+    // does: they become spaces.
+    private fun Char.isPreviewWhitespace(): Boolean {
+        return this == ' ' || this == '\n' || this == '\t' || this == '\r' || this == '\u000B' || this == '\u000C' ||
+            this == '\u00A0' || this == '\uFFFC'
+    }
+
+    private fun Char.isInvisibleFormattingCharacter(): Boolean {
+        return this == '\u034F' || this in '\u200B'..'\u200D' || this == '\uFEFF'
+    }
+}
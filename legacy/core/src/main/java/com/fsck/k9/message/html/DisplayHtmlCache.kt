@@ -0,0 +1,136 @@
+package com.fsck.k9.message.html
+
+import android.util.LruCache
+import app.k9mail.html.cleaner.HtmlProcessor
+import java.io.File
+import java.io.IOException
+import net.thunderbird.legacy.logging.Log
+import okio.Buffer
+
+private const val DEFAULT_MAX_MEMORY_CACHE_SIZE = 2 * 1024 * 1024
+private const val DEFAULT_MAX_DISK_CACHE_SIZE = 20L * 1024 * 1024
+private const val TEMP_FILE_SUFFIX = ".tmp"
+
+/**
+ * Caches the output of [HtmlProcessor.processForDisplay] in memory and on disk.
+ *
+ * Entries are keyed by a hash of the app version, [HtmlProcessor.configurationKey], and the unprocessed HTML. A message
+ * that changed, different display settings, or an app update (that might come with a different sanitizer) result in a
+ * different key, so a stale entry is never returned. Unused entries are evicted once the cache exceeds its size limit.
+ *
+ * Only entries that belong to a message are written to disk. They are stored per account and message, so they can be
+ * removed when the message or account is deleted.
+ */
+class DisplayHtmlCache(
+    private val cacheDirectory: File,
+    private val appVersion: String,
+    maxMemoryCacheSize: Int = DEFAULT_MAX_MEMORY_CACHE_SIZE,
+    private val maxDiskCacheSize: Long = DEFAULT_MAX_DISK_CACHE_SIZE,
+) {
+    private val memoryCache = object : LruCache<String, String>(maxMemoryCacheSize) {
+        override fun sizeOf(key: String, value: String): Int = value.length
+    }
+
+    private val diskLock = Any()
+
+    /**
+     * Returns the processed version of [html].
+     *
+     * @param owner The message the HTML belongs to. Pass `null` for content that must not be written to disk, e.g.
+     *   decrypted message parts.
+     */
+    fun processForDisplay(htmlProcessor: HtmlProcessor, html: String, owner: Owner?): String {
+        val key = createKey(htmlProcessor.configurationKey, html)
+
+        memoryCache.get(key)?.let { processedHtml ->
+            return processedHtml
+        }
+
+        val file = owner?.let { getMessageDirectory(it.accountUuid, it.messageId).resolve(key) }
+        val processedHtml = file?.let { readFromDisk(it) }
+            ?: htmlProcessor.processForDisplay(html).also { processedHtml ->
+                if (file != null) writeToDisk(file, processedHtml)
+            }
+        memoryCache.put(key, processedHtml)
+
+        return processedHtml
+    }
+
+    fun removeMessages(accountUuid: String, messageIds: Collection<Long>) = synchronized(diskLock) {
+        for (messageId in messageIds) {
+            getMessageDirectory(accountUuid, messageId).deleteRecursively()
+        }
+    }
+
+    fun removeAccount(accountUuid: String) = synchronized(diskLock) {
+        File(cacheDirectory, accountUuid).deleteRecursively()
+    }
+
+    private fun getMessageDirectory(accountUuid: String, messageId: Long): File {
+        return File(File(cacheDirectory, accountUuid), messageId.toString())
+    }
+
+    private fun createKey(configurationKey: String, html: String): String {
+        return Buffer()
+            .writeUtf8(appVersion)
+            .writeByte(0)
+            .writeUtf8(configurationKey)
+            .writeByte(0)
+            .writeUtf8(html)
+            .sha256()
+            .hex()
+    }
+
+    private fun readFromDisk(file: File): String? = synchronized(diskLock) {
+        if (!file.exists()) return null
+
+        return try {
+            file.readText().also {
+                // Used to find the least recently used entries when trimming the cache
+                file.setLastModified(System.currentTimeMillis())
+            }
+        } catch (e: IOException) {
+            Log.w(e, "Error reading cached HTML")
+            null
+        }
+    }
+
+    private fun writeToDisk(file: File, processedHtml: String) = synchronized(diskLock) {
+        val directory = file.parentFile!!
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w("Error creating directory: %s", directory.absolutePath)
+            return
+        }
+
+        val tempFile = File(directory, file.name + TEMP_FILE_SUFFIX)
+        try {
+            tempFile.writeText(processedHtml)
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            Log.w(e, "Error writing cached HTML")
+            tempFile.delete()
+        }
+
+        trimDiskCache()
+    }
+
+    private fun trimDiskCache() {
+        val files = cacheDirectory.walk().filter { it.isFile }.toList()
+
+        var totalSize = files.sumOf { it.length() }
+        if (totalSize <= maxDiskCacheSize) return
+
+        for (file in files.sortedBy { it.lastModified() }) {
+            val fileSize = file.length()
+            if (file.delete()) {
+                totalSize -= fileSize
+                file.parentFile?.delete()
+                if (totalSize <= maxDiskCacheSize) break
+            }
+        }
+    }
+
+    data class Owner(val accountUuid: String, val messageId: Long)
+}
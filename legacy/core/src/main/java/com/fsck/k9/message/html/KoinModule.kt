@@ -1,6 +1,9 @@
 package com.fsck.k9.message.html
 
+import android.content.Context
+import java.io.File
 import net.thunderbird.core.common.inject.getList
+import net.thunderbird.core.common.provider.AppVersionProvider
 import org.koin.dsl.module
 
 val htmlModule = module {
@@ -17,4 +20,12 @@ val htmlModule = module {
             cssStyleProviders = getList(),
         )
     }
+    single {
+        DisplayHtmlCache(
+            cacheDirectory = File(get<Context>().cacheDir, DISPLAY_HTML_CACHE_DIRECTORY),
+            appVersion = get<AppVersionProvider>().getVersionNumber(),
+        )
+    }
 }
+
+private const val DISPLAY_HTML_CACHE_DIRECTORY = "display_html"
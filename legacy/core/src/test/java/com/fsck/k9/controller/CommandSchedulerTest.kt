@@ -0,0 +1,194 @@
+package com.fsck.k9.controller
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.ExperimentalTime
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.core.testing.TestClock
+import net.thunderbird.legacy.logging.Log
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+private const val TIMEOUT_SECONDS = 5L
+
+@OptIn(ExperimentalTime::class)
+class CommandSchedulerTest {
+    private val clock = TestClock()
+    private val threadFactory = ThreadFactory { runnable -> Thread(runnable) }
+    private lateinit var commandScheduler: CommandScheduler
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @After
+    fun tearDown() {
+        commandScheduler.stop(1000L)
+    }
+
+    @Test
+    fun `commands of the same lane should run in order`() {
+        commandScheduler = CommandScheduler(threadCount = 3, threadFactory, clock)
+        val executedCommands = Collections.synchronizedList(mutableListOf<Int>())
+        val latch = CountDownLatch(10)
+
+        repeat(10) { index ->
+            commandScheduler.enqueue("account1", "command$index", isForeground = false) {
+                executedCommands.add(index)
+                latch.countDown()
+            }
+        }
+
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        assertThat(executedCommands).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)
+    }
+
+    @Test
+    fun `foreground commands should run before background commands of the same lane`() {
+        commandScheduler = CommandScheduler(threadCount = 1, threadFactory, clock)
+        val executedCommands = Collections.synchronizedList(mutableListOf<String>())
+        val blockingCommandStarted = CountDownLatch(1)
+        val unblock = CountDownLatch(1)
+        val latch = CountDownLatch(4)
+
+        commandScheduler.enqueue("account1", "blocking", isForeground = false) {
+            blockingCommandStarted.countDown()
+            unblock.await()
+            latch.countDown()
+        }
+        assertThat(blockingCommandStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+
+        commandScheduler.enqueue("account1", "background", isForeground = false) {
+            executedCommands.add("background")
+            latch.countDown()
+        }
+        commandScheduler.enqueue("account1", "foreground1", isForeground = true) {
+            executedCommands.add("foreground1")
+            latch.countDown()
+        }
+        commandScheduler.enqueue("account1", "foreground2", isForeground = true) {
+            executedCommands.add("foreground2")
+            latch.countDown()
+        }
+        unblock.countDown()
+
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        assertThat(executedCommands).containsExactly("foreground1", "foreground2", "background")
+    }
+
+    @Test
+    fun `blocked lane should not stall other lanes`() {
+        commandScheduler = CommandScheduler(threadCount = 2, threadFactory, clock)
+        val unblock = CountDownLatch(1)
+        val otherLaneCommandExecuted = CountDownLatch(1)
+        var sameLaneCommandExecuted = false
+
+        commandScheduler.enqueue("account1", "slow", isForeground = false) {
+            unblock.await()
+        }
+        commandScheduler.enqueue("account1", "waiting", isForeground = true) {
+            sameLaneCommandExecuted = true
+        }
+        commandScheduler.enqueue("account2", "fast", isForeground = false) {
+            otherLaneCommandExecuted.countDown()
+        }
+
+        try {
+            assertThat(otherLaneCommandExecuted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+            assertThat(sameLaneCommandExecuted).isFalse()
+        } finally {
+            unblock.countDown()
+        }
+    }
+
+    @Test
+    fun `lane statistics should contain queue depth and wait times`() {
+        commandScheduler = CommandScheduler(threadCount = 1, threadFactory, clock)
+        val blockingCommandStarted = CountDownLatch(1)
+        val unblock = CountDownLatch(1)
+        val waitingCommandStarted = CountDownLatch(1)
+        val unblockWaitingCommand = CountDownLatch(1)
+
+        commandScheduler.enqueue("account1", "blocking", isForeground = false) {
+            blockingCommandStarted.countDown()
+            unblock.await()
+        }
+        assertThat(blockingCommandStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        commandScheduler.enqueue("account1", "waiting", isForeground = false) {
+            waitingCommandStarted.countDown()
+            unblockWaitingCommand.await()
+        }
+
+        assertThat(commandScheduler.getLaneStatistics()["account1"]).isEqualTo(
+            LaneStatistics(
+                queueDepth = 1,
+                isRunning = true,
+                startedCommands = 1,
+                averageWaitTimeMillis = 0,
+                maxWaitTimeMillis = 0,
+            ),
+        )
+
+        clock.advanceTimeBy(100.milliseconds)
+        unblock.countDown()
+        assertThat(waitingCommandStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+
+        try {
+            val statistics = commandScheduler.getLaneStatistics().getValue("account1")
+            assertThat(statistics.queueDepth).isEqualTo(0)
+            assertThat(statistics.startedCommands).isEqualTo(2)
+            assertThat(statistics.averageWaitTimeMillis).isEqualTo(50)
+            assertThat(statistics.maxWaitTimeMillis).isEqualTo(100)
+        } finally {
+            unblockWaitingCommand.countDown()
+        }
+    }
+
+    @Test
+    fun `idle lane should be removed`() {
+        commandScheduler = CommandScheduler(threadCount = 1, threadFactory, clock)
+        val done = CountDownLatch(1)
+
+        commandScheduler.enqueue("account1", "command", isForeground = false) {
+            done.countDown()
+        }
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+
+        assertThat(awaitCondition { commandScheduler.getLaneStatistics().isEmpty() }).isTrue()
+    }
+
+    @Test
+    fun `command throwing an error should not stop the worker thread`() {
+        commandScheduler = CommandScheduler(threadCount = 1, threadFactory, clock)
+        val done = CountDownLatch(1)
+
+        commandScheduler.enqueue("account1", "failing", isForeground = false) {
+            throw AssertionError("failure")
+        }
+        commandScheduler.enqueue("account2", "next", isForeground = false) {
+            done.countDown()
+        }
+
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+    }
+
+    private fun awaitCondition(condition: () -> Boolean): Boolean {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS)
+        while (!condition()) {
+            if (System.nanoTime() > deadline) return false
+            Thread.sleep(10)
+        }
+
+        return true
+    }
+}
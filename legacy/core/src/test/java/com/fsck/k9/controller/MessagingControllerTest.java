@@ -2,6 +2,7 @@ package com.fsck.k9.controller;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -11,11 +12,15 @@ import net.thunderbird.core.android.account.LegacyAccountDto;
 import net.thunderbird.core.featureflag.FeatureFlagProvider;
 import net.thunderbird.core.featureflag.FeatureFlagResult.Disabled;
 import app.k9mail.legacy.message.controller.SimpleMessagingListener;
+import app.k9mail.legacy.mailstore.MessageStore;
 import com.fsck.k9.K9;
 import com.fsck.k9.K9RobolectricTest;
 import com.fsck.k9.Preferences;
 import com.fsck.k9.backend.BackendManager;
 import com.fsck.k9.backend.api.Backend;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag;
 import com.fsck.k9.mail.AuthType;
 import com.fsck.k9.mail.AuthenticationFailedException;
 import com.fsck.k9.mail.CertificateChainException;
@@ -61,6 +66,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.shadows.ShadowLog;
 
 import static java.util.Collections.emptyList;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.ArgumentMatchers.eq;
@@ -199,6 +205,74 @@ public class MessagingControllerTest extends K9RobolectricTest {
         verify(backend).refreshFolderList();
     }
 
+    @Test
+    public void processPendingCommandsSynchronous_withPermanentFailure_shouldExecuteRemainingCommandsOfBatch()
+            throws Exception {
+        List<PendingCommand> commands = Arrays.asList(
+                PendingSetFlag.create(FOLDER_ID, true, Flag.SEEN, Collections.singletonList("1")),
+                PendingDelete.create(FOLDER_ID, Collections.singletonList("2"))
+        );
+        when(localStore.getPendingCommands()).thenReturn(commands);
+        MessageStore messageStore = mock(MessageStore.class);
+        when(messageStore.getFolderServerId(FOLDER_ID)).thenReturn(FOLDER_NAME);
+        when(messageStoreManager.getMessageStore(account)).thenReturn(messageStore);
+        doThrow(new MessagingException("Permanent failure", true))
+                .when(backend).setFlag(FOLDER_NAME, Collections.singletonList("1"), Flag.SEEN, true);
+
+        controller.processPendingCommandsSynchronous(account);
+
+        verify(backend).deleteMessages(FOLDER_NAME, Collections.singletonList("2"));
+        verify(localStore).removePendingCommands(commands);
+    }
+
+    @Test
+    public void processPendingCommandsSynchronous_withTemporaryFailure_shouldKeepCommandsOfBatch() throws Exception {
+        List<PendingCommand> commands = Arrays.asList(
+                PendingSetFlag.create(FOLDER_ID, true, Flag.SEEN, Collections.singletonList("1")),
+                PendingDelete.create(FOLDER_ID, Collections.singletonList("2"))
+        );
+        when(localStore.getPendingCommands()).thenReturn(commands);
+        MessageStore messageStore = mock(MessageStore.class);
+        when(messageStore.getFolderServerId(FOLDER_ID)).thenReturn(FOLDER_NAME);
+        when(messageStoreManager.getMessageStore(account)).thenReturn(messageStore);
+        doThrow(new MessagingException("Temporary failure"))
+                .when(backend).setFlag(FOLDER_NAME, Collections.singletonList("1"), Flag.SEEN, true);
+
+        try {
+            controller.processPendingCommandsSynchronous(account);
+            fail("Expected exception");
+        } catch (MessagingException expected) {
+            // The batch will be retried the next time pending commands are processed
+        }
+
+        verify(backend, never()).deleteMessages(anyString(), ArgumentMatchers.<String>anyList());
+        verify(localStore, never()).removePendingCommands(ArgumentMatchers.<PendingCommand>anyList());
+    }
+
+    @Test
+    public void processPendingCommandsSynchronous_withUnexpectedException_shouldRemoveCommandsOfBatch()
+            throws Exception {
+        List<PendingCommand> commands = Arrays.asList(
+                PendingSetFlag.create(FOLDER_ID, true, Flag.SEEN, Collections.singletonList("1")),
+                PendingDelete.create(FOLDER_ID, Collections.singletonList("2"))
+        );
+        when(localStore.getPendingCommands()).thenReturn(commands);
+        MessageStore messageStore = mock(MessageStore.class);
+        when(messageStore.getFolderServerId(FOLDER_ID)).thenReturn(FOLDER_NAME);
+        when(messageStoreManager.getMessageStore(account)).thenReturn(messageStore);
+        doThrow(new IllegalStateException("Unexpected failure"))
+                .when(backend).setFlag(FOLDER_NAME, Collections.singletonList("1"), Flag.SEEN, true);
+
+        try {
+            controller.processPendingCommandsSynchronous(account);
+        } catch (AssertionError expected) {
+            // Only thrown in debug builds
+        }
+
+        verify(backend).deleteMessages(FOLDER_NAME, Collections.singletonList("2"));
+        verify(localStore).removePendingCommands(commands);
+    }
+
     private void setupRemoteSearch() throws Exception {
         remoteMessages = new ArrayList<>();
         Collections.addAll(remoteMessages, "oldMessageUid", "newMessageUid1", "newMessageUid2");
@@ -346,6 +420,28 @@ public class MessagingControllerTest extends K9RobolectricTest {
         verify(backend).sendMessage(localMessageToSend1);
     }
 
+    @Test
+    public void sendPendingMessagesSynchronous_shouldSendMessageWithinSendSession() throws MessagingException {
+        setupAccountWithMessageToSend();
+
+        controller.sendPendingMessagesSynchronous(account);
+
+        InOrder inOrder = inOrder(backend);
+        inOrder.verify(backend).beginSendSession();
+        inOrder.verify(backend).sendMessage(localMessageToSend1);
+        inOrder.verify(backend).endSendSession();
+    }
+
+    @Test
+    public void sendPendingMessagesSynchronous_withSendFailure_shouldEndSendSession() throws MessagingException {
+        setupAccountWithMessageToSend();
+        doThrow(new MessagingException("Test")).when(backend).sendMessage(localMessageToSend1);
+
+        controller.sendPendingMessagesSynchronous(account);
+
+        verify(backend).endSendSession();
+    }
+
     @Test
     public void sendPendingMessagesSynchronous_shouldSetAndRemoveSendInProgressFlag() throws MessagingException {
         setupAccountWithMessageToSend();
@@ -0,0 +1,164 @@
+package com.fsck.k9.controller
+
+import assertk.Assert
+import assertk.all
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasSize
+import assertk.assertions.index
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.prop
+import com.fsck.k9.K9RobolectricTest
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete
+import com.fsck.k9.controller.MessagingControllerCommands.PendingExpunge
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMarkAllAsRead
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag
+import net.thunderbird.core.common.mail.Flag
+import org.junit.Test
+
+private const val FOLDER_ID = 1L
+private const val OTHER_FOLDER_ID = 2L
+
+class PendingCommandCoalescerTest : K9RobolectricTest() {
+    @Test
+    fun `single command should be returned as is`() {
+        val command = setFlag(Flag.SEEN, true, "1")
+
+        val batches = PendingCommandCoalescer.coalesce(listOf(command))
+
+        assertThat(batches).containsExactly(PendingCommandBatch(command))
+    }
+
+    @Test
+    fun `flag changes with the same flag and state should be combined`() {
+        val commands = listOf(
+            setFlag(Flag.SEEN, true, "1"),
+            setFlag(Flag.SEEN, true, "2", "3"),
+            setFlag(Flag.FLAGGED, true, "1"),
+        )
+
+        val batches = PendingCommandCoalescer.coalesce(commands)
+
+        assertThat(batches).hasSize(1)
+        assertThat(batches.single()).all {
+            prop(PendingCommandBatch::sourceCommands).isEqualTo(commands)
+            prop(PendingCommandBatch::commands).all {
+                hasSize(2)
+                index(0).isSetFlag(FOLDER_ID, Flag.SEEN, true, "1", "2", "3")
+                index(1).isSetFlag(FOLDER_ID, Flag.FLAGGED, true, "1")
+            }
+        }
+    }
+
+    @Test
+    fun `superseded flag changes should be dropped`() {
+        val commands = listOf(
+            setFlag(Flag.SEEN, true, "1", "2"),
+            setFlag(Flag.SEEN, false, "1"),
+            setFlag(Flag.SEEN, true, "1"),
+            setFlag(Flag.SEEN, false, "2"),
+        )
+
+        val batches = PendingCommandCoalescer.coalesce(commands)
+
+        assertThat(batches.single()).all {
+            prop(PendingCommandBatch::sourceCommands).isEqualTo(commands)
+            prop(PendingCommandBatch::commands).all {
+                hasSize(2)
+                index(0).isSetFlag(FOLDER_ID, Flag.SEEN, true, "1")
+                index(1).isSetFlag(FOLDER_ID, Flag.SEEN, false, "2")
+            }
+        }
+    }
+
+    @Test
+    fun `deletions should be combined and executed after flag changes`() {
+        val commands = listOf(
+            delete("1"),
+            setFlag(Flag.SEEN, true, "2"),
+            delete("2", "3"),
+        )
+
+        val batches = PendingCommandCoalescer.coalesce(commands)
+
+        assertThat(batches.single()).prop(PendingCommandBatch::commands).all {
+            hasSize(2)
+            index(0).isSetFlag(FOLDER_ID, Flag.SEEN, true, "2")
+            index(1).isInstanceOf<PendingDelete>().all {
+                prop(PendingDelete::folderId).isEqualTo(FOLDER_ID)
+                prop(PendingDelete::uids).containsExactly("1", "2", "3")
+            }
+        }
+    }
+
+    @Test
+    fun `commands for different folders should end up in separate batches`() {
+        val command1 = setFlag(Flag.SEEN, true, "1")
+        val command2 = setFlag(Flag.SEEN, true, "1", folderId = OTHER_FOLDER_ID)
+
+        val batches = PendingCommandCoalescer.coalesce(listOf(command1, command2))
+
+        assertThat(batches).containsExactly(
+            PendingCommandBatch(command1),
+            PendingCommandBatch(command2),
+        )
+    }
+
+    @Test
+    fun `commands should not be combined across other commands`() {
+        val command1 = setFlag(Flag.SEEN, true, "1")
+        val command2 = PendingMarkAllAsRead.create(FOLDER_ID)
+        val command3 = setFlag(Flag.SEEN, false, "1")
+
+        val batches = PendingCommandCoalescer.coalesce(listOf(command1, command2, command3))
+
+        assertThat(batches).containsExactly(
+            PendingCommandBatch(command1),
+            PendingCommandBatch(command2),
+            PendingCommandBatch(command3),
+        )
+    }
+
+    @Test
+    fun `consecutive expunge commands for the same folder should be reduced to one`() {
+        val delete1 = delete("1")
+        val expunge1 = PendingExpunge.create(FOLDER_ID)
+        val expunge2 = PendingExpunge.create(FOLDER_ID)
+        val expunge3 = PendingExpunge.create(OTHER_FOLDER_ID)
+        val delete2 = delete("2")
+        val expunge4 = PendingExpunge.create(FOLDER_ID)
+
+        val batches = PendingCommandCoalescer.coalesce(
+            listOf(delete1, expunge1, expunge2, expunge3, delete2, expunge4),
+        )
+
+        assertThat(batches).containsExactly(
+            PendingCommandBatch(delete1),
+            PendingCommandBatch(commands = listOf(expunge1), sourceCommands = listOf(expunge1, expunge2)),
+            PendingCommandBatch(expunge3),
+            PendingCommandBatch(delete2),
+            PendingCommandBatch(expunge4),
+        )
+    }
+
+    private fun setFlag(flag: Flag, newState: Boolean, vararg uids: String, folderId: Long = FOLDER_ID) =
+        PendingSetFlag.create(folderId, newState, flag, uids.toList())
+
+    private fun delete(vararg uids: String) = PendingDelete.create(FOLDER_ID, uids.toList())
+
+    private fun Assert<PendingCommand>.isSetFlag(
+        folderId: Long,
+        flag: Flag,
+        newState: Boolean,
+        vararg uids: String,
+    ) {
+        isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::folderId).isEqualTo(folderId)
+            prop(PendingSetFlag::flag).isEqualTo(flag)
+            prop(PendingSetFlag::newState).isEqualTo(newState)
+            prop(PendingSetFlag::uids).containsExactly(*uids)
+        }
+    }
+}
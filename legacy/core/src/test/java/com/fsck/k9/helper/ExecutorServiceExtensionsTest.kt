@@ -0,0 +1,32 @@
+package com.fsck.k9.helper
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isInstanceOf
+import java.util.concurrent.Executors
+import org.junit.After
+import org.junit.Test
+
+class ExecutorServiceExtensionsTest {
+    private val executor = Executors.newFixedThreadPool(2)
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun `mapInParallel() should return results in original order`() {
+        val result = executor.mapInParallel(listOf(3, 1, 2)) { it * 10 }
+
+        assertThat(result).containsExactly(30, 10, 20)
+    }
+
+    @Test
+    fun `mapInParallel() should rethrow exception thrown by transform`() {
+        assertFailure {
+            executor.mapInParallel(listOf(1, 2)) { if (it == 2) throw IllegalStateException() else it }
+        }.isInstanceOf<IllegalStateException>()
+    }
+}
@@ -97,6 +97,31 @@ class K9BackendFolderTest : K9RobolectricTest() {
             .hasMessage("Message requires a server ID to be set")
     }
 
+    @Test
+    fun saveMessages() {
+        val messages = listOf(
+            createMessage(messageServerId = "msg001"),
+            createMessage(messageServerId = "msg002"),
+        )
+
+        backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+
+        assertThat(backendFolder.getMessageServerIds()).isEqualTo(setOf("msg001", "msg002"))
+    }
+
+    @Test
+    fun saveMessages_withoutServerId_shouldThrow() {
+        val messages = listOf(
+            createMessage(messageServerId = "msg001"),
+            createMessage(messageServerId = null),
+        )
+
+        assertFailure {
+            backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+        }.isInstanceOf<IllegalStateException>()
+            .hasMessage("Message requires a server ID to be set")
+    }
+
     fun createAccount(): LegacyAccountDto {
         // FIXME: This is a hack to get Preferences into a state where it's safe to call newAccount()
         preferences.clearAccounts()
@@ -2,6 +2,7 @@ package com.fsck.k9.mailstore
 
 import app.k9mail.legacy.mailstore.ListenableMessageStore
 import app.k9mail.legacy.mailstore.MessageDetailsAccessor
+import app.k9mail.legacy.mailstore.MessageListChange
 import app.k9mail.legacy.mailstore.MessageListChangedListener
 import app.k9mail.legacy.mailstore.MessageListRepository
 import app.k9mail.legacy.mailstore.MessageMapper
@@ -20,6 +21,7 @@ import org.koin.core.context.startKoin
 import org.koin.core.context.stopKoin
 import org.koin.dsl.module
 import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
 import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.eq
@@ -96,6 +98,36 @@ class MessageListRepositoryTest {
         assertThat(messageListChanged).isEqualTo(0)
     }
 
+    @Test
+    fun `listener should receive description of change`() {
+        val changes = mutableListOf<MessageListChange>()
+        val listener = object : MessageListChangedListener {
+            override fun onMessageListChanged() = Unit
+
+            override fun onMessageListChanged(accountUuid: String, change: MessageListChange) {
+                changes.add(change)
+            }
+        }
+        messageListRepository.addListener(accountUuid, listener)
+
+        messageListRepository.notifyMessageListChanged(accountUuid, MessageListChange.FlagsChanged(setOf(MESSAGE_ID)))
+        messageListRepository.notifyMessageListChanged(accountUuid)
+
+        assertThat(changes).containsExactly(
+            MessageListChange.FlagsChanged(setOf(MESSAGE_ID)),
+            MessageListChange.Unknown,
+        )
+    }
+
+    @Test
+    fun `notifyMessageListChanged() without any listeners should not create change`() {
+        messageListRepository.addListener("otherAccountUuid", mock())
+
+        messageListRepository.notifyMessageListChanged(accountUuid) {
+            error("Change should not be created")
+        }
+    }
+
     @Test
     fun `notifyMessageListChanged() without any listeners should not throw`() {
         messageListRepository.notifyMessageListChanged(accountUuid)
@@ -360,8 +392,10 @@ class MessageListRepositoryTest {
 
     private fun addMessages(vararg messages: MessageData) {
         messageStore.stub {
-            on { getMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), any()) } doAnswer {
-                val mapper: MessageMapper<Any?> = it.getArgument(3)
+            on {
+                getMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), anyOrNull(), any())
+            } doAnswer {
+                val mapper: MessageMapper<Any?> = it.getArgument(4)
 
                 runMessageMapper(messages, mapper)
             }
@@ -370,8 +404,10 @@ class MessageListRepositoryTest {
 
     private fun addThreadedMessages(vararg messages: MessageData) {
         messageStore.stub {
-            on { getThreadedMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), any()) } doAnswer {
-                val mapper: MessageMapper<Any?> = it.getArgument(3)
+            on {
+                getThreadedMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), anyOrNull(), any())
+            } doAnswer {
+                val mapper: MessageMapper<Any?> = it.getArgument(4)
 
                 runMessageMapper(messages, mapper)
             }
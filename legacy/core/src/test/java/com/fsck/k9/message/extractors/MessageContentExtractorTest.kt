@@ -0,0 +1,99 @@
+package com.fsck.k9.message.extractors
+
+import app.k9mail.legacy.message.extractors.PreviewResult.PreviewType
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import com.fsck.k9.message.MessageCreationHelper.createMessage
+import com.fsck.k9.message.MessageCreationHelper.createMultipartMessage
+import com.fsck.k9.message.MessageCreationHelper.createPart
+import com.fsck.k9.message.MessageCreationHelper.createTextMessage
+import com.fsck.k9.message.MessageCreationHelper.createTextPart
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doThrow
+import org.mockito.kotlin.mock
+
+class MessageContentExtractorTest {
+    private val messageContentExtractor = MessageContentExtractor.newInstance()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `text_plain message`() {
+        val message = createTextMessage("text/plain", "Hello world\r\n\r\n-- \r\nSignature")
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewType).isEqualTo(PreviewType.TEXT)
+        assertThat(result.previewResult.previewText).isEqualTo("Hello world")
+        assertThat(result.textForSearchIndex).isEqualTo("Hello world\r\n\r\n-- \r\nSignature")
+        assertThat(result.attachmentCount).isEqualTo(0)
+    }
+
+    @Test
+    fun `text_html message`() {
+        val message = createTextMessage("text/html", "<html><body>Hello <b>world</b></body></html>")
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewText).isEqualTo("Hello world")
+        assertThat(result.textForSearchIndex).isEqualTo("Hello world")
+    }
+
+    @Test
+    fun `message without text part`() {
+        val message = createMultipartMessage("multipart/mixed", createPart("image/jpeg"))
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewType).isEqualTo(PreviewType.NONE)
+        assertThat(result.textForSearchIndex).isNull()
+        assertThat(result.attachmentCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `message with text part and attachment`() {
+        val message = createMultipartMessage(
+            "multipart/mixed",
+            createTextPart("text/plain", "Text"),
+            createPart("application/pdf"),
+        )
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewText).isEqualTo("Text")
+        assertThat(result.textForSearchIndex).isEqualTo("Text")
+        assertThat(result.attachmentCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `message with empty text part`() {
+        val message = createMessage("text/plain")
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewType).isEqualTo(PreviewType.NONE)
+        assertThat(result.textForSearchIndex).isNull()
+    }
+
+    @Test
+    fun `preview extraction throwing unexpected exception`() {
+        val previewTextExtractor = mock<PreviewTextExtractor> {
+            on { extractPreviewFromText(any(), any()) } doThrow IllegalStateException()
+        }
+        val messageContentExtractor = MessageContentExtractor(TextPartFinder(), previewTextExtractor, AttachmentCounter())
+        val message = createTextMessage("text/plain", "Text")
+
+        val result = messageContentExtractor.extractContent(message)
+
+        assertThat(result.previewResult.previewType).isEqualTo(PreviewType.ERROR)
+        assertThat(result.textForSearchIndex).isEqualTo("Text")
+    }
+}
@@ -2,8 +2,7 @@ package com.fsck.k9.message.extractors
 
 import assertk.assertThat
 import assertk.assertions.isEqualTo
-import com.fsck.k9.mail.internet.MimeBodyPart
-import com.fsck.k9.message.MessageCreationHelper
+import com.fsck.k9.message.html.HtmlConverter
 import net.thunderbird.legacy.logging.Log
 import net.thunderbird.core.logging.testing.TestLogger
 import org.junit.Before
@@ -17,35 +16,29 @@ class PreviewTextExtractorTest {
         Log.logger = TestLogger()
     }
 
-    @Test(expected = PreviewExtractionException::class)
-    fun extractPreview_withEmptyBody_shouldThrow() {
-        val part = MimeBodyPart(null, "text/plain")
-
-        previewTextExtractor.extractPreview(part)
-    }
-
     @Test
-    fun extractPreview_withSimpleTextPlain() {
+    fun extractPreviewFromText_withSimpleTextPlain() {
         val text = "The quick brown fox jumps over the lazy dog"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo(text)
     }
 
     @Test
-    fun extractPreview_withSimpleTextHtml() {
+    fun extractPreviewFromText_withSimpleTextHtml() {
         val text = "<b>The quick brown fox jumps over the lazy dog</b>"
-        val part = MessageCreationHelper.createTextPart("text/html", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(
+            HtmlConverter.htmlToText(text),
+            isHtmlConvertedText = true,
+        )
 
         assertThat(preview).isEqualTo("The quick brown fox jumps over the lazy dog")
     }
 
     @Test
-    fun extractPreview_withLongTextPlain() {
+    fun extractPreviewFromText_withLongTextPlain() {
         val text = "" +
             "10--------20--------30--------40--------50--------" +
             "60--------70--------80--------90--------100-------" +
@@ -58,45 +51,42 @@ class PreviewTextExtractorTest {
             "410-------420-------430-------440-------450-------" +
             "460-------470-------480-------490-------500-------" +
             "510-------520-------"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo(text.substring(0, 511) + "…")
     }
 
     @Test
-    fun extractPreview_shouldStripSignature() {
+    fun extractPreviewFromText_shouldStripSignature() {
         val text =
             """
             |Some text
             |$SIGNATURE_DELIMITER
             |Signature
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Some text")
     }
 
     @Test
-    fun extractPreview_shouldStripHorizontalLine() {
+    fun extractPreviewFromText_shouldStripHorizontalLine() {
         val text =
             """
             |line 1
             |----
             |line 2
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("line 1 line 2")
     }
 
     @Test
-    fun extractPreview_shouldStripQuoteHeaderAndQuotedText() {
+    fun extractPreviewFromText_shouldStripQuoteHeaderAndQuotedText() {
         val text =
             """
             |some text
@@ -105,15 +95,14 @@ class PreviewTextExtractorTest {
             |> some quoted text
             |> some other quoted text
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("some text")
     }
 
     @Test
-    fun extractPreview_shouldStripGenericQuoteHeader() {
+    fun extractPreviewFromText_shouldStripGenericQuoteHeader() {
         val text =
             """
             |Am 13.12.2015 um 23:42 schrieb Hans:
@@ -121,109 +110,99 @@ class PreviewTextExtractorTest {
             |hi there
             |
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("hi there")
     }
 
     @Test
-    fun extractPreview_shouldStripHorizontalRules() {
+    fun extractPreviewFromText_shouldStripHorizontalRules() {
         val text =
             """
             |line 1------------------------------
             |line 2
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("line 1 line 2")
     }
 
     @Test
-    fun extractPreview_shouldReplaceUrl() {
+    fun extractPreviewFromText_shouldReplaceUrl() {
         val text = "some url: https://thunderbird.net/"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("some url: ...")
     }
 
     @Test
-    fun extractPreview_withTextPlain_shouldParseHtml() {
+    fun extractPreviewFromText_withTextPlain_shouldParseHtml() {
         val text = "some <b>HTML</b> text"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("some HTML text")
     }
 
     @Test
-    fun extractPreview_withTextPlainContainingAngleBracketContent_shouldTreatItAsHtml() {
+    fun extractPreviewFromText_withTextPlainContainingAngleBracketContent_shouldTreatItAsHtml() {
         val text = "Contact Alice <alice@example.com>"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Contact Alice")
     }
 
     @Test
-    fun extractPreview_withTextPlain_shouldDecodeHtmlEntities() {
+    fun extractPreviewFromText_withTextPlain_shouldDecodeHtmlEntities() {
         val text = "Tom &amp; Jerry&nbsp;are friends"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Tom & Jerry are friends")
     }
 
     @Test
-    fun extractPreview_withZeroWidthCharacters_shouldRemoveThem() {
+    fun extractPreviewFromText_withZeroWidthCharacters_shouldRemoveThem() {
         val text = "Actual\u034F\u200C\u200C\u200C preview text"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Actual preview text")
     }
 
     @Test
-    fun extractPreview_withZeroWidthHtmlEntities_shouldRemoveThem() {
+    fun extractPreviewFromText_withZeroWidthHtmlEntities_shouldRemoveThem() {
         val text = "Actual &#847;&#847; preview text"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Actual preview text")
     }
 
     @Test
-    fun extractPreview_withParsedHtmlLink_shouldRemoveUrl() {
+    fun extractPreviewFromText_withParsedHtmlLink_shouldRemoveUrl() {
         val text = """read <a href="https://thunderbird.net/">Thunderbird</a>"""
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("read Thunderbird")
     }
 
     @Test
-    fun extractPreview_withParenthesizedUrl_shouldRemoveUrl() {
+    fun extractPreviewFromText_withParenthesizedUrl_shouldRemoveUrl() {
         val text = "some image: ( https://thunderbird.net/logo.png )"
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("some image:")
     }
 
     @Test
-    fun extractPreview_forwardedMessage() {
+    fun extractPreviewFromText_forwardedMessage() {
         val text =
             """
             |Here is the forwarded message:
@@ -236,15 +215,14 @@ class PreviewTextExtractorTest {
             |
             |This is the original content.
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Here is the forwarded message: […] This is the original content.")
     }
 
     @Test
-    fun extractPreview_withHtmlForwardedMessageAsTextPlain() {
+    fun extractPreviewFromText_withHtmlForwardedMessageAsTextPlain() {
         val text =
             """
             |<html>
@@ -261,40 +239,37 @@ class PreviewTextExtractorTest {
             |</body>
             |</html>
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Here is the forwarded message: […] This is the original content.")
     }
 
     @Test
-    fun extractPreview_shouldCollapseAndTrimWhitespace() {
+    fun extractPreviewFromText_shouldCollapseAndTrimWhitespace() {
         val text = " whitespace     is\t\tfun  "
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("whitespace is fun")
     }
 
     @Test
-    fun extractPreview_lineEndingWithColon() {
+    fun extractPreviewFromText_lineEndingWithColon() {
         val text =
             """
             |Here's a list:
             |- item 1
             |- item 2
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Here's a list: - item 1 - item 2")
     }
 
     @Test
-    fun extractPreview_inlineReplies() {
+    fun extractPreviewFromText_inlineReplies() {
         val text =
             """
             |On 2020-09-30 at 03:12 Bob wrote:
@@ -307,15 +282,14 @@ class PreviewTextExtractorTest {
             |> Bye
             |See you tomorrow
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Hi Bob […] I'm fine. Thanks for asking. […] See you tomorrow")
     }
 
     @Test
-    fun extractPreview_quoteHeaderContainingLineBreak() {
+    fun extractPreviewFromText_quoteHeaderContainingLineBreak() {
         val text =
             """
             |Reply text
@@ -324,19 +298,17 @@ class PreviewTextExtractorTest {
             |Bob wrote:
             |> Quoted text
             """.trimMargin()
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("Reply text")
     }
 
     @Test
-    fun extractPreview_emptyBody() {
+    fun extractPreviewFromText_emptyBody() {
         val text = ""
-        val part = MessageCreationHelper.createTextPart("text/plain", text)
 
-        val preview = previewTextExtractor.extractPreview(part)
+        val preview = previewTextExtractor.extractPreviewFromText(text, isHtmlConvertedText = false)
 
         assertThat(preview).isEqualTo("")
     }
@@ -0,0 +1,65 @@
+package com.fsck.k9.message.extractors
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import org.junit.Test
+
+class PreviewTextNormalizerTest {
+    private val normalizer = PreviewTextNormalizer(maxLength = 20)
+
+    @Test
+    fun `should collapse and trim whitespace`() {
+        val result = normalizer.normalize(" \n one\t\ttwo \r\n three\u00A0 ")
+
+        assertThat(result).isEqualTo("one two three")
+    }
+
+    @Test
+    fun `should replace URL`() {
+        val result = normalizer.normalize("see https://example.com/path?query.")
+
+        assertThat(result).isEqualTo("see ...")
+    }
+
+    @Test
+    fun `should remove URL in angle brackets`() {
+        val result = normalizer.normalize("link <https://example.com/> text")
+
+        assertThat(result).isEqualTo("link text")
+    }
+
+    @Test
+    fun `should remove URL in parentheses surrounded by spaces`() {
+        val result = normalizer.normalize("image ( https://example.com/a.png ) text")
+
+        assertThat(result).isEqualTo("image text")
+    }
+
+    @Test
+    fun `URL should end before URL in angle brackets`() {
+        val result = normalizer.normalize("https://a.example<https://b.example/>")
+
+        assertThat(result).isEqualTo("...")
+    }
+
+    @Test
+    fun `should remove invisible formatting characters`() {
+        val result = normalizer.normalize("\u200Bone\u034F\u200C two\uFEFF")
+
+        assertThat(result).isEqualTo("one two")
+    }
+
+    @Test
+    fun `should truncate long text`() {
+        val result = normalizer.normalize("0123456789 0123456789 0123456789")
+
+        assertThat(result).isEqualTo("0123456789 01234567…")
+    }
+
+    @Test
+    fun `text with maximum length should not be truncated`() {
+        val result = normalizer.normalize("  0123456789 012345678  ")
+
+        assertThat(result).isEqualTo("0123456789 012345678")
+    }
+}
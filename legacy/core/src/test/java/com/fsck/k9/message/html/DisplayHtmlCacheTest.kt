@@ -0,0 +1,140 @@
+package com.fsck.k9.message.html
+
+import app.k9mail.html.cleaner.HtmlProcessor
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import net.thunderbird.core.android.testing.RobolectricTest
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+
+private const val ACCOUNT_UUID = "account"
+private val OWNER = DisplayHtmlCache.Owner(ACCOUNT_UUID, messageId = 1)
+
+class DisplayHtmlCacheTest : RobolectricTest() {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val htmlProcessor = createHtmlProcessor("config")
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `processing the same HTML twice should only invoke HtmlProcessor once`() {
+        val cache = createDisplayHtmlCache()
+
+        val result1 = cache.processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+        val result2 = cache.processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+
+        assertThat(result1).isEqualTo("processed: <p>one</p>")
+        assertThat(result2).isEqualTo("processed: <p>one</p>")
+        verify(htmlProcessor, times(1)).processForDisplay(any())
+    }
+
+    @Test
+    fun `processed HTML should be read from disk by a new cache instance`() {
+        createDisplayHtmlCache().processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+        val otherHtmlProcessor = createHtmlProcessor("config")
+
+        val result = createDisplayHtmlCache().processForDisplay(otherHtmlProcessor, "<p>one</p>", OWNER)
+
+        assertThat(result).isEqualTo("processed: <p>one</p>")
+        verify(otherHtmlProcessor, times(0)).processForDisplay(any())
+    }
+
+    @Test
+    fun `different configuration should not use cached HTML`() {
+        val cache = createDisplayHtmlCache()
+        val otherHtmlProcessor = createHtmlProcessor("other config")
+
+        cache.processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+        cache.processForDisplay(otherHtmlProcessor, "<p>one</p>", OWNER)
+
+        verify(htmlProcessor, times(1)).processForDisplay(any())
+        verify(otherHtmlProcessor, times(1)).processForDisplay(any())
+    }
+
+    @Test
+    fun `disk cache should be trimmed to maximum size`() {
+        val cache = createDisplayHtmlCache(maxDiskCacheSize = 50)
+
+        cache.processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+        cache.processForDisplay(htmlProcessor, "<p>two</p>", OWNER)
+        cache.processForDisplay(htmlProcessor, "<p>three</p>", OWNER)
+
+        assertThat(tempFolder.root.walk().filter { it.isFile }.toList()).hasSize(2)
+    }
+
+    @Test
+    fun `HTML without owner should not be written to disk`() {
+        createDisplayHtmlCache().processForDisplay(htmlProcessor, "<p>secret</p>", owner = null)
+        val otherHtmlProcessor = createHtmlProcessor("config")
+
+        createDisplayHtmlCache().processForDisplay(otherHtmlProcessor, "<p>secret</p>", owner = null)
+
+        assertThat(tempFolder.root.walk().filter { it.isFile }.toList()).isEmpty()
+        verify(otherHtmlProcessor, times(1)).processForDisplay(any())
+    }
+
+    @Test
+    fun `different app version should not use cached HTML`() {
+        createDisplayHtmlCache(appVersion = "1.0").processForDisplay(htmlProcessor, "<p>one</p>", OWNER)
+        val otherHtmlProcessor = createHtmlProcessor("config")
+
+        createDisplayHtmlCache(appVersion = "2.0").processForDisplay(otherHtmlProcessor, "<p>one</p>", OWNER)
+
+        verify(otherHtmlProcessor, times(1)).processForDisplay(any())
+    }
+
+    @Test
+    fun `removeMessages() should remove entries of deleted messages`() {
+        val cache = createDisplayHtmlCache()
+        cache.processForDisplay(htmlProcessor, "<p>one</p>", DisplayHtmlCache.Owner(ACCOUNT_UUID, messageId = 1))
+        cache.processForDisplay(htmlProcessor, "<p>two</p>", DisplayHtmlCache.Owner(ACCOUNT_UUID, messageId = 2))
+
+        cache.removeMessages(ACCOUNT_UUID, listOf(1L))
+
+        assertThat(tempFolder.root.walk().filter { it.isFile }.map { it.parentFile!!.name }.toList())
+            .containsExactly("2")
+    }
+
+    @Test
+    fun `removeAccount() should remove all entries of the account`() {
+        val cache = createDisplayHtmlCache()
+        cache.processForDisplay(htmlProcessor, "<p>one</p>", DisplayHtmlCache.Owner(ACCOUNT_UUID, messageId = 1))
+        cache.processForDisplay(htmlProcessor, "<p>two</p>", DisplayHtmlCache.Owner("other", messageId = 1))
+
+        cache.removeAccount(ACCOUNT_UUID)
+
+        assertThat(tempFolder.root.listFiles()!!.map { it.name }).containsExactly("other")
+    }
+
+    private fun createDisplayHtmlCache(appVersion: String = "1.0", maxDiskCacheSize: Long = 1024 * 1024) =
+        DisplayHtmlCache(
+            cacheDirectory = tempFolder.root,
+            appVersion = appVersion,
+            maxDiskCacheSize = maxDiskCacheSize,
+        )
+
+    private fun createHtmlProcessor(configurationKey: String): HtmlProcessor {
+        return mock {
+            on { this.configurationKey } doReturn configurationKey
+            on { processForDisplay(any()) } doAnswer { "processed: " + it.getArgument<String>(0) }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package app.k9mail.legacy.mailstore
+
+/**
+ * Describes a change to the messages of an account.
+ *
+ * Listeners can use this to update a message list in place instead of loading it again. [Unknown] is used when the
+ * affected messages aren't known; it requires the whole list to be reloaded.
+ */
+sealed interface MessageListChange {
+    /**
+     * Flags (e.g. read or starred) of the messages with the given database IDs have changed.
+     */
+    data class FlagsChanged(val messageIds: Set<Long>) : MessageListChange
+
+    /**
+     * The messages with the given database IDs have been added.
+     */
+    data class MessagesInserted(val messageIds: Set<Long>) : MessageListChange
+
+    /**
+     * The messages with the given database IDs have been removed or hidden.
+     */
+    data class MessagesDeleted(val messageIds: Set<Long>) : MessageListChange
+
+    /**
+     * Messages have been moved. The messages with the IDs in [sourceMessageIds] have been removed, the messages with the
+     * IDs in [destinationMessageIds] have been added.
+     */
+    data class MessagesMoved(
+        val sourceMessageIds: Set<Long>,
+        val destinationMessageIds: Set<Long>,
+    ) : MessageListChange
+
+    /**
+     * Any number of messages might have changed.
+     */
+    data object Unknown : MessageListChange
+}
@@ -2,4 +2,12 @@ package app.k9mail.legacy.mailstore
 
 fun interface MessageListChangedListener {
     fun onMessageListChanged()
+
+    /**
+     * Called with a description of the change. Listeners that can't make use of it simply reload in
+     * [onMessageListChanged].
+     */
+    fun onMessageListChanged(accountUuid: String, change: MessageListChange) {
+        onMessageListChanged()
+    }
 }
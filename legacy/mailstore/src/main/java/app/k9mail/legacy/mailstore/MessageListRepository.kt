@@ -4,13 +4,29 @@ interface MessageListRepository {
     fun addListener(listener: MessageListChangedListener)
     fun addListener(accountUuid: String, listener: MessageListChangedListener)
     fun removeListener(listener: MessageListChangedListener)
-    fun notifyMessageListChanged(accountUuid: String)
+
+    fun notifyMessageListChanged(accountUuid: String) {
+        notifyMessageListChanged(accountUuid, MessageListChange.Unknown)
+    }
+
+    fun notifyMessageListChanged(accountUuid: String, change: MessageListChange) {
+        notifyMessageListChanged(accountUuid) { change }
+    }
+
+    /**
+     * Notifies the listeners of [accountUuid] about a change to the message list.
+     *
+     * [createChange] is only invoked if there's at least one listener. Use this when finding the affected messages
+     * requires a database query.
+     */
+    fun notifyMessageListChanged(accountUuid: String, createChange: () -> MessageListChange)
 
     fun <T> getMessages(
         accountUuid: String,
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<T>,
     ): List<T>
 
@@ -19,6 +35,7 @@ interface MessageListRepository {
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<T>,
     ): List<T>
 
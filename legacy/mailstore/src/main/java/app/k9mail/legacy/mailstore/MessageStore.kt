@@ -22,6 +22,19 @@ interface MessageStore {
      */
     fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData)
 
+    /**
+     * Save multiple remote messages in this store.
+     *
+     * Implementations should save all messages in a single transaction.
+     *
+     * @param messages A mapping of message server IDs to the data of the message to save.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        for ((messageServerId, messageData) in messages) {
+            saveRemoteMessage(folderId, messageServerId, messageData)
+        }
+    }
+
     /**
      * Save a local message in this store.
      *
@@ -81,6 +94,16 @@ interface MessageStore {
      */
     fun setMessageFlag(folderId: Long, messageServerId: String, flag: Flag, set: Boolean)
 
+    /**
+     * Set or remove flags on multiple messages in a single transaction.
+     *
+     * Messages that don't exist or are marked as deleted are skipped.
+     *
+     * @param flagUpdates A map of message server IDs to the desired state of flags.
+     * @return The server IDs of the messages whose flags were changed.
+     */
+    fun updateMessageFlags(folderId: Long, flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String>
+
     /**
      * Set whether a message should be considered as new.
      */
@@ -103,6 +126,13 @@ interface MessageStore {
      */
     fun getMessageServerIds(messageIds: Collection<Long>): Map<Long, String>
 
+    /**
+     * Retrieve the database IDs for the given messages in a folder.
+     *
+     * @return A mapping of the message server ID to the message database ID.
+     */
+    fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Map<String, Long>
+
     /**
      * Retrieve server IDs for all remote messages in the given folder.
      */
@@ -125,21 +155,27 @@ interface MessageStore {
 
     /**
      * Retrieve list of messages.
+     *
+     * @param limit The maximum number of rows to retrieve, or `null` to retrieve all matching messages.
      */
     fun <T> getMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<out T?>,
     ): List<T>
 
     /**
      * Retrieve threaded list of messages.
+     *
+     * @param limit The maximum number of threads to retrieve, or `null` to retrieve all matching threads.
      */
     fun <T> getThreadedMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<out T?>,
     ): List<T>
 
@@ -168,6 +204,11 @@ interface MessageStore {
      */
     fun getSize(): Long
 
+    /**
+     * Return the number of bytes [compact] is expected to return to the file system.
+     */
+    fun getReclaimableSize(): Long
+
     /**
      * Remove messages from the store.
      */
@@ -368,6 +409,8 @@ interface MessageStore {
 
     /**
      * Optimize the message store with the goal of using the minimal amount of disk space.
+     *
+     * This is done in small steps, so other operations on the message store aren't blocked for long.
      */
     fun compact()
 }
@@ -12,7 +12,7 @@ import net.thunderbird.legacy.logging.Log;
 
 
 class StoreSchemaDefinition implements SchemaDefinition {
-    static final int DB_VERSION = 91;
+    static final int DB_VERSION = 93;
 
     private final MigrationsHelper migrationsHelper;
 
@@ -44,6 +44,13 @@ class StoreSchemaDefinition implements SchemaDefinition {
     private void upgradeDatabase(final SQLiteDatabase db) {
         Log.i("Upgrading database from version %d to version %d", db.getVersion(), DB_VERSION);
 
+        if (db.getVersion() == 0) {
+            // The auto_vacuum mode can only be changed cheaply before any tables are created. This relies on
+            // LockableDatabase opening the database without localized collators, so Android doesn't create the
+            // 'android_metadata' table. Existing databases are switched over by MessageStore.compact().
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        }
+
         db.beginTransaction();
         try {
             if (db.getVersion() > DB_VERSION) {
@@ -203,6 +210,9 @@ class StoreSchemaDefinition implements SchemaDefinition {
         db.execSQL("DROP INDEX IF EXISTS msg_composite");
         db.execSQL("CREATE INDEX IF NOT EXISTS msg_composite ON messages (deleted, empty,folder_id,flagged,read)");
 
+        db.execSQL("DROP INDEX IF EXISTS msg_folder_id_message_id");
+        db.execSQL("CREATE INDEX IF NOT EXISTS msg_folder_id_message_id ON messages (folder_id, message_id)");
+
         db.execSQL("DROP INDEX IF EXISTS message_parts_root");
         db.execSQL("CREATE INDEX IF NOT EXISTS message_parts_root ON message_parts (root)");
 
@@ -273,5 +283,69 @@ class StoreSchemaDefinition implements SchemaDefinition {
 
         db.execSQL("DROP INDEX IF EXISTS notifications_timestamp");
         db.execSQL("CREATE INDEX IF NOT EXISTS notifications_timestamp ON notifications(timestamp)");
+
+        db.execSQL("DROP TABLE IF EXISTS folder_message_counts");
+        db.execSQL("CREATE TABLE folder_message_counts (" +
+                "folder_id INTEGER PRIMARY KEY NOT NULL, " +
+                "message_count INTEGER NOT NULL DEFAULT 0, " +
+                "unread_count INTEGER NOT NULL DEFAULT 0, " +
+                "flagged_count INTEGER NOT NULL DEFAULT 0" +
+                ")");
+
+        db.execSQL("DROP TRIGGER IF EXISTS create_folder_message_counts");
+        db.execSQL("CREATE TRIGGER create_folder_message_counts " +
+                "AFTER INSERT ON folders " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO folder_message_counts (folder_id) VALUES (NEW.id); " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_folder_message_counts");
+        db.execSQL("CREATE TRIGGER delete_folder_message_counts " +
+                "AFTER DELETE ON folders " +
+                "BEGIN " +
+                "DELETE FROM folder_message_counts WHERE folder_id = OLD.id; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_inserted_message");
+        db.execSQL("CREATE TRIGGER count_inserted_message " +
+                "AFTER INSERT ON messages " +
+                "WHEN NEW.empty = 0 AND NEW.deleted = 0 " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count + 1, " +
+                "unread_count = unread_count + (CASE WHEN NEW.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count + (CASE WHEN NEW.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = NEW.folder_id; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_deleted_message");
+        db.execSQL("CREATE TRIGGER count_deleted_message " +
+                "AFTER DELETE ON messages " +
+                "WHEN OLD.empty = 0 AND OLD.deleted = 0 " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count - 1, " +
+                "unread_count = unread_count - (CASE WHEN OLD.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count - (CASE WHEN OLD.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = OLD.folder_id; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_updated_message");
+        db.execSQL("CREATE TRIGGER count_updated_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count - 1, " +
+                "unread_count = unread_count - (CASE WHEN OLD.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count - (CASE WHEN OLD.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty = 0 AND OLD.deleted = 0; " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count + 1, " +
+                "unread_count = unread_count + (CASE WHEN NEW.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count + (CASE WHEN NEW.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty = 0 AND NEW.deleted = 0; " +
+                "END");
     }
 }
@@ -1,9 +1,26 @@
 package com.fsck.k9.storage.messages
 
+import android.database.sqlite.SQLiteDatabase
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.StorageFilesProvider
 import net.thunderbird.legacy.logging.Log
 
+private const val AUTO_VACUUM_INCREMENTAL = 2
+
+/**
+ * Target duration of a single incremental vacuum step. The database is released between steps, so other operations
+ * don't have to wait longer than this.
+ */
+private const val TARGET_STEP_DURATION_MILLIS = 50L
+private const val MIN_PAGES_PER_STEP = 16
+private const val MAX_PAGES_PER_STEP = 4096
+
+/**
+ * Number of pages the FTS merge command may write per step. See https://www.sqlite.org/fts3.html#*fts4mergecmd
+ */
+private const val FULLTEXT_MERGE_PAGES_PER_STEP = 200
+private const val FULLTEXT_MERGE_MIN_SEGMENTS = 8
+
 internal class DatabaseOperations(
     private val lockableDatabase: LockableDatabase,
     private val storageFilesProvider: StorageFilesProvider,
@@ -26,13 +43,101 @@ internal class DatabaseOperations(
         }
     }
 
+    /**
+     * Returns the size of the unused pages in the database file, i.e. the space [compact] can return to the system.
+     */
+    fun getReclaimableSize(): Long {
+        return lockableDatabase.execute(false) { database ->
+            database.getFreePageCount() * database.pageSize
+        }
+    }
+
+    /**
+     * Merges the segments of the fulltext index and returns unused database pages to the file system.
+     *
+     * Both are done in small steps, so the database is never blocked for long. Only the first run on a database created
+     * before incremental vacuum was enabled needs a full `VACUUM`.
+     */
     fun compact() {
-        Log.i("Before compaction size = %d", getSize())
+        Log.i("Before compaction size = %d, reclaimable = %d", getSize(), getReclaimableSize())
+
+        mergeFulltextIndex()
+
+        if (isIncrementalVacuumEnabled()) {
+            vacuumIncrementally()
+        } else {
+            enableIncrementalVacuum()
+        }
+
+        Log.i("After compaction size = %d", getSize())
+    }
+
+    private fun mergeFulltextIndex() {
+        do {
+            val changes = lockableDatabase.execute(true) { database ->
+                val totalChangesBefore = database.getTotalChanges()
+                database.execSQL(
+                    "INSERT INTO messages_fulltext (messages_fulltext) " +
+                        "VALUES ('merge=$FULLTEXT_MERGE_PAGES_PER_STEP,$FULLTEXT_MERGE_MIN_SEGMENTS')",
+                )
+                database.getTotalChanges() - totalChangesBefore
+            }
+
+            // The merge command always counts as one change. More than that means there might be more work to do.
+        } while (changes > 1)
+    }
+
+    private fun isIncrementalVacuumEnabled(): Boolean {
+        return lockableDatabase.execute(false) { database ->
+            database.readPragma("auto_vacuum") == AUTO_VACUUM_INCREMENTAL.toLong()
+        }
+    }
+
+    private fun enableIncrementalVacuum() {
+        Log.i("Enabling incremental vacuum. This requires a full VACUUM.")
 
         lockableDatabase.execute(false) { database ->
+            database.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
             database.execSQL("VACUUM")
         }
+    }
 
-        Log.i("After compaction size = %d", getSize())
+    private fun vacuumIncrementally() {
+        var pagesPerStep = MIN_PAGES_PER_STEP
+        var freePages = lockableDatabase.execute(false) { database -> database.getFreePageCount() }
+        while (freePages > 0) {
+            val startTime = System.currentTimeMillis()
+            val remainingFreePages = lockableDatabase.execute(false) { database ->
+                // The statement returns one row per removed page. Counting the rows runs it to completion.
+                database.rawQuery("PRAGMA incremental_vacuum($pagesPerStep)", null).use { cursor -> cursor.count }
+
+                database.getFreePageCount()
+            }
+
+            // Stop if the step didn't make any progress, e.g. because the database is still being written to.
+            if (remainingFreePages >= freePages) break
+            freePages = remainingFreePages
+
+            val stepDuration = System.currentTimeMillis() - startTime
+            pagesPerStep = if (stepDuration < TARGET_STEP_DURATION_MILLIS) {
+                (pagesPerStep * 2).coerceAtMost(MAX_PAGES_PER_STEP)
+            } else {
+                (pagesPerStep / 2).coerceAtLeast(MIN_PAGES_PER_STEP)
+            }
+        }
+    }
+
+    private fun SQLiteDatabase.getFreePageCount(): Long = readPragma("freelist_count")
+
+    private fun SQLiteDatabase.getTotalChanges(): Long {
+        return rawQuery("SELECT total_changes()", null).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+        }
+    }
+
+    private fun SQLiteDatabase.readPragma(name: String): Long {
+        return rawQuery("PRAGMA $name", null).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+        }
     }
 }
@@ -8,83 +8,129 @@ internal class DeleteMessageOperations(
     private val lockableDatabase: LockableDatabase,
     private val attachmentFileManager: AttachmentFileManager,
 ) {
+    /**
+     * Removes the messages with the given server IDs from the database.
+     *
+     * All messages are removed in a single transaction. The files of on-disk message parts are only deleted after the
+     * transaction has been committed.
+     */
     fun destroyMessages(folderId: Long, messageServerIds: Collection<String>) {
-        for (messageServerId in messageServerIds) {
-            destroyMessage(folderId, messageServerId)
-        }
-    }
+        if (messageServerIds.isEmpty()) return
+
+        val messagePartFileIds = lockableDatabase.execute(true) { database ->
+            val messages = database.getMessageData(folderId, messageServerIds)
+            if (messages.isEmpty()) return@execute emptyList<Long>()
 
-    private fun destroyMessage(folderId: Long, messageServerId: String) {
-        val (messageId, rootMessagePartId, hasThreadChildren) = getMessageData(folderId, messageServerId) ?: return
+            val messagePartFileIds = database.getMessagePartFileIds(messages.map { it.messagePartId })
+
+            val (messagesWithThreadChildren, messagesWithoutThreadChildren) = messages.partition {
+                it.hasThreadChildren
+            }
 
-        lockableDatabase.execute(true) { database ->
-            database.deleteMessagePartFiles(rootMessagePartId)
+            if (messagesWithThreadChildren.isNotEmpty()) {
+                val messageIds = messagesWithThreadChildren.map { it.messageId }
 
-            if (hasThreadChildren) {
-                // We're not deleting the 'messages' row so we'll have to manually delete the associated
+                // We're not deleting the 'messages' rows so we'll have to manually delete the associated
                 // 'message_parts' and 'messages_fulltext' rows.
-                database.deleteMessagePartRows(rootMessagePartId)
-                database.deleteFulltextIndexEntry(messageId)
+                database.deleteMessagePartRows(messagesWithThreadChildren.map { it.messagePartId })
+                database.deleteFulltextIndexEntries(messageIds)
 
-                // This message has children in the thread structure so we need to make it an empty message.
-                database.convertToEmptyMessage(messageId)
-            } else {
-                database.deleteMessageRows(messageId)
+                // These messages have children in the thread structure so we need to make them empty messages.
+                database.convertToEmptyMessages(messageIds)
+            }
+
+            for (message in messagesWithoutThreadChildren) {
+                database.deleteMessageRows(message.messageId)
             }
+
+            messagePartFileIds
+        }
+
+        for (messagePartId in messagePartFileIds) {
+            attachmentFileManager.deleteFile(messagePartId)
         }
     }
 
-    private fun getMessageData(folderId: Long, messageServerId: String): MessageData? {
-        return lockableDatabase.execute(false) { database ->
-            database.rawQuery(
+    private fun SQLiteDatabase.getMessageData(
+        folderId: Long,
+        messageServerIds: Collection<String>,
+    ): List<MessageData> {
+        val messages = mutableListOf<MessageData>()
+
+        performChunkedOperation(
+            arguments = messageServerIds,
+            argumentTransformation = { it },
+        ) { selectionSet, selectionArguments ->
+            rawQuery(
                 """
 SELECT messages.id, messages.message_part_id, COUNT(threads2.id) 
 FROM messages 
 LEFT JOIN threads threads1 ON (threads1.message_id = messages.id)  
 LEFT JOIN threads threads2 ON (threads2.parent = threads1.id) 
-WHERE folder_id = ? AND uid = ?
+WHERE folder_id = ? AND uid $selectionSet 
+GROUP BY messages.id
                 """,
-                arrayOf(folderId.toString(), messageServerId),
+                arrayOf(folderId.toString()) + selectionArguments,
             ).use { cursor ->
-                if (cursor.moveToFirst()) {
-                    MessageData(
-                        messageId = cursor.getLong(0),
-                        messagePartId = cursor.getLong(1),
-                        hasThreadChildren = !cursor.isNull(2) && cursor.getInt(2) > 0,
+                while (cursor.moveToNext()) {
+                    messages.add(
+                        MessageData(
+                            messageId = cursor.getLong(0),
+                            messagePartId = cursor.getLong(1),
+                            hasThreadChildren = !cursor.isNull(2) && cursor.getInt(2) > 0,
+                        ),
                     )
-                } else {
-                    null
                 }
             }
         }
+
+        return messages
     }
 
-    private fun SQLiteDatabase.deleteMessagePartFiles(rootMessagePartId: Long) {
-        query(
-            "message_parts",
-            arrayOf("id"),
-            "root = ? AND data_location = $DATA_LOCATION_ON_DISK",
-            arrayOf(rootMessagePartId.toString()),
-            null,
-            null,
-            null,
-        ).use { cursor ->
-            while (cursor.moveToNext()) {
-                val messagePartId = cursor.getLong(0)
-                attachmentFileManager.deleteFile(messagePartId)
+    private fun SQLiteDatabase.getMessagePartFileIds(rootMessagePartIds: Collection<Long>): List<Long> {
+        val messagePartIds = mutableListOf<Long>()
+
+        performChunkedOperation(
+            arguments = rootMessagePartIds,
+            argumentTransformation = Long::toString,
+        ) { selectionSet, selectionArguments ->
+            query(
+                "message_parts",
+                arrayOf("id"),
+                "root $selectionSet AND data_location = $DATA_LOCATION_ON_DISK",
+                selectionArguments,
+                null,
+                null,
+                null,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    messagePartIds.add(cursor.getLong(0))
+                }
             }
         }
+
+        return messagePartIds
     }
 
-    private fun SQLiteDatabase.deleteMessagePartRows(rootMessagePartId: Long) {
-        delete("message_parts", "root = ?", arrayOf(rootMessagePartId.toString()))
+    private fun SQLiteDatabase.deleteMessagePartRows(rootMessagePartIds: Collection<Long>) {
+        performChunkedOperation(
+            arguments = rootMessagePartIds,
+            argumentTransformation = Long::toString,
+        ) { selectionSet, selectionArguments ->
+            delete("message_parts", "root $selectionSet", selectionArguments)
+        }
     }
 
-    private fun SQLiteDatabase.deleteFulltextIndexEntry(messageId: Long) {
-        delete("messages_fulltext", "docid = ?", arrayOf(messageId.toString()))
+    private fun SQLiteDatabase.deleteFulltextIndexEntries(messageIds: Collection<Long>) {
+        performChunkedOperation(
+            arguments = messageIds,
+            argumentTransformation = Long::toString,
+        ) { selectionSet, selectionArguments ->
+            delete("messages_fulltext", "docid $selectionSet", selectionArguments)
+        }
     }
 
-    private fun SQLiteDatabase.convertToEmptyMessage(messageId: Long) {
+    private fun SQLiteDatabase.convertToEmptyMessages(messageIds: Collection<Long>) {
         val values = ContentValues().apply {
             put("deleted", 0)
             put("empty", 1)
@@ -106,7 +152,12 @@ WHERE folder_id = ? AND uid = ?
             putNull("encryption_type")
         }
 
-        update("messages", values, "id = ?", arrayOf(messageId.toString()))
+        performChunkedOperation(
+            arguments = messageIds,
+            argumentTransformation = Long::toString,
+        ) { selectionSet, selectionArguments ->
+            update("messages", values, "id $selectionSet", selectionArguments)
+        }
     }
 
     private fun SQLiteDatabase.deleteMessageRows(messageId: Long) {
@@ -7,6 +7,14 @@ import net.thunderbird.core.common.mail.Flag
 
 internal val SPECIAL_FLAGS = setOf(Flag.SEEN, Flag.FLAGGED, Flag.ANSWERED, Flag.FORWARDED)
 
+private val FLAG_COLUMNS = mapOf(
+    Flag.DELETED to "deleted",
+    Flag.SEEN to "read",
+    Flag.FLAGGED to "flagged",
+    Flag.ANSWERED to "answered",
+    Flag.FORWARDED to "forwarded",
+)
+
 internal class FlagMessageOperations(private val lockableDatabase: LockableDatabase) {
 
     fun setFlag(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
@@ -30,6 +38,98 @@ internal class FlagMessageOperations(private val lockableDatabase: LockableDatab
         }
     }
 
+    fun updateMessageFlags(folderId: Long, flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String> {
+        if (flagUpdates.isEmpty()) return emptySet()
+
+        return lockableDatabase.execute(true) { database ->
+            val storedFlags = database.readMessageFlags(folderId, flagUpdates.keys)
+
+            val changedMessageServerIds = mutableSetOf<String>()
+            for ((messageServerId, flagValues) in flagUpdates) {
+                val oldFlags = storedFlags[messageServerId] ?: continue
+                if (Flag.DELETED in oldFlags) continue
+
+                val newFlags = oldFlags.toMutableSet()
+                for ((flag, set) in flagValues) {
+                    if (set) newFlags.add(flag) else newFlags.remove(flag)
+                }
+
+                if (newFlags != oldFlags) {
+                    database.update(
+                        "messages",
+                        createFlagContentValues(oldFlags, newFlags),
+                        "folder_id = ? AND uid = ?",
+                        arrayOf(folderId.toString(), messageServerId),
+                    )
+                    changedMessageServerIds.add(messageServerId)
+                }
+            }
+
+            changedMessageServerIds
+        }
+    }
+
+    private fun SQLiteDatabase.readMessageFlags(
+        folderId: Long,
+        messageServerIds: Collection<String>,
+    ): Map<String, Set<Flag>> {
+        val flagsByMessageServerId = mutableMapOf<String, Set<Flag>>()
+
+        performChunkedOperation(
+            arguments = messageServerIds,
+            argumentTransformation = { it },
+        ) { selectionSet, selectionArguments ->
+            query(
+                "messages",
+                arrayOf("uid", "deleted", "read", "flagged", "answered", "forwarded", "flags"),
+                "folder_id = ? AND empty = 0 AND uid $selectionSet",
+                arrayOf(folderId.toString()) + selectionArguments,
+                null,
+                null,
+                null,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    val flags = cursor.getString(6).toFlagSet().toMutableSet().apply {
+                        if (cursor.getInt(1) == 1) add(Flag.DELETED)
+                        if (cursor.getInt(2) == 1) add(Flag.SEEN)
+                        if (cursor.getInt(3) == 1) add(Flag.FLAGGED)
+                        if (cursor.getInt(4) == 1) add(Flag.ANSWERED)
+                        if (cursor.getInt(5) == 1) add(Flag.FORWARDED)
+                    }
+
+                    flagsByMessageServerId[cursor.getString(0)] = flags
+                }
+            }
+        }
+
+        return flagsByMessageServerId
+    }
+
+    private fun createFlagContentValues(oldFlags: Set<Flag>, newFlags: Set<Flag>): ContentValues {
+        return ContentValues().apply {
+            for ((flag, columnName) in FLAG_COLUMNS) {
+                val set = flag in newFlags
+                if (set != flag in oldFlags) {
+                    put(columnName, if (set) 1 else 0)
+                }
+            }
+
+            val oldOtherFlags = oldFlags - FLAG_COLUMNS.keys
+            val newOtherFlags = newFlags - FLAG_COLUMNS.keys
+            if (newOtherFlags != oldOtherFlags) {
+                put("flags", newOtherFlags.joinToString(separator = ","))
+            }
+        }
+    }
+
+    private fun String?.toFlagSet(): Set<Flag> {
+        return if (isNullOrBlank()) {
+            emptySet()
+        } else {
+            split(',').map { flagString -> Flag.valueOf(flagString) }.toSet()
+        }
+    }
+
     private fun setSpecialFlags(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
         val columnName = when (flag) {
             Flag.SEEN -> "read"
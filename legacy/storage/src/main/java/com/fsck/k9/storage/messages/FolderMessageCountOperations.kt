@@ -0,0 +1,68 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import com.fsck.k9.mailstore.LockableDatabase
+import net.thunderbird.legacy.logging.Log
+
+private const val COUNT_MESSAGES_QUERY =
+    """
+SELECT folders.id AS folder_id, COUNT(messages.id) AS message_count,
+  COUNT(CASE WHEN messages.read = 0 THEN 1 END) AS unread_count,
+  COUNT(CASE WHEN messages.flagged = 1 THEN 1 END) AS flagged_count
+FROM folders
+LEFT JOIN messages ON (messages.folder_id = folders.id AND messages.empty = 0 AND messages.deleted = 0)
+GROUP BY folders.id
+    """
+
+/**
+ * Checks the message counts stored in the `folder_message_counts` table.
+ *
+ * The counts are maintained by database triggers. This is a safety net in case they get out of sync anyway, e.g.
+ * because of a restored database file.
+ */
+internal class FolderMessageCountOperations(private val lockableDatabase: LockableDatabase) {
+    /**
+     * Compares the stored message counts to the actual number of messages and rebuilds them if they don't match.
+     *
+     * @return `true` if the stored message counts had to be rebuilt.
+     */
+    fun verifyMessageCounts(): Boolean {
+        return lockableDatabase.execute(true) { db ->
+            if (db.hasMismatchedMessageCounts()) {
+                Log.w("Stored folder message counts are out of sync. Rebuilding them.")
+                db.rebuildMessageCounts()
+                true
+            } else {
+                false
+            }
+        }
+    }
+
+    private fun SQLiteDatabase.hasMismatchedMessageCounts(): Boolean {
+        return rawQuery(
+            """
+SELECT 1
+FROM ($COUNT_MESSAGES_QUERY) actual_counts
+LEFT JOIN folder_message_counts stored_counts ON (stored_counts.folder_id = actual_counts.folder_id)
+WHERE stored_counts.folder_id IS NULL
+  OR stored_counts.message_count != actual_counts.message_count
+  OR stored_counts.unread_count != actual_counts.unread_count
+  OR stored_counts.flagged_count != actual_counts.flagged_count
+LIMIT 1
+            """,
+            null,
+        ).use { cursor ->
+            cursor.moveToFirst()
+        }
+    }
+
+    private fun SQLiteDatabase.rebuildMessageCounts() {
+        execSQL("DELETE FROM folder_message_counts")
+        execSQL(
+            """
+INSERT INTO folder_message_counts (folder_id, message_count, unread_count, flagged_count)
+$COUNT_MESSAGES_QUERY
+            """,
+        )
+    }
+}
@@ -63,11 +63,16 @@ class K9MessageStore(
     private val deleteFolderOperations = DeleteFolderOperations(database, attachmentFileManager)
     private val keyValueStoreOperations = KeyValueStoreOperations(database)
     private val databaseOperations = DatabaseOperations(database, storageFilesProvider)
+    private val folderMessageCountOperations = FolderMessageCountOperations(database)
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         saveMessageOperations.saveRemoteMessage(folderId, messageServerId, messageData)
     }
 
+    override fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        saveMessageOperations.saveRemoteMessages(folderId, messages)
+    }
+
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return saveMessageOperations.saveLocalMessage(folderId, messageData, existingMessageId)
     }
@@ -88,6 +93,10 @@ class K9MessageStore(
         flagMessageOperations.setMessageFlag(folderId, messageServerId, flag, set)
     }
 
+    override fun updateMessageFlags(folderId: Long, flagUpdates: Map<String, Map<Flag, Boolean>>): Set<String> {
+        return flagMessageOperations.updateMessageFlags(folderId, flagUpdates)
+    }
+
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         updateMessageOperations.setNewMessageState(folderId, messageServerId, newMessage)
     }
@@ -104,6 +113,10 @@ class K9MessageStore(
         return retrieveMessageOperations.getMessageServerIds(messageIds)
     }
 
+    override fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Map<String, Long> {
+        return retrieveMessageOperations.getMessageIds(folderId, messageServerIds)
+    }
+
     override fun getMessageServerIds(folderId: Long): Set<String> {
         return retrieveMessageOperations.getMessageServerIds(folderId)
     }
@@ -124,18 +137,26 @@ class K9MessageStore(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<out T?>,
     ): List<T> {
-        return retrieveMessageListOperations.getMessages(selection, selectionArgs, sortOrder, messageMapper)
+        return retrieveMessageListOperations.getMessages(selection, selectionArgs, sortOrder, limit, messageMapper)
     }
 
     override fun <T> getThreadedMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<out T?>,
     ): List<T> {
-        return retrieveMessageListOperations.getThreadedMessages(selection, selectionArgs, sortOrder, messageMapper)
+        return retrieveMessageListOperations.getThreadedMessages(
+            selection,
+            selectionArgs,
+            sortOrder,
+            limit,
+            messageMapper,
+        )
     }
 
     override fun <T> getThread(threadId: Long, sortOrder: String, messageMapper: MessageMapper<out T?>): List<T> {
@@ -214,6 +235,10 @@ class K9MessageStore(
         return databaseOperations.getSize()
     }
 
+    override fun getReclaimableSize(): Long {
+        return databaseOperations.getReclaimableSize()
+    }
+
     override fun changeFolder(folderServerId: String, name: String, type: FolderType) {
         updateFolderOperations.changeFolder(folderServerId, name, type)
     }
@@ -307,6 +332,7 @@ class K9MessageStore(
     }
 
     override fun compact() {
-        return databaseOperations.compact()
+        folderMessageCountOperations.verifyMessageCounts()
+        databaseOperations.compact()
     }
 }
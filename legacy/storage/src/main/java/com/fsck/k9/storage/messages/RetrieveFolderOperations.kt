@@ -70,20 +70,11 @@ internal class RetrieveFolderOperations(private val lockableDatabase: LockableDa
 
             val query =
                 """
-SELECT ${FOLDER_COLUMNS.joinToString()}, (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND (messages.read = 0 OR folders.id = ?)
-), (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND messages.flagged = 1
-)
+SELECT ${FOLDER_COLUMNS.joinToString()},
+  CASE WHEN folders.id = ? THEN counts.message_count ELSE counts.unread_count END,
+  counts.flagged_count
 FROM folders
+LEFT JOIN folder_message_counts counts ON (counts.folder_id = folders.id)
 $displayModeSelection
                 """
 
@@ -139,7 +130,7 @@ $displayModeSelection
     fun getMessageCount(folderId: Long): Int {
         return lockableDatabase.execute(false) { db ->
             db.rawQuery(
-                "SELECT COUNT(id) FROM messages WHERE empty = 0 AND deleted = 0 AND folder_id = ?",
+                "SELECT message_count FROM folder_message_counts WHERE folder_id = ?",
                 arrayOf(folderId.toString()),
             ).use { cursor ->
                 if (cursor.moveToFirst()) cursor.getInt(0) else 0
@@ -150,7 +141,7 @@ $displayModeSelection
     fun getUnreadMessageCount(folderId: Long): Int {
         return lockableDatabase.execute(false) { db ->
             db.rawQuery(
-                "SELECT COUNT(id) FROM messages WHERE empty = 0 AND deleted = 0 AND read = 0 AND folder_id = ?",
+                "SELECT unread_count FROM folder_message_counts WHERE folder_id = ?",
                 arrayOf(folderId.toString()),
             ).use { cursor ->
                 if (cursor.moveToFirst()) cursor.getInt(0) else 0
@@ -15,6 +15,7 @@ internal class RetrieveMessageListOperations(private val lockableDatabase: Locka
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         mapper: MessageMapper<out T?>,
     ): List<T> {
         return lockableDatabase.execute(false) { database ->
@@ -45,6 +46,7 @@ WHERE
   ($selection)
   AND empty = 0 AND deleted = 0
 ORDER BY $sortOrder
+${buildLimitClause(limit)}
                 """,
                 selectionArgs,
             ).use { cursor ->
@@ -65,6 +67,7 @@ ORDER BY $sortOrder
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         mapper: MessageMapper<out T?>,
     ): List<T> {
         val orderBy = SqlWhereClause.addPrefixToSelection(
@@ -129,6 +132,7 @@ JOIN messages ON (
 JOIN folders ON (folders.id = messages.folder_id)
 GROUP BY threads.root
 ORDER BY $orderBy
+${buildLimitClause(limit)}
                 """,
                 selectionArgs,
             ).use { cursor ->
@@ -191,6 +195,13 @@ ORDER BY $sortOrder
     }
 }
 
+private fun buildLimitClause(limit: Int?): String {
+    if (limit == null) return ""
+
+    require(limit > 0) { "limit must be positive" }
+    return "LIMIT $limit"
+}
+
 private class CursorMessageAccessor(val cursor: Cursor, val includesThreadCount: Boolean) : MessageDetailsAccessor {
     override val id: Long
         get() = cursor.getLong(0)
@@ -50,6 +50,16 @@ internal class SaveMessageOperations(
         saveMessage(folderId, messageServerId, messageData)
     }
 
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        if (messages.isEmpty()) return
+
+        lockableDatabase.execute(true) {
+            for ((messageServerId, messageData) in messages) {
+                saveMessage(folderId, messageServerId, messageData)
+            }
+        }
+    }
+
     fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return if (existingMessageId == null) {
             saveLocalMessage(folderId, messageData)
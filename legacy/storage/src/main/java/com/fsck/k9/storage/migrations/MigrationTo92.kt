@@ -0,0 +1,16 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add an index on `messages(folder_id, message_id)`.
+ *
+ * Threading looks up every Message-ID in the References header of a new message. Without this index each lookup
+ * scanned all messages of the folder.
+ */
+internal class MigrationTo92(private val db: SQLiteDatabase) {
+    fun addMessageIdIndex() {
+        db.execSQL("DROP INDEX IF EXISTS msg_folder_id_message_id")
+        db.execSQL("CREATE INDEX IF NOT EXISTS msg_folder_id_message_id ON messages (folder_id, message_id)")
+    }
+}
@@ -0,0 +1,101 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add the `folder_message_counts` table that stores the number of messages, unread messages, and starred messages per
+ * folder.
+ *
+ * The counts are kept up to date by triggers on the `messages` and `folders` tables. Before, they were computed by
+ * counting the messages of every folder whenever the folder list was displayed.
+ */
+internal class MigrationTo93(private val db: SQLiteDatabase) {
+    fun addFolderMessageCounts() {
+        db.execSQL("DROP TABLE IF EXISTS folder_message_counts")
+        db.execSQL(
+            "CREATE TABLE folder_message_counts (" +
+                "folder_id INTEGER PRIMARY KEY NOT NULL, " +
+                "message_count INTEGER NOT NULL DEFAULT 0, " +
+                "unread_count INTEGER NOT NULL DEFAULT 0, " +
+                "flagged_count INTEGER NOT NULL DEFAULT 0" +
+                ")",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS create_folder_message_counts")
+        db.execSQL(
+            "CREATE TRIGGER create_folder_message_counts " +
+                "AFTER INSERT ON folders " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO folder_message_counts (folder_id) VALUES (NEW.id); " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_folder_message_counts")
+        db.execSQL(
+            "CREATE TRIGGER delete_folder_message_counts " +
+                "AFTER DELETE ON folders " +
+                "BEGIN " +
+                "DELETE FROM folder_message_counts WHERE folder_id = OLD.id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_inserted_message")
+        db.execSQL(
+            "CREATE TRIGGER count_inserted_message " +
+                "AFTER INSERT ON messages " +
+                "WHEN NEW.empty = 0 AND NEW.deleted = 0 " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count + 1, " +
+                "unread_count = unread_count + (CASE WHEN NEW.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count + (CASE WHEN NEW.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = NEW.folder_id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_deleted_message")
+        db.execSQL(
+            "CREATE TRIGGER count_deleted_message " +
+                "AFTER DELETE ON messages " +
+                "WHEN OLD.empty = 0 AND OLD.deleted = 0 " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count - 1, " +
+                "unread_count = unread_count - (CASE WHEN OLD.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count - (CASE WHEN OLD.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = OLD.folder_id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS count_updated_message")
+        db.execSQL(
+            "CREATE TRIGGER count_updated_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "BEGIN " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count - 1, " +
+                "unread_count = unread_count - (CASE WHEN OLD.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count - (CASE WHEN OLD.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty = 0 AND OLD.deleted = 0; " +
+                "UPDATE folder_message_counts SET " +
+                "message_count = message_count + 1, " +
+                "unread_count = unread_count + (CASE WHEN NEW.read = 0 THEN 1 ELSE 0 END), " +
+                "flagged_count = flagged_count + (CASE WHEN NEW.flagged = 1 THEN 1 ELSE 0 END) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty = 0 AND NEW.deleted = 0; " +
+                "END",
+        )
+        db.execSQL(
+            """
+INSERT INTO folder_message_counts (folder_id, message_count, unread_count, flagged_count)
+SELECT folders.id, COUNT(messages.id),
+  COUNT(CASE WHEN messages.read = 0 THEN 1 END),
+  COUNT(CASE WHEN messages.flagged = 1 THEN 1 END)
+FROM folders
+LEFT JOIN messages ON (messages.folder_id = folders.id AND messages.empty = 0 AND messages.deleted = 0)
+GROUP BY folders.id
+            """.trimIndent(),
+        )
+    }
+}
@@ -37,5 +37,7 @@ object Migrations {
         if (oldVersion < 88) MigrationTo88(db, migrationsHelper).addFoldersVisibleColumn()
         if (oldVersion < 90) MigrationTo90(db, migrationsHelper).removeImapPrefixFromFolderServerId()
         if (oldVersion < 91) MigrationTo91(db, migrationsHelper).addAccountIdColumn()
+        if (oldVersion < 92) MigrationTo92(db).addMessageIdIndex()
+        if (oldVersion < 93) MigrationTo93(db).addFolderMessageCounts()
     }
 }
@@ -0,0 +1,54 @@
+package com.fsck.k9.mailstore
+
+import android.database.sqlite.SQLiteDatabase
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import com.fsck.k9.storage.RobolectricTest
+import com.fsck.k9.storage.messages.FolderMessageCounts
+import com.fsck.k9.storage.messages.createDatabase
+import com.fsck.k9.storage.messages.createFolder
+import com.fsck.k9.storage.messages.createMessage
+import com.fsck.k9.storage.messages.createThread
+import com.fsck.k9.storage.messages.readFolderMessageCounts
+import com.fsck.k9.storage.messages.readMessages
+import org.junit.After
+import org.junit.Test
+
+class LocalFolderTest : RobolectricTest() {
+    private val sqliteDatabase: SQLiteDatabase = createDatabase()
+
+    @After
+    fun tearDown() {
+        sqliteDatabase.close()
+    }
+
+    @Test
+    fun `convertToEmptyMessage() should update folder message counts`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "delete",
+            subject = "Subject",
+            read = false,
+            flagged = true,
+            messageIdHeader = "msg001@domain.example",
+        )
+        val messageId2 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "child",
+            read = false,
+            messageIdHeader = "msg002@domain.example",
+        )
+        val threadId1 = sqliteDatabase.createThread(messageId = messageId1)
+        sqliteDatabase.createThread(messageId = messageId2, root = threadId1, parent = threadId1)
+
+        LocalFolder.convertToEmptyMessage(sqliteDatabase, messageId1, "msg001@domain.example")
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(1, 1, 0))
+        val message = sqliteDatabase.readMessages().first { it.id == messageId1 }
+        assertThat(message.empty).isEqualTo(1)
+        assertThat(message.messageId).isEqualTo("msg001@domain.example")
+        assertThat(message.subject).isNull()
+    }
+}
@@ -18,6 +18,7 @@ import kotlinx.coroutines.flow.emptyFlow
 import net.thunderbird.core.android.account.AccountDefaultsProvider
 import net.thunderbird.core.android.account.LegacyAccountManager
 import net.thunderbird.core.common.appConfig.PlatformConfigProvider
+import net.thunderbird.core.common.provider.AppVersionProvider
 import net.thunderbird.core.featureflag.FeatureFlagProvider
 import net.thunderbird.core.featureflag.InMemoryFeatureFlagProvider
 import net.thunderbird.core.logging.LogLevel
@@ -96,6 +97,7 @@ val testModule = module {
     }
     single<PlatformConfigProvider> { FakePlatformConfigProvider() }
     single<LocalMessageUidPrefixProvider> { FakeLocalMessageUidPrefixProvider() }
+    single<AppVersionProvider> { mock { on { getVersionNumber() } doReturn "1.0" } }
 }
 
 class FakePlatformConfigProvider : PlatformConfigProvider {
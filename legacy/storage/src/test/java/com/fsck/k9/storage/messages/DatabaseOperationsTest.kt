@@ -0,0 +1,104 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isGreaterThan
+import com.fsck.k9.mailstore.MigrationsHelper
+import com.fsck.k9.mailstore.StorageFilesProvider
+import com.fsck.k9.storage.K9SchemaDefinitionFactory
+import com.fsck.k9.storage.RobolectricTest
+import java.io.File
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.mock
+
+private const val AUTO_VACUUM_NONE = 0L
+private const val AUTO_VACUUM_INCREMENTAL = 2L
+
+class DatabaseOperationsTest : RobolectricTest() {
+    private val directory = createRandomTempDirectory()
+    private val databaseFile = File(directory, "test.db")
+    private val storageFilesProvider = object : StorageFilesProvider {
+        override fun getDatabaseFile() = databaseFile
+        override fun getAttachmentDirectory() = File(directory, "attachments")
+    }
+    private lateinit var sqliteDatabase: SQLiteDatabase
+
+    @After
+    fun tearDown() {
+        sqliteDatabase.close()
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `new database should use incremental vacuum`() {
+        sqliteDatabase = createFileDatabase()
+
+        assertThat(sqliteDatabase.readPragma("auto_vacuum")).isEqualTo(AUTO_VACUUM_INCREMENTAL)
+    }
+
+    @Test
+    fun `compact() should release free pages`() {
+        sqliteDatabase = createFileDatabase()
+        sqliteDatabase.createFreePages()
+        assertThat(sqliteDatabase.readPragma("freelist_count")).isGreaterThan(0L)
+        val databaseOperations = createDatabaseOperations()
+
+        databaseOperations.compact()
+
+        assertThat(sqliteDatabase.readPragma("freelist_count")).isEqualTo(0L)
+        assertThat(databaseOperations.getReclaimableSize()).isEqualTo(0L)
+    }
+
+    @Test
+    fun `compact() should enable incremental vacuum on existing database`() {
+        sqliteDatabase = createFileDatabase(createTableBeforeUpgrade = true)
+        assertThat(sqliteDatabase.readPragma("auto_vacuum")).isEqualTo(AUTO_VACUUM_NONE)
+        sqliteDatabase.createFreePages()
+        val databaseOperations = createDatabaseOperations()
+
+        databaseOperations.compact()
+
+        assertThat(sqliteDatabase.readPragma("auto_vacuum")).isEqualTo(AUTO_VACUUM_INCREMENTAL)
+        assertThat(sqliteDatabase.readPragma("freelist_count")).isEqualTo(0L)
+    }
+
+    private fun createDatabaseOperations(): DatabaseOperations {
+        return DatabaseOperations(createLockableDatabaseMock(sqliteDatabase), storageFilesProvider)
+    }
+
+    private fun createFileDatabase(createTableBeforeUpgrade: Boolean = false): SQLiteDatabase {
+        val database = SQLiteDatabase.openDatabase(
+            databaseFile.path,
+            null,
+            SQLiteDatabase.CREATE_IF_NECESSARY or SQLiteDatabase.NO_LOCALIZED_COLLATORS,
+        )
+
+        if (createTableBeforeUpgrade) {
+            // Once a table exists, setting the auto_vacuum mode has no effect. This is what databases created by
+            // older app versions look like.
+            database.execSQL("CREATE TABLE legacy (id INTEGER PRIMARY KEY)")
+        }
+
+        val schemaDefinition = K9SchemaDefinitionFactory().createSchemaDefinition(mock<MigrationsHelper>())
+        schemaDefinition.doDbUpgrade(database)
+
+        return database
+    }
+
+    private fun SQLiteDatabase.createFreePages() {
+        execSQL("CREATE TABLE filler (data BLOB)")
+        repeat(100) {
+            execSQL("INSERT INTO filler (data) VALUES (zeroblob(4096))")
+        }
+        execSQL("DROP TABLE filler")
+    }
+
+    private fun SQLiteDatabase.readPragma(name: String): Long {
+        return rawQuery("PRAGMA $name", null).use { cursor ->
+            cursor.moveToFirst()
+            cursor.getLong(0)
+        }
+    }
+}
@@ -2,15 +2,18 @@ package com.fsck.k9.storage.messages
 
 import android.database.sqlite.SQLiteDatabase
 import assertk.assertThat
+import assertk.assertions.containsExactly
 import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.extracting
 import assertk.assertions.hasSize
 import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import com.fsck.k9.mailstore.StorageFilesProvider
 import com.fsck.k9.storage.RobolectricTest
+import java.io.File
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
@@ -198,4 +201,80 @@ class DeleteMessageOperationsTest : RobolectricTest() {
         assertThat(threads).hasSize(2)
         assertThat(threads).extracting { it.id }.containsExactlyInAnyOrder(threadId1, threadId2)
     }
+
+    @Test
+    fun `destroy message with child message should update folder message counts`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "delete",
+            read = false,
+            flagged = true,
+            messageIdHeader = "msg001@domain.example",
+        )
+        val messageId2 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "child",
+            read = true,
+            messageIdHeader = "msg002@domain.example",
+        )
+        val threadId1 = sqliteDatabase.createThread(messageId = messageId1)
+        sqliteDatabase.createThread(messageId = messageId2, root = threadId1, parent = threadId1)
+
+        deleteMessageOperations.destroyMessages(folderId = folderId, messageServerIds = listOf("delete"))
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(1, 0, 0))
+    }
+
+    @Test
+    fun `destroy multiple messages`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messagePartId1 = sqliteDatabase.createMessagePart(dataLocation = DataLocation.CHILD_PART_CONTAINS_DATA)
+        val messagePartId2 = sqliteDatabase.createMessagePart(
+            root = messagePartId1,
+            parent = messagePartId1,
+            seq = 1,
+            dataLocation = DataLocation.ON_DISK,
+        )
+        val messagePartFile = File(messagePartDirectory, messagePartId2.toString()).apply { writeText("Part") }
+        val messageId1 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "parent",
+            empty = false,
+            messageIdHeader = "msg001@domain.example",
+            messagePartId = messagePartId1,
+        )
+        val messageId2 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "child",
+            empty = false,
+            messageIdHeader = "msg002@domain.example",
+        )
+        val messageId3 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "other",
+            empty = false,
+            messageIdHeader = "msg003@domain.example",
+        )
+        val messageId4 = sqliteDatabase.createMessage(
+            folderId = folderId,
+            uid = "keep",
+            empty = false,
+            messageIdHeader = "msg004@domain.example",
+        )
+        val threadId1 = sqliteDatabase.createThread(messageId = messageId1)
+        sqliteDatabase.createThread(messageId = messageId2, root = threadId1, parent = threadId1)
+        sqliteDatabase.createThread(messageId = messageId3)
+        val threadId4 = sqliteDatabase.createThread(messageId = messageId4)
+
+        deleteMessageOperations.destroyMessages(
+            folderId = folderId,
+            messageServerIds = listOf("parent", "child", "other", "missing"),
+        )
+
+        assertThat(sqliteDatabase.readMessages()).extracting { it.id }.containsExactly(messageId4)
+        assertThat(sqliteDatabase.readThreads()).extracting { it.id }.containsExactly(threadId4)
+        assertThat(sqliteDatabase.readMessageParts()).isEmpty()
+        assertThat(messagePartFile.exists()).isFalse()
+    }
 }
@@ -2,7 +2,9 @@ package com.fsck.k9.storage.messages
 
 import android.database.sqlite.SQLiteDatabase
 import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isTrue
 import com.fsck.k9.storage.RobolectricTest
@@ -111,4 +113,44 @@ class FlagMessageOperationsTest : RobolectricTest() {
         val message = sqliteDatabase.readMessages().first()
         assertThat(message.flags).isEqualTo("")
     }
+
+    @Test
+    fun `update flags of multiple messages`() {
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid1", read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid2", read = true)
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid3", read = false, flags = "X_DOWNLOADED_FULL")
+
+        val changedMessageServerIds = flagMessageOperations.updateMessageFlags(
+            folderId = 1,
+            flagUpdates = mapOf(
+                "uid1" to mapOf(Flag.SEEN to true, Flag.FLAGGED to false),
+                "uid2" to mapOf(Flag.SEEN to true, Flag.FLAGGED to false),
+                "uid3" to mapOf(Flag.SEEN to false, Flag.DRAFT to true),
+            ),
+        )
+
+        assertThat(changedMessageServerIds).containsExactlyInAnyOrder("uid1", "uid3")
+
+        val messages = sqliteDatabase.readMessages().associateBy { it.uid }
+        assertThat(messages.getValue("uid1").read).isEqualTo(1)
+        assertThat(messages.getValue("uid1").flagged).isEqualTo(0)
+        assertThat(messages.getValue("uid2").read).isEqualTo(1)
+        assertThat(messages.getValue("uid3").flags).isEqualTo("X_DOWNLOADED_FULL,DRAFT")
+    }
+
+    @Test
+    fun `update flags should skip deleted and missing messages`() {
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid1", deleted = true, read = false)
+
+        val changedMessageServerIds = flagMessageOperations.updateMessageFlags(
+            folderId = 1,
+            flagUpdates = mapOf(
+                "uid1" to mapOf(Flag.SEEN to true),
+                "uid2" to mapOf(Flag.SEEN to true),
+            ),
+        )
+
+        assertThat(changedMessageServerIds).isEmpty()
+        assertThat(sqliteDatabase.readMessages().single().read).isEqualTo(0)
+    }
 }
@@ -95,3 +95,18 @@ data class FolderEntry(
     val moreMessages: String?,
     val accountId: String? = null,
 )
+
+data class FolderMessageCounts(val total: Int, val unread: Int, val flagged: Int)
+
+fun SQLiteDatabase.readFolderMessageCounts(folderId: Long): FolderMessageCounts? {
+    return rawQuery(
+        "SELECT message_count, unread_count, flagged_count FROM folder_message_counts WHERE folder_id = ?",
+        arrayOf(folderId.toString()),
+    ).use { cursor ->
+        if (cursor.moveToFirst()) {
+            FolderMessageCounts(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2))
+        } else {
+            null
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import com.fsck.k9.storage.RobolectricTest
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class FolderMessageCountOperationsTest : RobolectricTest() {
+    private lateinit var sqliteDatabase: SQLiteDatabase
+    private lateinit var folderMessageCountOperations: FolderMessageCountOperations
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+        sqliteDatabase = createDatabase()
+        val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
+        folderMessageCountOperations = FolderMessageCountOperations(lockableDatabase)
+    }
+
+    @After
+    fun tearDown() {
+        sqliteDatabase.close()
+    }
+
+    @Test
+    fun `counts should be updated when messages are inserted`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = true, flagged = false)
+        sqliteDatabase.createMessage(folderId = folderId, empty = true)
+        sqliteDatabase.createMessage(folderId = folderId, deleted = true)
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(2, 1, 1))
+    }
+
+    @Test
+    fun `counts should be updated when flags change`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+
+        sqliteDatabase.execSQL("UPDATE messages SET read = 1, flagged = 1 WHERE id = $messageId")
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(1, 0, 1))
+
+        sqliteDatabase.execSQL("UPDATE messages SET deleted = 1 WHERE id = $messageId")
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(0, 0, 0))
+    }
+
+    @Test
+    fun `counts should be updated when messages are moved`() {
+        val sourceFolderId = sqliteDatabase.createFolder()
+        val destinationFolderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = sourceFolderId, read = false, flagged = true)
+
+        sqliteDatabase.execSQL("UPDATE messages SET folder_id = $destinationFolderId WHERE id = $messageId")
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(sourceFolderId)).isEqualTo(FolderMessageCounts(0, 0, 0))
+        assertThat(sqliteDatabase.readFolderMessageCounts(destinationFolderId)).isEqualTo(FolderMessageCounts(1, 1, 1))
+    }
+
+    @Test
+    fun `counts should be updated when messages are deleted`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = true, flagged = false)
+
+        sqliteDatabase.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(1, 0, 0))
+    }
+
+    @Test
+    fun `counts should be removed when folder is deleted`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId)
+
+        sqliteDatabase.delete("folders", "id = ?", arrayOf(folderId.toString()))
+
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isNull()
+    }
+
+    @Test
+    fun `verifyMessageCounts() with matching counts`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+
+        val result = folderMessageCountOperations.verifyMessageCounts()
+
+        assertThat(result).isFalse()
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId)).isEqualTo(FolderMessageCounts(1, 1, 1))
+    }
+
+    @Test
+    fun `verifyMessageCounts() should rebuild counts that are out of sync`() {
+        val folderId1 = sqliteDatabase.createFolder()
+        val folderId2 = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId1, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId2, read = true, flagged = false)
+        sqliteDatabase.execSQL("UPDATE folder_message_counts SET unread_count = 42 WHERE folder_id = $folderId1")
+        sqliteDatabase.execSQL("DELETE FROM folder_message_counts WHERE folder_id = $folderId2")
+
+        val result = folderMessageCountOperations.verifyMessageCounts()
+
+        assertThat(result).isTrue()
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId1)).isEqualTo(FolderMessageCounts(1, 1, 1))
+        assertThat(sqliteDatabase.readFolderMessageCounts(folderId2)).isEqualTo(FolderMessageCounts(1, 0, 0))
+    }
+}
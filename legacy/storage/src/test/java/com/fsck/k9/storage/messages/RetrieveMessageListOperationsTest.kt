@@ -131,6 +131,50 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
         assertThat(result).containsExactly(messageId2)
     }
 
+    @Test
+    fun `getMessages() with limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1000L)
+        sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 3000L)
+        sqliteDatabase.createThread(messageId2)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 2000L)
+        sqliteDatabase.createThread(messageId3)
+
+        val result = retrieveMessageListOperations.getMessages(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "date DESC, id DESC",
+            limit = 2,
+        ) { message ->
+            message.id
+        }
+
+        assertThat(result).containsExactly(messageId2, messageId3)
+    }
+
+    @Test
+    fun `getThreadedMessages() with limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1000L)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 3000L)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 2000L)
+        sqliteDatabase.createThread(messageId3)
+
+        val result = retrieveMessageListOperations.getThreadedMessages(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "date DESC, id DESC",
+            limit = 1,
+        ) { message ->
+            message.id
+        }
+
+        assertThat(result).containsExactly(messageId2)
+    }
+
     @Test
     fun `getMessages() selecting only unread messages`() {
         val folderId = sqliteDatabase.createFolder()
@@ -499,7 +543,7 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
             selection = "folder_id = ?",
             selectionArgs = arrayOf(folderId.toString()),
             sortOrder = "date DESC, id DESC",
-            mapper,
+            mapper = mapper,
         )
     }
 
@@ -508,7 +552,7 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
             selection = "folder_id = ?",
             selectionArgs = arrayOf(folderId.toString()),
             sortOrder = "date DESC, id DESC",
-            mapper,
+            mapper = mapper,
         )
     }
 }
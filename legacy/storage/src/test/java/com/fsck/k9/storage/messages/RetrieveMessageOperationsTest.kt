@@ -74,6 +74,26 @@ class RetrieveMessageOperationsTest : RobolectricTest() {
         )
     }
 
+    @Test
+    fun `get message ids`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
+        val messageId2 = sqliteDatabase.createMessage(folderId = 1, uid = "uid2")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid3")
+        sqliteDatabase.createMessage(folderId = 2, uid = "uid1")
+
+        val serverIdToDatabaseIdMapping = retrieveMessageOperations.getMessageIds(
+            folderId = 1,
+            messageServerIds = listOf("uid1", "uid2", "uid4"),
+        )
+
+        assertThat(serverIdToDatabaseIdMapping).isEqualTo(
+            mapOf(
+                "uid1" to messageId1,
+                "uid2" to messageId2,
+            ),
+        )
+    }
+
     @Test
     fun `get all message server ids`() {
         sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
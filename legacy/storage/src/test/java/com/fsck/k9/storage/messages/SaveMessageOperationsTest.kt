@@ -325,6 +325,42 @@ class SaveMessageOperationsTest : RobolectricTest() {
         assertThat(message3.uid).isEqualTo("uid1")
     }
 
+    @Test
+    fun `save multiple remote messages`() {
+        val messageData1 = buildMessage {
+            header("Subject", "Message 1")
+            header("Message-ID", "<msg0001@domain.example>")
+
+            textBody("One")
+        }.toSaveMessageData()
+        val messageData2 = buildMessage {
+            header("Subject", "Re: Message 1")
+            header("Message-ID", "<msg0002@domain.example>")
+            header("In-Reply-To", "<msg0001@domain.example>")
+
+            textBody("Two")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessages(
+            folderId = 1,
+            messages = mapOf("uid1" to messageData1, "uid2" to messageData2),
+        )
+
+        val messages = sqliteDatabase.readMessages()
+        assertThat(messages).hasSize(2)
+        val message1 = messages.first { it.uid == "uid1" }
+        val message2 = messages.first { it.uid == "uid2" }
+        assertThat(message1.subject).isEqualTo("Message 1")
+        assertThat(message2.subject).isEqualTo("Re: Message 1")
+
+        val threads = sqliteDatabase.readThreads()
+        assertThat(threads).hasSize(2)
+        val thread1 = threads.first { it.messageId == message1.id }
+        val thread2 = threads.first { it.messageId == message2.id }
+        assertThat(thread2.root).isEqualTo(thread1.id)
+        assertThat(thread2.parent).isEqualTo(thread1.id)
+    }
+
     @Test
     fun `save message with server ID already existing in MessageStore should replace that message`() {
         val existingMessageData = buildMessage {
@@ -0,0 +1,58 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo92Test {
+    private val database = createDatabaseVersion91()
+    private val migration = MigrationTo92(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `should add index on folder_id and message_id`() {
+        migration.addMessageIdIndex()
+
+        assertThat(database.readIndexColumns("msg_folder_id_message_id")).containsExactly("folder_id", "message_id")
+    }
+
+    @Test
+    fun `should not fail if index already exists`() {
+        migration.addMessageIdIndex()
+
+        migration.addMessageIdIndex()
+
+        assertThat(database.readIndexColumns("msg_folder_id_message_id")).containsExactly("folder_id", "message_id")
+    }
+
+    private fun SQLiteDatabase.readIndexColumns(indexName: String): List<String> {
+        return rawQuery("PRAGMA index_info($indexName)", null).use { cursor ->
+            cursor.map { it.getString(cursor.getColumnIndexOrThrow("name")) }
+        }
+    }
+
+    private fun createDatabaseVersion91(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    folder_id INTEGER,
+                    uid TEXT,
+                    message_id TEXT
+                )
+                """.trimIndent(),
+            )
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo93Test {
+    private val database = createDatabaseVersion92()
+    private val migration = MigrationTo93(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `should count existing messages`() {
+        val folderId1 = database.createFolderVersion92()
+        val folderId2 = database.createFolderVersion92()
+        val folderId3 = database.createFolderVersion92()
+        database.createMessageVersion92(folderId = folderId1)
+        database.createMessageVersion92(folderId = folderId1, read = true)
+        database.createMessageVersion92(folderId = folderId1, read = true, flagged = true)
+        database.createMessageVersion92(folderId = folderId1, deleted = true)
+        database.createMessageVersion92(folderId = folderId1, empty = true)
+        database.createMessageVersion92(folderId = folderId2, flagged = true)
+
+        migration.addFolderMessageCounts()
+
+        assertThat(database.readFolderMessageCounts()).containsExactlyInAnyOrder(
+            FolderMessageCounts(folderId = folderId1, messageCount = 3, unreadCount = 1, flaggedCount = 1),
+            FolderMessageCounts(folderId = folderId2, messageCount = 1, unreadCount = 1, flaggedCount = 1),
+            FolderMessageCounts(folderId = folderId3, messageCount = 0, unreadCount = 0, flaggedCount = 0),
+        )
+    }
+
+    @Test
+    fun `inserting and deleting messages should update counts`() {
+        val folderId = database.createFolderVersion92()
+        val messageId = database.createMessageVersion92(folderId = folderId)
+        migration.addFolderMessageCounts()
+
+        database.createMessageVersion92(folderId = folderId, read = true, flagged = true)
+        database.createMessageVersion92(folderId = folderId, empty = true)
+        database.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        assertThat(database.readFolderMessageCounts()).containsExactlyInAnyOrder(
+            FolderMessageCounts(folderId = folderId, messageCount = 1, unreadCount = 0, flaggedCount = 1),
+        )
+    }
+
+    @Test
+    fun `updating messages should update counts`() {
+        val folderId1 = database.createFolderVersion92()
+        val folderId2 = database.createFolderVersion92()
+        val messageId1 = database.createMessageVersion92(folderId = folderId1)
+        val messageId2 = database.createMessageVersion92(folderId = folderId1)
+        val messageId3 = database.createMessageVersion92(folderId = folderId1)
+        migration.addFolderMessageCounts()
+
+        database.updateMessage(messageId1, contentValuesOf("read" to 1, "flagged" to 1))
+        database.updateMessage(messageId2, contentValuesOf("folder_id" to folderId2))
+        database.updateMessage(messageId3, contentValuesOf("deleted" to 1))
+
+        assertThat(database.readFolderMessageCounts()).containsExactlyInAnyOrder(
+            FolderMessageCounts(folderId = folderId1, messageCount = 1, unreadCount = 0, flaggedCount = 1),
+            FolderMessageCounts(folderId = folderId2, messageCount = 1, unreadCount = 1, flaggedCount = 0),
+        )
+    }
+
+    @Test
+    fun `inserting and deleting folders should update counts table`() {
+        val folderId1 = database.createFolderVersion92()
+        migration.addFolderMessageCounts()
+
+        val folderId2 = database.createFolderVersion92()
+        database.delete("folders", "id = ?", arrayOf(folderId1.toString()))
+
+        assertThat(database.readFolderMessageCounts()).containsExactlyInAnyOrder(
+            FolderMessageCounts(folderId = folderId2, messageCount = 0, unreadCount = 0, flaggedCount = 0),
+        )
+    }
+
+    private fun SQLiteDatabase.createFolderVersion92(): Long {
+        return insert("folders", null, contentValuesOf("name" to "Folder"))
+    }
+
+    private fun SQLiteDatabase.createMessageVersion92(
+        folderId: Long,
+        read: Boolean = false,
+        flagged: Boolean = false,
+        deleted: Boolean = false,
+        empty: Boolean = false,
+    ): Long {
+        val values = contentValuesOf(
+            "folder_id" to folderId,
+            "read" to read,
+            "flagged" to flagged,
+            "deleted" to deleted,
+            "empty" to empty,
+        )
+
+        return insert("messages", null, values)
+    }
+
+    private fun SQLiteDatabase.updateMessage(messageId: Long, values: ContentValues) {
+        update("messages", values, "id = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun SQLiteDatabase.readFolderMessageCounts(): List<FolderMessageCounts> {
+        return rawQuery(
+            "SELECT folder_id, message_count, unread_count, flagged_count FROM folder_message_counts",
+            null,
+        ).use { cursor ->
+            cursor.map {
+                FolderMessageCounts(
+                    folderId = it.getLong(0),
+                    messageCount = it.getInt(1),
+                    unreadCount = it.getInt(2),
+                    flaggedCount = it.getInt(3),
+                )
+            }
+        }
+    }
+
+    private fun createDatabaseVersion92(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE folders (
+                    id INTEGER PRIMARY KEY,
+                    name TEXT
+                )
+                """.trimIndent(),
+            )
+
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    deleted INTEGER default 0,
+                    folder_id INTEGER,
+                    uid TEXT,
+                    empty INTEGER default 0,
+                    read INTEGER default 0,
+                    flagged INTEGER default 0
+                )
+                """.trimIndent(),
+            )
+        }
+    }
+
+    private data class FolderMessageCounts(
+        val folderId: Long,
+        val messageCount: Int,
+        val unreadCount: Int,
+        val flaggedCount: Int,
+    )
+}
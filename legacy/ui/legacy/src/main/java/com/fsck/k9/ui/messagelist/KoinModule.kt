@@ -1,10 +1,18 @@
 package com.fsck.k9.ui.messagelist
 
+import com.fsck.k9.helper.NamedThreadFactory
 import com.fsck.k9.ui.messagelist.debug.AuthDebugActions
+import java.util.concurrent.Executors
 import net.thunderbird.feature.navigation.drawer.dropdown.navigationDropDownDrawerModule
 import org.koin.core.module.dsl.viewModel
+import org.koin.core.qualifier.named
 import org.koin.dsl.module
 
+/**
+ * Maximum number of accounts whose message lists are loaded at the same time.
+ */
+private const val MAX_ACCOUNT_QUERY_THREADS = 4
+
 val messageListUiModule = module {
     includes(navigationDropDownDrawerModule)
 
@@ -20,8 +28,12 @@ val messageListUiModule = module {
             outboxFolderManager = get(),
             featureFlagProvider = get(),
             contactLetterBitmapCreator = get(),
+            accountQueryExecutor = get(named("MessageListAccountQueryExecutorService")),
         )
     }
+    single(named("MessageListAccountQueryExecutorService")) {
+        Executors.newFixedThreadPool(MAX_ACCOUNT_QUERY_THREADS, NamedThreadFactory("MessageListAccountQuery"))
+    }
     factory {
         MessageListLiveDataFactory(
             messageListLoader = get(),
@@ -130,6 +130,8 @@ const val MINIMUM_CLICK_INTERVAL = 200L
 const val RECENT_CHANGES_SNACKBAR_DURATION = 10 * 1000
 
 private const val TAG = "BaseMessageListFragment"
+private const val MESSAGE_LIST_PAGE_SIZE = 100
+private const val MESSAGE_LIST_PREFETCH_DISTANCE = 25
 
 @Suppress(
     "LargeClass",
@@ -238,6 +240,7 @@ class LegacyMessageListFragment :
     private var isThreadDisplay = false
     private var activeMessage: MessageReference? = null
     private var rememberedSelected: Set<Long>? = null
+    private var isSelectAllPending = false
     private var lastMessageClick = 0L
 
     final override lateinit var localSearch: LocalMessageSearch
@@ -588,6 +591,7 @@ class LegacyMessageListFragment :
         itemTouchHelper.attachToRecyclerView(recyclerView)
 
         recyclerView.adapter = adapter
+        recyclerView.addOnScrollListener(loadNextPageScrollListener)
 
         if (featureFlagProvider.provide(FeatureFlagKey.DisplayInAppNotifications) == FeatureFlagResult.Enabled) {
             view.findViewById<ComposeView>(R.id.banner_global_compose_view).apply {
@@ -711,7 +715,19 @@ class LegacyMessageListFragment :
             accounts = config.search.getLegacyAccounts(accountManager)
         }
 
-        legacyViewModel.loadMessageList(config, forceUpdate)
+        legacyViewModel.loadMessageList(config, forceUpdate, pageSize = MESSAGE_LIST_PAGE_SIZE)
+    }
+
+    private val loadNextPageScrollListener = object : RecyclerView.OnScrollListener() {
+        override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+            if (dy <= 0) return
+
+            val layoutManager = recyclerView.layoutManager as LinearLayoutManager
+            val lastVisiblePosition = layoutManager.findLastVisibleItemPosition()
+            if (lastVisiblePosition >= adapter.itemCount - MESSAGE_LIST_PREFETCH_DISTANCE) {
+                legacyViewModel.loadNextPage()
+            }
+        }
     }
 
     override fun folderLoading(folderId: Long, loading: Boolean) {
@@ -1430,6 +1446,14 @@ class LegacyMessageListFragment :
             return
         }
 
+        if (legacyViewModel.getMessageListLiveData().value?.hasMoreItems == true) {
+            // Only a window of the message list is loaded. Load all items first so actions on the selection apply to
+            // all messages, not just the loaded ones. Selection continues in setMessageList().
+            isSelectAllPending = true
+            legacyViewModel.loadAllItems()
+            return
+        }
+
         adapter.selectAll()
 
         if (actionMode == null) {
@@ -2059,6 +2083,11 @@ class LegacyMessageListFragment :
             currentFolder.moreMessages = messageListInfo.hasMoreMessages
             updateFooterText()
         }
+
+        if (isSelectAllPending && !messageListInfo.hasMoreItems) {
+            isSelectAllPending = false
+            selectAll()
+        }
     }
 
     private fun resetActionMode() {
@@ -1,12 +1,15 @@
 package com.fsck.k9.ui.messagelist
 
 import androidx.lifecycle.LiveData
+import app.k9mail.legacy.mailstore.MessageListChange
 import app.k9mail.legacy.mailstore.MessageListChangedListener
 import app.k9mail.legacy.mailstore.MessageListRepository
 import com.fsck.k9.search.getLegacyAccountUuids
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import net.thunderbird.core.android.account.LegacyAccountManager
 
@@ -16,21 +19,99 @@ class MessageListLiveData(
     private val messageListRepository: MessageListRepository,
     private val coroutineScope: CoroutineScope,
     val config: MessageListConfig,
+    private val pageSize: Int? = null,
+    limit: Int? = pageSize,
 ) : LiveData<MessageListInfo>() {
 
-    private val messageListChangedListener = MessageListChangedListener {
+    /**
+     * The maximum number of items loaded. `null` means all items are loaded.
+     */
+    var limit: Int? = limit
+        private set
+
+    private var isLoadingNextPage = false
+
+    private val loadMutex = Mutex()
+
+    // Guarded by loadMutex
+    private var loadedMessageList: LoadedMessageList? = null
+
+    private val messageListChangedListener = object : MessageListChangedListener {
+        override fun onMessageListChanged() {
+            loadMessageListAsync()
+        }
+
+        override fun onMessageListChanged(accountUuid: String, change: MessageListChange) {
+            loadMessageListAsync(accountUuid, change)
+        }
+    }
+
+    /**
+     * Extends the loaded window by one page if there are more items to load.
+     */
+    fun loadNextPage() {
+        val currentLimit = limit
+        if (pageSize == null || currentLimit == null || isLoadingNextPage || value?.hasMoreItems != true) return
+
+        isLoadingNextPage = true
+        limit = currentLimit + pageSize
         loadMessageListAsync()
     }
 
-    private fun loadMessageListAsync() {
+    /**
+     * Removes the limit so all items are loaded, e.g. before acting on all items of the list.
+     */
+    fun loadAllItems() {
+        if (limit == null) return
+
+        limit = null
+        loadMessageListAsync()
+    }
+
+    /**
+     * Loads the message list, or only applies [change] to the currently loaded message list if possible.
+     */
+    private fun loadMessageListAsync(
+        accountUuid: String? = null,
+        change: MessageListChange = MessageListChange.Unknown,
+    ) {
         coroutineScope.launch(Dispatchers.Main) {
+            val limit = limit
             val messageList = withContext(Dispatchers.IO) {
-                messageListLoader.getMessageList(config)
+                // Loads are serialized so a change is always applied to the latest message list.
+                loadMutex.withLock {
+                    val messageList = updateLoadedMessageList(limit, accountUuid, change)
+                        ?: messageListLoader.getMessageList(config, limit)
+
+                    loadedMessageList = LoadedMessageList(messageList, limit)
+                    messageList
+                }
             }
             value = messageList
+
+            if (limit == this@MessageListLiveData.limit) {
+                isLoadingNextPage = false
+            }
         }
     }
 
+    private fun updateLoadedMessageList(
+        limit: Int?,
+        accountUuid: String?,
+        change: MessageListChange,
+    ): MessageListInfo? {
+        val loadedMessageList = loadedMessageList
+        if (accountUuid == null || loadedMessageList == null || loadedMessageList.limit != limit) return null
+
+        return messageListLoader.updateMessageList(
+            config,
+            loadedMessageList.messageListInfo,
+            limit,
+            accountUuid,
+            change,
+        )
+    }
+
     override fun onActive() {
         super.onActive()
 
@@ -53,3 +134,5 @@ class MessageListLiveData(
         }
     }
 }
+
+private class LoadedMessageList(val messageListInfo: MessageListInfo, val limit: Int?)
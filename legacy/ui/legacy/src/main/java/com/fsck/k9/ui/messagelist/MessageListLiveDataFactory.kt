@@ -9,7 +9,20 @@ class MessageListLiveDataFactory(
     private val accountManager: LegacyAccountManager,
     private val messageListRepository: MessageListRepository,
 ) {
-    fun create(coroutineScope: CoroutineScope, config: MessageListConfig): MessageListLiveData {
-        return MessageListLiveData(messageListLoader, accountManager, messageListRepository, coroutineScope, config)
+    fun create(
+        coroutineScope: CoroutineScope,
+        config: MessageListConfig,
+        pageSize: Int? = null,
+        limit: Int? = pageSize,
+    ): MessageListLiveData {
+        return MessageListLiveData(
+            messageListLoader,
+            accountManager,
+            messageListRepository,
+            coroutineScope,
+            config,
+            pageSize,
+            limit,
+        )
     }
 }
@@ -1,14 +1,18 @@
 package com.fsck.k9.ui.messagelist
 
+import app.k9mail.legacy.mailstore.MessageListChange
 import app.k9mail.legacy.mailstore.MessageListRepository
 import com.fsck.k9.contacts.ContactLetterBitmapCreator
 import com.fsck.k9.helper.MessageHelper
+import com.fsck.k9.helper.mapInParallel
 import com.fsck.k9.mailstore.LocalStoreProvider
 import com.fsck.k9.mailstore.MessageColumns
 import com.fsck.k9.search.getLegacyAccounts
+import java.util.concurrent.ExecutorService
 import net.thunderbird.core.android.account.LegacyAccount
 import net.thunderbird.core.android.account.LegacyAccountManager
 import net.thunderbird.core.android.account.SortType
+import net.thunderbird.core.common.collections.mergeSorted
 import net.thunderbird.core.featureflag.FeatureFlagProvider
 import net.thunderbird.legacy.logging.Log
 import net.thunderbird.core.preference.display.visualSettings.message.list.MessageListPreferencesManager
@@ -18,6 +22,11 @@ import net.thunderbird.feature.search.legacy.LocalMessageSearch
 import net.thunderbird.feature.search.legacy.api.MessageSearchField
 import net.thunderbird.feature.search.legacy.sql.SqlWhereClause
 
+/**
+ * Changes affecting more messages than this are applied by reloading the whole message list.
+ */
+private const val MAX_INCREMENTAL_UPDATE_SIZE = 100
+
 @Suppress("LongParameterList")
 class MessageListLoader(
     private val accountManager: LegacyAccountManager,
@@ -28,11 +37,17 @@ class MessageListLoader(
     private val outboxFolderManager: OutboxFolderManager,
     private val featureFlagProvider: FeatureFlagProvider,
     private val contactLetterBitmapCreator: ContactLetterBitmapCreator,
+    private val accountQueryExecutor: ExecutorService,
 ) {
 
-    fun getMessageList(config: MessageListConfig): MessageListInfo {
+    /**
+     * Loads the message list for [config].
+     *
+     * @param limit If not `null`, only the first [limit] items (in the configured sort order) are loaded.
+     */
+    fun getMessageList(config: MessageListConfig, limit: Int? = null): MessageListInfo {
         return try {
-            getMessageListInfo(config)
+            getMessageListInfo(config, limit)
         } catch (e: Exception) {
             Log.e(e, "Error while fetching message list")
 
@@ -41,33 +56,157 @@ class MessageListLoader(
         }
     }
 
-    private fun getMessageListInfo(config: MessageListConfig): MessageListInfo {
+    /**
+     * Applies [change] to [messageListInfo] by only loading the messages affected by the change.
+     *
+     * @param messageListInfo The message list previously returned for [config] and [limit].
+     * @return The updated message list, or `null` if the change can't be applied incrementally and the whole message
+     *   list needs to be reloaded.
+     */
+    fun updateMessageList(
+        config: MessageListConfig,
+        messageListInfo: MessageListInfo,
+        limit: Int?,
+        accountUuid: String,
+        change: MessageListChange,
+    ): MessageListInfo? {
+        return try {
+            updateMessageListInfo(config, messageListInfo, limit, accountUuid, change)
+        } catch (e: Exception) {
+            Log.e(e, "Error while updating message list")
+            null
+        }
+    }
+
+    private fun getMessageListInfo(config: MessageListConfig, limit: Int?): MessageListInfo {
         val accounts = config.search.getLegacyAccounts(accountManager)
-        val messageListItems = accounts
-            .flatMap { account ->
-                loadMessageListForAccount(account, config)
-            }
-            .sortedWith(config)
+        val comparator = buildComparator(config)
+
+        // Load one item more than requested per account so we can tell whether there are more items to load.
+        val accountLimit = limit?.plus(1)
+
+        // The limit can only be applied by the database if it returns the messages in the order of the comparator.
+        // Otherwise the first items in database order aren't necessarily the first items of the message list.
+        val databaseLimit = accountLimit?.takeIf { canLimitInDatabase(config) }
+
+        // mergeSorted() requires every list to be sorted by the comparator. The order returned by the database can
+        // differ from it (sort overrides, sender display names), so each account's list is sorted first. Truncating
+        // after sorting makes every list the start of the account's messages in message list order, so the merged
+        // list is the start of the full message list.
+        val accountMessageLists = loadMessageListsForAccounts(accounts) { account ->
+            val messageList = loadMessageListForAccount(account, config, databaseLimit).sortedWith(comparator)
+            if (accountLimit != null) messageList.take(accountLimit) else messageList
+        }
 
+        val mergedMessageList = accountMessageLists.mergeSorted(comparator)
+        val messageListItems = if (limit != null) {
+            mergedMessageList.take(limit).toList()
+        } else {
+            mergedMessageList.toList()
+        }
+
+        val hasMoreItems = limit != null && accountMessageLists.sumOf { it.size } > limit
         val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
 
-        return MessageListInfo(messageListItems, hasMoreMessages)
+        return MessageListInfo(messageListItems, hasMoreMessages, hasMoreItems)
+    }
+
+    /**
+     * Runs [loadMessageList] for every account.
+     *
+     * Every account has its own database, so the queries don't block each other and are run in parallel.
+     */
+    private fun loadMessageListsForAccounts(
+        accounts: List<LegacyAccount>,
+        loadMessageList: (LegacyAccount) -> List<MessageListItem>,
+    ): List<List<MessageListItem>> {
+        if (accounts.size < 2) {
+            return accounts.map(loadMessageList)
+        }
+
+        return accountQueryExecutor.mapInParallel(accounts, loadMessageList)
+    }
+
+    @Suppress("ReturnCount")
+    private fun updateMessageListInfo(
+        config: MessageListConfig,
+        messageListInfo: MessageListInfo,
+        limit: Int?,
+        accountUuid: String,
+        change: MessageListChange,
+    ): MessageListInfo? {
+        // Items of a threaded list depend on all messages in a thread, so changes can't be applied to single items.
+        if (config.showingThreadedList || getThreadId(config.search) != null) return null
+
+        val (removedMessageIds, changedMessageIds) = when (change) {
+            is MessageListChange.FlagsChanged -> change.messageIds to change.messageIds
+            is MessageListChange.MessagesInserted -> emptySet<Long>() to change.messageIds
+            is MessageListChange.MessagesDeleted -> change.messageIds to emptySet()
+            is MessageListChange.MessagesMoved -> change.sourceMessageIds to change.destinationMessageIds
+            MessageListChange.Unknown -> return null
+        }
+
+        if (removedMessageIds.size + changedMessageIds.size > MAX_INCREMENTAL_UPDATE_SIZE) return null
+
+        val account = config.search.getLegacyAccounts(accountManager).firstOrNull { it.uuid == accountUuid }
+            ?: return messageListInfo
+
+        val comparator = buildComparator(config)
+        val changedItems = loadMessagesForAccount(account, config, changedMessageIds).sortedWith(comparator)
+
+        val currentItems = messageListInfo.messageListItems
+        val lastItem = currentItems.lastOrNull()
+        val remainingItems = currentItems.filterNot { item ->
+            item.account.uuid == accountUuid &&
+                (item.databaseId in removedMessageIds || item.databaseId in changedMessageIds)
+        }
+
+        // Items sorting after the last item of a truncated list belong to the part of the list that isn't loaded.
+        val insertedItems = if (messageListInfo.hasMoreItems && lastItem != null) {
+            changedItems.filter { comparator.compare(it, lastItem) <= 0 }
+        } else {
+            changedItems
+        }
+
+        val mergedMessageList = listOf(remainingItems, insertedItems).mergeSorted(comparator).toList()
+
+        return if (limit != null && mergedMessageList.size > limit) {
+            messageListInfo.copy(messageListItems = mergedMessageList.take(limit), hasMoreItems = true)
+        } else {
+            messageListInfo.copy(messageListItems = mergedMessageList)
+        }
+    }
+
+    private fun loadMessagesForAccount(
+        account: LegacyAccount,
+        config: MessageListConfig,
+        messageIds: Set<Long>,
+    ): List<MessageListItem> {
+        if (messageIds.isEmpty()) return emptyList()
+
+        val (selection, selectionArgs) = buildSelection(account, config)
+        val messageIdSelection = "($selection) AND messages.${MessageColumns.ID} IN " +
+            messageIds.joinToString(separator = ",", prefix = "(", postfix = ")") { "?" }
+        val messageIdSelectionArgs = selectionArgs + messageIds.map { it.toString() }
+
+        return messageListRepository.getMessages(
+            account.uuid,
+            messageIdSelection,
+            messageIdSelectionArgs,
+            buildSortOrder(config),
+            messageMapper = createMessageListItemMapper(account),
+        )
     }
 
-    private fun loadMessageListForAccount(account: LegacyAccount, config: MessageListConfig): List<MessageListItem> {
+    private fun loadMessageListForAccount(
+        account: LegacyAccount,
+        config: MessageListConfig,
+        limit: Int?,
+    ): List<MessageListItem> {
         val accountUuid = account.uuid
         val threadId = getThreadId(config.search)
         val sortOrder = buildSortOrder(config)
-        val mapper = MessageListItemMapper(
-            messageHelper,
-            account,
-            messageListPreferencesManager,
-            outboxFolderManager,
-            contactLetterBitmapCreator = contactLetterBitmapCreator.takeIf {
-                featureFlagProvider.provide(MessageListFeatureFlags.UseComposeForMessageListItems).isEnabled() ||
-                    featureFlagProvider.provide(MessageListFeatureFlags.EnableMessageListNewState).isEnabled()
-            },
-        )
+        val mapper = createMessageListItemMapper(account)
 
         return when {
             threadId != null -> {
@@ -76,16 +215,36 @@ class MessageListLoader(
 
             config.showingThreadedList -> {
                 val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getThreadedMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
+                messageListRepository.getThreadedMessages(
+                    accountUuid,
+                    selection,
+                    selectionArgs,
+                    sortOrder,
+                    limit,
+                    mapper,
+                )
             }
 
             else -> {
                 val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
+                messageListRepository.getMessages(accountUuid, selection, selectionArgs, sortOrder, limit, mapper)
             }
         }
     }
 
+    private fun createMessageListItemMapper(account: LegacyAccount): MessageListItemMapper {
+        return MessageListItemMapper(
+            messageHelper,
+            account,
+            messageListPreferencesManager,
+            outboxFolderManager,
+            contactLetterBitmapCreator = contactLetterBitmapCreator.takeIf {
+                featureFlagProvider.provide(MessageListFeatureFlags.UseComposeForMessageListItems).isEnabled() ||
+                    featureFlagProvider.provide(MessageListFeatureFlags.EnableMessageListNewState).isEnabled()
+            },
+        )
+    }
+
     private fun buildSelection(account: LegacyAccount, config: MessageListConfig): Pair<String, Array<String>> {
         val query = StringBuilder()
         val queryArgs = mutableListOf<String>()
@@ -146,8 +305,27 @@ class MessageListLoader(
         return "$sortColumn$sortDirection, $secondarySort${MessageColumns.ID} DESC"
     }
 
-    private fun List<MessageListItem>.sortedWith(config: MessageListConfig): List<MessageListItem> {
-        val comparator = when (config.sortType) {
+    /**
+     * Returns `true` if the sort order built by [buildSortOrder] sorts messages exactly like [buildComparator].
+     */
+    private fun canLimitInDatabase(config: MessageListConfig): Boolean {
+        return when (config.sortType) {
+            SortType.SORT_DATE, SortType.SORT_ARRIVAL, SortType.SORT_ATTACHMENT -> true
+
+            // The database sorts by the raw sender list, the comparator by the sender's display name.
+            SortType.SORT_SENDER -> false
+
+            // COLLATE NOCASE only ignores the case of ASCII characters, String.CASE_INSENSITIVE_ORDER that of all
+            // characters.
+            SortType.SORT_SUBJECT -> false
+
+            // Sort overrides are only known to the comparator.
+            SortType.SORT_UNREAD, SortType.SORT_FLAGGED -> config.sortOverrides.isEmpty()
+        }
+    }
+
+    private fun buildComparator(config: MessageListConfig): Comparator<MessageListItem> {
+        return when (config.sortType) {
             SortType.SORT_DATE -> {
                 compareBy(config.sortAscending) { it.messageDate }
             }
@@ -183,8 +361,6 @@ class MessageListLoader(
                     .thenByDate(config)
             }
         }.thenByDescending { it.databaseId }
-
-        return this.sortedWith(comparator)
     }
 
     private fun loadHasMoreMessages(accounts: List<LegacyAccount>, folderIds: List<Long>): Boolean {
@@ -225,4 +401,12 @@ private fun Comparator<MessageListItem>.thenByDate(config: MessageListConfig): C
     }
 }
 
-data class MessageListInfo(val messageListItems: List<MessageListItem>, val hasMoreMessages: Boolean)
+/**
+ * @param hasMoreMessages `true` if more messages can be downloaded from the server.
+ * @param hasMoreItems `true` if there are more local items beyond the loaded window.
+ */
+data class MessageListInfo(
+    val messageListItems: List<MessageListItem>,
+    val hasMoreMessages: Boolean,
+    val hasMoreItems: Boolean = false,
+)
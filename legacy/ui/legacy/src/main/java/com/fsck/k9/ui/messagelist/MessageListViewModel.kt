@@ -23,13 +23,25 @@ class MessageListViewModel(
         return messageListLiveData
     }
 
-    fun loadMessageList(config: MessageListConfig, forceUpdate: Boolean = false) {
+    /**
+     * @param pageSize If not `null`, the message list is loaded in pages of this size. See [loadNextPage].
+     */
+    fun loadMessageList(config: MessageListConfig, forceUpdate: Boolean = false, pageSize: Int? = null) {
         logger.debug(TAG) { "loadMessageList() called with: config = $config, forceUpdate = $forceUpdate" }
-        if (!forceUpdate && currentMessageListLiveData?.config == config) return
+        val currentLiveData = currentMessageListLiveData
+        if (!forceUpdate && currentLiveData?.config == config) return
+
+        // Keep the number of loaded items when only the active message or the sort overrides changed, so the list
+        // doesn't shrink while the user is looking at it.
+        val limit = if (pageSize != null && currentLiveData != null && currentLiveData.config.isSameList(config)) {
+            currentLiveData.limit?.coerceAtLeast(pageSize)
+        } else {
+            pageSize
+        }
 
         removeCurrentMessageListLiveData()
 
-        val liveData = messageListLiveDataFactory.create(viewModelScope, config)
+        val liveData = messageListLiveDataFactory.create(viewModelScope, config, pageSize, limit)
         currentMessageListLiveData = liveData
 
         messageListLiveData.addSource(liveData) { items ->
@@ -37,6 +49,14 @@ class MessageListViewModel(
         }
     }
 
+    fun loadNextPage() {
+        currentMessageListLiveData?.loadNextPage()
+    }
+
+    fun loadAllItems() {
+        currentMessageListLiveData?.loadAllItems()
+    }
+
     private fun removeCurrentMessageListLiveData() {
         currentMessageListLiveData?.let {
             currentMessageListLiveData = null
@@ -44,3 +64,11 @@ class MessageListViewModel(
         }
     }
 }
+
+private fun MessageListConfig.isSameList(other: MessageListConfig): Boolean {
+    return search == other.search &&
+        showingThreadedList == other.showingThreadedList &&
+        sortType == other.sortType &&
+        sortAscending == other.sortAscending &&
+        sortDateAscending == other.sortDateAscending
+}
@@ -10,6 +10,7 @@ import net.thunderbird.core.android.account.LegacyAccountManager
 import net.thunderbird.core.android.preferences.TestStoragePersister
 import net.thunderbird.core.common.appConfig.PlatformConfigProvider
 import net.thunderbird.core.common.inject.factoryListOf
+import net.thunderbird.core.common.provider.AppVersionProvider
 import net.thunderbird.core.featureflag.FeatureFlagProvider
 import net.thunderbird.core.featureflag.InMemoryFeatureFlagProvider
 import net.thunderbird.core.logging.LogLevel
@@ -92,6 +93,7 @@ val testModule = module {
     single<CssVariableNameProvider> { mock() }
     single<CssClassNameProvider> { mock() }
     factoryListOf<CssStyleProvider>()
+    single<AppVersionProvider> { mock { on { getVersionNumber() } doReturn "1.0" } }
 }
 
 class FakePlatformConfigProvider : PlatformConfigProvider {
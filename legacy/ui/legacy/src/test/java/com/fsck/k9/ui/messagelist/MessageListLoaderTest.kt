@@ -0,0 +1,462 @@
+package com.fsck.k9.ui.messagelist
+
+import app.k9mail.legacy.mailstore.MessageListChangedListener
+import app.k9mail.legacy.mailstore.MessageListChange
+import app.k9mail.legacy.mailstore.MessageListRepository
+import app.k9mail.legacy.mailstore.MessageMapper
+import app.k9mail.legacy.message.controller.MessageReference
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import java.util.concurrent.Executors
+import net.thunderbird.core.android.account.LegacyAccount
+import net.thunderbird.core.android.account.LegacyAccountManager
+import net.thunderbird.core.android.account.SortType
+import net.thunderbird.core.featureflag.FeatureFlagResult
+import net.thunderbird.feature.search.legacy.LocalMessageSearch
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+private const val ACCOUNT_UUID_1 = "account-1"
+private const val ACCOUNT_UUID_2 = "account-2"
+private const val FOLDER_ID = 1L
+
+class MessageListLoaderTest {
+    private val account1 = createAccount(ACCOUNT_UUID_1)
+    private val account2 = createAccount(ACCOUNT_UUID_2)
+    private val accountManager = mock<LegacyAccountManager> {
+        on { getAccounts() } doReturn listOf(account1, account2)
+    }
+    private val messageListRepository = FakeMessageListRepository()
+    private val accountQueryExecutor = Executors.newFixedThreadPool(2)
+
+    private val messageListLoader = MessageListLoader(
+        accountManager = accountManager,
+        localStoreProvider = mock(),
+        messageListRepository = messageListRepository,
+        messageHelper = mock(),
+        messageListPreferencesManager = mock(),
+        outboxFolderManager = mock(),
+        featureFlagProvider = { FeatureFlagResult.Disabled },
+        contactLetterBitmapCreator = mock(),
+        accountQueryExecutor = accountQueryExecutor,
+    )
+
+    @After
+    fun tearDown() {
+        accountQueryExecutor.shutdownNow()
+    }
+
+    @Test
+    fun `paged message list sorted by date should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_DATE))
+    }
+
+    @Test
+    fun `paged message list sorted by arrival should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_ARRIVAL))
+    }
+
+    @Test
+    fun `paged message list sorted by attachment should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_ATTACHMENT))
+    }
+
+    @Test
+    fun `paged message list sorted by sender should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_SENDER))
+    }
+
+    @Test
+    fun `paged message list sorted by subject should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_SUBJECT))
+    }
+
+    @Test
+    fun `paged message list sorted by unread should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_UNREAD))
+    }
+
+    @Test
+    fun `paged message list sorted by unread with sort overrides should start like the full message list`() {
+        addMessages()
+        val sortOverrides = mapOf(
+            messageReference(ACCOUNT_UUID_1, uid = "1") to MessageSortOverride(isRead = false, isStarred = false),
+            messageReference(ACCOUNT_UUID_2, uid = "4") to MessageSortOverride(isRead = true, isStarred = false),
+        )
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_UNREAD, sortOverrides = sortOverrides))
+    }
+
+    @Test
+    fun `paged message list sorted by flagged should start like the full message list`() {
+        addMessages()
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_FLAGGED))
+    }
+
+    @Test
+    fun `paged message list sorted by flagged with sort overrides should start like the full message list`() {
+        addMessages()
+        val sortOverrides = mapOf(
+            messageReference(ACCOUNT_UUID_1, uid = "2") to MessageSortOverride(isRead = false, isStarred = true),
+            messageReference(ACCOUNT_UUID_2, uid = "6") to MessageSortOverride(isRead = false, isStarred = false),
+        )
+
+        assertPagesMatchFullMessageList(createConfig(SortType.SORT_FLAGGED, sortOverrides = sortOverrides))
+    }
+
+    @Test
+    fun `updateMessageList() with inserted message should add it at the right position`() {
+        addMessages()
+        val config = createConfig(SortType.SORT_DATE)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        addMessage(account1, id = 4, date = 3500L)
+
+        val result = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            limit = null,
+            accountUuid = ACCOUNT_UUID_1,
+            change = MessageListChange.MessagesInserted(setOf(4L)),
+        )
+
+        assertThat(result).isEqualTo(messageListLoader.getMessageList(config))
+    }
+
+    @Test
+    fun `updateMessageList() with changed flags should move message to the right position`() {
+        addMessages()
+        val config = createConfig(SortType.SORT_UNREAD)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        messageListRepository.updateMessage(ACCOUNT_UUID_1, messageId = 3) { it.copy(isRead = true) }
+
+        val result = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            limit = null,
+            accountUuid = ACCOUNT_UUID_1,
+            change = MessageListChange.FlagsChanged(setOf(3L)),
+        )
+
+        assertThat(result).isEqualTo(messageListLoader.getMessageList(config))
+    }
+
+    @Test
+    fun `updateMessageList() with deleted message should remove it`() {
+        addMessages()
+        val config = createConfig(SortType.SORT_DATE)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        messageListRepository.removeMessage(ACCOUNT_UUID_2, messageId = 1)
+
+        val result = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            limit = null,
+            accountUuid = ACCOUNT_UUID_2,
+            change = MessageListChange.MessagesDeleted(setOf(1L)),
+        )
+
+        assertThat(result).isEqualTo(messageListLoader.getMessageList(config))
+    }
+
+    @Test
+    fun `updateMessageList() with message moving past the last loaded item should remove it from limited list`() {
+        addMessages()
+        val config = createConfig(SortType.SORT_FLAGGED)
+        val messageListInfo = messageListLoader.getMessageList(config, limit = 3)
+        messageListRepository.updateMessage(ACCOUNT_UUID_1, messageId = 1) { it.copy(isStarred = true) }
+
+        val result = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            limit = 3,
+            accountUuid = ACCOUNT_UUID_1,
+            change = MessageListChange.FlagsChanged(setOf(1L)),
+        )
+
+        // The message now sorts after messages that haven't been loaded, so it must not be part of the loaded items.
+        val expectedMessageListItems = messageListLoader.getMessageList(config, limit = 2).messageListItems
+        assertThat(result?.messageListItems).isEqualTo(expectedMessageListItems)
+        assertThat(result?.hasMoreItems).isEqualTo(true)
+    }
+
+    @Test
+    fun `updateMessageList() with message moving into limited list should add it and drop the last item`() {
+        addMessages()
+        val config = createConfig(SortType.SORT_FLAGGED)
+        val messageListInfo = messageListLoader.getMessageList(config, limit = 3)
+        messageListRepository.updateMessage(ACCOUNT_UUID_2, messageId = 3) { it.copy(isStarred = false) }
+
+        val result = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            limit = 3,
+            accountUuid = ACCOUNT_UUID_2,
+            change = MessageListChange.FlagsChanged(setOf(3L)),
+        )
+
+        assertThat(result).isEqualTo(messageListLoader.getMessageList(config, limit = 3))
+    }
+
+    private fun assertPagesMatchFullMessageList(config: MessageListConfig) {
+        val fullMessageList = messageListLoader.getMessageList(config)
+        assertThat(fullMessageList.messageListItems.size).isEqualTo(messageListRepository.messages.size)
+        assertThat(fullMessageList.hasMoreItems).isFalse()
+
+        for (limit in 1 until fullMessageList.messageListItems.size) {
+            val page = messageListLoader.getMessageList(config, limit)
+
+            assertThat(page.messageListItems).isEqualTo(fullMessageList.messageListItems.take(limit))
+            assertThat(page.hasMoreItems).isTrue()
+        }
+    }
+
+    private fun addMessages() {
+        // The raw sender list, the display name, and the subject are chosen so that sorting them in the database
+        // gives a different order than the comparator used by the message list.
+        addMessage(
+            account1,
+            id = 1,
+            date = 5000L,
+            senderList = "zed@domain.example",
+            displayName = "Alice",
+            subject = "ärger",
+            isRead = true,
+        )
+        addMessage(
+            account1,
+            id = 2,
+            date = 3000L,
+            senderList = "bob@domain.example",
+            displayName = "Bob",
+            subject = "äpfel",
+            hasAttachments = true,
+        )
+        addMessage(
+            account1,
+            id = 3,
+            date = 1000L,
+            senderList = "carol@domain.example",
+            displayName = "Carol",
+            subject = "Éclair",
+            isStarred = true,
+        )
+        addMessage(
+            account2,
+            id = 1,
+            uid = "4",
+            date = 4000L,
+            senderList = "adam@domain.example",
+            displayName = "Zoe",
+            subject = "apple",
+        )
+        addMessage(
+            account2,
+            id = 2,
+            uid = "3",
+            date = 2000L,
+            senderList = "dave@domain.example",
+            displayName = "Dave",
+            subject = "Zebra",
+            isRead = true,
+            hasAttachments = true,
+        )
+        addMessage(
+            account2,
+            id = 3,
+            uid = "6",
+            date = 6000L,
+            senderList = "erin@domain.example",
+            displayName = "Erin",
+            subject = "banana",
+            isStarred = true,
+        )
+    }
+
+    @Suppress("LongParameterList")
+    private fun addMessage(
+        account: LegacyAccount,
+        id: Long,
+        uid: String = id.toString(),
+        date: Long,
+        senderList: String = "sender@domain.example",
+        displayName: String = "Sender",
+        subject: String = "Subject",
+        isRead: Boolean = false,
+        isStarred: Boolean = false,
+        hasAttachments: Boolean = false,
+    ) {
+        val messageListItem = MessageListItem(
+            account = account,
+            subject = subject,
+            threadCount = 0,
+            messageDate = date,
+            internalDate = date,
+            displayName = displayName,
+            displayAddress = null,
+            displayMessageDateTime = "",
+            previewText = "",
+            isMessageEncrypted = false,
+            isRead = isRead,
+            isStarred = isStarred,
+            isAnswered = false,
+            isForwarded = false,
+            hasAttachments = hasAttachments,
+            uniqueId = id,
+            folderId = FOLDER_ID,
+            messageUid = uid,
+            databaseId = id,
+            threadRoot = id,
+            contactColor = 0,
+        )
+
+        messageListRepository.messages.add(FakeMessage(messageListItem, senderList))
+    }
+
+    private fun createConfig(
+        sortType: SortType,
+        sortAscending: Boolean = false,
+        sortOverrides: Map<MessageReference, MessageSortOverride> = emptyMap(),
+    ): MessageListConfig {
+        return MessageListConfig(
+            search = LocalMessageSearch(),
+            showingThreadedList = false,
+            sortType = sortType,
+            sortAscending = sortAscending,
+            sortDateAscending = false,
+            activeMessage = null,
+            sortOverrides = sortOverrides,
+        )
+    }
+
+    private fun messageReference(accountUuid: String, uid: String): MessageReference {
+        return MessageReference(accountUuid, FOLDER_ID, uid)
+    }
+
+    private fun createAccount(accountUuid: String): LegacyAccount {
+        return mock {
+            on { uuid } doReturn accountUuid
+        }
+    }
+}
+
+private class FakeMessage(val messageListItem: MessageListItem, val senderList: String)
+
+/**
+ * Returns messages the way the database would: sorted by the `ORDER BY` clause and truncated to the limit.
+ */
+private class FakeMessageListRepository : MessageListRepository {
+    val messages = mutableListOf<FakeMessage>()
+
+    override fun addListener(listener: MessageListChangedListener) = Unit
+
+    override fun addListener(accountUuid: String, listener: MessageListChangedListener) = Unit
+
+    override fun removeListener(listener: MessageListChangedListener) = Unit
+
+    override fun notifyMessageListChanged(accountUuid: String, createChange: () -> MessageListChange) = Unit
+
+    @Suppress("UNCHECKED_CAST")
+    override fun <T> getMessages(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int?,
+        messageMapper: MessageMapper<T>,
+    ): List<T> {
+        val messageIds = selectMessageIds(selection, selectionArgs)
+
+        val result = messages
+            .filter { it.messageListItem.account.uuid == accountUuid }
+            .filter { messageIds == null || it.messageListItem.databaseId in messageIds }
+            .sortedWith(databaseOrder(sortOrder))
+            .map { it.messageListItem }
+
+        return (if (limit != null) result.take(limit) else result) as List<T>
+    }
+
+    override fun <T> getThreadedMessages(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int?,
+        messageMapper: MessageMapper<T>,
+    ): List<T> = throw UnsupportedOperationException("not implemented")
+
+    override fun <T> getThread(
+        accountUuid: String,
+        threadId: Long,
+        sortOrder: String,
+        messageMapper: MessageMapper<T>,
+    ): List<T> = throw UnsupportedOperationException("not implemented")
+
+    fun updateMessage(accountUuid: String, messageId: Long, update: (MessageListItem) -> MessageListItem) {
+        val index = indexOfMessage(accountUuid, messageId)
+        messages[index] = FakeMessage(update(messages[index].messageListItem), messages[index].senderList)
+    }
+
+    fun removeMessage(accountUuid: String, messageId: Long) {
+        messages.removeAt(indexOfMessage(accountUuid, messageId))
+    }
+
+    private fun indexOfMessage(accountUuid: String, messageId: Long): Int {
+        return messages.indexOfFirst {
+            it.messageListItem.account.uuid == accountUuid && it.messageListItem.databaseId == messageId
+        }.also { check(it != -1) { "Message not found: $accountUuid/$messageId" } }
+    }
+
+    private fun selectMessageIds(selection: String, selectionArgs: Array<String>): Set<Long>? {
+        if (!selection.contains(" IN (")) return null
+
+        val messageIdCount = selection.substringAfterLast(" IN (").count { it == '?' }
+        return selectionArgs.takeLast(messageIdCount).map { it.toLong() }.toSet()
+    }
+
+    private fun databaseOrder(sortOrder: String): Comparator<FakeMessage> {
+        return sortOrder.split(", ")
+            .map { term ->
+                val expression = term.substringBeforeLast(' ')
+                val ascending = term.substringAfterLast(' ') == "ASC"
+                val selector = databaseValue(expression)
+                if (ascending) compareBy(selector) else compareByDescending(selector)
+            }
+            .reduce { comparator, nextComparator -> comparator.then(nextComparator) }
+    }
+
+    private fun databaseValue(expression: String): (FakeMessage) -> Comparable<*> {
+        return when (expression) {
+            "date" -> { message -> message.messageListItem.messageDate }
+            "internal_date" -> { message -> message.messageListItem.internalDate }
+            "(attachment_count < 1)" -> { message -> !message.messageListItem.hasAttachments }
+            "(flagged != 1)" -> { message -> !message.messageListItem.isStarred }
+            "read" -> { message -> message.messageListItem.isRead }
+            "sender_list" -> { message -> message.senderList }
+            "subject COLLATE NOCASE" -> { message -> message.messageListItem.subject.orEmpty().asciiLowercase() }
+            "id" -> { message -> message.messageListItem.databaseId }
+            else -> error("Unsupported sort expression: $expression")
+        }
+    }
+
+    // SQLite's NOCASE collation only folds ASCII characters
+    private fun String.asciiLowercase(): String {
+        return map { if (it in 'A'..'Z') it.lowercaseChar() else it }.joinToString(separator = "")
+    }
+}
@@ -8,6 +8,12 @@ class HtmlProcessor(
 ) {
     private val htmlSanitizer = HtmlSanitizer()
 
+    /**
+     * Describes everything besides the input that affects the output of [processForDisplay].
+     */
+    val configurationKey: String
+        get() = customClasses.sorted().joinToString(separator = " ") + "\n" + htmlHeadProvider.headHtml
+
     fun processForDisplay(html: String): String {
         return htmlSanitizer.sanitize(html)
             .addCustomHeadContents()
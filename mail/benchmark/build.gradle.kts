@@ -0,0 +1,22 @@
+plugins {
+    id(ThunderbirdPlugins.Library.jvm)
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    jmh(projects.mail.common)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+
+    // Report the allocation rate alongside the throughput.
+    profilers = listOf("gc")
+
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    timeUnit = "ms"
+
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
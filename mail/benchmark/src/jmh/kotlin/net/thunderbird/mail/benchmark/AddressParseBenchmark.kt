@@ -0,0 +1,37 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.Address
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class AddressParseBenchmark {
+    @Param("1", "10", "100")
+    var recipientCount: Int = 0
+
+    private lateinit var addressList: String
+
+    @Setup
+    fun setUp() {
+        addressList = SyntheticCorpus.recipientList(recipientCount)
+    }
+
+    @Benchmark
+    fun parse(): Array<Address> {
+        return Address.parse(addressList)
+    }
+
+    @Benchmark
+    fun parseUnencoded(): Array<Address> {
+        return Address.parseUnencoded(addressList)
+    }
+}
@@ -0,0 +1,49 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.filter.Base64
+import com.fsck.k9.mail.filter.Base64OutputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class Base64Benchmark {
+    @Param("1024", "65536")
+    var size: Int = 0
+
+    private lateinit var data: ByteArray
+    private lateinit var encodedData: ByteArray
+
+    @Setup
+    fun setUp() {
+        data = SyntheticCorpus.binaryData(size)
+        encodedData = Base64.encodeBase64Chunked(data)
+    }
+
+    @Benchmark
+    fun encode(): ByteArray {
+        return Base64.encodeBase64Chunked(data)
+    }
+
+    @Benchmark
+    fun decode(): ByteArray {
+        return Base64.decodeBase64(encodedData)
+    }
+
+    @Benchmark
+    fun encodeStreaming(): ByteArray {
+        val outputStream = ByteArrayOutputStream(encodedData.size)
+        Base64OutputStream(outputStream).use { it.write(data) }
+
+        return outputStream.toByteArray()
+    }
+}
@@ -0,0 +1,59 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.Body
+import com.fsck.k9.mail.internet.MessageExtractor
+import com.fsck.k9.mail.internet.MimeBodyPart
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.Charset
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Measures converting text bodies in various charsets to strings.
+ *
+ * `CharsetSupport` is package-private, so it is called through [MessageExtractor.getTextFromPart] which uses
+ * `CharsetSupport.fixupCharset()` and `CharsetSupport.readToString()`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class CharsetSupportBenchmark {
+    @Param("UTF-8", "ISO-8859-1", "windows-1252", "Shift_JIS")
+    lateinit var charset: String
+
+    private lateinit var part: MimeBodyPart
+
+    @Setup
+    fun setUp() {
+        val charset = Charset.forName(charset)
+        val text = SyntheticCorpus.text(length = 16 * 1024, charset)
+
+        part = MimeBodyPart(ByteArrayBody(text.toByteArray(charset)), "text/plain; charset=${charset.name()}")
+    }
+
+    @Benchmark
+    fun readToString(): String? {
+        return MessageExtractor.getTextFromPart(part)
+    }
+}
+
+/**
+ * A [Body] that can be read any number of times.
+ */
+private class ByteArrayBody(private val data: ByteArray) : Body {
+    override fun getInputStream(): InputStream = data.inputStream()
+
+    override fun setEncoding(encoding: String?) = Unit
+
+    override fun writeTo(out: OutputStream) {
+        out.write(data)
+    }
+}
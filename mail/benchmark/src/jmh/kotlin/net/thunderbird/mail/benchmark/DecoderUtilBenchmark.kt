@@ -0,0 +1,43 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.internet.MimeUtility
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Measures `DecoderUtil.decodeEncodedWords()`.
+ *
+ * `DecoderUtil` is internal to `:mail:common`, so it is called through [MimeUtility.unfoldAndDecode]. Unfolding an
+ * unfolded header value is cheap compared to decoding the encoded words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DecoderUtilBenchmark {
+    @Param("plain", "subject", "recipients")
+    lateinit var header: String
+
+    private lateinit var headerValue: String
+
+    @Setup
+    fun setUp() {
+        headerValue = when (header) {
+            "plain" -> SyntheticCorpus.text(length = 200).replace("\r\n", " ")
+            "subject" -> SyntheticCorpus.subject()
+            "recipients" -> SyntheticCorpus.recipientList(count = 50)
+            else -> error("Unknown header: $header")
+        }
+    }
+
+    @Benchmark
+    fun decodeEncodedWords(): String {
+        return MimeUtility.unfoldAndDecode(headerValue, null)
+    }
+}
@@ -0,0 +1,56 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.internet.MimeHeaderParser
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class MimeHeaderParserBenchmark {
+    @Param("simple", "rfc2231")
+    lateinit var header: String
+
+    private lateinit var headerValue: String
+
+    @Setup
+    fun setUp() {
+        headerValue = when (header) {
+            "simple" -> SyntheticCorpus.simpleContentTypeHeader()
+            "rfc2231" -> SyntheticCorpus.contentDispositionHeader()
+            else -> error("Unknown header: $header")
+        }
+    }
+
+    /**
+     * Tokenizes a header value and its parameters the same way `MimeParameterDecoder` does, but without decoding the
+     * parameter values.
+     */
+    @Benchmark
+    fun tokenizeHeader(blackhole: Blackhole) {
+        val parser = MimeHeaderParser(headerValue)
+        blackhole.consume(parser.readHeaderValue())
+
+        while (!parser.endReached()) {
+            parser.expect(';')
+            blackhole.consume(parser.readToken())
+
+            parser.skipCFWS()
+            parser.expect('=')
+            parser.skipCFWS()
+
+            val parameterValue = if (parser.peek() == '"') parser.readQuotedString() else parser.readToken()
+            blackhole.consume(parameterValue)
+
+            parser.skipCFWS()
+        }
+    }
+}
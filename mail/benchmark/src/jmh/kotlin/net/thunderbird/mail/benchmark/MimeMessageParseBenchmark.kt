@@ -0,0 +1,60 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.Multipart
+import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.internet.BinaryTempFileBody
+import com.fsck.k9.mail.internet.MimeMessage
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class MimeMessageParseBenchmark {
+    private lateinit var tempDirectory: File
+    private lateinit var messageData: ByteArray
+
+    @Setup
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("MimeMessageParseBenchmark").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+
+        messageData = SyntheticCorpus.multipartMessage()
+    }
+
+    @TearDown
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    /**
+     * Parses a multipart message with a text and HTML body, an attachment, and an attached message.
+     *
+     * The bodies are disposed of afterwards, like after saving a message to the database. Otherwise the temp files
+     * created for large bodies would pile up during the benchmark.
+     */
+    @Benchmark
+    fun parseMultipartMessage(): MimeMessage {
+        val message = MimeMessage.parseMimeMessage(messageData.inputStream(), true)
+        disposeBodies(message)
+
+        return message
+    }
+
+    private fun disposeBodies(part: Part) {
+        when (val body = part.body) {
+            is Multipart -> body.bodyParts.forEach { disposeBodies(it) }
+            is MimeMessage -> disposeBodies(body)
+            is BinaryTempFileBody -> body.inputStream.close()
+        }
+    }
+}
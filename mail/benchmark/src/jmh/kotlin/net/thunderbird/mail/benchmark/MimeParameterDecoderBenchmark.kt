@@ -0,0 +1,38 @@
+package net.thunderbird.mail.benchmark
+
+import com.fsck.k9.mail.internet.MimeParameterDecoder
+import com.fsck.k9.mail.internet.MimeValue
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class MimeParameterDecoderBenchmark {
+    @Param("simple", "rfc2231ContentType", "rfc2231ContentDisposition")
+    lateinit var header: String
+
+    private lateinit var headerValue: String
+
+    @Setup
+    fun setUp() {
+        headerValue = when (header) {
+            "simple" -> SyntheticCorpus.simpleContentTypeHeader()
+            "rfc2231ContentType" -> SyntheticCorpus.contentTypeHeader()
+            "rfc2231ContentDisposition" -> SyntheticCorpus.contentDispositionHeader()
+            else -> error("Unknown header: $header")
+        }
+    }
+
+    @Benchmark
+    fun decode(): MimeValue {
+        return MimeParameterDecoder.decode(headerValue)
+    }
+}
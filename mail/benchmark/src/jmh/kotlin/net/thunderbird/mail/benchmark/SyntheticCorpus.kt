@@ -0,0 +1,270 @@
+package net.thunderbird.mail.benchmark
+
+import java.nio.charset.Charset
+import java.util.Base64
+import kotlin.random.Random
+
+/**
+ * Generates the input data for the benchmarks.
+ *
+ * The data is meant to resemble real-world messages: multipart bodies, headers with lots of encoded words, long
+ * recipient lists, and RFC 2231 parameters. A fixed seed is used so every run works on the same data.
+ */
+internal object SyntheticCorpus {
+    private const val SEED = 42
+    private const val CRLF = "\r\n"
+    private const val QUOTED_PRINTABLE_LINE_LENGTH = 73
+
+    private val asciiWords = listOf(
+        "meeting", "tomorrow", "project", "update", "invoice", "report", "quarterly", "agenda", "review", "release",
+        "schedule", "budget", "proposal", "attached", "please", "thanks", "regards", "question", "follow-up", "draft",
+    )
+
+    private val latinWords = listOf(
+        "Grüße", "Übersicht", "Besprechung", "Größe", "français", "réunion", "déjà", "été", "naïve", "señor",
+        "mañana", "Zürich", "Ærø", "smörgåsbord", "façade", "crème", "brûlée", "Straße", "über", "Ökonomie",
+    )
+
+    private val unicodeWords = listOf(
+        "会議", "明日", "報告書", "プロジェクト", "Συνάντηση", "αύριο", "Встреча", "завтра", "회의", "내일",
+        "😀", "🎉", "📎", "日本語", "テスト", "Ελληνικά", "Привет", "你好", "世界", "メール",
+    )
+
+    private val japaneseWords = listOf(
+        "会議", "明日", "報告書", "プロジェクト", "日本語", "テスト", "メール", "お願い", "確認", "資料",
+    )
+
+    private val firstNames = listOf(
+        "Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi", "Ivan", "Judy",
+        "Jürgen", "Zoë", "François", "Søren", "José", "Łukasz", "Ōta", "Chloé", "Björn", "Renée",
+    )
+
+    private val lastNames = listOf(
+        "Smith", "Jones", "Müller", "Dubois", "Rossi", "García", "Nowak", "Novák", "Jensen", "Tanaka",
+        "O'Brien", "van der Berg", "Łódź", "Schäfer", "Ødegaard", "Nuñez", "Kowalski", "Şahin", "Lefèvre", "Weiß",
+    )
+
+    fun subject(random: Random = Random(SEED)): String {
+        return buildList {
+            add("Re: Fwd:")
+            add(encodedWordB(words(random, unicodeWords, 4), Charsets.UTF_8))
+            add(words(random, asciiWords, 3))
+            add(encodedWordQ(words(random, latinWords, 3), Charsets.ISO_8859_1))
+            add(encodedWordQ(words(random, unicodeWords, 2), Charsets.UTF_8))
+            add(encodedWordB(words(random, latinWords, 5), Charsets.UTF_8))
+        }.joinToString(separator = " ")
+    }
+
+    fun recipientList(count: Int, random: Random = Random(SEED)): String {
+        return (1..count).joinToString(separator = ", ") { index ->
+            val firstName = firstNames.random(random)
+            val lastName = lastNames.random(random)
+            val address = "${firstName.asciiOnly()}.${lastName.asciiOnly()}$index@example.com".lowercase()
+            val displayName = "$firstName $lastName"
+
+            when (index % 4) {
+                0 -> "\"$lastName, $firstName\" <$address>"
+                1 -> "${encodedWordQ(displayName, Charsets.UTF_8)} <$address>"
+                2 -> "${encodedWordB(displayName, Charsets.UTF_8)} <$address>"
+                else -> address
+            }
+        }
+    }
+
+    fun contentTypeHeader(): String {
+        return "application/pdf; ${rfc2231Parameter("name", "Übersicht Besprechung 会議 報告書 2024-Q3.pdf")}"
+    }
+
+    fun contentDispositionHeader(): String {
+        return "attachment; " +
+            "${rfc2231Parameter("filename", "Übersicht Besprechung 会議 報告書 2024-Q3.pdf")}; " +
+            "size=65536; creation-date=\"Wed, 12 Feb 1997 16:29:51 -0500\""
+    }
+
+    fun simpleContentTypeHeader(): String {
+        return "text/plain; charset=UTF-8; format=flowed; delsp=yes"
+    }
+
+    fun text(length: Int, words: List<String> = asciiWords + latinWords + unicodeWords, seed: Int = SEED): String {
+        val random = Random(seed)
+        return buildString {
+            var lineLength = 0
+            while (this.length < length) {
+                val word = words.random(random)
+                if (lineLength + word.length > 72) {
+                    append(CRLF)
+                    lineLength = 0
+                } else if (lineLength > 0) {
+                    append(' ')
+                    lineLength++
+                }
+                append(word)
+                lineLength += word.length
+            }
+        }
+    }
+
+    fun text(length: Int, charset: Charset): String {
+        val words = when (charset.name()) {
+            "Shift_JIS", "ISO-2022-JP", "EUC-JP" -> asciiWords + japaneseWords
+            "US-ASCII" -> asciiWords
+            "UTF-8" -> asciiWords + latinWords + unicodeWords
+            else -> asciiWords + latinWords.filter { charset.newEncoder().canEncode(it) }
+        }
+
+        return text(length, words)
+    }
+
+    fun binaryData(size: Int): ByteArray {
+        return Random(SEED).nextBytes(size)
+    }
+
+    fun multipartMessage(): ByteArray {
+        val random = Random(SEED)
+        val plainText = text(length = 8 * 1024)
+        val htmlText = "<html><body><p>" + text(length = 24 * 1024).replace(CRLF, "</p>$CRLF<p>") + "</p></body></html>"
+        val attachment = binaryData(size = 64 * 1024)
+
+        val message = buildString {
+            append("Return-Path: <sender@example.com>").append(CRLF)
+            append("Received: from mail.example.com (mail.example.com [192.0.2.1])").append(CRLF)
+            append("\tby mx.example.org with ESMTPS id 4F2B1C0012").append(CRLF)
+            append("\tfor <recipient@example.org>; Tue, 1 Oct 2024 09:15:00 +0200 (CEST)").append(CRLF)
+            append("From: ").append(recipientList(count = 1, random)).append(CRLF)
+            append("To: ").append(fold(recipientList(count = 30, random))).append(CRLF)
+            append("Cc: ").append(fold(recipientList(count = 20, random))).append(CRLF)
+            append("Subject: ").append(fold(subject(random))).append(CRLF)
+            append("Date: Tue, 1 Oct 2024 09:14:58 +0200").append(CRLF)
+            append("Message-ID: <20241001091458.4F2B1C0012@mail.example.com>").append(CRLF)
+            append("In-Reply-To: <20240930171200.1A2B3C@mail.example.org>").append(CRLF)
+            append("References: <20240929080000.AAAA@mail.example.org> <20240930171200.1A2B3C@mail.example.org>")
+                .append(CRLF)
+            append("MIME-Version: 1.0").append(CRLF)
+            append("Content-Type: multipart/mixed; boundary=\"mixed-boundary\"").append(CRLF)
+            append(CRLF)
+            append("This is a multi-part message in MIME format.").append(CRLF)
+
+            append("--mixed-boundary").append(CRLF)
+            append("Content-Type: multipart/alternative; boundary=\"alternative-boundary\"").append(CRLF)
+            append(CRLF)
+
+            append("--alternative-boundary").append(CRLF)
+            append("Content-Type: text/plain; charset=UTF-8; format=flowed").append(CRLF)
+            append("Content-Transfer-Encoding: quoted-printable").append(CRLF)
+            append(CRLF)
+            append(quotedPrintable(plainText)).append(CRLF)
+
+            append("--alternative-boundary").append(CRLF)
+            append("Content-Type: text/html; charset=UTF-8").append(CRLF)
+            append("Content-Transfer-Encoding: base64").append(CRLF)
+            append(CRLF)
+            append(base64(htmlText.toByteArray(Charsets.UTF_8))).append(CRLF)
+            append("--alternative-boundary--").append(CRLF)
+
+            append("--mixed-boundary").append(CRLF)
+            append("Content-Type: ").append(contentTypeHeader()).append(CRLF)
+            append("Content-Disposition: ").append(contentDispositionHeader()).append(CRLF)
+            append("Content-Transfer-Encoding: base64").append(CRLF)
+            append(CRLF)
+            append(base64(attachment)).append(CRLF)
+
+            append("--mixed-boundary").append(CRLF)
+            append("Content-Type: message/rfc822").append(CRLF)
+            append("Content-Disposition: attachment").append(CRLF)
+            append(CRLF)
+            append("From: ").append(recipientList(count = 1, random)).append(CRLF)
+            append("To: ").append(fold(recipientList(count = 5, random))).append(CRLF)
+            append("Subject: ").append(fold(subject(random))).append(CRLF)
+            append("Date: Mon, 30 Sep 2024 17:12:00 +0000").append(CRLF)
+            append("MIME-Version: 1.0").append(CRLF)
+            append("Content-Type: text/plain; charset=ISO-8859-1").append(CRLF)
+            append("Content-Transfer-Encoding: quoted-printable").append(CRLF)
+            append(CRLF)
+            append(quotedPrintable(text(length = 2 * 1024, Charsets.ISO_8859_1), Charsets.ISO_8859_1)).append(CRLF)
+            append("--mixed-boundary--").append(CRLF)
+        }
+
+        return message.toByteArray(Charsets.UTF_8)
+    }
+
+    private fun words(random: Random, words: List<String>, count: Int): String {
+        return (1..count).joinToString(separator = " ") { words.random(random) }
+    }
+
+    private fun encodedWordB(text: String, charset: Charset): String {
+        val encodedText = Base64.getEncoder().encodeToString(text.toByteArray(charset))
+        return "=?${charset.name()}?B?$encodedText?="
+    }
+
+    private fun encodedWordQ(text: String, charset: Charset): String {
+        val encodedText = buildString {
+            for (byte in text.toByteArray(charset)) {
+                val value = byte.toInt() and 0xFF
+                when {
+                    value == ' '.code -> append('_')
+                    value.toChar().isLetterOrDigit() && value < 0x80 -> append(value.toChar())
+                    else -> append('=').append(hex(value))
+                }
+            }
+        }
+
+        return "=?${charset.name()}?Q?$encodedText?="
+    }
+
+    private fun rfc2231Parameter(name: String, value: String): String {
+        val encodedValue = buildString {
+            for (byte in value.toByteArray(Charsets.UTF_8)) {
+                val value = byte.toInt() and 0xFF
+                if (value < 0x80 && (value.toChar().isLetterOrDigit() || value.toChar() in "-._")) {
+                    append(value.toChar())
+                } else {
+                    append('%').append(hex(value))
+                }
+            }
+        }
+
+        return encodedValue.chunked(30).mapIndexed { index, section ->
+            if (index == 0) "$name*0*=UTF-8''$section" else "$name*$index*=$section"
+        }.joinToString(separator = "; ")
+    }
+
+    private fun quotedPrintable(text: String, charset: Charset = Charsets.UTF_8): String {
+        return text.split(CRLF).joinToString(separator = CRLF) { line ->
+            buildString {
+                var lineLength = 0
+                for (byte in line.toByteArray(charset)) {
+                    val value = byte.toInt() and 0xFF
+                    val encoded = if (value in 0x21..0x7E && value != '='.code || value == ' '.code) {
+                        value.toChar().toString()
+                    } else {
+                        "=" + hex(value)
+                    }
+
+                    if (lineLength + encoded.length > QUOTED_PRINTABLE_LINE_LENGTH) {
+                        append('=').append(CRLF)
+                        lineLength = 0
+                    }
+
+                    append(encoded)
+                    lineLength += encoded.length
+                }
+            }
+        }
+    }
+
+    private fun base64(data: ByteArray): String {
+        return Base64.getMimeEncoder().encodeToString(data)
+    }
+
+    private fun fold(headerValue: String): String {
+        return headerValue.replace(", ", ",$CRLF ")
+    }
+
+    private fun hex(value: Int): String {
+        return value.toString(16).uppercase().padStart(2, '0')
+    }
+
+    private fun String.asciiOnly(): String {
+        return filter { it in 'a'..'z' || it in 'A'..'Z' }
+    }
+}
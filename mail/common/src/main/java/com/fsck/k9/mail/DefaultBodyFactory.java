@@ -12,14 +12,35 @@ import org.apache.james.mime4j.util.MimeUtil;
 
 
 public class DefaultBodyFactory implements BodyFactory {
+    /**
+     * Bodies up to this size are small enough to be stored in the database. Keeping them in memory avoids creating a
+     * temp file for every body part.
+     */
+    public static final int DEFAULT_IN_MEMORY_THRESHOLD = 16 * 1024;
+
+    private final int inMemoryThreshold;
+
+
+    public DefaultBodyFactory() {
+        this(0);
+    }
+
+    /**
+     * @param inMemoryThreshold The maximum size of a body that is kept in memory instead of a temp file. Use {@code 0}
+     *         to always use temp files.
+     */
+    public DefaultBodyFactory(int inMemoryThreshold) {
+        this.inMemoryThreshold = inMemoryThreshold;
+    }
+
     public Body createBody(String contentTransferEncoding, String contentType, InputStream inputStream)
             throws IOException {
 
         final BinaryTempFileBody tempBody;
         if (MimeUtil.isMessage(contentType)) {
-            tempBody = new BinaryTempFileMessageBody(contentTransferEncoding);
+            tempBody = new BinaryTempFileMessageBody(contentTransferEncoding, inMemoryThreshold);
         } else {
-            tempBody = new BinaryTempFileBody(contentTransferEncoding);
+            tempBody = new BinaryTempFileBody(contentTransferEncoding, inMemoryThreshold);
         }
 
         OutputStream outputStream = tempBody.getOutputStream();
@@ -1,6 +1,7 @@
 package com.fsck.k9.mail.internet;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -22,12 +23,23 @@ import org.apache.james.mime4j.util.MimeUtil;
  * the user to write to the temp file. After the write the body is available via getInputStream
  * and writeTo one time. After writeTo is called, or the InputStream returned from
  * getInputStream is closed the file is deleted and the Body should be considered disposed of.
+ * <p>
+ * If an in-memory threshold is specified, the data is kept in a pooled heap buffer until it grows past the threshold.
+ * Only then is it written to a temp file. The buffer starts small and grows as data is written, so small bodies don't
+ * hold on to a buffer of the full threshold size. {@link #getFile()} writes in-memory data to a temp file on demand.
+ * </p>
  */
 public class BinaryTempFileBody implements RawDataBody, SizeAware {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
     private static File mTempDirectory;
 
+    private final int mInMemoryThreshold;
+
     private File mFile;
 
+    private InMemoryData mInMemoryData;
+
     String mEncoding = null;
 
     public static void setTempDirectory(File tempDirectory) {
@@ -54,30 +66,32 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
         }
 
         try {
-            File newFile = File.createTempFile("body", null, mTempDirectory);
-            final OutputStream out = new FileOutputStream(newFile);
+            // The input stream is bound to the current data. getOutputStream() then replaces it with new storage.
+            InputStream in = getInputStream();
             try {
-                OutputStream wrappedOut;
-                if (MimeUtil.ENC_QUOTED_PRINTABLE.equals(encoding)) {
-                    wrappedOut = new QuotedPrintableOutputStream(out, false);
-                } else if (MimeUtil.ENC_BASE64.equals(encoding)) {
-                    wrappedOut = new Base64OutputStream(out);
-                } else {
-                    throw new RuntimeException("Target encoding not supported: " + encoding);
-                }
-
-                InputStream in = getInputStream();
+                final OutputStream out = getOutputStream();
                 try {
-                    IOUtils.copy(in, wrappedOut);
+                    OutputStream wrappedOut;
+                    if (MimeUtil.ENC_QUOTED_PRINTABLE.equals(encoding)) {
+                        wrappedOut = new QuotedPrintableOutputStream(out, false);
+                    } else if (MimeUtil.ENC_BASE64.equals(encoding)) {
+                        wrappedOut = new Base64OutputStream(out);
+                    } else {
+                        throw new RuntimeException("Target encoding not supported: " + encoding);
+                    }
+
+                    try {
+                        IOUtils.copy(in, wrappedOut);
+                    } finally {
+                        IOUtils.closeQuietly(wrappedOut);
+                    }
                 } finally {
-                    IOUtils.closeQuietly(in);
-                    IOUtils.closeQuietly(wrappedOut);
+                    IOUtils.closeQuietly(out);
                 }
             } finally {
-                IOUtils.closeQuietly(out);
+                IOUtils.closeQuietly(in);
             }
 
-            mFile = newFile;
             mEncoding = encoding;
         } catch (IOException e) {
             throw new MessagingException("Unable to convert body", e);
@@ -85,22 +99,42 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
     }
 
     public BinaryTempFileBody(String encoding) {
+        this(encoding, 0);
+    }
+
+    /**
+     * @param inMemoryThreshold The maximum number of bytes kept in memory before the data is written to a temp file.
+     *         Use {@code 0} to always use a temp file.
+     */
+    public BinaryTempFileBody(String encoding, int inMemoryThreshold) {
         if (mTempDirectory == null) {
             throw new RuntimeException("setTempDirectory has not been called on BinaryTempFileBody!");
         }
 
         mEncoding = encoding;
+        mInMemoryThreshold = inMemoryThreshold;
     }
 
     public OutputStream getOutputStream() throws IOException {
-        mFile = File.createTempFile("body", null, mTempDirectory);
-        mFile.deleteOnExit();
-        return new FileOutputStream(mFile);
+        if (mInMemoryThreshold > 0) {
+            return new SpillingOutputStream();
+        }
+
+        return createTempFileOutputStream();
     }
 
     public InputStream getInputStream() throws MessagingException {
+        InMemoryData inMemoryData = mInMemoryData;
+        if (inMemoryData != null) {
+            if (!inMemoryData.open()) {
+                throw new MessagingException("Unable to open body: already disposed of");
+            }
+
+            return new BinaryTempFileBodyInputStream(inMemoryData);
+        }
+
         try {
-            return new BinaryTempFileBodyInputStream(new FileInputStream(mFile));
+            return new BinaryTempFileBodyInputStream(new FileInputStream(mFile), mFile);
         } catch (IOException ioe) {
             throw new MessagingException("Unable to open body", ioe);
         }
@@ -117,16 +151,58 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     @Override
     public long getSize() {
+        InMemoryData inMemoryData = mInMemoryData;
+        if (inMemoryData != null) {
+            return inMemoryData.size;
+        }
+
         return mFile.length();
     }
 
-    public File getFile() {
+    /**
+     * Returns the temp file containing the data. Data that is kept in memory is written to a temp file first.
+     */
+    public File getFile() throws IOException {
+        InMemoryData inMemoryData = mInMemoryData;
+        if (inMemoryData != null && inMemoryData.open()) {
+            try {
+                OutputStream out = createTempFileOutputStream();
+                try {
+                    out.write(inMemoryData.buffer, 0, inMemoryData.size);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                inMemoryData.close(true);
+            }
+
+            mInMemoryData = null;
+        }
+
         return mFile;
     }
 
+    private OutputStream createTempFileOutputStream() throws IOException {
+        mInMemoryData = null;
+        mFile = File.createTempFile("body", null, mTempDirectory);
+        mFile.deleteOnExit();
+        return new FileOutputStream(mFile);
+    }
+
     class BinaryTempFileBodyInputStream extends FilterInputStream {
-        public BinaryTempFileBodyInputStream(InputStream in) {
+        private final File file;
+        private final InMemoryData inMemoryData;
+
+        BinaryTempFileBodyInputStream(InputStream in, File file) {
             super(in);
+            this.file = file;
+            this.inMemoryData = null;
+        }
+
+        BinaryTempFileBodyInputStream(InMemoryData inMemoryData) {
+            super(new ByteArrayInputStream(inMemoryData.buffer, 0, inMemoryData.size));
+            this.file = null;
+            this.inMemoryData = inMemoryData;
         }
 
         @Override
@@ -134,16 +210,159 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
             try {
                 super.close();
             } finally {
-                Log.d("Deleting temporary binary file: %s", mFile.getName());
-                boolean fileSuccessfullyDeleted = mFile.delete();
-                if (!fileSuccessfullyDeleted) {
-                    Log.i("Failed to delete temporary binary file: %s", mFile.getName());
+                if (inMemoryData != null) {
+                    inMemoryData.close(true);
+                } else {
+                    Log.d("Deleting temporary binary file: %s", file.getName());
+                    boolean fileSuccessfullyDeleted = file.delete();
+                    if (!fileSuccessfullyDeleted) {
+                        Log.i("Failed to delete temporary binary file: %s", file.getName());
+                    }
                 }
             }
         }
 
         public void closeWithoutDeleting() throws IOException {
-            super.close();
+            try {
+                super.close();
+            } finally {
+                if (inMemoryData != null) {
+                    inMemoryData.close(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes to a pooled buffer until the in-memory threshold is exceeded, then moves the data to a temp file.
+     */
+    private class SpillingOutputStream extends OutputStream {
+        private InMemoryData inMemoryData;
+        private OutputStream fileOutputStream;
+
+        SpillingOutputStream() {
+            int initialBufferSize = Math.min(INITIAL_BUFFER_SIZE, mInMemoryThreshold);
+            inMemoryData = new InMemoryData(BodyBufferPool.acquire(initialBufferSize));
+            mFile = null;
+            mInMemoryData = inMemoryData;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fileOutputStream == null && ensureCapacity(inMemoryData.size + 1)) {
+                inMemoryData.buffer[inMemoryData.size++] = (byte) b;
+            } else {
+                fileOutputStream.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOutputStream == null && ensureCapacity(inMemoryData.size + len)) {
+                System.arraycopy(b, off, inMemoryData.buffer, inMemoryData.size, len);
+                inMemoryData.size += len;
+            } else {
+                fileOutputStream.write(b, off, len);
+            }
+        }
+
+        /**
+         * Makes sure the in-memory buffer can hold {@code requiredSize} bytes.
+         *
+         * @return {@code false} if the data exceeds the in-memory threshold and has been moved to a temp file.
+         */
+        private boolean ensureCapacity(int requiredSize) throws IOException {
+            byte[] buffer = inMemoryData.buffer;
+            if (requiredSize <= buffer.length) {
+                return true;
+            }
+
+            if (requiredSize > mInMemoryThreshold) {
+                spillToFile();
+                return false;
+            }
+
+            int newSize = Math.max(requiredSize, Math.min(buffer.length * 2, mInMemoryThreshold));
+            byte[] newBuffer = BodyBufferPool.acquire(newSize);
+            System.arraycopy(buffer, 0, newBuffer, 0, inMemoryData.size);
+            inMemoryData.buffer = newBuffer;
+            BodyBufferPool.release(buffer);
+
+            return true;
+        }
+
+        private void spillToFile() throws IOException {
+            fileOutputStream = createTempFileOutputStream();
+            fileOutputStream.write(inMemoryData.buffer, 0, inMemoryData.size);
+            inMemoryData.dispose();
+            inMemoryData = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Body data kept in a pooled buffer. The buffer is returned to the pool once the data has been disposed of and
+     * all input streams reading from it have been closed.
+     */
+    private static class InMemoryData {
+        // Only replaced while data is written, i.e. before any input stream reads from it
+        byte[] buffer;
+        int size;
+        // The body itself counts as one user of the buffer until the data is disposed of
+        private int users = 1;
+        private boolean disposed = false;
+        private boolean released = false;
+
+        InMemoryData(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        synchronized boolean open() {
+            if (disposed) {
+                return false;
+            }
+
+            users++;
+            return true;
+        }
+
+        synchronized void close(boolean dispose) {
+            users--;
+
+            if (dispose) {
+                dispose();
+            } else {
+                releaseIfUnused();
+            }
+        }
+
+        synchronized void dispose() {
+            if (!disposed) {
+                disposed = true;
+                users--;
+            }
+
+            releaseIfUnused();
+        }
+
+        private void releaseIfUnused() {
+            if (disposed && users == 0 && !released) {
+                released = true;
+                BodyBufferPool.release(buffer);
+            }
         }
     }
 }
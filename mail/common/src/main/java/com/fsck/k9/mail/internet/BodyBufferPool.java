@@ -0,0 +1,53 @@
+package com.fsck.k9.mail.internet;
+
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+
+/**
+ * A small pool of byte arrays used by {@link BinaryTempFileBody} to keep body data in memory.
+ * <p>
+ * The pool holds buffers of different sizes. {@link #acquire(int)} returns a pooled buffer that is large enough and
+ * leaves smaller buffers in the pool for later requests.
+ * </p>
+ */
+final class BodyBufferPool {
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final Deque<byte[]> buffers = new ArrayDeque<>();
+
+
+    private BodyBufferPool() {
+    }
+
+    static byte[] acquire(int minimumSize) {
+        synchronized (buffers) {
+            Iterator<byte[]> iterator = buffers.iterator();
+            while (iterator.hasNext()) {
+                byte[] buffer = iterator.next();
+                if (buffer.length >= minimumSize) {
+                    iterator.remove();
+                    return buffer;
+                }
+            }
+        }
+
+        return new byte[minimumSize];
+    }
+
+    static void release(byte[] buffer) {
+        synchronized (buffers) {
+            if (buffers.size() < MAX_POOLED_BUFFERS) {
+                buffers.addFirst(buffer);
+            }
+        }
+    }
+
+    static void clear() {
+        synchronized (buffers) {
+            buffers.clear();
+        }
+    }
+}
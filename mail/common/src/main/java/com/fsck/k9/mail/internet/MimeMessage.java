@@ -127,7 +127,8 @@ public class MimeMessage extends Message {
                 .build();
 
         MimeStreamParser parser = new MimeStreamParser(parserConfig);
-        parser.setContentHandler(new MimeMessageBuilder(new DefaultBodyFactory()));
+        BodyFactory bodyFactory = new DefaultBodyFactory(DefaultBodyFactory.DEFAULT_IN_MEMORY_THRESHOLD);
+        parser.setContentHandler(new MimeMessageBuilder(bodyFactory));
         if (recurse) {
             parser.setRecurse();
         }
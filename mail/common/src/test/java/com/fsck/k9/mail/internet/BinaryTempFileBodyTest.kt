@@ -0,0 +1,132 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isNotNull
+import java.io.File
+import java.nio.file.Files
+import net.thunderbird.core.common.exception.MessagingException
+import org.apache.james.mime4j.util.MimeUtil
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+private const val IN_MEMORY_THRESHOLD = 16
+
+class BinaryTempFileBodyTest {
+    private lateinit var tempDirectory: File
+
+    @Before
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("BinaryTempFileBodyTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `small body should be kept in memory`() {
+        val body = createBody("0123456789")
+
+        assertThat(body.size).isEqualTo(10L)
+        assertThat(body.readText()).isEqualTo("0123456789")
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+    }
+
+    @Test
+    fun `body larger than threshold should be written to temp file`() {
+        val body = createBody("0123456789abcdefghij")
+
+        assertThat(body.size).isEqualTo(20L)
+        assertThat(tempDirectory.listFiles()!!.toList()).hasSize(1)
+        assertThat(body.readText()).isEqualTo("0123456789abcdefghij")
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+    }
+
+    @Test
+    fun `getFile() should write in-memory body to temp file`() {
+        val body = createBody("0123456789")
+
+        val file = body.file
+
+        assertThat(file).isNotNull()
+        assertThat(file.readText()).isEqualTo("0123456789")
+        assertThat(body.readText()).isEqualTo("0123456789")
+    }
+
+    @Test
+    fun `in-memory body can't be read after it has been disposed of`() {
+        val body = createBody("0123456789")
+        body.readText()
+
+        assertFailure {
+            body.inputStream
+        }.isInstanceOf<MessagingException>()
+    }
+
+    @Test
+    fun `closing input stream without deleting should keep in-memory body`() {
+        val body = createBody("0123456789")
+        MimeUtility.closeInputStreamWithoutDeletingTemporaryFiles(body.inputStream)
+
+        assertThat(body.readText()).isEqualTo("0123456789")
+    }
+
+    @Test
+    fun `setEncoding() should convert in-memory body`() {
+        val body = createBody("0123456789")
+
+        body.setEncoding(MimeUtil.ENC_BASE64)
+
+        assertThat(body.encoding).isEqualTo(MimeUtil.ENC_BASE64)
+        assertThat(body.readText().trim()).isEqualTo("MDEyMzQ1Njc4OQ==")
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+    }
+
+    @Test
+    fun `body written byte by byte should grow in-memory buffer up to threshold`() {
+        val text = "0123456789".repeat(300)
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT, 4096).apply {
+            outputStream.use { outputStream ->
+                for (byte in text.toByteArray()) {
+                    outputStream.write(byte.toInt())
+                }
+            }
+        }
+
+        assertThat(body.size).isEqualTo(3000L)
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+        assertThat(body.readText()).isEqualTo(text)
+    }
+
+    @Test
+    fun `body written byte by byte should be written to temp file once threshold is exceeded`() {
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT, IN_MEMORY_THRESHOLD).apply {
+            outputStream.use { outputStream ->
+                for (byte in "0123456789abcdefghij".toByteArray()) {
+                    outputStream.write(byte.toInt())
+                }
+            }
+        }
+
+        assertThat(tempDirectory.listFiles()!!.toList()).hasSize(1)
+        assertThat(body.readText()).isEqualTo("0123456789abcdefghij")
+    }
+
+    private fun createBody(text: String): BinaryTempFileBody {
+        return BinaryTempFileBody(MimeUtil.ENC_8BIT, IN_MEMORY_THRESHOLD).apply {
+            outputStream.use { it.write(text.toByteArray()) }
+        }
+    }
+
+    private fun BinaryTempFileBody.readText(): String {
+        return inputStream.use { it.readBytes().decodeToString() }
+    }
+}
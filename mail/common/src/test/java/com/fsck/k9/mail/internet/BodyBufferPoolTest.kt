@@ -0,0 +1,43 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.isSameInstanceAs
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class BodyBufferPoolTest {
+    @Before
+    fun setUp() {
+        BodyBufferPool.clear()
+    }
+
+    @After
+    fun tearDown() {
+        BodyBufferPool.clear()
+    }
+
+    @Test
+    fun `acquire() should return released buffer that is large enough`() {
+        val buffer = ByteArray(1024)
+        BodyBufferPool.release(buffer)
+
+        val result = BodyBufferPool.acquire(512)
+
+        assertThat(result).isSameInstanceAs(buffer)
+    }
+
+    @Test
+    fun `acquire() should keep buffers that are too small in the pool`() {
+        val smallBuffer = ByteArray(512)
+        val largeBuffer = ByteArray(2048)
+        BodyBufferPool.release(largeBuffer)
+        BodyBufferPool.release(smallBuffer)
+
+        val largeResult = BodyBufferPool.acquire(1024)
+        val smallResult = BodyBufferPool.acquire(512)
+
+        assertThat(largeResult).isSameInstanceAs(largeBuffer)
+        assertThat(smallResult).isSameInstanceAs(smallBuffer)
+    }
+}
@@ -15,6 +15,7 @@ dependencies {
     implementation(libs.okio)
 
     testImplementation(projects.core.logging.testing)
+    testImplementation(projects.core.testing)
     testImplementation(projects.mail.testing)
 
     testImplementation(libs.mime4j.core)
@@ -0,0 +1,35 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Hands out the same connection every time it is asked for one. The connection is not taken from the connection pool
+ * and doesn't count towards its limit.
+ *
+ * This is used for connections that are kept in the IDLE state and would otherwise occupy a pooled connection
+ * indefinitely.
+ */
+internal class DedicatedImapConnectionManager(
+    private val connectionFactory: () -> ImapConnection,
+) : ImapConnectionManager {
+    private var connection: ImapConnection? = null
+
+    @Synchronized
+    override fun getConnection(): ImapConnection {
+        connection?.let { connection ->
+            if (connection.isConnected) return connection
+
+            connection.close()
+        }
+
+        return connectionFactory().also { connection = it }
+    }
+
+    override fun releaseConnection(connection: ImapConnection?) {
+        // The connection is kept for the next call to getConnection(). It's only closed by closeConnection().
+    }
+
+    @Synchronized
+    fun closeConnection() {
+        connection?.close()
+        connection = null
+    }
+}
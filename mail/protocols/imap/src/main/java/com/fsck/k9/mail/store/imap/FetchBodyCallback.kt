@@ -1,12 +1,25 @@
 package com.fsck.k9.mail.store.imap
 
+import com.fsck.k9.mail.BodyFactory
+import com.fsck.k9.mail.DefaultBodyFactory
 import com.fsck.k9.mail.filter.FixedLengthInputStream
 import java.io.IOException
 import net.thunderbird.core.common.exception.MessagingException
+import org.apache.james.mime4j.util.MimeUtil
 
 const val LITERAL_HANDLED = 1
 
-internal class FetchBodyCallback(private val messageMap: Map<String, ImapMessage>) : ImapResponseCallback {
+/**
+ * Streams `BODY[]` literals straight into [ImapMessage.parse] without reading them into memory first.
+ *
+ * Some servers send the UID after the message data. In that case we don't know which message the literal belongs to
+ * yet. The data is then stored in a [com.fsck.k9.mail.Body] created by [bodyFactory] and parsed once the whole
+ * `FETCH` response has been read.
+ */
+internal class FetchBodyCallback(
+    private val messageMap: Map<String, ImapMessage>,
+    private val bodyFactory: BodyFactory = DefaultBodyFactory(DefaultBodyFactory.DEFAULT_IN_MEMORY_THRESHOLD),
+) : ImapResponseCallback {
     @Throws(MessagingException::class, IOException::class)
     override fun foundLiteral(
         response: ImapResponse,
@@ -17,7 +30,9 @@ internal class FetchBodyCallback(private val messageMap: Map<String, ImapMessage
         ) {
             val fetchList = response.getKeyedValue("FETCH") as ImapList
             val uid = fetchList.getKeyedString("UID")
+                ?: return bodyFactory.createBody(MimeUtil.ENC_8BIT, null, literal)
 
+            // The parser skips the literal if we didn't ask for this message
             val message = messageMap[uid]
             message?.parse(literal)
 
@@ -13,6 +13,7 @@ internal interface ImapConnection {
     val isUidPlusCapable: Boolean
     val isUtf8AcceptCapable: Boolean
     val isIdleCapable: Boolean
+    val isQresyncEnabled: Boolean
 
     @Throws(IOException::class, MessagingException::class)
     fun open()
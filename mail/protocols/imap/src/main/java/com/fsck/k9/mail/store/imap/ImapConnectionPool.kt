@@ -0,0 +1,178 @@
+package com.fsck.k9.mail.store.imap
+
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.time.Clock
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.ExperimentalTime
+import kotlin.time.Instant
+import net.thunderbird.legacy.logging.Log
+
+/**
+ * Most servers limit the number of concurrent connections per user (e.g. Dovecot's default is 10 per IP address).
+ */
+private const val DEFAULT_MAX_CONNECTIONS = 10
+
+/**
+ * Connections that were used this recently are assumed to still be alive and don't need to be checked with `NOOP`.
+ */
+private val DEFAULT_LIVENESS_CHECK_INTERVAL = 15.seconds
+
+/**
+ * Idle connections are closed after this time. Servers and NAT gateways tend to drop connections that have been idle
+ * for a while anyway.
+ */
+private val DEFAULT_IDLE_TIMEOUT = 5.minutes
+
+private val DEFAULT_MAX_WAIT_TIME = 10.seconds
+
+/**
+ * Keeps track of the connections to an IMAP server and keeps idle connections around for reuse.
+ *
+ * The number of connections in use is limited to [maxConnections]. When the limit is reached, [acquire] waits for a
+ * connection to be released. If that takes longer than [maxWaitTime] a new connection is created anyway, so a leaked
+ * connection can't stall all operations.
+ */
+@OptIn(ExperimentalTime::class)
+internal class ImapConnectionPool(
+    private val clock: Clock = Clock.System,
+    private val maxConnections: Int = DEFAULT_MAX_CONNECTIONS,
+    private val livenessCheckInterval: Duration = DEFAULT_LIVENESS_CHECK_INTERVAL,
+    private val idleTimeout: Duration = DEFAULT_IDLE_TIMEOUT,
+    private val maxWaitTime: Duration = DEFAULT_MAX_WAIT_TIME,
+) {
+    private val lock = ReentrantLock()
+    private val connectionReleased = lock.newCondition()
+
+    // Most recently used connection last
+    private val idleConnections = ArrayDeque<IdleConnection>()
+    private var activeConnectionCount = 0
+
+    private var hitCount = 0L
+    private var missCount = 0L
+    private var createCount = 0L
+    private var evictCount = 0L
+
+    val stats: ImapConnectionPoolStats
+        get() = lock.withLock {
+            ImapConnectionPoolStats(
+                hitCount = hitCount,
+                missCount = missCount,
+                createCount = createCount,
+                evictCount = evictCount,
+                activeConnectionCount = activeConnectionCount,
+                idleConnectionCount = idleConnections.size,
+            )
+        }
+
+    /**
+     * Returns an idle connection or a new one created by [createConnection].
+     *
+     * The caller has to hand the connection back using [release] or [discard].
+     */
+    fun acquire(createConnection: () -> ImapConnection): PooledImapConnection {
+        val expiredConnections = mutableListOf<ImapConnection>()
+        try {
+            lock.withLock {
+                expiredConnections.addAll(removeExpiredConnections())
+
+                var remainingNanos = maxWaitTime.inWholeNanoseconds
+                while (true) {
+                    val idleConnection = idleConnections.removeLastOrNull()
+                    if (idleConnection != null) {
+                        hitCount++
+                        activeConnectionCount++
+
+                        val needsLivenessCheck = clock.now() - idleConnection.lastUsed >= livenessCheckInterval
+                        return PooledImapConnection(idleConnection.connection, needsLivenessCheck)
+                    }
+
+                    if (activeConnectionCount < maxConnections) break
+
+                    if (remainingNanos <= 0L) {
+                        Log.w("No IMAP connection was released within %s. Exceeding the limit.", maxWaitTime)
+                        break
+                    }
+
+                    remainingNanos = connectionReleased.awaitNanos(remainingNanos)
+                }
+
+                val connection = createConnection()
+                missCount++
+                createCount++
+                activeConnectionCount++
+
+                return PooledImapConnection(connection, needsLivenessCheck = false)
+            }
+        } finally {
+            expiredConnections.forEach { it.close() }
+        }
+    }
+
+    /**
+     * Returns a connection that is still usable to the pool.
+     */
+    fun release(connection: ImapConnection) {
+        val expiredConnections = lock.withLock {
+            activeConnectionCount--
+            idleConnections.addLast(IdleConnection(connection, lastUsed = clock.now()))
+            connectionReleased.signal()
+
+            removeExpiredConnections()
+        }
+
+        expiredConnections.forEach { it.close() }
+    }
+
+    /**
+     * Stops tracking a connection that was closed or can't be reused.
+     */
+    fun discard() {
+        lock.withLock {
+            activeConnectionCount--
+            connectionReleased.signal()
+        }
+    }
+
+    /**
+     * Removes all idle connections from the pool and returns them.
+     */
+    fun removeIdleConnections(): List<ImapConnection> {
+        return lock.withLock {
+            val connections = idleConnections.map { it.connection }
+            idleConnections.clear()
+            connectionReleased.signalAll()
+
+            connections
+        }
+    }
+
+    private fun removeExpiredConnections(): List<ImapConnection> {
+        val now = clock.now()
+        val expiredConnections = mutableListOf<ImapConnection>()
+        while (idleConnections.isNotEmpty() && now - idleConnections.first().lastUsed >= idleTimeout) {
+            expiredConnections.add(idleConnections.removeFirst().connection)
+            evictCount++
+        }
+
+        return expiredConnections
+    }
+
+    private class IdleConnection(val connection: ImapConnection, val lastUsed: Instant)
+}
+
+internal class PooledImapConnection(
+    val connection: ImapConnection,
+    val needsLivenessCheck: Boolean,
+)
+
+internal data class ImapConnectionPoolStats(
+    val hitCount: Long,
+    val missCount: Long,
+    val createCount: Long,
+    val evictCount: Long,
+    val activeConnectionCount: Int,
+    val idleConnectionCount: Int,
+)
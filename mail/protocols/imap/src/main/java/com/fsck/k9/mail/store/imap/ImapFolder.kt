@@ -23,10 +23,21 @@ interface ImapFolder {
     @Throws(MessagingException::class)
     fun open(mode: OpenMode)
 
+    /**
+     * Opens the folder and asks the server to report the changes since the state described by [qresyncParameter].
+     *
+     * Returns `null` if the QRESYNC extension (RFC 7162) isn't enabled or the server doesn't support mod-sequences for
+     * this folder. In that case the folder is still opened, but the caller has to find out about changes on its own.
+     */
+    @Throws(MessagingException::class)
+    fun openUsingQresync(mode: OpenMode, qresyncParameter: QresyncParameter): QresyncResponse?
+
     fun close()
 
     fun getUidValidity(): Long?
 
+    fun getHighestModSeq(): Long?
+
     fun getMessage(uid: String): ImapMessage
 
     @Throws(MessagingException::class)
@@ -22,6 +22,11 @@ interface ImapFolderIdler {
             folderServerId: String,
             idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
         ): ImapFolderIdler {
+            // Don't use the connection pool. An IDLE connection is in use for as long as the idler is running.
+            val idleConnectionManager = (imapStore as? RealImapStore)?.let { realImapStore ->
+                DedicatedImapConnectionManager(realImapStore::createImapConnection)
+            }
+
             return RealImapFolderIdler(
                 idleRefreshManager,
                 wakeLock,
@@ -29,6 +34,7 @@ interface ImapFolderIdler {
                 connectionProvider,
                 folderServerId,
                 idleRefreshTimeoutProvider,
+                idleConnectionManager,
             )
         }
     }
@@ -0,0 +1,53 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.power.WakeLock
+
+/**
+ * Listens for changes to multiple folders using a single connection (RFC 5465: IMAP NOTIFY).
+ */
+interface ImapNotifyIdler {
+    /**
+     * Opens a connection and asks the server to send notifications for all folders.
+     *
+     * @return `false` if the server doesn't support the NOTIFY and IDLE extensions.
+     */
+    fun connect(): Boolean
+
+    fun idle(): NotifyIdleResult
+    fun refresh()
+    fun stop()
+
+    companion object {
+        fun create(
+            idleRefreshManager: IdleRefreshManager,
+            wakeLock: WakeLock,
+            imapStore: ImapStore,
+            folderServerIds: Collection<String>,
+            idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+        ): ImapNotifyIdler {
+            require(imapStore is RealImapStore)
+
+            return RealImapNotifyIdler(
+                idleRefreshManager,
+                wakeLock,
+                connectionFactory = imapStore::createImapConnection,
+                folderNameEncoder = { folderServerId ->
+                    (imapStore.getFolder(folderServerId) as RealImapFolder).encodedName
+                },
+                folderServerIds,
+                idleRefreshTimeoutProvider,
+            )
+        }
+    }
+}
+
+/**
+ * Result of [ImapNotifyIdler.idle].
+ *
+ * @param idleResult [IdleResult.SYNC] if at least one of the folders has changed.
+ * @param folderServerIds The server IDs of the folders that have changed.
+ */
+data class NotifyIdleResult(
+    val idleResult: IdleResult,
+    val folderServerIds: Set<String> = emptySet(),
+)
@@ -13,7 +13,10 @@ internal fun interface ImapResponseCallback {
      *                 the literal string.
      *
      * @return an Object that will be put in the ImapResponse object at the
-     *         place of the literal string.
+     *         place of the literal string. Any part of the literal not
+     *         consumed by the callback is skipped. Return `null` without
+     *         reading from [literal] to have the parser read the literal
+     *         string into memory.
      *
      * @throws java.io.IOException passed-through if thrown by FixedLengthInputStream
      * @throws Exception if something goes wrong. Parsing will be resumed
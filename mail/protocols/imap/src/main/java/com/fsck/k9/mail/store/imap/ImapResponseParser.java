@@ -388,11 +388,13 @@ class ImapResponseParser {
             }
 
             boolean someDataWasRead = fixed.available() != size;
-            if (someDataWasRead) {
-                if (result == null && callbackException == null) {
+            if (result == null && callbackException == null) {
+                if (someDataWasRead) {
                     throw new AssertionError("Callback consumed some data but returned no result");
                 }
-
+            } else {
+                // The callback is responsible for the literal. Skip whatever it didn't read instead of parsing the
+                // rest of the literal as tokens.
                 fixed.skipRemaining();
             }
 
@@ -0,0 +1,12 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * The locally known state of a folder that is sent to the server using the QRESYNC parameter of the SELECT/EXAMINE
+ * command.
+ *
+ * See RFC 7162, section 3.2.5.
+ */
+data class QresyncParameter(
+    val uidValidity: Long,
+    val modSeq: Long,
+)
@@ -0,0 +1,20 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Changes the server reported in response to a SELECT/EXAMINE command with the QRESYNC parameter.
+ */
+class QresyncResponse(
+    /**
+     * UIDs of messages that have been expunged since the mod-sequence passed in [QresyncParameter.modSeq].
+     *
+     * The server is allowed to include UIDs that never existed or were expunged earlier.
+     */
+    val vanishedUids: List<LongRange>,
+
+    /**
+     * Messages that were added or whose flags changed since the mod-sequence passed in [QresyncParameter.modSeq].
+     *
+     * Only the UID and the flags of these messages are populated.
+     */
+    val changedMessages: List<ImapMessage>,
+)
@@ -263,8 +263,14 @@ internal class RealImapConnection(
             return
         }
 
+        val command = if (hasCapability(Capabilities.QRESYNC)) {
+            "${Commands.ENABLE} ${Capabilities.QRESYNC}"
+        } else {
+            Commands.ENABLE
+        }
+
         try {
-            val responses = executeSimpleCommand(Commands.ENABLE)
+            val responses = executeSimpleCommand(command)
             val enabledResponse = EnabledResponse.parse(responses) ?: return
             enabled = enabledResponse.capabilities
             responseParser?.setUtf8Accepted(isUtf8AcceptCapable)
@@ -715,6 +721,9 @@ internal class RealImapConnection(
     override val isUtf8AcceptCapable: Boolean
         get() = enabled.contains(Capabilities.UTF8_ACCEPT)
 
+    override val isQresyncEnabled: Boolean
+        get() = enabled.contains(Capabilities.QRESYNC)
+
     @Synchronized
     override fun close() {
         if (!open) return
@@ -945,7 +954,7 @@ internal class RealImapConnection(
          * the QRESYNC parameter to the SELECT/EXAMINE commands, which accept a list of known message
          * sequence numbers as well as their corresponding UIDs.
          */
-        private const val LENGTH_LIMIT_WITHOUT_CONDSTORE = 980
+        internal const val LENGTH_LIMIT_WITHOUT_CONDSTORE = 980
         private const val LENGTH_LIMIT_WITH_CONDSTORE = 8172
     }
 }
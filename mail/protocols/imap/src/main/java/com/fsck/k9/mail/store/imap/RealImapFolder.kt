@@ -22,7 +22,6 @@ import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
 import kotlin.math.max
-import kotlin.math.min
 import net.thunderbird.core.common.exception.MessagingException
 import net.thunderbird.core.common.mail.Flag
 import net.thunderbird.legacy.logging.Log
@@ -41,6 +40,7 @@ internal class RealImapFolder(
     private var inSearch = false
     private var canCreateKeywords = false
     private var uidValidity: Long? = null
+    private var highestModSeq: Long? = null
 
     /**
      * Specifies whether the folder was opened in read-only or read-write mode based on the tagged OK response to
@@ -70,6 +70,11 @@ internal class RealImapFolder(
         return uidValidity
     }
 
+    override fun getHighestModSeq(): Long? {
+        check(isOpen) { "ImapFolder needs to be open" }
+        return highestModSeq
+    }
+
     @get:Throws(MessagingException::class)
     private val prefixedName: String
         get() {
@@ -97,7 +102,7 @@ internal class RealImapFolder(
         }
 
     @get:Throws(MessagingException::class)
-    private val encodedName: String
+    internal val encodedName: String
         get() {
             return folderNameCodec.encode(prefixedName)
         }
@@ -123,8 +128,31 @@ internal class RealImapFolder(
     }
 
     @Throws(MessagingException::class)
-    private fun internalOpen(mode: OpenMode): List<ImapResponse> {
-        if (isOpen && this.mode == mode) {
+    override fun openUsingQresync(mode: OpenMode, qresyncParameter: QresyncParameter): QresyncResponse? {
+        val responses = internalOpen(mode, qresyncParameter)
+
+        if (messageCount == -1) {
+            throw MessagingException("Did not find message count during open")
+        }
+
+        if (!connection!!.isQresyncEnabled || highestModSeq == null) {
+            return null
+        }
+
+        val vanishedUids = responses
+            .mapNotNull { VanishedResponse.parse(it) }
+            .filter { it.isEarlier }
+            .flatMap { it.uids }
+
+        return QresyncResponse(
+            vanishedUids = vanishedUids,
+            changedMessages = extractChangedMessages(responses),
+        )
+    }
+
+    @Throws(MessagingException::class)
+    private fun internalOpen(mode: OpenMode, qresyncParameter: QresyncParameter? = null): List<ImapResponse> {
+        if (isOpen && this.mode == mode && qresyncParameter == null) {
             // Make sure the connection is valid. If it's not we'll close it down and continue on to get a new one.
             try {
                 return executeSimpleCommand(Commands.NOOP)
@@ -143,13 +171,26 @@ internal class RealImapFolder(
         try {
             val openCommand = if (mode == OpenMode.READ_WRITE) "SELECT" else "EXAMINE"
             val escapedFolderName = ImapUtility.encodeString(encodedName)
-            val command = String.format("%s %s", openCommand, escapedFolderName)
+            val command = if (qresyncParameter != null && isQresyncEnabled()) {
+                String.format(
+                    Locale.US,
+                    "%s %s (QRESYNC (%d %d))",
+                    openCommand,
+                    escapedFolderName,
+                    qresyncParameter.uidValidity,
+                    qresyncParameter.modSeq,
+                )
+            } else {
+                String.format("%s %s", openCommand, escapedFolderName)
+            }
+            highestModSeq = null
             val responses = executeSimpleCommand(command)
 
             this.mode = mode
 
             for (response in responses) {
                 extractUidValidity(response)
+                extractHighestModSeq(response)
                 handlePermanentFlags(response)
             }
 
@@ -166,6 +207,16 @@ internal class RealImapFolder(
         }
     }
 
+    @Throws(IOException::class, MessagingException::class)
+    private fun isQresyncEnabled(): Boolean {
+        val connection = connection!!
+
+        // Extensions are enabled right after authentication, so the connection needs to be open
+        connection.open()
+
+        return connection.isQresyncEnabled
+    }
+
     private fun extractUidValidity(response: ImapResponse) {
         val uidValidityResponse = UidValidityResponse.parse(response)
         if (uidValidityResponse != null) {
@@ -173,6 +224,29 @@ internal class RealImapFolder(
         }
     }
 
+    private fun extractHighestModSeq(response: ImapResponse) {
+        val highestModSeqResponse = HighestModSeqResponse.parse(response)
+        if (highestModSeqResponse != null) {
+            highestModSeq = highestModSeqResponse.highestModSeq
+        }
+    }
+
+    @Throws(MessagingException::class)
+    private fun extractChangedMessages(responses: List<ImapResponse>): List<ImapMessage> {
+        return responses
+            .filter { response ->
+                response.tag == null && response.size > 2 && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")
+            }
+            .mapNotNull { response ->
+                val fetchList = response.getKeyedValue("FETCH") as? ImapList ?: return@mapNotNull null
+                val uid = fetchList.getKeyedValue("UID") as? String ?: return@mapNotNull null
+
+                ImapMessage(uid).also { message ->
+                    handleFetchResponse(message, fetchList)
+                }
+            }
+    }
+
     private fun handlePermanentFlags(response: ImapResponse) {
         val permanentFlagsResponse = PermanentFlagsResponse.parse(response) ?: return
 
@@ -200,6 +274,7 @@ internal class RealImapFolder(
             if (inSearch && connection != null) {
                 Log.i("IMAP search was aborted, shutting down connection.")
                 connection!!.close()
+                connectionManager.releaseConnection(connection)
             } else {
                 connectionManager.releaseConnection(connection)
             }
@@ -614,72 +689,94 @@ internal class RealImapFolder(
         }
 
         val spaceSeparatedFetchFields = fetchFields.joinToString(" ")
-        var windowStart = 0
-        val processedUids = mutableSetOf<String>()
-        while (windowStart < messages.size) {
-            val windowEnd = min(a = windowStart + FETCH_WINDOW_SIZE, b = messages.size)
-            val uidWindow = uids.subList(fromIndex = windowStart, toIndex = windowEnd)
+        val commands = uids.chunked(FETCH_WINDOW_SIZE).flatMap { uidWindow ->
+            ImapCommandSplitter.splitCommand(
+                prefix = "UID FETCH",
+                suffix = "($spaceSeparatedFetchFields)",
+                groupedIds = IdGrouper.groupIds(uidWindow.map { it.toLong() }.toSet()),
+                lengthLimit = RealImapConnection.LENGTH_LIMIT_WITHOUT_CONDSTORE,
+            )
+        }
 
-            try {
-                val commaSeparatedUids = uidWindow.joinToString(",")
-                val command = String.format("UID FETCH %s (%s)", commaSeparatedUids, spaceSeparatedFetchFields)
-                connection!!.sendCommand(command, false)
+        var callback: ImapResponseCallback? = null
+        if (fetchProfile.contains(FetchProfile.Item.BODY) ||
+            fetchProfile.contains(FetchProfile.Item.BODY_SANE)
+        ) {
+            callback = FetchBodyCallback(messageMap)
+        }
 
-                var callback: ImapResponseCallback? = null
-                if (fetchProfile.contains(FetchProfile.Item.BODY) ||
-                    fetchProfile.contains(FetchProfile.Item.BODY_SANE)
-                ) {
-                    callback = FetchBodyCallback(messageMap)
+        // Keep multiple commands in flight so the connection isn't idle for a round trip after every window.
+        // Untagged FETCH responses are matched to messages by UID, so it doesn't matter which command they belong to.
+        val pendingTags = ArrayDeque<String>()
+        var nextCommandIndex = 0
+        val processedUids = mutableSetOf<String>()
+        try {
+            while (nextCommandIndex < commands.size || pendingTags.isNotEmpty()) {
+                while (nextCommandIndex < commands.size && pendingTags.size < FETCH_PIPELINE_DEPTH) {
+                    pendingTags.addLast(connection!!.sendCommand(commands[nextCommandIndex], false))
+                    nextCommandIndex++
                 }
 
-                var response: ImapResponse
-                do {
-                    response = connection!!.readResponse(callback)
-                    if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
-                        val fetchList = response.getKeyedValue("FETCH") as ImapList
-                        val uid = fetchList.getKeyedString("UID")
-
-                        val message = messageMap[uid]
-                        if (message == null) {
-                            if (K9MailLib.isDebug()) {
-                                Log.d("Do not have message in messageMap for UID %s for %s", uid, logId)
-                            }
-                            handleUntaggedResponse(response)
-                            continue
+                val response = connection!!.readResponse(callback)
+                if (response.tag != null) {
+                    if (!pendingTags.remove(response.tag)) {
+                        // Responses can no longer be matched to the commands, so the connection can't be used anymore
+                        Log.w("Got tagged response %s while waiting for %s for %s", response, pendingTags, logId)
+                        connection?.close()
+                        close()
+                        throw MessagingException("Got tagged response for unknown command: $response")
+                    }
+                } else if (ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
+                    val fetchList = response.getKeyedValue("FETCH") as ImapList
+                    val uid = fetchList.getKeyedString("UID")
+
+                    val message = messageMap[uid]
+                    if (message == null) {
+                        if (K9MailLib.isDebug()) {
+                            Log.d("Do not have message in messageMap for UID %s for %s", uid, logId)
                         }
+                        // The UID was sent after the message data, so FetchBodyCallback couldn't skip it
+                        disposeBodies(fetchList)
+                        handleUntaggedResponse(response)
+                        continue
+                    }
 
-                        val literal = handleFetchResponse(message, fetchList)
-                        if (literal != null) {
-                            when (literal) {
-                                is String -> {
-                                    val bodyStream: InputStream = literal.toByteArray().inputStream()
-                                    message.parse(bodyStream)
-                                }
+                    val literal = handleFetchResponse(message, fetchList)
+                    if (literal != null) {
+                        when (literal) {
+                            is String -> {
+                                val bodyStream: InputStream = literal.toByteArray().inputStream()
+                                message.parse(bodyStream)
+                            }
 
-                                is Int -> {
-                                    // All the work was done in FetchBodyCallback.foundLiteral()
-                                }
+                            is Int -> {
+                                // All the work was done in FetchBodyCallback.foundLiteral()
+                            }
 
-                                else -> {
-                                    // This shouldn't happen
-                                    throw MessagingException("Got FETCH response with bogus parameters")
+                            is Body -> {
+                                // The UID was sent after the message data. FetchBodyCallback stored the data.
+                                literal.inputStream.use { bodyStream ->
+                                    message.parse(bodyStream)
                                 }
                             }
+
+                            else -> {
+                                // This shouldn't happen
+                                throw MessagingException("Got FETCH response with bogus parameters")
+                            }
                         }
+                    }
 
-                        val isFirstResponse = uid !in processedUids
-                        processedUids.add(uid)
+                    val isFirstResponse = uid !in processedUids
+                    processedUids.add(uid)
 
-                        listener?.onFetchResponse(message, isFirstResponse)
-                    } else {
-                        handleUntaggedResponse(response)
-                    }
-                } while (response.tag == null)
-            } catch (ioe: IOException) {
-                throw ioExceptionHandler(connection, ioe)
+                    listener?.onFetchResponse(message, isFirstResponse)
+                } else {
+                    handleUntaggedResponse(response)
+                }
             }
-
-            windowStart += FETCH_WINDOW_SIZE
+        } catch (ioe: IOException) {
+            throw ioExceptionHandler(connection, ioe)
         }
     }
 
@@ -834,6 +931,19 @@ internal class RealImapFolder(
         return result
     }
 
+    private fun disposeBodies(fetchList: ImapList) {
+        for (value in fetchList) {
+            if (value is Body) {
+                try {
+                    // Closing the stream releases the (temporary file) storage of the body
+                    value.inputStream.close()
+                } catch (e: Exception) {
+                    Log.w(e, "Error disposing of unused message body for %s", logId)
+                }
+            }
+        }
+    }
+
     private fun handleUntaggedResponses(responses: List<ImapResponse>): List<ImapResponse> {
         for (response in responses) {
             handleUntaggedResponse(response)
@@ -874,6 +984,15 @@ internal class RealImapFolder(
                     Log.d("Got untagged EXPUNGE with messageCount %d for %s", messageCount, logId)
                 }
             }
+
+            // With QRESYNC enabled the server sends VANISHED responses instead of EXPUNGE responses
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null && !vanishedResponse.isEarlier && messageCount > 0) {
+                messageCount = max(0, messageCount - vanishedResponse.uidCount)
+                if (K9MailLib.isDebug()) {
+                    Log.d("Got untagged VANISHED with messageCount %d for %s", messageCount, logId)
+                }
+            }
         }
     }
 
@@ -1299,6 +1418,7 @@ internal class RealImapFolder(
     companion object {
         private const val MORE_MESSAGES_WINDOW_SIZE = 500
         private const val FETCH_WINDOW_SIZE = 100
+        private const val FETCH_PIPELINE_DEPTH = 4
 
         const val INBOX = "INBOX"
 
@@ -14,6 +14,7 @@ internal class RealImapFolderIdler(
     private val connectionProvider: ImapConnectionProvider,
     private val folderServerId: String,
     private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    private val idleConnectionManager: DedicatedImapConnectionManager? = null,
 ) : ImapFolderIdler {
     private val logTag = "ImapFolderIdler[$folderServerId]"
 
@@ -32,15 +33,32 @@ internal class RealImapFolderIdler(
     override fun idle(): IdleResult {
         Log.v("%s.idle()", logTag)
 
-        val folder = imapStore.getFolder(folderServerId).also { this.folder = it }
-        folder.open(OpenMode.READ_ONLY)
-
+        var result: IdleResult? = null
         try {
-            return folder.idle().also { idleResult ->
-                Log.v("%s.idle(): result=%s", logTag, idleResult)
+            val folder = getFolder().also { this.folder = it }
+            folder.open(OpenMode.READ_ONLY)
+
+            try {
+                return folder.idle().also { idleResult ->
+                    Log.v("%s.idle(): result=%s", logTag, idleResult)
+                    result = idleResult
+                }
+            } finally {
+                folder.close()
             }
         } finally {
-            folder.close()
+            // idle() is only called again after a SYNC result. In all other cases the connection is no longer needed.
+            if (result != IdleResult.SYNC) {
+                idleConnectionManager?.closeConnection()
+            }
+        }
+    }
+
+    private fun getFolder(): ImapFolder {
+        return if (idleConnectionManager != null && imapStore is RealImapStore) {
+            imapStore.getFolder(folderServerId, idleConnectionManager)
+        } else {
+            imapStore.getFolder(folderServerId)
         }
     }
 
@@ -193,7 +211,8 @@ internal class RealImapFolderIdler(
             return if (!isTagged && size >= 2) {
                 ImapResponseParser.equalsIgnoreCase(get(1), "EXISTS") ||
                     ImapResponseParser.equalsIgnoreCase(get(1), "EXPUNGE") ||
-                    ImapResponseParser.equalsIgnoreCase(get(1), "FETCH")
+                    ImapResponseParser.equalsIgnoreCase(get(1), "FETCH") ||
+                    ImapResponseParser.equalsIgnoreCase(get(0), Responses.VANISHED)
             } else {
                 false
             }
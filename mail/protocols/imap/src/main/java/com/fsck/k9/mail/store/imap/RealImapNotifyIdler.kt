@@ -0,0 +1,329 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.power.WakeLock
+import java.io.IOException
+import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.legacy.logging.Log
+
+private const val SOCKET_EXTRA_TIMEOUT_MS = 2 * 60 * 1000L
+private const val INBOX = "INBOX"
+private const val NOTIFICATION_OVERFLOW = "NOTIFICATIONOVERFLOW"
+
+/**
+ * Uses IMAP NOTIFY to listen for new and expunged messages and flag changes in multiple folders on one connection.
+ *
+ * The connection is not taken from the connection pool of the store, because other commands would receive the
+ * unsolicited `STATUS` responses. It is kept open between calls to [idle] and closed when idling is stopped or an
+ * error occurred.
+ *
+ * Notifications are requested for the `MessageNew`, `MessageExpunge`, and `FlagChange` events. No mailbox is selected
+ * on this connection, so the server reports all of them using `STATUS` responses. Each one triggers a sync of the
+ * folder.
+ */
+internal class RealImapNotifyIdler(
+    private val idleRefreshManager: IdleRefreshManager,
+    private val wakeLock: WakeLock,
+    private val connectionFactory: () -> ImapConnection,
+    private val folderNameEncoder: (String) -> String,
+    folderServerIds: Collection<String>,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+) : ImapNotifyIdler {
+    private val logTag = "ImapNotifyIdler"
+    private val folderServerIds = folderServerIds.toSet()
+
+    @Volatile
+    private var connection: ImapConnection? = null
+
+    private var mailboxNames: Map<String, String> = emptyMap()
+    private val pendingFolderServerIds = mutableSetOf<String>()
+    private var closeConnectionAfterIdle = false
+
+    @get:Synchronized
+    @set:Synchronized
+    private var idleRefreshTimer: IdleRefreshTimer? = null
+
+    @Volatile
+    private var stopped = false
+
+    @Volatile
+    private var stopIdle = false
+
+    private var idleSent = false
+    private var doneSent = false
+
+    override fun connect(): Boolean {
+        Log.v("%s.connect(): %s", logTag, folderServerIds)
+
+        val connection = connectionFactory().also { this.connection = it }
+        try {
+            connection.open()
+
+            if (!connection.hasCapability(Capabilities.NOTIFY) || !connection.isIdleCapable) {
+                Log.v("%s: NOTIFY not supported by server", logTag)
+                closeConnection()
+                return false
+            }
+
+            mailboxNames = folderServerIds.associateBy { folderServerId ->
+                normalizeMailboxName(folderNameEncoder(folderServerId))
+            }
+
+            if (!connection.enableNotifications()) {
+                closeConnection()
+                return false
+            }
+
+            return true
+        } catch (e: Exception) {
+            closeConnection()
+            throw e
+        }
+    }
+
+    override fun idle(): NotifyIdleResult {
+        Log.v("%s.idle()", logTag)
+
+        if (stopped) {
+            closeConnection()
+            return NotifyIdleResult(IdleResult.STOPPED)
+        }
+
+        val connection = connection?.takeIf { it.isConnected }
+            ?: if (connect()) connection!! else return NotifyIdleResult(IdleResult.NOT_SUPPORTED)
+
+        try {
+            return connection.idle().also { result ->
+                Log.v("%s.idle(): result=%s", logTag, result)
+
+                if (result.idleResult != IdleResult.SYNC || stopped) {
+                    closeConnection()
+                }
+            }
+        } catch (e: Exception) {
+            closeConnection()
+            throw e
+        } finally {
+            synchronized(this) {
+                idleSent = false
+                doneSent = false
+            }
+        }
+    }
+
+    @Synchronized
+    override fun refresh() {
+        Log.v("%s.refresh()", logTag)
+        endIdle()
+    }
+
+    @Synchronized
+    override fun stop() {
+        Log.v("%s.stop()", logTag)
+        stopped = true
+        stopIdle = true
+
+        if (idleSent && !doneSent) {
+            endIdle()
+        } else if (!idleSent) {
+            closeConnection()
+        }
+    }
+
+    private fun endIdle() {
+        if (idleSent && !doneSent) {
+            idleRefreshTimer?.cancel()
+
+            try {
+                sendDone()
+            } catch (e: IOException) {
+                Log.v(e, "%s: IOException while sending DONE", logTag)
+            }
+        }
+    }
+
+    private fun ImapConnection.enableNotifications(): Boolean {
+        val mailboxes = mailboxNames.keys.joinToString(separator = " ") { ImapUtility.encodeString(it) }
+        val tag = sendCommand("NOTIFY SET (mailboxes ($mailboxes) (MessageNew MessageExpunge FlagChange))", false)
+
+        var response: ImapResponse
+        do {
+            response = readResponse()
+            handleUntaggedResponse(response)
+        } while (response.tag != tag)
+
+        return if (response.isOk) {
+            true
+        } else {
+            Log.w("%s: Server rejected NOTIFY command: %s", logTag, response)
+            false
+        }
+    }
+
+    private fun ImapConnection.idle(): NotifyIdleResult {
+        if (pendingFolderServerIds.isNotEmpty()) {
+            Log.v("%s.idle(): Received notifications before sending IDLE command", logTag)
+            return takePendingResult()
+        }
+
+        stopIdle = false
+        do {
+            synchronized(this@RealImapNotifyIdler) {
+                idleSent = false
+                doneSent = false
+            }
+
+            setSocketDefaultReadTimeout()
+
+            val tag = sendCommand("IDLE", false)
+
+            synchronized(this@RealImapNotifyIdler) {
+                idleSent = true
+            }
+
+            do {
+                val response = readResponse()
+                if (response.tag == tag) {
+                    Log.w("%s.idle(): IDLE command completed without a continuation request response", logTag)
+                    return NotifyIdleResult(IdleResult.NOT_SUPPORTED)
+                }
+
+                handleUntaggedResponse(response)
+            } while (!response.isContinuationRequested)
+
+            if (pendingFolderServerIds.isNotEmpty()) {
+                Log.v("%s.idle(): Received a notification right after sending IDLE command", logTag)
+                stopIdle = true
+                sendDone()
+            } else {
+                setSocketIdleReadTimeout()
+            }
+
+            var response: ImapResponse
+            do {
+                idleRefreshTimer = idleRefreshManager.startTimer(
+                    timeout = idleRefreshTimeoutProvider.idleRefreshTimeoutMs,
+                    callback = ::idleRefresh,
+                )
+
+                wakeLock.release()
+
+                try {
+                    response = readResponse()
+                } finally {
+                    wakeLock.acquire()
+                    idleRefreshTimer?.cancel()
+                }
+
+                handleUntaggedResponse(response)
+
+                if (pendingFolderServerIds.isNotEmpty() && !stopIdle) {
+                    Log.v("%s.idle(): Received a notification during IDLE", logTag)
+                    stopIdle = true
+                    sendDone()
+                } else if (!response.isTagged) {
+                    Log.v("%s.idle(): Ignoring untagged response", logTag)
+                }
+            } while (response.tag != tag)
+
+            if (!response.isOk) {
+                throw MessagingException("Received non-OK response to IDLE command")
+            }
+        } while (!stopIdle && !stopped)
+
+        setSocketDefaultReadTimeout()
+
+        return if (pendingFolderServerIds.isNotEmpty()) {
+            takePendingResult()
+        } else {
+            NotifyIdleResult(IdleResult.STOPPED)
+        }
+    }
+
+    private fun handleUntaggedResponse(response: ImapResponse) {
+        if (response.isTagged || response.isContinuationRequested || response.isEmpty()) return
+
+        if (response.isNotificationOverflow) {
+            // The server stopped sending notifications. Sync all folders and set up a new connection on the next call.
+            Log.w("%s: Server reported notification overflow", logTag)
+            pendingFolderServerIds.addAll(folderServerIds)
+            closeConnectionAfterIdle = true
+        } else if (response.size >= 2 && ImapResponseParser.equalsIgnoreCase(response[0], Responses.STATUS)) {
+            val mailboxName = normalizeMailboxName(response.getString(1))
+            val folderServerId = mailboxNames[mailboxName]
+            if (folderServerId != null) {
+                pendingFolderServerIds.add(folderServerId)
+            } else {
+                Log.v("%s: Ignoring STATUS response for unknown mailbox: %s", logTag, mailboxName)
+            }
+        }
+    }
+
+    private fun takePendingResult(): NotifyIdleResult {
+        val folderServerIds = pendingFolderServerIds.toSet()
+        pendingFolderServerIds.clear()
+
+        if (closeConnectionAfterIdle) {
+            closeConnectionAfterIdle = false
+            closeConnection()
+        }
+
+        return NotifyIdleResult(IdleResult.SYNC, folderServerIds)
+    }
+
+    @Synchronized
+    private fun idleRefresh() {
+        Log.v("%s.idleRefresh()", logTag)
+
+        if (!idleSent || doneSent) {
+            Log.v("%s: Connection is not in a state where it can be refreshed.", logTag)
+            return
+        }
+
+        try {
+            sendDone()
+        } catch (e: IOException) {
+            Log.v(e, "%s: IOException while sending DONE", logTag)
+        }
+    }
+
+    @Synchronized
+    private fun sendDone() {
+        val connection = connection ?: return
+
+        synchronized(connection) {
+            if (connection.isConnected) {
+                doneSent = true
+                connection.setSocketDefaultReadTimeout()
+                try {
+                    connection.sendContinuation("DONE")
+                } catch (e: IOException) {
+                    Log.v(e, "%s: IOException while sending DONE", logTag)
+                    throw e
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun closeConnection() {
+        connection?.close()
+        connection = null
+        idleSent = false
+        doneSent = false
+    }
+
+    private fun normalizeMailboxName(mailboxName: String): String {
+        return if (mailboxName.equals(INBOX, ignoreCase = true)) INBOX else mailboxName
+    }
+
+    private fun ImapConnection.setSocketIdleReadTimeout() {
+        setSocketReadTimeout((idleRefreshTimeoutProvider.idleRefreshTimeoutMs + SOCKET_EXTRA_TIMEOUT_MS).toInt())
+    }
+
+    private val ImapResponse.isNotificationOverflow: Boolean
+        get() = ImapResponseParser.equalsIgnoreCase(get(0), Responses.OK) &&
+            ResponseCodeExtractor.getResponseCode(this).equals(NOTIFICATION_OVERFLOW, ignoreCase = true)
+
+    private val ImapResponse.isOk: Boolean
+        get() = isTagged && size >= 1 && ImapResponseParser.equalsIgnoreCase(get(0), Responses.OK)
+}
@@ -12,8 +12,6 @@ import com.fsck.k9.mail.store.imap.ImapStoreSettings.isSendClientInfo
 import com.fsck.k9.mail.store.imap.ImapStoreSettings.isUseCompression
 import com.fsck.k9.mail.store.imap.ImapStoreSettings.pathPrefix
 import java.io.IOException
-import java.util.Deque
-import java.util.LinkedList
 import net.thunderbird.core.common.exception.MessagingException
 import net.thunderbird.core.common.mail.Flag
 import net.thunderbird.legacy.logging.Log
@@ -25,6 +23,7 @@ internal open class RealImapStore(
     override val config: ImapStoreConfig,
     private val trustedSocketFactory: TrustedSocketFactory,
     private val oauthTokenProvider: OAuth2TokenProvider?,
+    private val connectionPool: ImapConnectionPool = ImapConnectionPool(),
 ) : ImapStore, ImapConnectionManager, InternalImapStore {
     private val folderNameCodec: FolderNameCodec = FolderNameCodec()
 
@@ -39,7 +38,6 @@ internal open class RealImapStore(
     private var pathDelimiter: String? = null
 
     private val permanentFlagsIndex: MutableSet<Flag> = mutableSetOf()
-    private val connections: Deque<ImapConnection> = LinkedList()
 
     @Volatile
     private var connectionGeneration = 1
@@ -55,9 +53,16 @@ internal open class RealImapStore(
     }
 
     override fun getFolder(name: String): ImapFolder {
+        return getFolder(name, connectionManager = this)
+    }
+
+    /**
+     * Returns a folder that gets its connection from [connectionManager] instead of the connection pool.
+     */
+    internal fun getFolder(name: String, connectionManager: ImapConnectionManager): ImapFolder {
         return RealImapFolder(
             internalImapStore = this,
-            connectionManager = this,
+            connectionManager = connectionManager,
             serverId = name,
             folderNameCodec = folderNameCodec,
         )
@@ -241,51 +246,48 @@ internal open class RealImapStore(
         }
     }
 
+    val connectionPoolStats: ImapConnectionPoolStats
+        get() = connectionPool.stats
+
     @Throws(MessagingException::class)
     override fun getConnection(): ImapConnection {
         while (true) {
-            val connection = pollConnection() ?: return createImapConnection()
+            val pooledConnection = connectionPool.acquire(::createImapConnection)
+            val connection = pooledConnection.connection
+            if (!pooledConnection.needsLivenessCheck) {
+                return connection
+            }
 
             try {
                 connection.executeSimpleCommand(Commands.NOOP)
 
                 // If the command completes without an error this connection is still usable.
                 return connection
-            } catch (ioe: IOException) {
+            } catch (e: Exception) {
+                // Any error means the connection can't be reused. Release its slot in the pool and try the next one.
+                Log.v(e, "Liveness check of pooled connection failed")
                 connection.close()
+                connectionPool.discard()
             }
         }
     }
 
-    private fun pollConnection(): ImapConnection? {
-        return synchronized(connections) {
-            connections.poll()
-        }
-    }
-
     override fun releaseConnection(connection: ImapConnection?) {
-        if (connection != null && connection.isConnected) {
-            if (connection.connectionGeneration == connectionGeneration) {
-                synchronized(connections) {
-                    connections.offer(connection)
-                }
-            } else {
-                connection.close()
-            }
+        if (connection == null) return
+
+        if (connection.isConnected && connection.connectionGeneration == connectionGeneration) {
+            connectionPool.release(connection)
+        } else {
+            connection.close()
+            connectionPool.discard()
         }
     }
 
     override fun closeAllConnections() {
-        Log.v("ImapStore.closeAllConnections()")
-
-        val connectionsToClose = synchronized(connections) {
-            val connectionsToClose = connections.toList()
+        Log.v("ImapStore.closeAllConnections() - %s", connectionPool.stats)
 
-            connectionGeneration++
-            connections.clear()
-
-            connectionsToClose
-        }
+        connectionGeneration++
+        val connectionsToClose = connectionPool.removeIdleConnections()
 
         for (connection in connectionsToClose) {
             connection.close()
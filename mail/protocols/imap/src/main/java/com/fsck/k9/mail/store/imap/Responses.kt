@@ -17,4 +17,7 @@ internal object Responses {
     const val SEARCH: String = "SEARCH"
     const val UIDVALIDITY: String = "UIDVALIDITY"
     const val ENABLED: String = "ENABLED"
+    const val HIGHESTMODSEQ: String = "HIGHESTMODSEQ"
+    const val VANISHED: String = "VANISHED"
+    const val STATUS: String = "STATUS"
 }
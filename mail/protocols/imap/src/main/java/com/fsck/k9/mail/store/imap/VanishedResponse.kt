@@ -0,0 +1,60 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * The untagged `VANISHED` response sent by servers that have the QRESYNC extension enabled.
+ *
+ * See RFC 7162, section 3.2.10.
+ */
+internal class VanishedResponse private constructor(
+    /**
+     * `true` if the response was sent with the `EARLIER` tag, i.e. in response to a SELECT/EXAMINE or UID FETCH
+     * command with the QRESYNC/VANISHED modifier. Those responses don't affect the current message count.
+     */
+    val isEarlier: Boolean,
+    val uids: List<LongRange>,
+) {
+    val uidCount: Int
+        get() = uids.sumOf { (it.last - it.first + 1).toInt() }
+
+    companion object {
+        private const val EARLIER = "EARLIER"
+
+        @JvmStatic
+        fun parse(response: ImapResponse): VanishedResponse? {
+            if (response.isTagged || response.size < 2 || !equalsIgnoreCase(response[0], Responses.VANISHED)) {
+                return null
+            }
+
+            val isEarlier = response.isList(1)
+            if (isEarlier) {
+                val tagList = response.getList(1)
+                if (tagList.size != 1 || !equalsIgnoreCase(tagList[0], EARLIER)) return null
+            }
+
+            val uidSetIndex = if (isEarlier) 2 else 1
+            if (response.size != uidSetIndex + 1 || !response.isString(uidSetIndex)) return null
+
+            val uids = parseUidSet(response.getString(uidSetIndex)) ?: return null
+
+            return VanishedResponse(isEarlier, uids)
+        }
+
+        private fun parseUidSet(uidSet: String): List<LongRange>? {
+            val uids = mutableListOf<LongRange>()
+            for (element in uidSet.split(',')) {
+                val bounds = element.split(':')
+                if (bounds.size > 2) return null
+
+                val first = bounds.first().toLongOrNull() ?: return null
+                val last = bounds.last().toLongOrNull() ?: return null
+                uids.add(min(first, last)..max(first, last))
+            }
+
+            return uids
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isSameInstanceAs
+import org.junit.Test
+
+class DedicatedImapConnectionManagerTest {
+    private var createdConnections = 0
+    private val connectionManager = DedicatedImapConnectionManager {
+        createdConnections++
+        TestImapConnection(timeout = 5)
+    }
+
+    @Test
+    fun `getConnection() should return released connection`() {
+        val connection = connectionManager.getConnection()
+        connection.open()
+        connectionManager.releaseConnection(connection)
+
+        val result = connectionManager.getConnection()
+
+        assertThat(result).isSameInstanceAs(connection)
+        assertThat(createdConnections).isEqualTo(1)
+    }
+
+    @Test
+    fun `getConnection() should replace connection that is no longer connected`() {
+        val connection = connectionManager.getConnection()
+        connectionManager.releaseConnection(connection)
+
+        val result = connectionManager.getConnection()
+
+        assertThat(result).isNotSameInstanceAs(connection)
+        assertThat(createdConnections).isEqualTo(2)
+    }
+
+    @Test
+    fun `closeConnection() should close connection`() {
+        val connection = connectionManager.getConnection()
+        connection.open()
+
+        connectionManager.closeConnection()
+
+        assertThat(connection.isConnected).isFalse()
+        assertThat(connectionManager.getConnection()).isNotSameInstanceAs(connection)
+    }
+}
@@ -0,0 +1,93 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isNull
+import com.fsck.k9.mail.Body
+import com.fsck.k9.mail.filter.PeekableInputStream
+import com.fsck.k9.mail.internet.BinaryTempFileBody
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.nio.file.Files
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+private const val MESSAGE = "Subject: Test\r\n\r\nBody"
+
+class FetchBodyCallbackTest {
+    private lateinit var tempDirectory: File
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+        tempDirectory = Files.createTempDirectory("FetchBodyCallbackTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `literal should be parsed into message`() {
+        val message = ImapMessage("23")
+        val callback = FetchBodyCallback(mapOf("23" to message))
+
+        val response = readResponse("* 1 FETCH (UID 23 BODY[] {${MESSAGE.length}}\r\n$MESSAGE)", callback)
+
+        assertThat(response.fetchList.bodyValue).isEqualTo(LITERAL_HANDLED)
+        assertThat(message.subject).isEqualTo("Test")
+    }
+
+    @Test
+    fun `literal for unknown message should be skipped`() {
+        val callback = FetchBodyCallback(emptyMap())
+
+        val response = readResponse("* 1 FETCH (UID 42 BODY[] {${MESSAGE.length}}\r\n$MESSAGE FLAGS ())", callback)
+
+        assertThat(response.fetchList.bodyValue).isEqualTo(LITERAL_HANDLED)
+        assertThat(response.fetchList.getKeyedList("FLAGS").size).isEqualTo(0)
+    }
+
+    @Test
+    fun `literal before UID should be stored in body`() {
+        val message = ImapMessage("23")
+        val callback = FetchBodyCallback(mapOf("23" to message))
+
+        val response = readResponse("* 1 FETCH (BODY[] {${MESSAGE.length}}\r\n$MESSAGE UID 23)", callback)
+
+        val body = response.fetchList.bodyValue
+        assertThat(body).isInstanceOf<Body>()
+        (body as Body).inputStream.use { message.parse(it) }
+        assertThat(message.subject).isEqualTo("Test")
+    }
+
+    @Test
+    fun `literal in non-FETCH response should be read by parser`() {
+        val callback = FetchBodyCallback(emptyMap())
+
+        val response = readResponse("* 1 EXISTS {4}\r\ntest", callback)
+
+        assertThat(response.getString(2)).isEqualTo("test")
+        assertThat(response.tag).isNull()
+    }
+
+    private fun readResponse(data: String, callback: ImapResponseCallback): ImapResponse {
+        val inputStream = PeekableInputStream(ByteArrayInputStream("$data\r\n".toByteArray()))
+        val parser = ImapResponseParser(inputStream, FolderNameCodec())
+
+        return parser.readResponse(callback)
+    }
+
+    private val ImapResponse.fetchList: ImapList
+        get() = getKeyedValue("FETCH") as ImapList
+
+    // "BODY[]" is parsed as "BODY" followed by an empty list
+    private val ImapList.bodyValue: Any?
+        get() = get(getKeyIndex("BODY") + 2)
+}
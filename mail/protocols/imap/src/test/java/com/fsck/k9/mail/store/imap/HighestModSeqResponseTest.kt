@@ -0,0 +1,48 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.prop
+import org.junit.Test
+
+class HighestModSeqResponseTest {
+    @Test
+    fun `valid response with text`() {
+        val response = ImapResponseHelper.createImapResponse("* OK [HIGHESTMODSEQ 715194045007] Highest")
+
+        val result = HighestModSeqResponse.parse(response)
+
+        assertThat(result).isNotNull()
+            .prop(HighestModSeqResponse::highestModSeq).isEqualTo(715194045007L)
+    }
+
+    @Test
+    fun `NOMODSEQ response should return null`() {
+        assertNotValid("* OK [NOMODSEQ] Sorry, this mailbox format doesn't support modsequences")
+    }
+
+    @Test
+    fun `tagged response should return null`() {
+        assertNotValid("99 OK [HIGHESTMODSEQ 42]")
+    }
+
+    @Test
+    fun `mod-sequence that is not a number should return null`() {
+        assertNotValid("* OK [HIGHESTMODSEQ fourtytwo]")
+    }
+
+    @Test
+    fun `mod-sequence of zero should return null`() {
+        assertNotValid("* OK [HIGHESTMODSEQ 0]")
+    }
+
+    private fun assertNotValid(response: String) {
+        val imapResponse = ImapResponseHelper.createImapResponse(response)
+
+        val result = HighestModSeqResponse.parse(imapResponse)
+
+        assertThat(result).isNull()
+    }
+}
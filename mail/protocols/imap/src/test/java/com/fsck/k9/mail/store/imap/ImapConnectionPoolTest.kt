@@ -0,0 +1,121 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isSameInstanceAs
+import assertk.assertions.isTrue
+import kotlin.concurrent.thread
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.ExperimentalTime
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.core.testing.TestClock
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+
+@OptIn(ExperimentalTime::class)
+class ImapConnectionPoolTest {
+    private val clock = TestClock()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `acquire() should return released connection`() {
+        val pool = ImapConnectionPool(clock)
+        val connection = pool.acquire(::createConnection).connection
+        pool.release(connection)
+
+        val result = pool.acquire(::createConnection)
+
+        assertThat(result.connection).isSameInstanceAs(connection)
+        assertThat(result.needsLivenessCheck).isFalse()
+    }
+
+    @Test
+    fun `acquire() should request liveness check for connection that hasn't been used for a while`() {
+        val pool = ImapConnectionPool(clock, livenessCheckInterval = 15.seconds)
+        val connection = pool.acquire(::createConnection).connection
+        pool.release(connection)
+        clock.advanceTimeBy(15.seconds)
+
+        val result = pool.acquire(::createConnection)
+
+        assertThat(result.connection).isSameInstanceAs(connection)
+        assertThat(result.needsLivenessCheck).isTrue()
+    }
+
+    @Test
+    fun `acquire() should close connections that have been idle for too long`() {
+        val pool = ImapConnectionPool(clock, idleTimeout = 5.minutes)
+        val connection = pool.acquire(::createConnection).connection
+        pool.release(connection)
+        clock.advanceTimeBy(5.minutes)
+
+        val result = pool.acquire(::createConnection)
+
+        assertThat(result.connection).isNotSameInstanceAs(connection)
+        verify(connection).close()
+    }
+
+    @Test
+    fun `acquire() at connection limit should wait for connection to be released`() {
+        val pool = ImapConnectionPool(clock, maxConnections = 1, maxWaitTime = 10.seconds)
+        val connection = pool.acquire(::createConnection).connection
+
+        thread {
+            Thread.sleep(50)
+            pool.release(connection)
+        }
+        val result = pool.acquire { error("Unexpectedly tried to create a connection") }
+
+        assertThat(result.connection).isSameInstanceAs(connection)
+    }
+
+    @Test
+    fun `acquire() at connection limit should create connection when no connection is released in time`() {
+        val pool = ImapConnectionPool(clock, maxConnections = 1, maxWaitTime = Duration.ZERO)
+        val connection = pool.acquire(::createConnection).connection
+
+        val result = pool.acquire(::createConnection)
+
+        assertThat(result.connection).isNotSameInstanceAs(connection)
+        verify(connection, never()).close()
+    }
+
+    @Test
+    fun `stats should count hits, misses, and evictions`() {
+        val pool = ImapConnectionPool(clock, idleTimeout = 5.minutes)
+        val connectionOne = pool.acquire(::createConnection).connection
+        val connectionTwo = pool.acquire(::createConnection).connection
+        pool.release(connectionOne)
+        pool.discard()
+        pool.acquire(::createConnection)
+        pool.release(connectionOne)
+        clock.advanceTimeBy(5.minutes)
+        pool.acquire(::createConnection)
+
+        assertThat(pool.stats).isEqualTo(
+            ImapConnectionPoolStats(
+                hitCount = 1,
+                missCount = 3,
+                createCount = 3,
+                evictCount = 1,
+                activeConnectionCount = 1,
+                idleConnectionCount = 0,
+            ),
+        )
+        verify(connectionTwo, never()).close()
+    }
+
+    private fun createConnection(): ImapConnection = mock()
+}
@@ -358,6 +358,29 @@ class ImapResponseParserTest {
         assertThatAllInputWasConsumed()
     }
 
+    @Test
+    fun `readResponse() with callback returning result without consuming the literal should skip the literal`() {
+        val parser = createParserWithResponses("* {5}\r\n(one) two")
+        val callback = TestImapResponseCallback.readBytesAndReturn(0, "replacement value")
+
+        val response = parser.readResponse(callback)
+
+        assertThat(response).containsExactly("replacement value", "two")
+        assertThatAllInputWasConsumed()
+    }
+
+    @Test
+    fun `readResponse() with callback throwing without consuming the literal should skip the literal`() {
+        val parser = createParserWithResponses("* {5}\r\n(one) two")
+        val callback = TestImapResponseCallback.readBytesAndThrow(0)
+
+        assertFailure {
+            parser.readResponse(callback)
+        }.isInstanceOf<ImapResponseParserException>()
+            .cause().isNotNull().isInstanceOf<ImapResponseParserTestException>()
+        assertThatAllInputWasConsumed()
+    }
+
     @Test
     fun `readResponse() with callback not consuming and throwing should read response and throw`() {
         val parser = createParserWithResponses("* {4}\r\ntest")
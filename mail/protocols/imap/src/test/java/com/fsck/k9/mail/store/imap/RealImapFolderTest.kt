@@ -27,6 +27,7 @@ import com.fsck.k9.mail.store.imap.ImapResponseHelper.createImapResponse
 import com.fsck.k9.mail.store.imap.ImapResponseHelper.createImapResponseList
 import java.io.File
 import java.io.IOException
+import java.io.InputStream
 import java.nio.file.Files
 import java.util.Date
 import java.util.TimeZone
@@ -42,6 +43,7 @@ import org.apache.james.mime4j.util.MimeUtil
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
+import org.mockito.ArgumentMatchers.anyBoolean
 import org.mockito.ArgumentMatchers.anySet
 import org.mockito.ArgumentMatchers.anyString
 import org.mockito.ArgumentMatchers.startsWith
@@ -54,6 +56,7 @@ import org.mockito.kotlin.argumentCaptor
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.doThrow
 import org.mockito.kotlin.eq
+import org.mockito.kotlin.inOrder
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
 import org.mockito.kotlin.stub
@@ -63,7 +66,9 @@ import org.mockito.kotlin.whenever
 class RealImapFolderTest {
     private val imapStoreConfig = FakeImapStoreConfig()
     private val internalImapStore = FakeInternalImapStore(config = imapStoreConfig)
-    private val imapConnection = mock<ImapConnection>()
+    private val imapConnection = mock<ImapConnection> {
+        on { sendCommand(anyString(), anyBoolean()) } doReturn "x"
+    }
     private val testConnectionManager = TestConnectionManager(imapConnection)
 
     private lateinit var tempDirectory: File
@@ -130,6 +135,51 @@ class RealImapFolderTest {
         assertThat(imapFolder.mode).isEqualTo(OpenMode.READ_ONLY)
     }
 
+    @Test
+    fun `openUsingQresync() with QRESYNC enabled should return changes`() {
+        val imapFolder = createFolder("Folder")
+        whenever(imapConnection.isQresyncEnabled).thenReturn(true)
+        whenever(imapConnection.executeSimpleCommand("EXAMINE \"Folder\" (QRESYNC (1125022061 100))"))
+            .thenReturn(
+                createImapResponseList(
+                    "* 23 EXISTS",
+                    "* OK [UIDVALIDITY 1125022061] UIDs valid",
+                    "* OK [HIGHESTMODSEQ 120] Highest",
+                    "* VANISHED (EARLIER) 41,43:45",
+                    "* 5 FETCH (UID 50 FLAGS (\\Seen \\Flagged) MODSEQ (110))",
+                    "2 OK [READ-ONLY] Examine completed.",
+                ),
+            )
+
+        val qresyncResponse = imapFolder.openUsingQresync(
+            OpenMode.READ_ONLY,
+            QresyncParameter(uidValidity = 1125022061L, modSeq = 100L),
+        )
+
+        assertThat(imapFolder.isOpen).isTrue()
+        assertThat(imapFolder.messageCount).isEqualTo(23)
+        assertThat(imapFolder.getHighestModSeq()).isEqualTo(120L)
+        assertThat(qresyncResponse).isNotNull()
+        assertThat(qresyncResponse!!.vanishedUids).containsExactly(41L..41L, 43L..45L)
+        assertThat(qresyncResponse.changedMessages).extracting { it.uid }.containsExactly("50")
+        assertThat(qresyncResponse.changedMessages.first().flags).containsOnly(Flag.SEEN, Flag.FLAGGED)
+    }
+
+    @Test
+    fun `openUsingQresync() without QRESYNC enabled should open folder and return null`() {
+        val imapFolder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+
+        val qresyncResponse = imapFolder.openUsingQresync(
+            OpenMode.READ_ONLY,
+            QresyncParameter(uidValidity = 1125022061L, modSeq = 100L),
+        )
+
+        assertThat(imapFolder.isOpen).isTrue()
+        assertThat(qresyncResponse).isNull()
+        assertCommandIssued("EXAMINE \"Folder\"")
+    }
+
     @Test
     fun open_shouldMakeExistReturnTrueWithoutExecutingAdditionalCommands() {
         val imapFolder = createFolder("Folder")
@@ -861,6 +911,99 @@ class RealImapFolderTest {
         verify(imapConnection).sendCommand("UID FETCH 1 (UID FLAGS)", false)
     }
 
+    @Test
+    fun `fetch() should group UIDs into ranges`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages("1", "2", "3", "5")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        verify(imapConnection).sendCommand("UID FETCH 5,1:3 (UID FLAGS)", false)
+    }
+
+    @Test
+    fun `fetch() should send commands for multiple windows before reading responses`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.sendCommand(anyString(), eq(false))).thenReturn("10", "11", "12")
+        whenever(imapConnection.readResponse(anyOrNull()))
+            .thenReturn(createImapResponse("* 1 FETCH (FLAGS (\\Seen) UID 1)"))
+            .thenReturn(createImapResponse("10 OK"))
+            .thenReturn(createImapResponse("* 2 FETCH (FLAGS (\\Seen) UID 101)"))
+            .thenReturn(createImapResponse("11 OK"))
+            .thenReturn(createImapResponse("* 3 FETCH (FLAGS (\\Seen) UID 201)"))
+            .thenReturn(createImapResponse("12 OK"))
+        val messages = createImapMessages(*(1..250).map { it.toString() }.toTypedArray())
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        inOrder(imapConnection) {
+            verify(imapConnection).sendCommand("UID FETCH 1:100 (UID FLAGS)", false)
+            verify(imapConnection).sendCommand("UID FETCH 101:200 (UID FLAGS)", false)
+            verify(imapConnection).sendCommand("UID FETCH 201:250 (UID FLAGS)", false)
+            verify(imapConnection, times(6)).readResponse(anyOrNull())
+        }
+        verify(messages[0]).setFlag(Flag.SEEN, true)
+        verify(messages[100]).setFlag(Flag.SEEN, true)
+        verify(messages[200]).setFlag(Flag.SEEN, true)
+    }
+
+    @Test
+    fun `fetch() with tagged response for unknown command should close connection and throw`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.sendCommand(anyString(), eq(false))).thenReturn("10")
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(createImapResponse("99 OK"))
+        val messages = createImapMessages("1")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        assertFailure {
+            folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+        }.isInstanceOf<MessagingException>()
+
+        verify(imapConnection).close()
+    }
+
+    @Test
+    fun `fetch() should dispose of body for unknown UID sent after the message data`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val bodyInputStream = mock<InputStream>()
+        val body = mock<Body> {
+            on { inputStream } doReturn bodyInputStream
+        }
+        val fetchResponse = ImapResponse.newUntaggedResponse(null).apply {
+            add("1")
+            add("FETCH")
+            add(
+                ImapList().apply {
+                    add("BODY")
+                    add(ImapList())
+                    add(body)
+                    add("UID")
+                    add("99")
+                },
+            )
+        }
+        whenever(imapConnection.readResponse(anyOrNull()))
+            .thenReturn(fetchResponse)
+            .thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages("1")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.BODY)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        verify(bodyInputStream).close()
+    }
+
     @Test
     fun fetch_withEnvelopeFetchProfile_shouldIssueRespectiveCommand() {
         val folder = createFolder("Folder")
@@ -0,0 +1,194 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.legacy.logging.Log
+import org.junit.Before
+import org.junit.Test
+
+private const val TEST_TIMEOUT_SECONDS = 5L
+private const val IDLE_TIMEOUT_MS = 28 * 60 * 1000L
+private const val NOTIFY_COMMAND = """NOTIFY SET (mailboxes ("INBOX" "Work") (MessageNew MessageExpunge FlagChange))"""
+
+class RealImapNotifyIdlerTest {
+    private val idleRefreshManager = TestIdleRefreshManager()
+    private val wakeLock = TestWakeLock(timeoutSeconds = TEST_TIMEOUT_SECONDS, isHeld = true)
+    private val imapConnection = TestImapConnection(timeout = TEST_TIMEOUT_SECONDS).apply {
+        addCapability(Capabilities.NOTIFY)
+    }
+    private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
+        override val idleRefreshTimeoutMs = IDLE_TIMEOUT_MS
+    }
+    private val idler = RealImapNotifyIdler(
+        idleRefreshManager,
+        wakeLock,
+        connectionFactory = { imapConnection },
+        folderNameEncoder = { folderServerId -> folderServerId },
+        folderServerIds = listOf("INBOX", "Work"),
+        idleRefreshTimeoutProvider,
+    )
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `new message in one of the folders`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isTrue()
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult(IdleResult.SYNC, setOf("Work")))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Work\" (MESSAGES 3 UIDNEXT 17)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isTrue()
+    }
+
+    @Test
+    fun `flag change in one of the folders`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isTrue()
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult(IdleResult.SYNC, setOf("INBOX")))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"INBOX\" (UNSEEN 2)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isTrue()
+    }
+
+    @Test
+    fun `notification received in response to NOTIFY command`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isTrue()
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult(IdleResult.SYNC, setOf("INBOX")))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueUntaggedServerResponse("STATUS inbox (MESSAGES 1)")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isTrue()
+    }
+
+    @Test
+    fun `stop while IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isTrue()
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult(IdleResult.STOPPED))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        wakeLock.waitForRelease()
+        idler.stop()
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+
+    @Test
+    fun `notification overflow should sync all folders and close connection`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isTrue()
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult(IdleResult.SYNC, setOf("INBOX", "Work")))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("OK [NOTIFICATIONOVERFLOW] Too many notifications")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+
+    @Test
+    fun `NOTIFY not supported`() {
+        val imapConnection = TestImapConnection(timeout = TEST_TIMEOUT_SECONDS)
+        val idler = RealImapNotifyIdler(
+            idleRefreshManager,
+            wakeLock,
+            connectionFactory = { imapConnection },
+            folderNameEncoder = { folderServerId -> folderServerId },
+            folderServerIds = listOf("INBOX"),
+            idleRefreshTimeoutProvider,
+        )
+
+        assertThat(idler.connect()).isFalse()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+
+    @Test
+    fun `NO response to NOTIFY command`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertThat(idler.connect()).isFalse()
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("NO [BADEVENT (MessageNew MessageExpunge)] Not supported")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+}
+
+private fun CountDownLatch.awaitWithTimeout() {
+    assertThat(await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS), "Test timed out").isTrue()
+}
@@ -3,6 +3,7 @@ package com.fsck.k9.mail.store.imap
 import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
 import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
 import assertk.assertions.isSameInstanceAs
@@ -17,7 +18,11 @@ import com.fsck.k9.mail.store.imap.ImapStoreSettings.createExtra
 import java.io.IOException
 import java.util.ArrayDeque
 import java.util.Deque
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.ExperimentalTime
 import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.core.testing.TestClock
 import org.junit.Test
 import org.mockito.ArgumentMatchers.anyString
 import org.mockito.kotlin.doReturn
@@ -27,7 +32,9 @@ import org.mockito.kotlin.never
 import org.mockito.kotlin.stub
 import org.mockito.kotlin.verify
 
+@OptIn(ExperimentalTime::class)
 class RealImapStoreTest {
+    private val clock = TestClock()
     private val imapStore = createTestImapStore()
 
     @Test
@@ -376,12 +383,92 @@ class RealImapStoreTest {
             on { executeSimpleCommand(Commands.NOOP) } doThrow IOException::class
         }
         imapStore.releaseConnection(imapConnectionOne)
+        clock.advanceTimeBy(1.minutes)
 
         val result = imapStore.getConnection()
 
         assertThat(result).isSameInstanceAs(imapConnectionTwo)
     }
 
+    @Test
+    fun `getConnection() with NOOP failing with non-IO error should discard connection and free its slot`() {
+        val connectionPool = ImapConnectionPool(clock)
+        val imapStore = createTestImapStore(connectionPool = connectionPool)
+        val imapConnectionOne = createMockConnection()
+        val imapConnectionTwo = createMockConnection()
+        imapStore.enqueueImapConnection(imapConnectionOne)
+        imapStore.enqueueImapConnection(imapConnectionTwo)
+
+        imapStore.getConnection()
+        imapConnectionOne.stub {
+            on { isConnected } doReturn true
+            on { executeSimpleCommand(Commands.NOOP) } doThrow MessagingException::class
+        }
+        imapStore.releaseConnection(imapConnectionOne)
+        clock.advanceTimeBy(1.minutes)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnectionTwo)
+        assertThat(connectionPool.stats.activeConnectionCount).isEqualTo(1)
+        verify(imapConnectionOne).close()
+    }
+
+    @Test
+    fun `getConnection() with recently used connection in pool should not send NOOP`() {
+        val imapConnection = createMockConnection().stub {
+            on { isConnected } doReturn true
+        }
+        imapStore.enqueueImapConnection(imapConnection)
+
+        imapStore.getConnection()
+        imapStore.releaseConnection(imapConnection)
+        clock.advanceTimeBy(5.seconds)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnection)
+        verify(imapConnection, never()).executeSimpleCommand(Commands.NOOP)
+    }
+
+    @Test
+    fun `getConnection() with connection in pool not used for a while should send NOOP`() {
+        val imapConnection = createMockConnection().stub {
+            on { isConnected } doReturn true
+        }
+        imapStore.enqueueImapConnection(imapConnection)
+
+        imapStore.getConnection()
+        imapStore.releaseConnection(imapConnection)
+        clock.advanceTimeBy(1.minutes)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnection)
+        verify(imapConnection).executeSimpleCommand(Commands.NOOP)
+    }
+
+    @Test
+    fun `getConnection() with connection idle for too long should close it and return new ImapConnection instance`() {
+        val imapConnectionOne = createMockConnection()
+        val imapConnectionTwo = createMockConnection()
+        imapStore.enqueueImapConnection(imapConnectionOne)
+        imapStore.enqueueImapConnection(imapConnectionTwo)
+
+        imapStore.getConnection()
+        imapConnectionOne.stub {
+            on { isConnected } doReturn true
+        }
+        imapStore.releaseConnection(imapConnectionOne)
+        clock.advanceTimeBy(10.minutes)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnectionTwo)
+        assertThat(connectionPool.stats.activeConnectionCount).isEqualTo(1)
+        verify(imapConnectionOne).close()
+    }
+
     @Test
     fun `getConnection() with connection in pool and closeAllConnections() should return new ImapConnection instance`() {
         val imapConnectionOne = createMockConnection(1)
@@ -447,12 +534,14 @@ class RealImapStoreTest {
 
     private fun createTestImapStore(
         isSubscribedFoldersOnly: Boolean = false,
+        connectionPool: ImapConnectionPool = ImapConnectionPool(clock),
     ): TestImapStore {
         return TestImapStore(
             serverSettings = createServerSettings(),
             config = createImapStoreConfig(isSubscribedFoldersOnly),
             trustedSocketFactory = mock(),
             oauth2TokenProvider = null,
+            connectionPool = connectionPool,
         )
     }
 
@@ -472,11 +561,13 @@ class RealImapStoreTest {
         config: ImapStoreConfig,
         trustedSocketFactory: TrustedSocketFactory,
         oauth2TokenProvider: OAuth2TokenProvider?,
+        connectionPool: ImapConnectionPool,
     ) : RealImapStore(
         serverSettings,
         config,
         trustedSocketFactory,
         oauth2TokenProvider,
+        connectionPool,
     ) {
         private val imapConnections: Deque<ImapConnection> = ArrayDeque()
         private var testCombinedPrefix: String? = null
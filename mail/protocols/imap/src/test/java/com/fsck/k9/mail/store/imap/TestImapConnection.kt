@@ -15,6 +15,7 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     override val isUidPlusCapable: Boolean = true
     override val isUtf8AcceptCapable: Boolean = false
     override var isIdleCapable: Boolean = true
+    override val isQresyncEnabled: Boolean = false
         protected set
 
     val defaultSocketReadTimeout = 30 * 1000
@@ -24,6 +25,7 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     @Volatile
     private var tag: Int = 0
 
+    private val capabilities = mutableSetOf<String>()
     private val receivedCommands = LinkedBlockingDeque<String>()
     private val responses = LinkedBlockingDeque<Response>()
 
@@ -43,7 +45,7 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     }
 
     override fun hasCapability(capability: String): Boolean {
-        throw UnsupportedOperationException("not implemented")
+        return capabilities.contains(capability)
     }
 
     override fun executeSimpleCommand(command: String): List<ImapResponse> {
@@ -127,6 +129,10 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
         responses.add(Response.Continuation(text))
     }
 
+    fun addCapability(capability: String) {
+        capabilities.add(capability)
+    }
+
     fun setIdleNotSupported() {
         isIdleCapable = false
     }
@@ -35,6 +35,10 @@ internal open class TestImapFolder(
         isOpen = true
     }
 
+    override fun openUsingQresync(mode: OpenMode, qresyncParameter: QresyncParameter): QresyncResponse? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun close() {
         connection.close()
         isOpen = false
@@ -45,6 +49,10 @@ internal open class TestImapFolder(
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun getHighestModSeq(): Long? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun getMessage(uid: String): ImapMessage {
         throw UnsupportedOperationException("not implemented")
     }
@@ -0,0 +1,70 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import org.junit.Test
+
+class VanishedResponseTest {
+    @Test
+    fun `VANISHED response with single UID`() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED 405")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull()
+        assertThat(result!!.isEarlier).isFalse()
+        assertThat(result.uids).containsExactly(405L..405L)
+        assertThat(result.uidCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `VANISHED (EARLIER) response with UID set`() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED (EARLIER) 41,43:116,120:118")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull()
+        assertThat(result!!.isEarlier).isTrue()
+        assertThat(result.uids).containsExactly(41L..41L, 43L..116L, 118L..120L)
+        assertThat(result.uidCount).isEqualTo(78)
+    }
+
+    @Test
+    fun `tagged response should return null`() {
+        assertNotValid("1 VANISHED 405")
+    }
+
+    @Test
+    fun `response without UID set should return null`() {
+        assertNotValid("* VANISHED (EARLIER)")
+    }
+
+    @Test
+    fun `response with unknown tag should return null`() {
+        assertNotValid("* VANISHED (LATER) 405")
+    }
+
+    @Test
+    fun `response with invalid UID set should return null`() {
+        assertNotValid("* VANISHED 1:2:3")
+        assertNotValid("* VANISHED 1,*")
+    }
+
+    @Test
+    fun `EXPUNGE response should return null`() {
+        assertNotValid("* 23 EXPUNGE")
+    }
+
+    private fun assertNotValid(response: String) {
+        val imapResponse = ImapResponseHelper.createImapResponse(response)
+
+        val result = VanishedResponse.parse(imapResponse)
+
+        assertThat(result).isNull()
+    }
+}
@@ -17,6 +17,7 @@ internal object Pop3Commands {
     const val STLS_CAPABILITY = "STLS"
     const val UIDL_CAPABILITY = "UIDL"
     const val TOP_CAPABILITY = "TOP"
+    const val PIPELINING_CAPABILITY = "PIPELINING"
     const val SASL_CAPABILITY = "SASL"
     const val AUTH_PLAIN_CAPABILITY = "PLAIN"
     const val AUTH_CRAM_MD5_CAPABILITY = "CRAM-MD5"
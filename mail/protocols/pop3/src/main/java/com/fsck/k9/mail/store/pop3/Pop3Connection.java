@@ -41,6 +41,7 @@ import static com.fsck.k9.mail.store.pop3.Pop3Commands.AUTH_EXTERNAL_CAPABILITY;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.AUTH_PLAIN_CAPABILITY;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.CAPA_COMMAND;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.PASS_COMMAND;
+import static com.fsck.k9.mail.store.pop3.Pop3Commands.PIPELINING_CAPABILITY;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.SASL_CAPABILITY;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.STLS_CAPABILITY;
 import static com.fsck.k9.mail.store.pop3.Pop3Commands.STLS_COMMAND;
@@ -231,6 +232,8 @@ class Pop3Connection {
                     capabilities.uidl = true;
                 } else if (response.equals(TOP_CAPABILITY)) {
                     capabilities.top = true;
+                } else if (response.equals(PIPELINING_CAPABILITY)) {
+                    capabilities.pipelining = true;
                 } else if (response.startsWith(SASL_CAPABILITY)) {
                     List<String> saslAuthMechanisms = Arrays.asList(response.split(" "));
                     if (saslAuthMechanisms.contains(AUTH_PLAIN_CAPABILITY)) {
@@ -350,6 +353,31 @@ class Pop3Connection {
             writeLine(command);
         }
 
+        return readResponse();
+    }
+
+    /**
+     * Sends multiple commands without waiting for the server's responses in between.
+     *
+     * <p>
+     * This must only be used if the server supports pipelining, see {@link #supportsPipelining()}. The responses
+     * have to be read in the order the commands were sent using {@link #readResponse()}.
+     * </p>
+     */
+    void sendPipelinedCommands(List<String> commands) throws IOException {
+        for (String command : commands) {
+            if (K9MailLib.isDebug() && DEBUG_PROTOCOL_POP3) {
+                Log.d(">>> %s", command);
+            }
+
+            out.write(command.getBytes());
+            out.write('\r');
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    String readResponse() throws IOException, Pop3ErrorResponse {
         String response = readLine();
         if (response.length() == 0 || response.charAt(0) != '+') {
             throw new Pop3ErrorResponse(response);
@@ -428,6 +456,10 @@ class Pop3Connection {
         return this.capabilities.uidl;
     }
 
+    boolean supportsPipelining() {
+        return capabilities.pipelining;
+    }
+
     InputStream getInputStream() {
         return in;
     }
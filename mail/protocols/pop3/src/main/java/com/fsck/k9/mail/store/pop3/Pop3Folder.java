@@ -28,6 +28,11 @@ import static com.fsck.k9.mail.store.pop3.Pop3Commands.*;
 public class Pop3Folder {
     public static final String INBOX = "INBOX";
 
+    /**
+     * Maximum number of commands sent to the server before reading the first response when using pipelining.
+     */
+    private static final int PIPELINING_BATCH_SIZE = 10;
+
 
     private Pop3Store pop3Store;
     private Map<String, Pop3Message> uidToMsgMap = new HashMap<>();
@@ -316,36 +321,51 @@ public class Pop3Folder {
         } catch (IOException ioe) {
             handleIOException(ioe);
         }
-        for (Pop3Message pop3Message : messages) {
+        boolean notifyListener = listener != null && !(fp.contains(FetchProfile.Item.ENVELOPE) && fp.size() == 1);
+        if (fp.contains(FetchProfile.Item.BODY) || fp.contains(FetchProfile.Item.BODY_SANE)) {
+            int lines = getLinesToFetch(fp, maxDownloadSize);
             try {
-                if (fp.contains(FetchProfile.Item.BODY)) {
-                    fetchBody(pop3Message, -1);
-                } else if (fp.contains(FetchProfile.Item.BODY_SANE)) {
-                    /*
-                     * To convert the suggested download size we take the size
-                     * divided by the maximum line size (76).
-                     */
-                    if (maxDownloadSize > 0) {
-                        fetchBody(pop3Message, maxDownloadSize / 76);
-                    } else {
-                        fetchBody(pop3Message, -1);
+                if (connection.supportsPipelining() && messages.size() > 1) {
+                    fetchBodiesPipelined(messages, lines, notifyListener ? listener : null);
+                } else {
+                    for (Pop3Message pop3Message : messages) {
+                        fetchBody(pop3Message, lines);
+                        if (notifyListener) {
+                            listener.messageFinished(pop3Message);
+                        }
                     }
-                } else if (fp.contains(FetchProfile.Item.STRUCTURE)) {
+                }
+            } catch (IOException ioe) {
+                handleIOException(ioe);
+            }
+        } else {
+            for (Pop3Message pop3Message : messages) {
+                if (fp.contains(FetchProfile.Item.STRUCTURE)) {
                     /*
                      * If the user is requesting STRUCTURE we are required to set the body
                      * to null since we do not support the function.
                      */
                     pop3Message.setBody(null);
                 }
-                if (listener != null && !(fp.contains(FetchProfile.Item.ENVELOPE) && fp.size() == 1)) {
+                if (notifyListener) {
                     listener.messageFinished(pop3Message);
                 }
-            } catch (IOException ioe) {
-                handleIOException(ioe);
             }
         }
     }
 
+    private static int getLinesToFetch(FetchProfile fp, int maxDownloadSize) {
+        if (fp.contains(FetchProfile.Item.BODY) || maxDownloadSize <= 0) {
+            return -1;
+        }
+
+        /*
+         * To convert the suggested download size we take the size
+         * divided by the maximum line size (76).
+         */
+        return maxDownloadSize / 76;
+    }
+
     private void fetchEnvelope(List<Pop3Message> messages,
                                MessageRetrievalListener<Pop3Message> listener)  throws IOException, MessagingException {
         int unsizedMessages = 0;
@@ -447,6 +467,55 @@ public class Pop3Folder {
                                  uidToMsgNumMap.get(message.getUid())));
         }
 
+        parseBody(message, lines);
+    }
+
+    /**
+     * Fetches the bodies of the given messages like {@link #fetchBody(Pop3Message, int)}, but sends the TOP/RETR
+     * commands in batches of {@link #PIPELINING_BATCH_SIZE} without waiting for the responses in between.
+     *
+     * The server has to support pipelining (RFC 2449). Since pipelining is announced via CAPA, we also know whether
+     * the TOP command is supported and don't need to probe for it.
+     */
+    private void fetchBodiesPipelined(List<Pop3Message> messages, int lines,
+            MessageRetrievalListener<Pop3Message> listener) throws IOException, MessagingException {
+        boolean useTop = lines != -1 && connection.supportsTop();
+
+        for (int start = 0; start < messages.size(); start += PIPELINING_BATCH_SIZE) {
+            List<Pop3Message> batch = messages.subList(start, Math.min(start + PIPELINING_BATCH_SIZE, messages.size()));
+
+            List<String> commands = new ArrayList<>(batch.size());
+            for (Pop3Message message : batch) {
+                Integer msgNum = uidToMsgNumMap.get(message.getUid());
+                if (useTop) {
+                    commands.add(String.format(Locale.US, TOP_COMMAND + " %d %d", msgNum, lines));
+                } else {
+                    commands.add(String.format(Locale.US, RETR_COMMAND + " %d", msgNum));
+                }
+            }
+            connection.sendPipelinedCommands(commands);
+
+            boolean batchCompleted = false;
+            try {
+                for (Pop3Message message : batch) {
+                    connection.readResponse();
+                    parseBody(message, lines);
+
+                    if (listener != null) {
+                        listener.messageFinished(message);
+                    }
+                }
+                batchCompleted = true;
+            } finally {
+                if (!batchCompleted) {
+                    // Responses to the remaining commands of this batch are still pending. Don't reuse the connection.
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void parseBody(Pop3Message message, int lines) throws IOException, MessagingException {
         try {
             message.parse(new Pop3ResponseInputStream(connection.getInputStream()));
 
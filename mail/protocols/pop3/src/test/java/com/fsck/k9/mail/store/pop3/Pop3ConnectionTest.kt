@@ -1,8 +1,11 @@
 package com.fsck.k9.mail.store.pop3
 
 import assertk.assertFailure
+import assertk.assertThat
 import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
 import assertk.assertions.isInstanceOf
+import assertk.assertions.isTrue
 import assertk.assertions.prop
 import com.fsck.k9.mail.AuthType
 import com.fsck.k9.mail.AuthType.CRAM_MD5
@@ -359,12 +362,82 @@ class Pop3ConnectionTest {
         server.verifyInteractionCompleted()
     }
 
+    @Test
+    fun `open() with PIPELINING capability should enable pipelining`() {
+        val server = startServer {
+            setupServerWithCapabilities("PIPELINING", "SASL PLAIN")
+            expect("AUTH PLAIN")
+            output("+OK")
+            expect(AUTH_PLAIN_ARGUMENT)
+            output("+OK")
+        }
+        val settings = server.createSettings(authType = PLAIN)
+
+        val connection = createAndOpenPop3Connection(settings)
+
+        assertThat(connection.supportsPipelining()).isTrue()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `open() without PIPELINING capability should not enable pipelining`() {
+        val server = startServer {
+            setupServerWithCapabilities("SASL PLAIN")
+            expect("AUTH PLAIN")
+            output("+OK")
+            expect(AUTH_PLAIN_ARGUMENT)
+            output("+OK")
+        }
+        val settings = server.createSettings(authType = PLAIN)
+
+        val connection = createAndOpenPop3Connection(settings)
+
+        assertThat(connection.supportsPipelining()).isFalse()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `sendPipelinedCommands() should send all commands before responses are read`() {
+        val server = startServer {
+            setupServerWithCapabilities("PIPELINING", "SASL PLAIN")
+            expect("AUTH PLAIN")
+            output("+OK")
+            expect(AUTH_PLAIN_ARGUMENT)
+            output("+OK")
+            expect("DELE 1")
+            expect("DELE 2")
+            output("+OK message 1 deleted")
+            output("-ERR no such message")
+        }
+        val settings = server.createSettings(authType = PLAIN)
+        val connection = createAndOpenPop3Connection(settings)
+
+        connection.sendPipelinedCommands(listOf("DELE 1", "DELE 2"))
+
+        assertThat(connection.readResponse()).isEqualTo("+OK message 1 deleted")
+        assertFailure {
+            connection.readResponse()
+        }.isInstanceOf<Pop3ErrorResponse>()
+        server.verifyInteractionCompleted()
+    }
+
     private fun createAndOpenPop3Connection(
         settings: Pop3Settings,
         trustedSocketFactory: TrustedSocketFactory = socketFactory,
-    ) {
+    ): Pop3Connection {
         val connection = Pop3Connection(settings, trustedSocketFactory)
         connection.open()
+        return connection
+    }
+
+    private fun MockPop3Server.setupServerWithCapabilities(vararg capabilities: String) {
+        output("+OK POP3 server greeting")
+        expect("CAPA")
+        output("+OK Listing of capabilities follows")
+        for (capability in capabilities) {
+            output(capability)
+        }
+        output(".")
     }
 
     private fun MockPop3Server.setupServerWithAuthenticationMethods(authenticationMethods: String) {
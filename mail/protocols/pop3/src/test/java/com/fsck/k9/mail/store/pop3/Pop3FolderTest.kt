@@ -1,13 +1,17 @@
 package com.fsck.k9.mail.store.pop3
 
+import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
 import assertk.assertions.isSameInstanceAs
 import com.fsck.k9.mail.AuthenticationFailedException
 import com.fsck.k9.mail.Body
 import com.fsck.k9.mail.FetchProfile
+import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.MessageRetrievalListener
 import com.fsck.k9.mail.internet.BinaryTempFileBody
 import com.fsck.k9.mail.store.pop3.Pop3Commands.STAT_COMMAND
@@ -242,6 +246,115 @@ class Pop3FolderTest {
         assertThat(messageList.first().body.writeToString()).isEqualTo("this is some test text.")
     }
 
+    @Test
+    fun `fetch() with BODY profile and PIPELINING capability should send RETR commands without waiting`() {
+        val messageInputStream =
+            """
+            Subject: one
+
+            first message
+            .
+            Subject: two
+
+            second message
+            .
+
+            """.trimIndent().crlf().byteInputStream()
+        folder.open()
+        stubbing(connection) {
+            on { readLine() } doReturn "1 uid1" doReturn "2 uid2" doReturn "."
+        }
+        val messageList = folder.getMessages(1, 2, null)
+        val fetchProfile = FetchProfile()
+        fetchProfile.add(FetchProfile.Item.BODY)
+        stubbing(connection) {
+            on { supportsPipelining() } doReturn true
+            on { inputStream } doReturn messageInputStream
+        }
+
+        folder.fetch(messageList, fetchProfile, messageRetrievalListener, MAX_DOWNLOAD_SIZE)
+
+        verify(connection).sendPipelinedCommands(listOf("RETR 1", "RETR 2"))
+        verify(connection, times(2)).readResponse()
+        assertThat(messageList[0].body.writeToString()).isEqualTo("first message\r\n")
+        assertThat(messageList[1].body.writeToString()).isEqualTo("second message\r\n")
+        verify(messageRetrievalListener).messageFinished(messageList[0])
+        verify(messageRetrievalListener).messageFinished(messageList[1])
+    }
+
+    @Test
+    fun `fetch() with BODY_SANE profile and PIPELINING capability should send TOP commands without waiting`() {
+        val messageInputStream =
+            """
+            Subject: one
+
+            first message
+            .
+            Subject: two
+
+            second message
+            .
+
+            """.trimIndent().crlf().byteInputStream()
+        folder.open()
+        stubbing(connection) {
+            on { readLine() } doReturn "1 uid1" doReturn "2 uid2" doReturn "."
+        }
+        val messageList = folder.getMessages(1, 2, null)
+        val fetchProfile = FetchProfile()
+        fetchProfile.add(FetchProfile.Item.BODY_SANE)
+        stubbing(connection) {
+            on { supportsPipelining() } doReturn true
+            on { supportsTop() } doReturn true
+            on { inputStream } doReturn messageInputStream
+        }
+
+        folder.fetch(messageList, fetchProfile, messageRetrievalListener, 760)
+
+        verify(connection).sendPipelinedCommands(listOf("TOP 1 10", "TOP 2 10"))
+        verify(connection, times(2)).readResponse()
+        assertThat(messageList[0].body.writeToString()).isEqualTo("first message\r\n")
+        assertThat(messageList[1].body.writeToString()).isEqualTo("second message\r\n")
+        assertThat(messageList[0].isSet(Flag.X_DOWNLOADED_FULL)).isFalse()
+        assertThat(messageList[1].isSet(Flag.X_DOWNLOADED_FULL)).isFalse()
+        verify(messageRetrievalListener).messageFinished(messageList[0])
+        verify(messageRetrievalListener).messageFinished(messageList[1])
+    }
+
+    @Test
+    fun `fetch() with PIPELINING capability and error response in the middle of a batch should close connection`() {
+        val messageInputStream =
+            """
+            Subject: one
+
+            first message
+            .
+
+            """.trimIndent().crlf().byteInputStream()
+        folder.open()
+        stubbing(connection) {
+            on { readLine() } doReturn "1 uid1" doReturn "2 uid2" doReturn "3 uid3" doReturn "."
+        }
+        val messageList = folder.getMessages(1, 3, null)
+        val fetchProfile = FetchProfile()
+        fetchProfile.add(FetchProfile.Item.BODY)
+        stubbing(connection) {
+            on { supportsPipelining() } doReturn true
+            on { readResponse() } doReturn "+OK" doThrow Pop3ErrorResponse("-ERR no such message")
+            on { inputStream } doReturn messageInputStream
+        }
+
+        assertFailure {
+            folder.fetch(messageList, fetchProfile, messageRetrievalListener, MAX_DOWNLOAD_SIZE)
+        }.isInstanceOf<Pop3ErrorResponse>()
+
+        verify(connection).sendPipelinedCommands(listOf("RETR 1", "RETR 2", "RETR 3"))
+        verify(connection).close()
+        verify(messageRetrievalListener).messageFinished(messageList[0])
+        verify(messageRetrievalListener, never()).messageFinished(messageList[1])
+        verify(messageRetrievalListener, never()).messageFinished(messageList[2])
+    }
+
     private fun setupMessageFromServer(): List<Pop3Message> {
         stubbing(connection) {
             on { readLine() } doReturn "1 $MESSAGE_SERVER_ID" doReturn "."
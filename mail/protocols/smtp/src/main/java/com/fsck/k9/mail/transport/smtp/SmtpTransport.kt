@@ -43,6 +43,7 @@ import org.jetbrains.annotations.VisibleForTesting
 private const val SOCKET_SEND_MESSAGE_READ_TIMEOUT = 5 * 60 * 1000 // 5 minutes
 
 private const val SMTP_CONTINUE_REQUEST = 334
+private const val SMTP_SERVICE_NOT_AVAILABLE = 421
 private const val SMTP_AUTHENTICATION_FAILURE_ERROR_CODE = 535
 
 // We use "ehlo.thunderbird.net" for privacy reasons,
@@ -72,6 +73,7 @@ class SmtpTransport(
     private var largestAcceptableMessage = 0
     private var retryOAuthWithNewToken = false
     private var isPipeliningSupported = false
+    private var isSessionActive = false
 
     private val logger: SmtpLogger = object : SmtpLogger {
         override val isRawProtocolLoggingEnabled: Boolean
@@ -335,8 +337,20 @@ class SmtpTransport(
 
         message.removeHeader("Bcc")
 
-        ensureClosed()
-        open()
+        if (!trySendMessage(message, addresses)) {
+            // The server closed the connection we kept open. Nothing has been sent yet, so it's safe to try again
+            // using a new connection.
+            trySendMessage(message, addresses)
+        }
+    }
+
+    /**
+     * Send a message using the open connection of the current session or a new connection.
+     *
+     * @return `false` if a reused connection failed before the message was sent. `true` if the message was sent.
+     */
+    private fun trySendMessage(message: Message, addresses: Set<String>): Boolean {
+        val isReusingConnection = prepareConnection()
 
         // If the message has attachments and our server has told us about a limit on the size of messages, count
         // the message's size before sending it.
@@ -347,6 +361,7 @@ class SmtpTransport(
         }
 
         var entireMessageSent = false
+        var keepConnection = false
         try {
             val mailFrom =
                 constructSmtpMailFromCommand(
@@ -354,23 +369,16 @@ class SmtpTransport(
                     is8bitEncodingAllowed,
                     message.usesAnyUnicodeAddresses(),
                 )
-            if (isPipeliningSupported) {
-                val pipelinedCommands = buildList {
-                    add(mailFrom)
 
-                    for (address in addresses) {
-                        add(String.format("RCPT TO:<%s>", address))
-                    }
+            try {
+                sendEnvelope(mailFrom, addresses, resetFirst = isReusingConnection)
+            } catch (e: Exception) {
+                if (isReusingConnection && isConnectionFailure(e)) {
+                    Log.d(e, "Reused SMTP connection failed")
+                    return false
                 }
 
-                executePipelinedCommands(pipelinedCommands)
-                readPipelinedResponse(pipelinedCommands)
-            } else {
-                executeCommand(mailFrom)
-
-                for (address in addresses) {
-                    executeCommand("RCPT TO:<%s>", address)
-                }
+                throw e
             }
 
             executeCommand("DATA")
@@ -393,15 +401,99 @@ class SmtpTransport(
             // After the "\r\n." is attempted, we may have sent the message
             entireMessageSent = true
             executeCommand(".")
+
+            socket.soTimeout = SOCKET_READ_TIMEOUT
+            keepConnection = true
+
+            return true
         } catch (e: NegativeSmtpReplyException) {
+            // All responses have been read, so the connection can still be used for the next message
+            keepConnection = e.replyCode != SMTP_SERVICE_NOT_AVAILABLE
             throw e
         } catch (e: Exception) {
             throw MessagingException("Unable to send message", entireMessageSent, e)
         } finally {
+            if (!isSessionActive || !keepConnection) {
+                close()
+            }
+        }
+    }
+
+    /**
+     * Start a session in which the connection to the server is kept open between calls to [sendMessage].
+     *
+     * Subsequent messages are sent over the same authenticated connection after resetting the mail transaction using
+     * `RSET`. A new connection is only established when the existing one fails. Call [endSession] to close the
+     * connection.
+     */
+    fun beginSession() {
+        isSessionActive = true
+    }
+
+    /**
+     * End a session started with [beginSession] and close the connection to the server.
+     */
+    fun endSession() {
+        isSessionActive = false
+        if (isOpen()) {
             close()
         }
     }
 
+    /**
+     * Make sure there's an open connection to the server.
+     *
+     * @return `true` if an existing connection of the current session is reused.
+     */
+    private fun prepareConnection(): Boolean {
+        if (isSessionActive && isOpen()) {
+            return true
+        }
+
+        ensureClosed()
+        open()
+        return false
+    }
+
+    private fun sendEnvelope(mailFrom: String, addresses: Set<String>, resetFirst: Boolean) {
+        if (isPipeliningSupported) {
+            val pipelinedCommands = buildList {
+                if (resetFirst) {
+                    add("RSET")
+                }
+
+                add(mailFrom)
+
+                for (address in addresses) {
+                    add(String.format("RCPT TO:<%s>", address))
+                }
+            }
+
+            executePipelinedCommands(pipelinedCommands)
+            readPipelinedResponse(pipelinedCommands)
+        } else {
+            if (resetFirst) {
+                executeCommand("RSET")
+            }
+
+            executeCommand(mailFrom)
+
+            for (address in addresses) {
+                executeCommand("RCPT TO:<%s>", address)
+            }
+        }
+    }
+
+    private fun isConnectionFailure(e: Exception): Boolean {
+        return e is IOException ||
+            e is SmtpResponseParserException ||
+            (e is NegativeSmtpReplyException && e.replyCode == SMTP_SERVICE_NOT_AVAILABLE)
+    }
+
+    private fun isOpen(): Boolean {
+        return socket != null
+    }
+
     private fun constructSmtpMailFromCommand(
         from: Array<Address>,
         is8bitEncodingAllowed: Boolean,
@@ -948,6 +948,119 @@ class SmtpTransportTest {
         server.verifyInteractionCompleted()
     }
 
+    @Test
+    fun `sendMessage() in session should reuse connection`() {
+        val server = createServerAndSetupForPlainAuthentication().apply {
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12345")
+            expect("RSET")
+            output("250 OK")
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12346")
+            expect("QUIT")
+            output("221 BYE")
+            closeConnection()
+        }
+        val transport = startServerAndCreateSmtpTransport(server)
+
+        transport.beginSession()
+        transport.sendMessage(createDefaultMessage())
+        transport.sendMessage(createDefaultMessage())
+        server.verifyConnectionStillOpen()
+        transport.endSession()
+
+        server.verifyConnectionClosed()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `sendMessage() in session with pipelining should pipeline RSET`() {
+        val server = createServerAndSetupForPlainAuthentication("PIPELINING").apply {
+            expect("MAIL FROM:<user@localhost>")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12345")
+            expect("RSET")
+            expect("MAIL FROM:<user@localhost>")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            output("250 OK")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12346")
+            expect("QUIT")
+            output("221 BYE")
+            closeConnection()
+        }
+        val transport = startServerAndCreateSmtpTransport(server)
+
+        transport.beginSession()
+        transport.sendMessage(createDefaultMessage())
+        transport.sendMessage(createDefaultMessage())
+        transport.endSession()
+
+        server.verifyConnectionClosed()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `sendMessage() in session with negative reply should keep connection`() {
+        val server = createServerAndSetupForPlainAuthentication().apply {
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("550 remote mail to <user2@localhost> not allowed")
+            expect("RSET")
+            output("250 OK")
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12345")
+            expect("QUIT")
+            output("221 BYE")
+            closeConnection()
+        }
+        val transport = startServerAndCreateSmtpTransport(server)
+
+        transport.beginSession()
+        assertFailure {
+            transport.sendMessage(createDefaultMessage())
+        }.isInstanceOf<NegativeSmtpReplyException>()
+            .prop(NegativeSmtpReplyException::replyCode).isEqualTo(550)
+        transport.sendMessage(createDefaultMessage())
+        transport.endSession()
+
+        server.verifyConnectionClosed()
+        server.verifyInteractionCompleted()
+    }
+
     private fun startServerAndCreateSmtpTransportWithoutAuthentication(server: MockSmtpServer): SmtpTransport {
         return startServerAndCreateSmtpTransport(server, AuthType.NONE, ConnectionSecurity.NONE, password = null)
     }
@@ -234,6 +234,7 @@ include(
 )
 
 include(
+    ":mail:benchmark",
     ":mail:common",
     ":mail:testing",
     ":mail:protocols:imap",